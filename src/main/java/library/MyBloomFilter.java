@@ -0,0 +1,253 @@
+package library;
+
+import java.util.Arrays;
+
+/**
+ * A split-block Bloom filter, which answers whether a key might have been added to it. A key that
+ * was added is always reported as possibly present; a key that wasn't is reported as absent except
+ * with a small false positive rate chosen when the filter is sized. Keys can't be removed, since a
+ * bit may be shared by several keys. It accepts any key, including {@code null}, which is hashed
+ * as 0. It is not thread-safe.
+ * <p>
+ * The bits are split into blocks of {@value BLOCK_BITS} bits, eight 32-bit words each. A key's
+ * 64-bit hash picks one block with its high half, and sets or tests one bit in each of the block's
+ * words with its low half, multiplied by a different odd constant per word. A query therefore
+ * reads 32 contiguous bytes, a single cache line in most cases, where a classic Bloom filter with
+ * eight hash functions reads eight scattered ones. Confining a key to one block costs a little
+ * accuracy, which the sizing makes up for with more bits per key: about 10.8 for a 1% false
+ * positive rate, against 9.6 for a classic filter.
+ * <p>
+ * Keys are hashed by their {@code hashCode}, so keys with equal hash codes are indistinguishable.
+ * Callers with a better hash of their own, such as one over the bytes of a key, can pass it to
+ * {@link #addHash(long)} and {@link #mightContainHash(long)} instead.
+ */
+public final class MyBloomFilter {
+    
+    private static final int BLOCK_BITS = 256;
+    private static final int WORDS_PER_BLOCK = BLOCK_BITS / Integer.SIZE;
+    
+    /**
+     * The largest number of blocks, which keeps the word array within the maximum array length.
+     */
+    private static final int MAXIMUM_BLOCKS = 1 << 27;
+    
+    /**
+     * The fraction of their share of the false positive rate that the blocks are sized for. The
+     * model of {@link #falsePositiveRateAt(double)} matches measured rates to within a few percent,
+     * and this leaves room for that and for the luck of a particular set of keys.
+     */
+    private static final double SIZING_MARGIN = 0.9;
+    
+    /**
+     * The multipliers that select a key's bit in each word of its block, from the split-block Bloom
+     * filter of Apache Parquet. Each is odd, so each maps the low half of the hash to a different
+     * permutation, and the top five bits of the products are close to independent.
+     */
+    private static final int[] SALTS = { 0x47B6137B, 0x44974D91, 0x8824AD5B, 0xA2B7289D, 0x705495C7, 0x2DF1424B,
+            0x9EFC4947, 0x5C6BFB31 };
+    
+    private final int[] words;
+    private final int numBlocks;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    
+    /**
+     * Creates a new, empty filter with enough bits that the false positive rate stays at or below
+     * the given rate until the expected number of keys has been added. Adding more keys than that
+     * raises the rate gradually.
+     * <p>
+     * Keys added by {@link #add(Object)} are told apart by their 32-bit hash codes, so an absent key
+     * sharing its hash code with an added one is always reported as present. With well spread hash
+     * codes, that happens for about one absent key in {@code 2^32 / expectedInsertions}, and the
+     * filter is made larger to leave room for it. Beyond about {@code falsePositiveRate * 2^31}
+     * expected keys, that alone takes more than half of the rate, and only keys added by
+     * {@link #addHash(long)} with hashes of more than 32 bits are held to the rate.
+     *
+     * @param expectedInsertions the number of distinct keys expected to be added
+     * @param falsePositiveRate  the wanted probability that an absent key is reported as present
+     * @throws IllegalArgumentException if the expected insertions are negative, or the false
+     *                                      positive rate is not strictly between 0 and 1
+     */
+    public MyBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("MyBloomFilter insertions cannot be negative: " + expectedInsertions);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException(
+                    "MyBloomFilter false positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.numBlocks = blocksFor(expectedInsertions, falsePositiveRate);
+        this.words = new int[numBlocks * WORDS_PER_BLOCK];
+    }
+    
+    /**
+     * Returns the number of blocks needed for the false positive rate to stay at or below the given
+     * rate with the given number of keys. The blocks are sized for what is left of the rate after
+     * equal hash codes, but at least half of it, less a margin. That rate can't be had in closed
+     * form, since keys are spread unevenly over the blocks and fuller blocks give most of the false
+     * positives, so the largest average number of keys per block that meets it is found by
+     * bisection.
+     *
+     * @param expectedInsertions the number of keys
+     * @param falsePositiveRate  the wanted false positive rate
+     * @return the number of blocks, between 1 and {@value MAXIMUM_BLOCKS}
+     */
+    private static int blocksFor(int expectedInsertions, double falsePositiveRate) {
+        double hashCodeCollisions = expectedInsertions / 0x1p32;
+        double blockRate = SIZING_MARGIN * Math.max(falsePositiveRate - hashCodeCollisions, falsePositiveRate / 2);
+        
+        double low = 0;
+        double high = BLOCK_BITS;
+        for (int i = 0; i < 50; i++) {
+            double keysPerBlock = (low + high) / 2;
+            if (falsePositiveRateAt(keysPerBlock) <= blockRate) {
+                low = keysPerBlock;
+            } else {
+                high = keysPerBlock;
+            }
+        }
+        double blocks = (low == 0) ? MAXIMUM_BLOCKS : Math.ceil(expectedInsertions / low);
+        return (int) Math.max(1, Math.min(blocks, MAXIMUM_BLOCKS));
+    }
+    
+    /**
+     * Returns the false positive rate of a filter whose blocks hold the given number of keys on
+     * average. The number of keys in a key's block follows a Poisson distribution, and a block
+     * holding k keys reports a false positive when all eight words have the absent key's bit set,
+     * each with probability {@code 1 - (31/32)^k}.
+     *
+     * @param keysPerBlock the average number of keys per block
+     * @return the probability that an absent key is reported as present
+     */
+    private static double falsePositiveRateAt(double keysPerBlock) {
+        double rate = 0;
+        double poisson = Math.exp(-keysPerBlock);
+        int limit = (int) Math.ceil(keysPerBlock + 12 * Math.sqrt(keysPerBlock) + 12);
+        for (int k = 0; k <= limit; k++) {
+            double wordSet = 1 - Math.pow(1 - 1.0 / Integer.SIZE, k);
+            rate += poisson * Math.pow(wordSet, WORDS_PER_BLOCK);
+            poisson *= keysPerBlock / (k + 1);
+        }
+        return rate;
+    }
+    
+    // ------------------------------------------------------------------------
+    // filter operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Adds a key to this filter, so that {@link #mightContain(Object)} returns {@code true} for it
+     * and every key equal to it from now on.
+     *
+     * @param key the key to add
+     */
+    public void add(Object key) {
+        this.addHash(extend((key == null) ? 0 : key.hashCode()));
+    }
+    
+    /**
+     * Returns {@code false} if the given key has definitely not been added to this filter, and
+     * {@code true} if it might have been.
+     *
+     * @param key the key to test
+     * @return {@code false} if the key was never added
+     */
+    public boolean mightContain(Object key) {
+        return this.mightContainHash(extend((key == null) ? 0 : key.hashCode()));
+    }
+    
+    /**
+     * Adds a key to this filter by a 64-bit hash of it. Every bit of the hash should depend on the
+     * whole key, since the high and low halves are used separately.
+     *
+     * @param hash the hash of the key to add
+     */
+    public void addHash(long hash) {
+        int base = blockOf(hash) * WORDS_PER_BLOCK;
+        int pattern = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[base + i] |= 1 << ((pattern * SALTS[i]) >>> 27);
+        }
+    }
+    
+    /**
+     * Returns {@code false} if no key with the given 64-bit hash has been added to this filter, and
+     * {@code true} if one might have been.
+     *
+     * @param hash the hash of the key to test
+     * @return {@code false} if no key with the hash was added
+     */
+    public boolean mightContainHash(long hash) {
+        int base = blockOf(hash) * WORDS_PER_BLOCK;
+        int pattern = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((words[base + i] & (1 << ((pattern * SALTS[i]) >>> 27))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Removes every key from this filter.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+    
+    /**
+     * Returns the number of keys this filter was sized for.
+     *
+     * @return the expected number of insertions
+     */
+    public int expectedInsertions() {
+        return expectedInsertions;
+    }
+    
+    /**
+     * Returns the false positive rate this filter was sized for.
+     *
+     * @return the false positive rate when the expected number of keys have been added
+     */
+    public double falsePositiveRate() {
+        return falsePositiveRate;
+    }
+    
+    /**
+     * Returns the number of bits in this filter. This is exposed for testing.
+     *
+     * @return the number of bits, a multiple of {@value BLOCK_BITS}
+     */
+    long bitSize() {
+        return (long) numBlocks * BLOCK_BITS;
+    }
+    
+    // ------------------------------------------------------------------------
+    // hashing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Maps the high half of a hash uniformly onto the blocks by taking the high half of their
+     * product, which avoids a division.
+     */
+    private int blockOf(long hash) {
+        return (int) (((hash >>> 32) * numBlocks) >>> 32);
+    }
+    
+    /**
+     * Extends a 32-bit hash code into a 64-bit hash whose halves are both well mixed, with the
+     * finalizer of SplitMix64. This is a bijection, so distinct hash codes give distinct hashes.
+     *
+     * @param hashCode a hash code
+     * @return a 64-bit hash of it
+     */
+    static long extend(int hashCode) {
+        long z = hashCode + 0x9E37_79B9_7F4A_7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,896 @@
+package library;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A thread-safe cache which maps keys to values, and evicts mappings once their total weight
+ * exceeds a maximum. It supports all of the operations of {@code Map}, including optional
+ * operations. It rejects {@code null} keys and values.
+ * <p>
+ * The mappings are stored in a {@link MyConcurrentHashTable}, so lookups never wait on each other
+ * or on writers. Which mappings to evict is decided by the W-TinyLFU policy:
+ * <ul>
+ * <li>New mappings enter a small LRU <em>window</em>, 1% of the maximum weight, which absorbs
+ * bursts of new keys.</li>
+ * <li>The rest is a segmented LRU <em>main</em> space. A mapping leaving the window is put on
+ * <em>probation</em>, and is promoted to the <em>protected</em> segment, 80% of the main space,
+ * when it is read again.</li>
+ * <li>When the cache is over its maximum, a mapping leaving the window is only kept if a
+ * count-min sketch estimates that its key has been used more often than the key of the least
+ * recently used probationary mapping, which is otherwise evicted instead. The sketch keeps 4-bit
+ * counters and halves all of them periodically, so its history favors recent use.</li>
+ * </ul>
+ * The policy's structures are guarded by a lock, but reads and writes don't take it. A read records
+ * the mapping in a lossy ring buffer, dropping the record if the buffer is full, and a write
+ * records its change in a queue. Whichever thread next gets the lock without waiting replays both
+ * buffers and evicts. The weighted size may therefore briefly exceed the maximum while writes are
+ * in flight.
+ * <p>
+ * Iterators are weakly consistent, and don't count as reads.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+public final class MyBoundedCache<K, V> extends MySkeletalMap<K, V> {
+    
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    
+    /**
+     * The number of buffered reads which triggers draining the read buffer.
+     */
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 4;
+    
+    /**
+     * The share of the maximum weight for the main space, and of the main space for the protected
+     * segment, in percent.
+     */
+    private static final int MAIN_PERCENT = 99;
+    private static final int PROTECTED_PERCENT = 80;
+    
+    // The queue a node is in, which is only read and written with the eviction lock held
+    private static final byte NEW = 0;
+    private static final byte WINDOW = 1;
+    private static final byte PROBATION = 2;
+    private static final byte PROTECTED = 3;
+    private static final byte DEAD = 4;
+    
+    /**
+     * A cached mapping, which is also a node of one of the policy's access-order queues.
+     *
+     * @param <K> the type of key in the cache this node belongs to
+     * @param <V> the type of mapped values for the cache this node belongs to
+     */
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile int weight;
+        
+        // Guarded by the eviction lock
+        int policyWeight;
+        byte queue = NEW;
+        Node<K, V> prev;
+        Node<K, V> next;
+        
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+    
+    /**
+     * A doubly linked queue of nodes in access order, least recently used first, linked through the
+     * nodes themselves.
+     *
+     * @param <K> the type of keys of the nodes
+     * @param <V> the type of values of the nodes
+     */
+    private static final class AccessOrderQueue<K, V> {
+        Node<K, V> first;
+        Node<K, V> last;
+        
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+        
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+        
+        void moveToBack(Node<K, V> node) {
+            if (node != last) {
+                this.remove(node);
+                this.addLast(node);
+            }
+        }
+    }
+    
+    /**
+     * A count-min sketch of how often keys are used, with four 4-bit counters per key packed
+     * sixteen to a {@code long}. When the number of increments reaches ten times the number of
+     * counters per row, every counter is halved, so the sketch ages out old popularity.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = { 0x97CB3127L, 0xB40A1B1DL, 0xC2B2AE3DL, 0x85EBCA77L };
+        private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+        private static final int MAXIMUM_LENGTH = 1 << 24;
+        
+        private long[] table = new long[0];
+        private int tableMask;
+        private int sampleSize;
+        private int additions;
+        
+        /**
+         * Grows the sketch, if needed, to track about the given number of keys. Growing discards
+         * the history.
+         */
+        void ensureCapacity(long expectedKeys) {
+            int length = (int) Math.min(Math.max(Long.highestOneBit(Math.max(expectedKeys - 1, 1)) << 1, 8),
+                    MAXIMUM_LENGTH);
+            if (table.length < length) {
+                table = new long[length];
+                tableMask = length - 1;
+                sampleSize = 10 * length;
+                additions = 0;
+            }
+        }
+        
+        /**
+         * Returns the estimated number of recent uses of a key, up to 15.
+         */
+        int frequency(Object key) {
+            if (table.length == 0) {
+                return 0;
+            }
+            int hash = MyHashTable.spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = (hash + SEEDS[i]) * SEEDS[i];
+                int index = (int) (h >>> 32) & tableMask;
+                int shift = ((int) h >>> 28) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xF));
+            }
+            return frequency;
+        }
+        
+        /**
+         * Records a use of a key, halving all counters if the sample period is over.
+         */
+        void increment(Object key) {
+            if (table.length == 0) {
+                return;
+            }
+            int hash = MyHashTable.spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = (hash + SEEDS[i]) * SEEDS[i];
+                int index = (int) (h >>> 32) & tableMask;
+                int shift = ((int) h >>> 28) << 2;
+                if (((table[index] >>> shift) & 0xF) != 0xF) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+    }
+    
+    /**
+     * A snapshot of a cache's hit, miss and eviction counts.
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long evictionWeight;
+        
+        private Stats(long hitCount, long missCount, long evictionCount, long evictionWeight) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.evictionWeight = evictionWeight;
+        }
+        
+        /**
+         * Returns the number of lookups which found a mapping.
+         *
+         * @return the number of hits
+         */
+        public long hitCount() {
+            return hitCount;
+        }
+        
+        /**
+         * Returns the number of lookups which found no mapping.
+         *
+         * @return the number of misses
+         */
+        public long missCount() {
+            return missCount;
+        }
+        
+        /**
+         * Returns the number of lookups.
+         *
+         * @return the number of hits and misses
+         */
+        public long requestCount() {
+            return hitCount + missCount;
+        }
+        
+        /**
+         * Returns the ratio of hits to lookups, or 1 if there were no lookups.
+         *
+         * @return the hit rate
+         */
+        public double hitRate() {
+            long requestCount = this.requestCount();
+            return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
+        }
+        
+        /**
+         * Returns the ratio of misses to lookups, or 0 if there were no lookups.
+         *
+         * @return the miss rate
+         */
+        public double missRate() {
+            long requestCount = this.requestCount();
+            return (requestCount == 0) ? 0.0 : (double) missCount / requestCount;
+        }
+        
+        /**
+         * Returns the number of mappings evicted by the policy. Mappings removed explicitly are
+         * not counted.
+         *
+         * @return the number of evictions
+         */
+        public long evictionCount() {
+            return evictionCount;
+        }
+        
+        /**
+         * Returns the total weight of the mappings evicted by the policy.
+         *
+         * @return the weight of evictions
+         */
+        public long evictionWeight() {
+            return evictionWeight;
+        }
+        
+        @Override
+        public String toString() {
+            return "Stats[hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+                    + ", evictionWeight=" + evictionWeight + "]";
+        }
+    }
+    
+    private final MyConcurrentHashTable<K, Node<K, V>> data = new MyConcurrentHashTable<>();
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+    
+    /**
+     * A lossy ring buffer of nodes which have been read. Slots up to the write count are claimed by
+     * readers with a compare-and-set, and slots up to the read count have been drained.
+     */
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readBufferWriteCount = new AtomicLong();
+    private volatile long readBufferReadCount = 0;
+    
+    /**
+     * Changes to the policy made by writers, which must not be lost.
+     */
+    private final ConcurrentLinkedQueue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    
+    // Everything below is guarded by the eviction lock
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final AccessOrderQueue<K, V> window = new AccessOrderQueue<>();
+    private final AccessOrderQueue<K, V> probation = new AccessOrderQueue<>();
+    private final AccessOrderQueue<K, V> protectedQueue = new AccessOrderQueue<>();
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long weightedSize = 0;
+    private long windowWeightedSize = 0;
+    private long protectedWeightedSize = 0;
+    private int randomSeed = 0x9E3779B9;
+    
+    /**
+     * Creates a new, empty cache which holds at most the given number of mappings.
+     *
+     * @param maximumSize the maximum number of mappings
+     * @throws IllegalArgumentException if the maximum size is negative
+     */
+    public MyBoundedCache(long maximumSize) {
+        this(maximumSize, (key, value) -> 1);
+    }
+    
+    /**
+     * Creates a new, empty cache which holds mappings up to the given total weight, as measured by
+     * the given weigher. The weight of a mapping is computed when it is put, and must not be
+     * negative. A mapping heavier than the maximum is evicted right away.
+     *
+     * @param maximumWeight the maximum total weight of the mappings
+     * @param weigher       the function computing the weight of a mapping
+     * @throws IllegalArgumentException if the maximum weight is negative
+     * @throws NullPointerException     if the weigher is {@code null}
+     */
+    public MyBoundedCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("MyBoundedCache maximum weight cannot be negative: " + maximumWeight);
+        }
+        this.weigher = Objects.requireNonNull(weigher);
+        
+        long mainMaximum = maximumWeight * MAIN_PERCENT / 100;
+        this.maximum = maximumWeight;
+        this.windowMaximum = maximumWeight - mainMaximum;
+        this.protectedMaximum = mainMaximum * PROTECTED_PERCENT / 100;
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    @Override
+    public int size() {
+        return data.size();
+    }
+    
+    /**
+     * Returns {@code true} if this cache contains a mapping for the specified key. This doesn't
+     * count as a read, and isn't recorded in the stats.
+     *
+     * @param key key whose presence in this cache is to be tested
+     * @return {@code true} if this cache contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key); // throws NullPointerException
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this cache
+     * contains no mapping for the key. The lookup is recorded as a hit or a miss.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this cache
+     *             contains no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key); // throws NullPointerException
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        this.afterRead(node);
+        return node.value;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, computing it with the given function
+     * and caching it if the key is absent. The function is applied at most once per absent key,
+     * even when several threads ask for it at the same time, and must not modify this cache. The
+     * lookup is recorded as a hit or a miss.
+     *
+     * @param key             key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with the specified key, or
+     *             {@code null} if the computed value is {@code null}
+     * @throws NullPointerException if the specified key or mappingFunction is {@code null}
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        
+        Node<K, V> node = data.get(key); // throws NullPointerException
+        if (node == null) {
+            @SuppressWarnings("unchecked")
+            Node<K, V>[] created = (Node<K, V>[]) new Node<?, ?>[1];
+            node = data.computeIfAbsent(key, k -> {
+                V value = mappingFunction.apply(k);
+                return (value == null) ? null : (created[0] = new Node<>(k, value, this.weigh(k, value)));
+            });
+            if (created[0] != null) {
+                missCount.increment();
+                Node<K, V> added = created[0];
+                this.afterWrite(() -> this.onAdd(added));
+                return added.value;
+            }
+            if (node == null) {
+                missCount.increment();
+                return null;
+            }
+        }
+        hitCount.increment();
+        this.afterRead(node);
+        return node.value;
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this cache, which may evict other
+     * mappings. Replacing a value counts as a read of the mapping, but isn't recorded in the stats.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException     if the specified key or value is {@code null}
+     * @throws IllegalArgumentException if the weigher returns a negative weight
+     */
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        int weight = this.weigh(key, value);
+        @SuppressWarnings("unchecked")
+        Node<K, V>[] added = (Node<K, V>[]) new Node<?, ?>[1];
+        Object[] oldValue = new Object[1];
+        Node<K, V> node = data.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return added[0] = new Node<>(k, value, weight);
+            }
+            oldValue[0] = existing.value;
+            existing.value = value;
+            existing.weight = weight;
+            return existing;
+        });
+        
+        if (added[0] != null) {
+            this.afterWrite(() -> this.onAdd(node));
+            return null;
+        }
+        this.afterWrite(() -> this.onUpdate(node));
+        @SuppressWarnings("unchecked")
+        V result = (V) oldValue[0];
+        return result;
+    }
+    
+    /**
+     * Removes the mapping for a key from this cache if it is present. This isn't counted as an
+     * eviction.
+     *
+     * @param key key whose mapping is to be removed from the cache
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key); // throws NullPointerException
+        if (node == null) {
+            return null;
+        }
+        this.afterWrite(() -> this.onRemove(node));
+        return node.value;
+    }
+    
+    /**
+     * Removes all of the mappings from this cache. Mappings put concurrently may survive.
+     */
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            this.maintenance();
+            for (Node<K, V> node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    this.onRemove(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // cache operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns a snapshot of the hit, miss and eviction counts of this cache.
+     *
+     * @return the stats of this cache
+     */
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum(), evictionWeight.sum());
+    }
+    
+    /**
+     * Returns the maximum total weight of the mappings in this cache.
+     *
+     * @return the maximum weight
+     */
+    public long maximumWeight() {
+        return maximum;
+    }
+    
+    /**
+     * Returns the total weight of the mappings in this cache, after applying all pending writes and
+     * evictions.
+     *
+     * @return the weighted size
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            this.maintenance();
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    /**
+     * Applies all pending reads and writes to the policy, and evicts the mappings over the maximum.
+     * This happens as a side effect of other operations, so calling it is never needed for
+     * correctness.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            this.maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    private int weigh(K key, V value) {
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("MyBoundedCache weight cannot be negative: " + weight);
+        }
+        return weight;
+    }
+    
+    // ------------------------------------------------------------------------
+    // buffers
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Records a read in the read buffer, dropping it if the buffer is full, and drains the buffers
+     * if enough reads are pending and the lock is free.
+     */
+    private void afterRead(Node<K, V> node) {
+        long writeCount = readBufferWriteCount.get();
+        long pending = writeCount - readBufferReadCount;
+        if (pending < READ_BUFFER_SIZE && readBufferWriteCount.compareAndSet(writeCount, writeCount + 1)) {
+            readBuffer.lazySet((int) writeCount & READ_BUFFER_MASK, node);
+            pending++;
+        }
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD) {
+            this.tryMaintenance();
+        }
+    }
+    
+    /**
+     * Records a write in the write buffer and drains the buffers. If another thread holds the lock,
+     * it will see the write before releasing it.
+     */
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        this.tryMaintenance();
+    }
+    
+    private void tryMaintenance() {
+        // A write added while the lock was held is seen by the holder's recheck
+        do {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                this.maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+    
+    private void maintenance() {
+        this.drainReadBuffer();
+        for (Runnable task; (task = writeBuffer.poll()) != null;) {
+            task.run();
+        }
+        this.evictEntries();
+    }
+    
+    private void drainReadBuffer() {
+        long writeCount = readBufferWriteCount.get();
+        for (long i = readBufferReadCount; i < writeCount; i++) {
+            // A slot may not be filled yet by its reader, in which case the read is lost
+            Node<K, V> node = readBuffer.getAndSet((int) i & READ_BUFFER_MASK, null);
+            if (node != null) {
+                this.onAccess(node);
+            }
+        }
+        readBufferReadCount = writeCount;
+    }
+    
+    // ------------------------------------------------------------------------
+    // policy
+    // ------------------------------------------------------------------------
+    
+    private void onAdd(Node<K, V> node) {
+        if (node.queue != NEW) {
+            return; // removed before its addition was applied
+        }
+        node.policyWeight = node.weight;
+        node.queue = WINDOW;
+        window.addLast(node);
+        windowWeightedSize += node.policyWeight;
+        weightedSize += node.policyWeight;
+        sketch.ensureCapacity(data.mappingCount());
+        sketch.increment(node.key);
+    }
+    
+    private void onUpdate(Node<K, V> node) {
+        if (node.queue == NEW || node.queue == DEAD) {
+            return; // the addition will see the new weight, or the removal will take the old one
+        }
+        int delta = node.weight - node.policyWeight;
+        node.policyWeight += delta;
+        weightedSize += delta;
+        if (node.queue == WINDOW) {
+            windowWeightedSize += delta;
+        } else if (node.queue == PROTECTED) {
+            protectedWeightedSize += delta;
+        }
+        this.onAccess(node);
+    }
+    
+    private void onRemove(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeightedSize -= node.policyWeight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                protectedWeightedSize -= node.policyWeight;
+                break;
+            default:
+                node.queue = DEAD;
+                return;
+        }
+        weightedSize -= node.policyWeight;
+        node.queue = DEAD;
+    }
+    
+    /**
+     * Moves a read node to the back of its queue, promoting a probationary node to the protected
+     * segment and demoting the protected segment's least recently used nodes while it is full.
+     */
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeightedSize += node.policyWeight;
+                while (protectedWeightedSize > protectedMaximum && protectedQueue.first != node) {
+                    Node<K, V> demoted = protectedQueue.first;
+                    protectedQueue.remove(demoted);
+                    protectedWeightedSize -= demoted.policyWeight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToBack(node);
+                break;
+            default:
+                return; // not added yet, or already removed
+        }
+        sketch.increment(node.key);
+    }
+    
+    /**
+     * Moves the window's overflow to the back of probation, then evicts until the weighted size is
+     * within the maximum. Each node moved out of the window is a candidate which must beat the
+     * least recently used probationary node, the victim, on frequency to stay.
+     */
+    private void evictEntries() {
+        Node<K, V> candidate = null;
+        while (windowWeightedSize > windowMaximum && window.first != null) {
+            Node<K, V> node = window.first;
+            window.remove(node);
+            windowWeightedSize -= node.policyWeight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+        
+        while (weightedSize > maximum) {
+            Node<K, V> victim = (probation.first != null) ? probation.first
+                    : (protectedQueue.first != null) ? protectedQueue.first : window.first;
+            if (victim == null) {
+                break;
+            }
+            if (candidate == null || victim == candidate) {
+                // No contest: only candidates are left on probation, or none were added
+                if (victim == candidate) {
+                    candidate = candidate.next;
+                }
+                this.evict(victim);
+            } else if (this.admit(candidate.key, victim.key)) {
+                this.evict(victim);
+            } else {
+                Node<K, V> next = candidate.next;
+                this.evict(candidate);
+                candidate = next;
+            }
+        }
+    }
+    
+    /**
+     * Returns whether a candidate should replace a victim. A candidate which is only as frequent as
+     * the victim is rejected, except that a warm candidate is admitted at random about once in 128
+     * times, so that an attacker can't keep a victim in place by flooding its sketch counters.
+     */
+    private boolean admit(K candidateKey, K victimKey) {
+        int candidateFrequency = sketch.frequency(candidateKey);
+        int victimFrequency = sketch.frequency(victimKey);
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+        if (candidateFrequency <= 5) {
+            return false;
+        }
+        randomSeed ^= randomSeed << 13;
+        randomSeed ^= randomSeed >>> 17;
+        randomSeed ^= randomSeed << 5;
+        return (randomSeed & 127) == 0;
+    }
+    
+    private void evict(Node<K, V> node) {
+        int weight = node.policyWeight;
+        if (data.remove(node.key, node)) {
+            evictionCount.increment();
+            evictionWeight.add(weight);
+        }
+        // Otherwise it was removed concurrently, and its pending removal will find it dead
+        this.onRemove(node);
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new CacheIterator();
+    }
+    
+    /**
+     * A weakly consistent iterator over the backing table, which doesn't count as reads.
+     */
+    private final class CacheIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<Node<K, V>> nodes = data.values().iterator();
+        private Node<K, V> lastReturned = null;
+        
+        @Override
+        public boolean hasNext() {
+            return nodes.hasNext();
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            lastReturned = nodes.next();
+            return new CacheEntry(lastReturned.key, lastReturned.value);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            Node<K, V> node = lastReturned;
+            lastReturned = null;
+            if (data.remove(node.key, node)) {
+                MyBoundedCache.this.afterWrite(() -> MyBoundedCache.this.onRemove(node));
+            }
+        }
+    }
+    
+    /**
+     * An entry returned by the iterator, whose {@code setValue} writes through with {@code put}.
+     */
+    private final class CacheEntry implements Entry<K, V> {
+        private final K key;
+        private V value;
+        
+        CacheEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        @Override
+        public V setValue(V value) {
+            V oldValue = this.value;
+            MyBoundedCache.this.put(key, value); // throws NullPointerException
+            this.value = value;
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
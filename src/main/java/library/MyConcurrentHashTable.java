@@ -0,0 +1,1160 @@
+package library;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread-safe hashtable which maps keys to values. It supports all of the operations of
+ * {@code ConcurrentMap}, including optional operations. It rejects {@code null} keys and values.
+ * <p>
+ * Retrievals never lock: they read the bucket array and the chains through volatile reads, so they
+ * see the effects of every update that completed before they started, and possibly some that are in
+ * progress. Updates lock only the bucket they change, using its first node as the monitor, and an
+ * update to an empty bucket installs its node with a single compare-and-set. The compound
+ * operations {@code putIfAbsent}, {@code computeIfAbsent}, {@code computeIfPresent},
+ * {@code compute}, {@code merge}, {@code replace} and {@code remove(key, value)} are performed
+ * atomically, holding the bucket's lock, and their functions are applied at most once per call.
+ * Functions passed to them should be short and must not update this map.
+ * <p>
+ * When the number of mappings passes three quarters of the capacity, the table is doubled without
+ * a global lock. Buckets are moved one at a time, holding only that bucket's lock, and a forwarding
+ * node is left in each old bucket. The resize is cooperative: the thread whose update passed the
+ * threshold starts it, and any writer that meets a forwarding node, or whose update also passes the
+ * threshold, joins in by claiming a range of buckets to move before retrying its update in the new
+ * table. Readers never help or wait; they follow forwarding nodes into the new table.
+ * <p>
+ * Iterators and the views' iterators are weakly consistent: they never throw
+ * {@code ConcurrentModificationException}, return each mapping at most once, return every mapping
+ * that is present for the whole iteration, and may or may not reflect updates made during it. The
+ * {@code size} of a map that is being updated is an estimate.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyConcurrentHashTable<K, V> extends MySkeletalMap<K, V> implements ConcurrentMap<K, V> {
+    
+    private static final int DEFAULT_SIZE = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /*
+     * Hashes of special nodes. The hashes of ordinary nodes are never negative.
+     */
+    static final int MOVED = -1;
+    static final int RESERVED = -2;
+    private static final int HASH_BITS = 0x7FFFFFFF;
+    
+    /*
+     * Resizing. Each resizing thread claims at least MIN_TRANSFER_STRIDE buckets at a time, so that
+     * threads don't contend on transferIndex for every bucket.
+     */
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    private static final int RESIZE_STAMP_BITS = 16;
+    private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+    private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+    
+    private static final VarHandle BINS = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final VarHandle SIZE_CTL;
+    private static final VarHandle TRANSFER_INDEX;
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIZE_CTL = lookup.findVarHandle(MyConcurrentHashTable.class, "sizeCtl", int.class);
+            TRANSFER_INDEX = lookup.findVarHandle(MyConcurrentHashTable.class, "transferIndex", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    /**
+     * A mapping in a bucket chain. The key and hash never change; the value and the link to the
+     * next node are volatile, so that readers that don't lock see updates made under the lock.
+     */
+    static class Node<K, V> implements Entry<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+        
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+        
+        @Override
+        public final K getKey() {
+            return key;
+        }
+        
+        @Override
+        public final V getValue() {
+            return value;
+        }
+        
+        /**
+         * Nodes are not handed out, so this is never called.
+         */
+        @Override
+        public final V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public final String toString() {
+            return key + "=" + value;
+        }
+    }
+    
+    /**
+     * Left in a bucket whose nodes have been moved to the next table during a resize.
+     */
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final Node<K, V>[] nextTable;
+        
+        ForwardingNode(Node<K, V>[] nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+    
+    /**
+     * Holds an empty bucket while {@code computeIfAbsent} or {@code compute} applies its function,
+     * so that no other mapping is added to the bucket in the meantime. Readers treat it as an empty
+     * bucket, and writers wait on its lock.
+     */
+    static final class ReservationNode<K, V> extends Node<K, V> {
+        ReservationNode() {
+            super(RESERVED, null, null, null);
+        }
+    }
+    
+    /**
+     * The bucket array. Its length is always a power of two.
+     */
+    private volatile Node<K, V>[] table;
+    
+    /**
+     * While a resize is in progress, the table it is moving buckets into.
+     */
+    private volatile Node<K, V>[] nextTable;
+    
+    /**
+     * The resize control. While the table isn't being resized, this is the size at which it
+     * will be. While it is, this is the shifted resize stamp plus one more than the number of
+     * threads moving buckets, which is negative.
+     */
+    private volatile int sizeCtl;
+    
+    /**
+     * While a resize is in progress, the buckets below this index are still to be claimed by a
+     * resizing thread.
+     */
+    private volatile int transferIndex;
+    
+    private final LongAdder count = new LongAdder();
+    
+    /**
+     * Creates a new, empty hashtable with an initial capacity of {@value DEFAULT_SIZE}.
+     */
+    public MyConcurrentHashTable() {
+        this(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Creates a new, empty hashtable with at least the specified initial capacity.
+     *
+     * @param initialCapacity the initial capacity
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public MyConcurrentHashTable(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("MyConcurrentHashTable capacity cannot be negative: " + initialCapacity);
+        }
+        
+        int capacity = tableSizeFor(initialCapacity);
+        this.table = newTable(capacity);
+        this.sizeCtl = thresholdFor(capacity);
+    }
+    
+    /**
+     * Constructs a new hashtable with the same mappings as the given Map, sized to hold them
+     * without resizing.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    public MyConcurrentHashTable(Map<? extends K, ? extends V> m) {
+        this((int) Math.min(m.size() / 0.75 + 1, MAXIMUM_CAPACITY)); // throws NullPointerException
+        this.putAll(m);
+    }
+    
+    // ------------------------------------------------------------------------
+    // table access
+    // ------------------------------------------------------------------------
+    
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int capacity) {
+        return (Node<K, V>[]) new Node<?, ?>[capacity];
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <K, V> Node<K, V> tabAt(Node<K, V>[] tab, int i) {
+        return (Node<K, V>) BINS.getVolatile(tab, i);
+    }
+    
+    static <K, V> boolean casTabAt(Node<K, V>[] tab, int i, Node<K, V> expected, Node<K, V> node) {
+        return BINS.compareAndSet(tab, i, expected, node);
+    }
+    
+    static <K, V> void setTabAt(Node<K, V>[] tab, int i, Node<K, V> node) {
+        BINS.setVolatile(tab, i, node);
+    }
+    
+    /**
+     * Returns the spread hash code of a key, with the sign bit cleared so that it never equals the
+     * hash of a special node.
+     *
+     * @param key the key - never {@code null}
+     * @return its hash
+     */
+    static int hash(Object key) {
+        return MyHashTable.spread(key.hashCode()) & HASH_BITS;
+    }
+    
+    private static int tableSizeFor(int capacity) {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1, 2);
+    }
+    
+    private static int thresholdFor(int capacity) {
+        return (capacity >= MAXIMUM_CAPACITY) ? Integer.MAX_VALUE : capacity - (capacity >>> 2);
+    }
+    
+    /**
+     * Returns the number of buckets in the table. This is exposed for testing.
+     *
+     * @return the number of buckets in the table
+     */
+    int capacity() {
+        return table.length;
+    }
+    
+    // ------------------------------------------------------------------------
+    // single element operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of key-value mappings in this map. If the map is being updated
+     * concurrently, this is an estimate.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    @Override
+    public int size() {
+        long n = count.sum();
+        return (n < 0) ? 0 : (int) Math.min(n, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Returns the number of mappings, which may exceed {@code Integer.MAX_VALUE}. If the map is
+     * being updated concurrently, this is an estimate.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long n = count.sum();
+        return Math.max(n, 0);
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key. This never locks.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        
+        int h = hash(key);
+        Node<K, V>[] tab = table;
+        while (true) {
+            Node<K, V> e = tabAt(tab, h & (tab.length - 1));
+            if (e == null || e.hash == RESERVED) {
+                return null;
+            }
+            if (e.hash == MOVED) {
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                continue;
+            }
+            for (; e != null; e = e.next) {
+                K k = e.key;
+                if (e.hash == h && (k == key || key.equals(k))) {
+                    return e.value;
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key. This never locks.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map. If the map previously
+     * contained a mapping for the key, the old value is replaced by the specified value.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    public V put(K key, V value) {
+        return this.putValue(key, value, false);
+    }
+    
+    /**
+     * If the specified key is not already associated with a value, associates it with the given
+     * value, atomically.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return this.putValue(key, value, true);
+    }
+    
+    /**
+     * Implements put and putIfAbsent.
+     */
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        int h = hash(key);
+        Node<K, V>[] tab = table;
+        while (true) {
+            int i = h & (tab.length - 1);
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                if (casTabAt(tab, i, null, new Node<>(h, key, value, null))) {
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = this.helpTransfer(tab, f);
+            } else {
+                V oldValue = null;
+                boolean done = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        checkNotReserved(f);
+                        done = true;
+                        for (Node<K, V> e = f;; e = e.next) {
+                            K k = e.key;
+                            if (e.hash == h && (k == key || key.equals(k))) {
+                                oldValue = e.value;
+                                if (!onlyIfAbsent) {
+                                    e.value = value;
+                                }
+                                break;
+                            }
+                            if (e.next == null) {
+                                e.next = new Node<>(h, key, value, null);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (done) {
+                    if (oldValue != null) {
+                        return oldValue;
+                    }
+                    break;
+                }
+            }
+        }
+        this.addCount(1);
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        return this.replaceNode(key, null, null);
+    }
+    
+    /**
+     * Removes the entry for a key only if it is currently mapped to the given value, atomically.
+     *
+     * @param key   key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return {@code true} if the value was removed
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        Objects.requireNonNull(key);
+        
+        return value != null && this.replaceNode(key, null, value) != null;
+    }
+    
+    /**
+     * Replaces the entry for a key only if it is currently mapped to some value, atomically.
+     *
+     * @param key   key with which the specified value is associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or {@code null} if there was
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        return this.replaceNode(key, value, null);
+    }
+    
+    /**
+     * Replaces the entry for a key only if it is currently mapped to the given value, atomically.
+     *
+     * @param key      key with which the specified value is associated
+     * @param oldValue value expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return {@code true} if the value was replaced
+     * @throws NullPointerException if any of the arguments is {@code null}
+     */
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        
+        return this.replaceNode(key, newValue, oldValue) != null;
+    }
+    
+    /**
+     * Implements the remove and replace methods: replaces the value of the key's node with the
+     * given value, or removes the node if the value is {@code null}, provided that the node's
+     * value equals the expected value if one is given.
+     *
+     * @param key      the key - never {@code null}
+     * @param value    the new value, or {@code null} to remove the mapping
+     * @param expected the value the mapping must have, or {@code null} to accept any
+     * @return the previous value, or {@code null} if nothing was changed
+     */
+    private V replaceNode(Object key, V value, Object expected) {
+        int h = hash(key);
+        Node<K, V>[] tab = table;
+        while (true) {
+            int i = h & (tab.length - 1);
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                return null;
+            } else if (f.hash == MOVED) {
+                tab = this.helpTransfer(tab, f);
+            } else {
+                V oldValue = null;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        validated = true;
+                        for (Node<K, V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                            K k = e.key;
+                            if (e.hash == h && (k == key || key.equals(k))) {
+                                V currentValue = e.value;
+                                if (expected == null || expected.equals(currentValue)) {
+                                    oldValue = currentValue;
+                                    if (value != null) {
+                                        e.value = value;
+                                    } else if (pred != null) {
+                                        pred.next = e.next;
+                                    } else {
+                                        setTabAt(tab, i, e.next);
+                                    }
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (oldValue != null && value == null) {
+                        this.addCount(-1);
+                    }
+                    return oldValue;
+                }
+            }
+        }
+    }
+    
+    /**
+     * If the specified key is not already associated with a value, attempts to compute its value
+     * using the given mapping function and enters it into this map unless {@code null}. The whole
+     * invocation is performed atomically, so the function is applied at most once per key.
+     *
+     * @param key             key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with the specified key, or null
+     *             if the computed value is null
+     * @throws NullPointerException  if the specified key or mappingFunction is null
+     * @throws IllegalStateException if the computation detectably attempts a recursive update to
+     *                                   this map
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(mappingFunction);
+        
+        int h = hash(key);
+        Node<K, V>[] tab = table;
+        while (true) {
+            int i = h & (tab.length - 1);
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                V value = null;
+                boolean reserved = false;
+                Node<K, V> reservation = new ReservationNode<>();
+                synchronized (reservation) {
+                    if (casTabAt(tab, i, null, reservation)) {
+                        reserved = true;
+                        try {
+                            value = mappingFunction.apply(key);
+                        } finally {
+                            setTabAt(tab, i, (value == null) ? null : new Node<>(h, key, value, null));
+                        }
+                    }
+                }
+                if (reserved) {
+                    if (value != null) {
+                        this.addCount(1);
+                    }
+                    return value;
+                }
+            } else if (f.hash == MOVED) {
+                tab = this.helpTransfer(tab, f);
+            } else {
+                V value = null;
+                boolean added = false;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        checkNotReserved(f);
+                        validated = true;
+                        for (Node<K, V> e = f;; e = e.next) {
+                            K k = e.key;
+                            if (e.hash == h && (k == key || key.equals(k))) {
+                                value = e.value;
+                                break;
+                            }
+                            if (e.next == null) {
+                                value = mappingFunction.apply(key);
+                                if (value != null) {
+                                    e.next = new Node<>(h, key, value, null);
+                                    added = true;
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (added) {
+                        this.addCount(1);
+                    }
+                    return value;
+                }
+            }
+        }
+    }
+    
+    /**
+     * If the value for the specified key is present, attempts to compute a new mapping given the
+     * key and its current value, atomically. If the function returns {@code null}, the mapping is
+     * removed.
+     *
+     * @param key               key with which the specified value is to be associated
+     * @param remappingFunction the function to compute a value
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException  if the specified key or remappingFunction is null
+     * @throws IllegalStateException if the computation detectably attempts a recursive update to
+     *                                   this map
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(remappingFunction);
+        
+        return this.remap(key, (k, oldValue) -> (oldValue == null) ? null : remappingFunction.apply(k, oldValue),
+                false);
+    }
+    
+    /**
+     * Attempts to compute a mapping for the specified key and its current mapped value (or
+     * {@code null} if there is no current mapping), atomically. If the function returns
+     * {@code null}, the mapping is removed, or stays absent.
+     *
+     * @param key               key with which the specified value is to be associated
+     * @param remappingFunction the function to compute a value
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException  if the specified key or remappingFunction is null
+     * @throws IllegalStateException if the computation detectably attempts a recursive update to
+     *                                   this map
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(remappingFunction);
+        
+        return this.remap(key, remappingFunction, true);
+    }
+    
+    /**
+     * If the specified key is not already associated with a value, associates it with the given
+     * value. Otherwise, replaces the value with the results of the given remapping function, or
+     * removes it if the result is {@code null}. This is performed atomically.
+     *
+     * @param key               key with which the resulting value is to be associated
+     * @param value             the value to use if absent
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key, or null if none
+     * @throws NullPointerException  if the specified key, value or remappingFunction is null
+     * @throws IllegalStateException if the computation detectably attempts a recursive update to
+     *                                   this map
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        
+        return this.remap(key, (k, oldValue) -> (oldValue == null) ? value : remappingFunction.apply(oldValue, value),
+                true);
+    }
+    
+    /**
+     * Implements compute, computeIfPresent and merge: replaces the key's mapping with the result
+     * of the function applied to its current value, or {@code null} if absent, while holding the
+     * bucket's lock. A {@code null} result removes the mapping.
+     *
+     * @param key               the key - never {@code null}
+     * @param remappingFunction the function to apply
+     * @param mayAdd            whether the function may be applied to an absent key; if not, an
+     *                              absent key leaves the map unchanged
+     * @return the new value, or {@code null} if there is none
+     */
+    private V remap(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, boolean mayAdd) {
+        int h = hash(key);
+        Node<K, V>[] tab = table;
+        while (true) {
+            int i = h & (tab.length - 1);
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                if (!mayAdd) {
+                    return null;
+                }
+                V value = null;
+                boolean reserved = false;
+                Node<K, V> reservation = new ReservationNode<>();
+                synchronized (reservation) {
+                    if (casTabAt(tab, i, null, reservation)) {
+                        reserved = true;
+                        try {
+                            value = remappingFunction.apply(key, null);
+                        } finally {
+                            setTabAt(tab, i, (value == null) ? null : new Node<>(h, key, value, null));
+                        }
+                    }
+                }
+                if (reserved) {
+                    if (value != null) {
+                        this.addCount(1);
+                    }
+                    return value;
+                }
+            } else if (f.hash == MOVED) {
+                tab = this.helpTransfer(tab, f);
+            } else {
+                V value = null;
+                int delta = 0;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        checkNotReserved(f);
+                        validated = true;
+                        for (Node<K, V> e = f, pred = null;; pred = e, e = e.next) {
+                            K k = e.key;
+                            if (e.hash == h && (k == key || key.equals(k))) {
+                                value = remappingFunction.apply(key, e.value);
+                                if (value != null) {
+                                    e.value = value;
+                                } else {
+                                    delta = -1;
+                                    if (pred != null) {
+                                        pred.next = e.next;
+                                    } else {
+                                        setTabAt(tab, i, e.next);
+                                    }
+                                }
+                                break;
+                            }
+                            if (e.next == null) {
+                                if (mayAdd) {
+                                    value = remappingFunction.apply(key, null);
+                                    if (value != null) {
+                                        e.next = new Node<>(h, key, value, null);
+                                        delta = 1;
+                                    }
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (delta != 0) {
+                        this.addCount(delta);
+                    }
+                    return value;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Throws if a locked bucket holds a reservation. Reservations are only replaced by the thread
+     * that holds their lock, so if this thread holds it, its mapping function is updating the map.
+     */
+    private static void checkNotReserved(Node<?, ?> f) {
+        if (f.hash == RESERVED) {
+            throw new IllegalStateException("Recursive update");
+        }
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged. Mappings added
+     * concurrently may remain.
+     */
+    @Override
+    public void clear() {
+        Node<K, V>[] tab = table;
+        int i = 0;
+        while (i < tab.length) {
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                i++;
+            } else if (f.hash == MOVED) {
+                tab = this.helpTransfer(tab, f);
+                i = 0;
+            } else {
+                long removed = 0;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        for (Node<K, V> e = (f.hash == RESERVED) ? null : f; e != null; e = e.next) {
+                            removed++;
+                        }
+                        setTabAt(tab, i, null);
+                        i++;
+                    }
+                }
+                if (removed != 0) {
+                    this.addCount(-removed);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns a weakly consistent iterator over the mappings in this map.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+    
+    // ------------------------------------------------------------------------
+    // resizing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Adds to the count of mappings. If that passes the threshold, this either starts a resize or,
+     * if one is already in progress, joins it.
+     *
+     * @param x the number of mappings added, or removed if negative
+     */
+    private void addCount(long x) {
+        count.add(x);
+        if (x <= 0) {
+            return;
+        }
+        Node<K, V>[] tab;
+        int sc;
+        while (count.sum() >= (long) (sc = sizeCtl) && (tab = table).length < MAXIMUM_CAPACITY) {
+            int rs = resizeStamp(tab.length) << RESIZE_STAMP_SHIFT;
+            if (sc < 0) {
+                Node<K, V>[] nextTab = nextTable;
+                if (sc == rs + MAX_RESIZERS || sc == rs + 1 || nextTab == null || transferIndex <= 0) {
+                    break;
+                }
+                if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                    this.transfer(tab, nextTab);
+                }
+            } else if (SIZE_CTL.compareAndSet(this, sc, rs + 2)) {
+                this.transfer(tab, null);
+            }
+        }
+    }
+    
+    /**
+     * Helps move buckets into the next table if a resize of the given table is still in progress.
+     * Writers call this when they meet a forwarding node, rather than waiting for the resizing
+     * threads to finish.
+     *
+     * @param tab the table the forwarding node was found in
+     * @param f   the forwarding node
+     * @return the table to retry the operation in
+     */
+    private Node<K, V>[] helpTransfer(Node<K, V>[] tab, Node<K, V> f) {
+        Node<K, V>[] nextTab = ((ForwardingNode<K, V>) f).nextTable;
+        int rs = resizeStamp(tab.length) << RESIZE_STAMP_SHIFT;
+        int sc;
+        while (nextTab == nextTable && table == tab && (sc = sizeCtl) < 0) {
+            if (sc == rs + MAX_RESIZERS || sc == rs + 1 || transferIndex <= 0) {
+                break;
+            }
+            if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                this.transfer(tab, nextTab);
+                break;
+            }
+        }
+        return nextTab;
+    }
+    
+    /**
+     * Returns the stamp identifying a resize of a table of length {@code n}. Shifted left by
+     * {@link #RESIZE_STAMP_SHIFT}, it is negative, so {@code sizeCtl} holding the shifted stamp plus
+     * one more than the number of resizing threads marks that resize as in progress.
+     *
+     * @param n the length of the table being resized
+     * @return the resize stamp
+     */
+    private static int resizeStamp(int n) {
+        return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_BITS - 1));
+    }
+    
+    /**
+     * Moves buckets of the table into a table twice its size, claiming ranges of
+     * {@code transferStride} buckets at a time from {@code transferIndex} until there are none left
+     * to claim. Any number of threads may run this at once; the last one to leave checks that every
+     * bucket was moved and installs the new table.
+     * <p>
+     * Each bucket is split into the buckets at the same index and at that index plus the old
+     * length, keeping the order of its nodes. The nodes are copied, so that readers still walking
+     * the old chains aren't disturbed. The caller must have registered in {@code sizeCtl}.
+     *
+     * @param tab     the table to resize
+     * @param nextTab the table to move buckets into, or {@code null} if this thread is starting
+     *                    the resize
+     */
+    private void transfer(Node<K, V>[] tab, Node<K, V>[] nextTab) {
+        int n = tab.length;
+        int stride = Math.max((n >>> 3) / NCPU, MIN_TRANSFER_STRIDE);
+        if (nextTab == null) {
+            nextTab = newTable(n << 1);
+            nextTable = nextTab;
+            transferIndex = n;
+        }
+        ForwardingNode<K, V> forward = new ForwardingNode<>(nextTab);
+        boolean advance = true;
+        boolean finishing = false;
+        int i = 0;
+        int bound = 0;
+        while (true) {
+            // Move to the next bucket of the claimed range, or claim another range
+            while (advance) {
+                int nextIndex;
+                if (--i >= bound || finishing) {
+                    advance = false;
+                } else if ((nextIndex = transferIndex) <= 0) {
+                    i = -1;
+                    advance = false;
+                } else {
+                    int nextBound = (nextIndex > stride) ? nextIndex - stride : 0;
+                    if (TRANSFER_INDEX.compareAndSet(this, nextIndex, nextBound)) {
+                        bound = nextBound;
+                        i = nextIndex - 1;
+                        advance = false;
+                    }
+                }
+            }
+            
+            if (i < 0) {
+                if (finishing) {
+                    nextTable = null;
+                    table = nextTab;
+                    sizeCtl = thresholdFor(n << 1);
+                    return;
+                }
+                int sc = sizeCtl;
+                if (SIZE_CTL.compareAndSet(this, sc, sc - 1)) {
+                    if (sc - 2 != resizeStamp(n) << RESIZE_STAMP_SHIFT) {
+                        return;
+                    }
+                    // This is the last thread: check every bucket before publishing the table
+                    finishing = true;
+                    advance = true;
+                    i = n;
+                }
+                continue;
+            }
+            
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                advance = casTabAt(tab, i, null, forward);
+            } else if (f.hash == MOVED) {
+                advance = true;
+            } else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        // A reservation can only be locked here by the thread computing its
+                        // value, and moving it would lose that value
+                        checkNotReserved(f);
+                        this.splitBin(f, nextTab, i, n);
+                        setTabAt(tab, i, forward);
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copies the chain of a bucket of the old table into the two buckets of the next table that
+     * its nodes now belong to. The caller holds the bucket's lock.
+     *
+     * @param f       the first node of the bucket
+     * @param nextTab the next table
+     * @param i       the index of the bucket in the old table
+     * @param n       the length of the old table
+     */
+    private void splitBin(Node<K, V> f, Node<K, V>[] nextTab, int i, int n) {
+        Node<K, V> loHead = null;
+        Node<K, V> loTail = null;
+        Node<K, V> hiHead = null;
+        Node<K, V> hiTail = null;
+        for (Node<K, V> e = f; e != null; e = e.next) {
+            Node<K, V> copy = new Node<>(e.hash, e.key, e.value, null);
+            if ((e.hash & n) == 0) {
+                if (loTail == null) {
+                    loHead = copy;
+                } else {
+                    loTail.next = copy;
+                }
+                loTail = copy;
+            } else {
+                if (hiTail == null) {
+                    hiHead = copy;
+                } else {
+                    hiTail.next = copy;
+                }
+                hiTail = copy;
+            }
+        }
+        setTabAt(nextTab, i, loHead);
+        setTabAt(nextTab, i + n, hiHead);
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * A weakly consistent iterator over the buckets of the table. When it meets a forwarding node
+     * at index {@code i} of a table of length {@code n}, it visits buckets {@code i} and
+     * {@code i + n} of the next table instead, which hold exactly the mappings that were in the
+     * forwarded bucket.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Node<K, V>[] tab = table;
+        private int index = 0;
+        
+        /*
+         * Buckets of later tables still to be visited, as parallel stacks of tables and indexes.
+         */
+        private final Deque<Node<K, V>[]> pendingTables = new ArrayDeque<>();
+        private final Deque<Integer> pendingIndexes = new ArrayDeque<>();
+        
+        private Node<K, V> next;
+        private Node<K, V> lastReturned;
+        
+        private EntryIterator() {
+            this.advance(null);
+        }
+        
+        /**
+         * Moves to the node after the given one, or to the first node of the next non-empty
+         * bucket.
+         */
+        private void advance(Node<K, V> current) {
+            Node<K, V> e = (current == null) ? null : current.next;
+            while (e == null) {
+                Node<K, V>[] t;
+                int i;
+                if (!pendingTables.isEmpty()) {
+                    t = pendingTables.pop();
+                    i = pendingIndexes.pop();
+                } else if (index < tab.length) {
+                    t = tab;
+                    i = index++;
+                } else {
+                    next = null;
+                    return;
+                }
+                e = tabAt(t, i);
+                if (e != null && e.hash == MOVED) {
+                    Node<K, V>[] nextTab = ((ForwardingNode<K, V>) e).nextTable;
+                    pendingTables.push(nextTab);
+                    pendingIndexes.push(i + t.length);
+                    pendingTables.push(nextTab);
+                    pendingIndexes.push(i);
+                    e = null;
+                } else if (e != null && e.hash == RESERVED) {
+                    e = null;
+                }
+            }
+            next = e;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            this.advance(next);
+            return new MapEntry(lastReturned.key, lastReturned.value);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            MyConcurrentHashTable.this.remove(lastReturned.key);
+            lastReturned = null;
+        }
+    }
+    
+    /**
+     * A map entry returned by the iterator. It holds the value the mapping had when it was
+     * returned, and writes a new value through to the map with {@code put}.
+     */
+    private final class MapEntry implements Entry<K, V> {
+        private final K key;
+        private V value;
+        
+        private MapEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        /**
+         * Sets the value of this entry and writes it through to the map. The mapping may have
+         * been changed or removed by another thread since it was returned, in which case this
+         * overwrites or re-adds it. The returned value is the one this entry held.
+         *
+         * @param value new value to be stored in this entry
+         * @return old value corresponding to the entry
+         * @throws NullPointerException if the specified value is null
+         */
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            
+            V oldValue = this.value;
+            this.value = value;
+            MyConcurrentHashTable.this.put(key, value);
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
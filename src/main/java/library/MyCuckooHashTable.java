@@ -0,0 +1,604 @@
+package library;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A hashtable which maps keys to values using bucketized cuckoo hashing. It supports all of the
+ * operations of {@code Map}, including optional operations. It rejects {@code null} keys and
+ * values. It is not thread-safe.
+ * <p>
+ * Every key has two candidate buckets of four slots, chosen by two different mixes of its hash
+ * code, and is always stored in one of them or in a small stash. So a lookup compares against at
+ * most eight slots, however full the table is and whatever was inserted before; the stash is only
+ * searched when it isn't empty, which is rare. The spread hash codes of a bucket's keys are kept
+ * together in an array of their own, which a lookup scans first, so that most slots are rejected
+ * without loading their key or calling {@code equals}. Each key is stored next to its value in a
+ * second array.
+ * <p>
+ * A bucket's four hash codes never straddle a cache line, and neither does a key with its value, so
+ * a lookup of an absent key reads two cache lines, one per bucket, and a lookup of a present key
+ * reads one more for its key and value: two if the key is in its first bucket, three if it is in
+ * its second. That is on top of whatever the key's {@code equals} reads, and of the stash, and each
+ * other key of the buckets with the same spread hash code costs another line, which is rare.
+ * <p>
+ * Inserting into two full buckets evicts a key from one of them to its other bucket, and so on,
+ * until a key lands in a free slot. If that takes too many evictions, which means the keys form a
+ * cycle, the key left over goes into the stash, and once the stash is full the table moves to one
+ * twice the size. Keys with equal hash codes always share their two buckets, so if the table is
+ * still mostly empty when the stash fills, growing wouldn't help: the stash is allowed to grow
+ * instead, and lookups of those keys become a linear search.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyCuckooHashTable<K, V> extends MySkeletalMap<K, V> {
+    
+    private static final int DEFAULT_SIZE = 16;
+    
+    /**
+     * The number of slots in a bucket.
+     */
+    private static final int SLOTS = 4;
+    
+    /**
+     * The ratio of mappings to slots allowed before the table grows. Two choices of four-slot
+     * buckets can reliably be filled to about 95%.
+     */
+    private static final float LOAD_FACTOR = 0.9f;
+    
+    /**
+     * The largest number of buckets, so that the interleaved array of keys and values stays within
+     * the limits of an array.
+     */
+    private static final int MAXIMUM_BUCKETS = 1 << 27;
+    
+    /**
+     * The number of evictions an insertion may make before giving up and using the stash.
+     */
+    private static final int MAX_EVICTIONS = 128;
+    
+    /**
+     * The number of mappings the stash holds before the table grows.
+     */
+    private static final int STASH_SIZE = 4;
+    
+    /*
+     * Slot s holds its key in table[2s] and its value in table[2s + 1], and the spread hash code of
+     * its key in hashes[s]; bucket b is made of slots 4b .. 4b + 3. A slot is empty when its key is
+     * null, and its hash code is then meaningless.
+     */
+    private Object[] table;
+    private int[] hashes;
+    private int mask;
+    private int threshold;
+    
+    private Object[] stashKeys = new Object[STASH_SIZE];
+    private Object[] stashValues = new Object[STASH_SIZE];
+    private int[] stashHashes = new int[STASH_SIZE];
+    private int stashSize = 0;
+    
+    private int size = 0;
+    
+    /**
+     * The state of the generator picking which key an insertion evicts.
+     */
+    private int evictionSeed = 0x9E37_79B9;
+    
+    /**
+     * Creates a new, empty hashtable with room for {@value DEFAULT_SIZE} mappings.
+     */
+    public MyCuckooHashTable() {
+        this(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Creates a new, empty hashtable that can hold the specified number of mappings without
+     * growing.
+     *
+     * @param expectedSize the number of mappings the table should hold without growing
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public MyCuckooHashTable(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("MyCuckooHashTable size cannot be negative: " + expectedSize);
+        }
+        this.allocate(bucketsFor(expectedSize));
+    }
+    
+    /**
+     * Constructs a new hashtable with the same mappings as the given Map. The table is sized up
+     * front to hold all of the mappings without growing.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    public MyCuckooHashTable(Map<? extends K, ? extends V> m) {
+        this(m.size()); // throws NullPointerException
+        this.putAll(m);
+    }
+    
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of slots in the buckets, not counting the stash. This is exposed for
+     * testing.
+     *
+     * @return the number of slots
+     */
+    int capacity() {
+        return hashes.length;
+    }
+    
+    /**
+     * Returns the number of mappings in the stash. This is exposed for testing.
+     *
+     * @return the number of stashed mappings
+     */
+    int stashSize() {
+        return stashSize;
+    }
+    
+    private static int bucketsFor(int numMappings) {
+        double buckets = Math.ceil(numMappings / (double) LOAD_FACTOR / SLOTS);
+        if (buckets >= MAXIMUM_BUCKETS) {
+            return MAXIMUM_BUCKETS;
+        }
+        return Math.max(Integer.highestOneBit(Math.max((int) buckets, 1) * 2 - 1), 2);
+    }
+    
+    private void allocate(int buckets) {
+        table = new Object[buckets * SLOTS * 2];
+        hashes = new int[buckets * SLOTS];
+        mask = buckets - 1;
+        threshold = (int) (buckets * SLOTS * (double) LOAD_FACTOR);
+    }
+    
+    /**
+     * Moves every mapping into a table with the given number of buckets, doubling it again as long
+     * as reinserting overflows the stash while the table is loaded enough for that to be bad luck
+     * rather than equal hash codes.
+     */
+    private void resize(int buckets) {
+        Object[] oldTable = table;
+        int[] oldHashes = hashes;
+        Object[] oldStashKeys = stashKeys;
+        Object[] oldStashValues = stashValues;
+        int[] oldStashHashes = stashHashes;
+        int oldStashSize = stashSize;
+        do {
+            this.allocate(buckets);
+            stashKeys = new Object[STASH_SIZE];
+            stashValues = new Object[STASH_SIZE];
+            stashHashes = new int[STASH_SIZE];
+            stashSize = 0;
+            for (int slot = 0; slot < oldHashes.length; slot++) {
+                Object key = oldTable[keyIndex(slot)];
+                if (key != null) {
+                    this.insert(oldHashes[slot], key, oldTable[valueIndex(slot)]);
+                }
+            }
+            for (int i = 0; i < oldStashSize; i++) {
+                this.insert(oldStashHashes[i], oldStashKeys[i], oldStashValues[i]);
+            }
+            buckets *= 2;
+        } while (this.stashOverflowed() && buckets <= MAXIMUM_BUCKETS);
+    }
+    
+    /**
+     * Returns whether the stash holds too many mappings for a table this full, so it should grow.
+     */
+    private boolean stashOverflowed() {
+        return stashSize > STASH_SIZE && size >= hashes.length / 4;
+    }
+    
+    // ------------------------------------------------------------------------
+    // single element operations
+    // ------------------------------------------------------------------------
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key. This looks at no more than the key's two buckets, and the stash if it
+     * isn't empty.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int hash = MyHashTable.spread(key.hashCode()); // throws NullPointerException
+        int slot = this.findInBucket(this.firstBucket(hash), hash, key);
+        if (slot < 0) {
+            slot = this.findInBucket(this.secondBucket(hash), hash, key);
+        }
+        if (slot >= 0) {
+            return (V) table[valueIndex(slot)];
+        }
+        if (stashSize > 0) {
+            int index = this.findInStash(hash, key);
+            return (index < 0) ? null : (V) stashValues[index];
+        }
+        return null;
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map. If the map previously
+     * contained a mapping for the key, the old value is replaced by the specified value.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        int hash = MyHashTable.spread(key.hashCode());
+        int slot = this.findInBucket(this.firstBucket(hash), hash, key);
+        if (slot < 0) {
+            slot = this.findInBucket(this.secondBucket(hash), hash, key);
+        }
+        if (slot >= 0) {
+            V oldValue = (V) table[valueIndex(slot)];
+            table[valueIndex(slot)] = value;
+            return oldValue;
+        }
+        if (stashSize > 0) {
+            int index = this.findInStash(hash, key);
+            if (index >= 0) {
+                V oldValue = (V) stashValues[index];
+                stashValues[index] = value;
+                return oldValue;
+            }
+        }
+        
+        if (size >= threshold && mask + 1 < MAXIMUM_BUCKETS) {
+            this.resize((mask + 1) * 2);
+        }
+        size++;
+        this.insert(hash, key, value);
+        if (this.stashOverflowed() && mask + 1 < MAXIMUM_BUCKETS) {
+            this.resize((mask + 1) * 2);
+        }
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int hash = MyHashTable.spread(key.hashCode()); // throws NullPointerException
+        int slot = this.findInBucket(this.firstBucket(hash), hash, key);
+        if (slot < 0) {
+            slot = this.findInBucket(this.secondBucket(hash), hash, key);
+        }
+        if (slot >= 0) {
+            V oldValue = (V) table[valueIndex(slot)];
+            this.removeSlot(slot);
+            return oldValue;
+        }
+        if (stashSize > 0) {
+            int index = this.findInStash(hash, key);
+            if (index >= 0) {
+                V oldValue = (V) stashValues[index];
+                this.removeStashed(index);
+                return oldValue;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(table, null);
+        Arrays.fill(stashKeys, null);
+        Arrays.fill(stashValues, null);
+        stashSize = 0;
+        size = 0;
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+    
+    // ------------------------------------------------------------------------
+    // buckets
+    // ------------------------------------------------------------------------
+    
+    private int firstBucket(int hash) {
+        return hash & mask;
+    }
+    
+    /**
+     * Returns the second bucket of a key, from a second mix of its spread hash code, so that keys
+     * sharing a first bucket are scattered over different second buckets.
+     */
+    private int secondBucket(int hash) {
+        return MyHashTable.spread(hash ^ 0x5BD1_E995) & mask;
+    }
+    
+    private static int keyIndex(int slot) {
+        return slot * 2;
+    }
+    
+    private static int valueIndex(int slot) {
+        return slot * 2 + 1;
+    }
+    
+    /**
+     * Returns the slot of the bucket holding the given key, or -1. Only the slots whose hash code
+     * matches have their key loaded.
+     */
+    private int findInBucket(int bucket, int hash, Object key) {
+        for (int slot = bucket * SLOTS; slot < (bucket + 1) * SLOTS; slot++) {
+            if (hashes[slot] == hash) {
+                Object storedKey = table[keyIndex(slot)];
+                if (storedKey != null && (storedKey == key || storedKey.equals(key))) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    private int findInStash(int hash, Object key) {
+        for (int i = 0; i < stashSize; i++) {
+            if (stashHashes[i] == hash && (stashKeys[i] == key || stashKeys[i].equals(key))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Puts a mapping into a free slot of a bucket, returning {@code false} if the bucket is full.
+     */
+    private boolean placeInBucket(int bucket, int hash, Object key, Object value) {
+        for (int slot = bucket * SLOTS; slot < (bucket + 1) * SLOTS; slot++) {
+            if (table[keyIndex(slot)] == null) {
+                table[keyIndex(slot)] = key;
+                table[valueIndex(slot)] = value;
+                hashes[slot] = hash;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Inserts a mapping whose key is known to be absent, evicting keys to their other buckets if
+     * both of its own are full, and stashing the last key evicted if that goes on for too long.
+     * The size is not changed.
+     */
+    private void insert(int hash, Object key, Object value) {
+        int bucket = this.firstBucket(hash);
+        if (this.placeInBucket(bucket, hash, key, value)) {
+            return;
+        }
+        bucket = this.secondBucket(hash);
+        for (int evictions = 0; evictions < MAX_EVICTIONS; evictions++) {
+            if (this.placeInBucket(bucket, hash, key, value)) {
+                return;
+            }
+            // Swap the carried mapping with a random one of the full bucket
+            evictionSeed ^= evictionSeed << 13;
+            evictionSeed ^= evictionSeed >>> 17;
+            evictionSeed ^= evictionSeed << 5;
+            int slot = bucket * SLOTS + (evictionSeed & (SLOTS - 1));
+            Object evictedKey = table[keyIndex(slot)];
+            Object evictedValue = table[valueIndex(slot)];
+            int evictedHash = hashes[slot];
+            table[keyIndex(slot)] = key;
+            table[valueIndex(slot)] = value;
+            hashes[slot] = hash;
+            key = evictedKey;
+            value = evictedValue;
+            hash = evictedHash;
+            // The evicted mapping moves to whichever of its buckets it wasn't in
+            int first = this.firstBucket(hash);
+            bucket = (bucket == first) ? this.secondBucket(hash) : first;
+        }
+        this.stash(hash, key, value);
+    }
+    
+    private void stash(int hash, Object key, Object value) {
+        if (stashSize == stashKeys.length) {
+            stashKeys = Arrays.copyOf(stashKeys, stashSize * 2);
+            stashValues = Arrays.copyOf(stashValues, stashSize * 2);
+            stashHashes = Arrays.copyOf(stashHashes, stashSize * 2);
+        }
+        stashKeys[stashSize] = key;
+        stashValues[stashSize] = value;
+        stashHashes[stashSize] = hash;
+        stashSize++;
+    }
+    
+    private void removeSlot(int slot) {
+        table[keyIndex(slot)] = null;
+        table[valueIndex(slot)] = null;
+        size--;
+    }
+    
+    /**
+     * Removes a mapping from the stash, moving the last stashed mapping into its place.
+     */
+    private void removeStashed(int index) {
+        stashSize--;
+        stashKeys[index] = stashKeys[stashSize];
+        stashValues[index] = stashValues[stashSize];
+        stashHashes[index] = stashHashes[stashSize];
+        stashKeys[stashSize] = null;
+        stashValues[stashSize] = null;
+        size--;
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * An iterator over the slots of the buckets, then over the stash. Positions past the last slot
+     * index the stash. Removing a stashed mapping moves the last one into its place, so that
+     * position is visited again.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private int position = 0;
+        private int lastReturned = -1;
+        
+        private EntryIterator() {
+            this.advance();
+        }
+        
+        private void advance() {
+            while (position < hashes.length && table[keyIndex(position)] == null) {
+                position++;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return position < hashes.length + stashSize;
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = position;
+            position++;
+            this.advance();
+            if (lastReturned < hashes.length) {
+                return new SlotEntry(table[keyIndex(lastReturned)], table[valueIndex(lastReturned)]);
+            }
+            int index = lastReturned - hashes.length;
+            return new SlotEntry(stashKeys[index], stashValues[index]);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (lastReturned < hashes.length) {
+                MyCuckooHashTable.this.removeSlot(lastReturned);
+            } else {
+                MyCuckooHashTable.this.removeStashed(lastReturned - hashes.length);
+                position = lastReturned;
+            }
+            lastReturned = -1;
+        }
+    }
+    
+    /**
+     * A map entry returned by the iterator. The mapping may be moved to its other bucket by later
+     * insertions, so it holds its own key and value, and writes a new value through to the map by
+     * key.
+     */
+    private final class SlotEntry implements Entry<K, V> {
+        private final K key;
+        private V value;
+        
+        @SuppressWarnings("unchecked")
+        private SlotEntry(Object key, Object value) {
+            this.key = (K) key;
+            this.value = (V) value;
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        /**
+         * Replaces the value corresponding to this entry with the specified value, writing through
+         * to the map. If the mapping has been removed from the map, the results of this call are
+         * undefined.
+         *
+         * @param value new value to be stored in this entry
+         * @return old value corresponding to the entry
+         * @throws NullPointerException if the specified value is null
+         */
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            
+            V oldValue = this.value;
+            this.value = value;
+            MyCuckooHashTable.this.replace(key, value);
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
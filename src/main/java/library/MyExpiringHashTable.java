@@ -0,0 +1,679 @@
+package library;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A hashtable which maps keys to values, and removes each mapping a fixed time after it was written
+ * or, optionally, after it was last read. It supports all of the operations of {@code Map},
+ * including optional operations. It rejects {@code null} keys and values.
+ * <p>
+ * The mappings are stored in a {@link MyHashTable}, and their expiry times are scheduled on a
+ * hierarchical timing wheel: five levels of buckets, whose spans are about a second, a minute, an
+ * hour, a day and a week. A mapping is put in the bucket of the finest level whose whole wheel
+ * reaches its expiry time, and scheduling or cancelling it is O(1). When time advances, the buckets
+ * the wheels have passed are swept: their expired mappings are removed, and the others cascade down
+ * to finer levels. Each mapping cascades at most once per level, so sweeping is O(1) amortized per
+ * mapping, and mappings that aren't due are never visited.
+ * <p>
+ * Sweeps happen at the start of every operation, or on a background thread started with
+ * {@link #startSweeper(long, TimeUnit)}. An expired mapping is never returned, but the
+ * level-zero buckets are about a second wide, so it may count toward {@code size} until its bucket
+ * is swept.
+ * <p>
+ * This map is thread-safe: every method synchronizes on the map, so compound operations such as
+ * {@code putIfAbsent}, {@code compute} and {@code merge} are atomic. As with
+ * {@link java.util.Collections#synchronizedMap(Map)}, iterating over a view must be done while
+ * synchronized on the map.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyExpiringHashTable<K, V> extends MySkeletalMap<K, V> implements AutoCloseable {
+    
+    /**
+     * The number of buckets of each level of the wheel.
+     */
+    private static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+    
+    /**
+     * The time covered by a bucket of each level, which is also the time covered by the whole
+     * previous level, in nanoseconds: 2^30 (1.07 seconds), 2^36 (1.14 minutes), 2^42 (1.22 hours),
+     * 2^47 (1.63 days) and 2^49 (6.5 days). The extra last span closes the last level.
+     */
+    private static final long[] SPANS = { 1L << 30, 1L << 36, 1L << 42, 1L << 47, 1L << 49, 1L << 49 };
+    private static final int[] SHIFTS = { 30, 36, 42, 47, 49 };
+    
+    /**
+     * A mapping with its expiry time, which is also a node in the circular list of its wheel
+     * bucket.
+     *
+     * @param <K> the type of key in the map this node belongs to
+     * @param <V> the type of mapped values for the map this node belongs to
+     */
+    private static final class TimedNode<K, V> {
+        final K key;
+        V value;
+        long timeToLive;
+        long expiresAt;
+        TimedNode<K, V> prev;
+        TimedNode<K, V> next;
+        
+        TimedNode(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        /**
+         * Creates the sentinel of a bucket, which links to itself when the bucket is empty.
+         */
+        TimedNode() {
+            this(null, null);
+            this.prev = this;
+            this.next = this;
+        }
+    }
+    
+    private final MyHashTable<K, TimedNode<K, V>> data = new MyHashTable<>();
+    private final TimedNode<K, V>[][] wheel;
+    private final long timeToLive;
+    private final boolean afterAccess;
+    private final LongSupplier ticker;
+    private final long startTime;
+    
+    /**
+     * The time up to which the wheel has been advanced, relative to the start time.
+     */
+    private long nanos = 0;
+    
+    private Thread sweeper = null;
+    
+    /**
+     * Creates a new, empty hashtable whose mappings expire the given time after they are written.
+     *
+     * @param timeToLive the time a mapping lives after it is written
+     * @param unit       the unit of {@code timeToLive}
+     * @throws IllegalArgumentException if the time to live is negative
+     * @throws NullPointerException     if the unit is {@code null}
+     */
+    public MyExpiringHashTable(long timeToLive, TimeUnit unit) {
+        this(timeToLive, unit, false);
+    }
+    
+    /**
+     * Creates a new, empty hashtable whose mappings expire the given time after they are written or,
+     * if {@code afterAccess} is {@code true}, after they are last read or written.
+     *
+     * @param timeToLive  the time a mapping lives after it is written or read
+     * @param unit        the unit of {@code timeToLive}
+     * @param afterAccess {@code true} if reading a mapping restarts its time to live
+     * @throws IllegalArgumentException if the time to live is negative
+     * @throws NullPointerException     if the unit is {@code null}
+     */
+    public MyExpiringHashTable(long timeToLive, TimeUnit unit, boolean afterAccess) {
+        this(timeToLive, unit, afterAccess, System::nanoTime);
+    }
+    
+    /**
+     * Creates a new, empty hashtable which reads the time in nanoseconds from the given ticker. This
+     * is exposed for testing.
+     */
+    @SuppressWarnings("unchecked")
+    MyExpiringHashTable(long timeToLive, TimeUnit unit, boolean afterAccess, LongSupplier ticker) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("MyExpiringHashTable time to live cannot be negative: " + timeToLive);
+        }
+        this.timeToLive = unit.toNanos(timeToLive); // throws NullPointerException
+        this.afterAccess = afterAccess;
+        this.ticker = ticker;
+        this.startTime = ticker.getAsLong();
+        
+        this.wheel = (TimedNode<K, V>[][]) new TimedNode<?, ?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (TimedNode<K, V>[]) new TimedNode<?, ?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new TimedNode<>();
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of key-value mappings in this map, which may include mappings that have
+     * expired less than about a second ago.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    @Override
+    public synchronized int size() {
+        this.expire();
+        return data.size();
+    }
+    
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        Objects.requireNonNull(key);
+        
+        this.expire();
+        return this.getLiveNode(key) != null;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key or the mapping has expired. If mappings expire after access, this
+     * restarts the mapping's time to live.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no live mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public synchronized V get(Object key) {
+        Objects.requireNonNull(key);
+        
+        this.expire();
+        TimedNode<K, V> node = this.getLiveNode(key);
+        if (node == null) {
+            return null;
+        }
+        if (afterAccess) {
+            this.reschedule(node, node.timeToLive);
+        }
+        return node.value;
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map, with this map's time to
+     * live.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no live
+     *             mapping for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    public V put(K key, V value) {
+        return this.put(key, value, timeToLive, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map, with its own time to live.
+     * If mappings expire after access, reads restart this time to live rather than the map's.
+     *
+     * @param key        key with which the specified value is to be associated
+     * @param value      value to be associated with the specified key
+     * @param timeToLive the time the mapping lives after it is written or read
+     * @param unit       the unit of {@code timeToLive}
+     * @return the previous value associated with the key, or {@code null} if there was no live
+     *             mapping for the key
+     * @throws IllegalArgumentException if the time to live is negative
+     * @throws NullPointerException     if the specified key, value or unit is {@code null}
+     */
+    public synchronized V put(K key, V value, long timeToLive, TimeUnit unit) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("MyExpiringHashTable time to live cannot be negative: " + timeToLive);
+        }
+        long duration = unit.toNanos(timeToLive); // throws NullPointerException
+        
+        this.expire();
+        TimedNode<K, V> node = this.getLiveNode(key);
+        if (node == null) {
+            node = new TimedNode<>(key, value);
+            TimedNode<K, V> expiredNode = data.put(key, node);
+            if (expiredNode != null) {
+                unlink(expiredNode);
+            }
+            this.schedule(node, duration);
+            return null;
+        }
+        V oldValue = node.value;
+        node.value = value;
+        this.reschedule(node, duration);
+        return oldValue;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no live mapping
+     *             for key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public synchronized V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        this.expire();
+        TimedNode<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return this.isExpired(node) ? null : node.value;
+    }
+    
+    /**
+     * Removes all of the mappings from this map.
+     */
+    @Override
+    public synchronized void clear() {
+        data.clear();
+        for (TimedNode<K, V>[] level : wheel) {
+            for (TimedNode<K, V> sentinel : level) {
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // compound operations
+    // ------------------------------------------------------------------------
+    
+    /*
+     * The inherited implementations are built from get, put, remove and iteration, which each
+     * synchronize on their own. These hold the lock across the whole operation instead, as
+     * Collections.synchronizedMap does, so no other thread can change the mapping in between.
+     */
+    
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        return super.containsValue(value);
+    }
+    
+    @Override
+    public synchronized V getOrDefault(Object key, V defaultValue) {
+        return super.getOrDefault(key, defaultValue);
+    }
+    
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> m) {
+        super.putAll(m);
+    }
+    
+    @Override
+    public synchronized void forEach(BiConsumer<? super K, ? super V> action) {
+        super.forEach(action);
+    }
+    
+    @Override
+    public synchronized void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        super.replaceAll(function);
+    }
+    
+    @Override
+    public synchronized V putIfAbsent(K key, V value) {
+        return super.putIfAbsent(key, value);
+    }
+    
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        return super.remove(key, value);
+    }
+    
+    @Override
+    public synchronized boolean replace(K key, V oldValue, V newValue) {
+        return super.replace(key, oldValue, newValue);
+    }
+    
+    @Override
+    public synchronized V replace(K key, V value) {
+        return super.replace(key, value);
+    }
+    
+    @Override
+    public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+    
+    @Override
+    public synchronized V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return super.computeIfPresent(key, remappingFunction);
+    }
+    
+    @Override
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return super.compute(key, remappingFunction);
+    }
+    
+    @Override
+    public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return super.merge(key, value, remappingFunction);
+    }
+    
+    @Override
+    public synchronized boolean equals(Object o) {
+        return super.equals(o);
+    }
+    
+    @Override
+    public synchronized int hashCode() {
+        return super.hashCode();
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return super.toString();
+    }
+    
+    // ------------------------------------------------------------------------
+    // expiry
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the time left before the mapping for a key expires, or -1 if there is no live mapping
+     * for the key. This doesn't count as a read.
+     *
+     * @param key  the key whose mapping is examined
+     * @param unit the unit of the result
+     * @return the time left, truncated to the unit, or -1
+     * @throws NullPointerException if the specified key or unit is {@code null}
+     */
+    public synchronized long remainingTime(Object key, TimeUnit unit) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(unit);
+        
+        this.expire();
+        TimedNode<K, V> node = this.getLiveNode(key);
+        return (node == null) ? -1 : unit.convert(node.expiresAt - this.now(), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Sweeps the expired mappings out of this map. This happens as a side effect of every other
+     * operation, so calling it is only needed to release memory while the map is idle.
+     */
+    public synchronized void cleanUp() {
+        this.expire();
+    }
+    
+    /**
+     * Starts a daemon thread which sweeps this map at the given period, until {@link #close()} is
+     * called.
+     *
+     * @param period the time between sweeps
+     * @param unit   the unit of {@code period}
+     * @throws IllegalArgumentException if the period is not positive
+     * @throws IllegalStateException    if a sweeper is already running
+     * @throws NullPointerException     if the unit is {@code null}
+     */
+    public synchronized void startSweeper(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("MyExpiringHashTable sweep period must be positive: " + period);
+        }
+        long periodNanos = unit.toNanos(period); // throws NullPointerException
+        if (sweeper != null) {
+            throw new IllegalStateException("Sweeper already started");
+        }
+        
+        sweeper = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    TimeUnit.NANOSECONDS.sleep(periodNanos);
+                    this.cleanUp();
+                }
+            } catch (InterruptedException e) {
+                // closed
+            }
+        }, "MyExpiringHashTable-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+    
+    /**
+     * Stops the background sweeper, if it was started. The map remains usable, and is still swept
+     * by its operations.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.interrupt();
+            sweeper = null;
+        }
+    }
+    
+    /**
+     * Returns the number of mappings stored, live or not, without sweeping. This is exposed for
+     * testing.
+     *
+     * @return the number of stored mappings
+     */
+    synchronized int storedSize() {
+        return data.size();
+    }
+    
+    private long now() {
+        return ticker.getAsLong() - startTime;
+    }
+    
+    private boolean isExpired(TimedNode<K, V> node) {
+        return node.expiresAt - this.now() <= 0;
+    }
+    
+    private TimedNode<K, V> getLiveNode(Object key) {
+        TimedNode<K, V> node = data.get(key);
+        return (node == null || this.isExpired(node)) ? null : node;
+    }
+    
+    private void schedule(TimedNode<K, V> node, long duration) {
+        node.timeToLive = duration;
+        node.expiresAt = nanos + Math.min(duration, Long.MAX_VALUE - nanos);
+        link(this.findBucket(node.expiresAt), node);
+    }
+    
+    private void reschedule(TimedNode<K, V> node, long duration) {
+        unlink(node);
+        this.schedule(node, duration);
+    }
+    
+    /**
+     * Returns the sentinel of the bucket for an expiry time: the bucket of the finest level whose
+     * whole wheel spans the time left.
+     */
+    private TimedNode<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = time >>> SHIFTS[i];
+                return wheel[i][(int) ticks & (BUCKETS[i] - 1)];
+            }
+        }
+        return wheel[last][0];
+    }
+    
+    /**
+     * Advances the wheel to the current time. At each level, the buckets passed since the last
+     * advance are emptied, and finer levels are only visited when a coarser level ticks.
+     */
+    private void expire() {
+        long previousNanos = nanos;
+        long currentNanos = this.now();
+        if (currentNanos - previousNanos <= 0) {
+            return;
+        }
+        nanos = currentNanos;
+        
+        for (int i = 0; i < wheel.length; i++) {
+            long previousTicks = previousNanos >>> SHIFTS[i];
+            long delta = (currentNanos >>> SHIFTS[i]) - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            this.sweepLevel(i, previousTicks, delta);
+        }
+    }
+    
+    /**
+     * Empties the buckets of a level from the previous tick up to the current one, removing the
+     * expired mappings and rescheduling the others. The current bucket is included so that its
+     * mappings cascade to a finer level as soon as the level ticks into it, rather than a whole
+     * span late.
+     */
+    private void sweepLevel(int level, long previousTicks, long delta) {
+        TimedNode<K, V>[] buckets = wheel[level];
+        int start = (int) previousTicks & (buckets.length - 1);
+        int end = start + (int) Math.min(delta + 1, buckets.length);
+        for (int i = start; i < end; i++) {
+            TimedNode<K, V> sentinel = buckets[i & (buckets.length - 1)];
+            TimedNode<K, V> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                TimedNode<K, V> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.expiresAt - nanos <= 0) {
+                    data.remove(node.key, node);
+                } else {
+                    link(this.findBucket(node.expiresAt), node);
+                }
+                node = next;
+            }
+        }
+    }
+    
+    private static <K, V> void link(TimedNode<K, V> sentinel, TimedNode<K, V> node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+    
+    private static <K, V> void unlink(TimedNode<K, V> node) {
+        if (node.next != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * Returns an iterator over the live mappings. The caller must synchronize on this map while
+     * using it.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        this.expire();
+        return new LiveIterator();
+    }
+    
+    /**
+     * An iterator over the backing table which skips expired mappings.
+     */
+    private final class LiveIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<TimedNode<K, V>> nodes = data.values().iterator();
+        private TimedNode<K, V> next = this.advance();
+        private TimedNode<K, V> lastReturned = null;
+        
+        private TimedNode<K, V> advance() {
+            while (nodes.hasNext()) {
+                TimedNode<K, V> node = nodes.next();
+                if (!MyExpiringHashTable.this.isExpired(node)) {
+                    return node;
+                }
+            }
+            return null;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = this.advance();
+            return new NodeEntry(lastReturned);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            // The backing iterator may have moved past lastReturned, so remove by key
+            data.remove(lastReturned.key, lastReturned);
+            unlink(lastReturned);
+            lastReturned = null;
+        }
+    }
+    
+    /**
+     * An entry returned by the iterator, whose {@code setValue} writes through without restarting
+     * the time to live.
+     */
+    private final class NodeEntry implements Entry<K, V> {
+        private final TimedNode<K, V> node;
+        
+        NodeEntry(TimedNode<K, V> node) {
+            this.node = node;
+        }
+        
+        @Override
+        public K getKey() {
+            return node.key;
+        }
+        
+        @Override
+        public V getValue() {
+            return node.value;
+        }
+        
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            
+            V oldValue = node.value;
+            node.value = value;
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return node.key.equals(entry.getKey()) && node.value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return node.key.hashCode() ^ node.value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return node.key + "=" + node.value;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package library;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable map whose keys are placed by a minimal perfect hash function, so that a lookup is a
+ * hash, an index computation and one {@code equals}. It rejects {@code null} keys and values, and
+ * every method that would modify it throws an {@code UnsupportedOperationException}. Being
+ * immutable, it is thread-safe.
+ * <p>
+ * The keys and values are stored in two arrays with exactly one slot per mapping, and the hash
+ * function is the compress, hash and displace (CHD) construction: keys are split by their spread
+ * hash code into buckets of about {@value AVERAGE_BUCKET_SIZE}, and each bucket is given the first
+ * displacement, a small integer, for which a second hash of the bucket's keys and the displacement
+ * lands every key in a free slot. Buckets are placed largest first, while most slots are free. A
+ * lookup finds the key's bucket, reads its displacement and computes the key's slot; as every slot
+ * is occupied, a key that isn't in the map is rejected by comparing it to the key in its slot. The
+ * displacements cost about one {@code int} per {@value AVERAGE_BUCKET_SIZE} mappings, so a mapping
+ * costs about 9 bytes with compressed references, against a 32 byte node and its share of the
+ * bucket array in {@link MyHashTable}.
+ * <p>
+ * Keys with equal spread hash codes can't be told apart by any function of them, so only the first
+ * such key is placed in the arrays; the others are kept in a small {@code MyHashTable} which is
+ * searched after a miss in the arrays, and only when some keys have equal hash codes.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyFrozenHashTable<K, V> extends MySkeletalMap<K, V> {
+    
+    /**
+     * The average number of keys per bucket of the first hash. Larger buckets need fewer
+     * displacements, but take longer to place.
+     */
+    private static final int AVERAGE_BUCKET_SIZE = 4;
+    
+    private final Object[] keys;
+    private final Object[] values;
+    private final int[] displacements;
+    
+    /**
+     * The keys whose spread hash code equals that of a key in the arrays, or {@code null} if there
+     * are none.
+     */
+    private final MyHashTable<K, V> overflow;
+    
+    /**
+     * Returns an immutable copy of a map, placed by a minimal perfect hash function. Building it
+     * takes time linear in the size of the map, with a larger constant than copying into a
+     * hashtable.
+     *
+     * @param <K> the type of keys maintained by the map
+     * @param <V> the type of mapped values
+     * @param m   the map whose mappings are to be copied
+     * @return an immutable map with the same mappings
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    public static <K, V> MyFrozenHashTable<K, V> copyOf(Map<? extends K, ? extends V> m) {
+        return new MyFrozenHashTable<>(m);
+    }
+    
+    private MyFrozenHashTable(Map<? extends K, ? extends V> m) {
+        int n = m.size(); // throws NullPointerException
+        Object[] allKeys = new Object[n];
+        Object[] allValues = new Object[n];
+        int[] allHashes = new int[n];
+        int count = 0;
+        for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            allKeys[count] = Objects.requireNonNull(entry.getKey());
+            allValues[count] = Objects.requireNonNull(entry.getValue());
+            allHashes[count] = MyHashTable.spread(allKeys[count].hashCode());
+            count++;
+        }
+        
+        // Set aside the keys whose hash code was already seen
+        MyIntIntHashTable firstWithHash = new MyIntIntHashTable(n);
+        MyHashTable<K, V> duplicates = null;
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (firstWithHash.containsKey(allHashes[i])) {
+                if (duplicates == null) {
+                    duplicates = new MyHashTable<>();
+                }
+                @SuppressWarnings("unchecked")
+                K key = (K) allKeys[i];
+                @SuppressWarnings("unchecked")
+                V value = (V) allValues[i];
+                duplicates.put(key, value);
+            } else {
+                firstWithHash.put(allHashes[i], i);
+                allKeys[unique] = allKeys[i];
+                allValues[unique] = allValues[i];
+                allHashes[unique] = allHashes[i];
+                unique++;
+            }
+        }
+        
+        this.keys = new Object[unique];
+        this.values = new Object[unique];
+        this.displacements = new int[Math.max((unique + AVERAGE_BUCKET_SIZE - 1) / AVERAGE_BUCKET_SIZE, 1)];
+        this.overflow = duplicates;
+        this.place(allKeys, allValues, allHashes, unique);
+    }
+    
+    /**
+     * Finds a displacement for every bucket, largest bucket first, and stores each mapping in the
+     * slot it leads to.
+     */
+    private void place(Object[] allKeys, Object[] allValues, int[] allHashes, int n) {
+        int buckets = displacements.length;
+        
+        // Sort the mappings by bucket, and the buckets by decreasing size, with counting sorts
+        int[] bucketStart = new int[buckets + 1];
+        for (int i = 0; i < n; i++) {
+            bucketStart[bucketOf(allHashes[i], buckets) + 1]++;
+        }
+        int maxBucketSize = 0;
+        for (int b = 0; b < buckets; b++) {
+            maxBucketSize = Math.max(maxBucketSize, bucketStart[b + 1]);
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] members = new int[n];
+        int[] filled = new int[buckets];
+        for (int i = 0; i < n; i++) {
+            int b = bucketOf(allHashes[i], buckets);
+            members[bucketStart[b] + filled[b]++] = i;
+        }
+        int[] sizeStart = new int[maxBucketSize + 2];
+        for (int b = 0; b < buckets; b++) {
+            sizeStart[maxBucketSize - filled[b] + 1]++;
+        }
+        for (int s = 0; s <= maxBucketSize; s++) {
+            sizeStart[s + 1] += sizeStart[s];
+        }
+        int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[sizeStart[maxBucketSize - filled[b]]++] = b;
+        }
+        
+        boolean[] taken = new boolean[n];
+        int[] slots = new int[maxBucketSize];
+        for (int b : order) {
+            int start = bucketStart[b];
+            int size = bucketStart[b + 1] - start;
+            if (size == 0) {
+                break;
+            }
+            int displacement = 0;
+            while (!this.tryDisplacement(allHashes, members, start, size, displacement, taken, slots)) {
+                if (++displacement < 0) {
+                    throw new IllegalStateException("MyFrozenHashTable found no displacement for a bucket");
+                }
+            }
+            displacements[b] = displacement;
+            for (int j = 0; j < size; j++) {
+                taken[slots[j]] = true;
+                keys[slots[j]] = allKeys[members[start + j]];
+                values[slots[j]] = allValues[members[start + j]];
+            }
+        }
+    }
+    
+    /**
+     * Computes the slots of a bucket's keys for a displacement, returning {@code true} if they are
+     * all free and distinct.
+     */
+    private boolean tryDisplacement(int[] allHashes, int[] members, int start, int size, int displacement,
+            boolean[] taken, int[] slots) {
+        for (int j = 0; j < size; j++) {
+            int slot = slotOf(allHashes[members[start + j]], displacement, keys.length);
+            if (taken[slot]) {
+                return false;
+            }
+            for (int k = 0; k < j; k++) {
+                if (slots[k] == slot) {
+                    return false;
+                }
+            }
+            slots[j] = slot;
+        }
+        return true;
+    }
+    
+    // ------------------------------------------------------------------------
+    // hashing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Maps a hash uniformly onto {@code [0, length)} by taking the high half of their product, which
+     * avoids a division.
+     */
+    private static int reduce(int hash, int length) {
+        return (int) (((hash & 0xFFFF_FFFFL) * length) >>> 32);
+    }
+    
+    private static int bucketOf(int hash, int buckets) {
+        return reduce(hash, buckets);
+    }
+    
+    /**
+     * Returns the slot of a key for its bucket's displacement. Each displacement gives an
+     * independent-looking mix of the hash, unrelated to the bucket it came from.
+     */
+    private static int slotOf(int hash, int displacement, int length) {
+        return reduce(MyHashTable.spread(hash + displacement * 0x9E37_79B9), length);
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    @Override
+    public int size() {
+        return (overflow == null) ? keys.length : keys.length + overflow.size();
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int hash = MyHashTable.spread(key.hashCode()); // throws NullPointerException
+        if (keys.length > 0) {
+            int slot = slotOf(hash, displacements[bucketOf(hash, displacements.length)], keys.length);
+            Object storedKey = keys[slot];
+            if (storedKey == key || storedKey.equals(key)) {
+                return (V) values[slot];
+            }
+        }
+        return (overflow == null) ? null : overflow.get(key);
+    }
+    
+    /**
+     * Returns {@code true} if this map maps one or more keys to the specified value. This scans
+     * the value array directly.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the specified value
+     * @throws NullPointerException if the specified value is {@code null}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        
+        for (Object storedValue : values) {
+            if (value.equals(storedValue)) {
+                return true;
+            }
+        }
+        return overflow != null && overflow.containsValue(value);
+    }
+    
+    /**
+     * Throws an {@code UnsupportedOperationException}, since this map is immutable.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Throws an {@code UnsupportedOperationException}, since this map is immutable.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map, whose entries are immutable and which
+     * doesn't support removal.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new Iterator<Entry<K, V>>() {
+            private int index = 0;
+            private final Iterator<Entry<K, V>> overflowEntries = (overflow == null) ? null
+                    : overflow.entrySet().iterator();
+            
+            @Override
+            public boolean hasNext() {
+                return index < keys.length || (overflowEntries != null && overflowEntries.hasNext());
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            public Entry<K, V> next() {
+                if (index < keys.length) {
+                    Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>((K) keys[index], (V) values[index]);
+                    index++;
+                    return entry;
+                }
+                if (overflowEntries == null) {
+                    throw new NoSuchElementException();
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(overflowEntries.next());
+            }
+        };
+    }
+}
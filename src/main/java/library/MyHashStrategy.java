@@ -0,0 +1,46 @@
+package library;
+
+/**
+ * A way of hashing keys for a {@link MyHashTable}. The table picks a key's bucket from the low bits
+ * of its hash, and orders the keys in a bucket by the whole hash first, so a strategy should make
+ * every bit of the hash depend on the whole key. It must be consistent with the keys'
+ * {@code equals} methods: equal keys must have equal hashes.
+ * <p>
+ * The {@linkplain #standard() standard} strategy spreads each key's {@code hashCode}. It is cheap,
+ * but anyone who chooses the keys can choose keys with equal hash codes, which all land in the same
+ * bucket whatever the table does with them. A {@linkplain #seeded() seeded} strategy hashes
+ * strings and byte arrays with a secret key chosen for each instance, so colliding keys can't be
+ * computed in advance.
+ */
+@FunctionalInterface
+public interface MyHashStrategy {
+    
+    /**
+     * Returns the hash of a key.
+     *
+     * @param key a key - never {@code null}
+     * @return the hash of the key
+     */
+    int hash(Object key);
+    
+    /**
+     * Returns the strategy that spreads the bits of each key's {@code hashCode} with
+     * {@link MyHashTable#spread(int)}. This is the strategy of a hashtable that isn't given one.
+     *
+     * @return the standard strategy
+     */
+    static MyHashStrategy standard() {
+        return key -> MyHashTable.spread(key.hashCode());
+    }
+    
+    /**
+     * Returns a new strategy which hashes {@code String} and {@code byte[]} keys with SipHash-1-3
+     * under a random secret key of its own.
+     *
+     * @return a new seeded strategy
+     * @see MySeededHashStrategy
+     */
+    static MyHashStrategy seeded() {
+        return new MySeededHashStrategy();
+    }
+}
@@ -1,7 +1,10 @@
 package library;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -9,14 +12,18 @@ import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.function.LongBinaryOperator;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -29,7 +36,43 @@ import java.util.stream.StreamSupport;
  */
 public final class MyHashTable<K, V> implements Map<K, V> {
     
-    private static final int DEFAULT_SIZE = 10;
+    private static final int DEFAULT_SIZE = 16;
+    
+    /**
+     * The load factor used when none is specified in a constructor.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    
+    /**
+     * The largest number of buckets the table will grow to. Past this point, chains are allowed to
+     * grow instead. Like every capacity, this is a power of two.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * The number of old buckets moved into the new table by each operation while an incremental
+     * rehash is in progress.
+     */
+    private static final int REHASH_STEP = 8;
+    
+    /**
+     * The chain length at which a bucket is converted into a tree.
+     */
+    private static final int TREEIFY_THRESHOLD = 8;
+    
+    /**
+     * The size at which a tree bucket is converted back into a chain. This is less than
+     * {@value TREEIFY_THRESHOLD} so that a bucket hovering around the threshold doesn't convert back
+     * and forth.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    
+    /**
+     * The smallest table whose buckets may be converted into trees. A long chain in a smaller table
+     * is more likely caused by the table being too small than by bad hash codes, so the table grows
+     * instead.
+     */
+    private static final int MIN_TREEIFY_CAPACITY = 64;
     
     /**
      * A single key-value entry in the map, notated by "Nodes" that make up a singly linked list.
@@ -50,6 +93,13 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         private final K key;
         private V value;
         
+        /*
+         * The spread hash code of the key, computed once on insertion. Comparing it first skips
+         * equals calls on keys that merely share a bucket, and rehashing reuses it instead of
+         * calling hashCode again.
+         */
+        final int hash;
+        
         /*
          * Non-private for ease of access and manipulation (in practice, not necessary, but
          * communicates the idea).
@@ -59,13 +109,29 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         /**
          * Creates a Node holding the given non-null key and value.
          * 
+         * @param hash  the spread hash code of the key
+         * @param key   the key of the mapping
+         * @param value the value of the mapping
          * @throws NullPointerException if either the key or value are null
          */
-        Node(K key, V value) {
+        Node(int hash, K key, V value) {
+            this.hash = hash;
             this.key = Objects.requireNonNull(key);
             this.value = Objects.requireNonNull(value);
         }
         
+        /**
+         * Returns whether this node holds the given key. The cached hashes are compared first, so
+         * equals is only called on a likely match.
+         * 
+         * @param hash the spread hash code of the key
+         * @param key  the key being looked up - never {@code null}
+         * @return {@code true} if this node's key equals the given key
+         */
+        final boolean hasKey(int hash, Object key) {
+            return this.hash == hash && (this.key == key || this.key.equals(key));
+        }
+        
         /**
          * Returns the key corresponding to this entry.
          * 
@@ -155,41 +221,528 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         }
     }
     
+    /**
+     * A node in a bucket that has been converted into a balanced (AVL) tree, which bounds lookups in
+     * the bucket to O(log n) even when many keys share a hash code. Nodes are ordered by hash code,
+     * then by {@code compareTo} when the keys are mutually {@code Comparable}, then by class name
+     * and identity hash code.
+     * <p>
+     * The nodes of a tree bucket also remain a linked list through {@code next}, so everything that
+     * walks a chain (iteration, {@code containsValue}, rehashing) works on tree buckets unchanged.
+     * The first node of the list holds the root of the tree.
+     * 
+     * @param <K> the type of key in the map this node belongs to
+     * @param <V> the type of mapped values for the map this node belongs to
+     */
+    private static final class TreeNode<K, V> extends Node<K, V> {
+        TreeNode<K, V> left = null;
+        TreeNode<K, V> right = null;
+        int height = 1;
+        
+        /*
+         * The previous node in the bucket's list, so that a node can be unlinked without searching
+         * for it.
+         */
+        TreeNode<K, V> prev = null;
+        
+        /*
+         * The root of the bucket's tree. This is only kept up to date on the first node of the
+         * bucket.
+         */
+        TreeNode<K, V> root = null;
+        
+        /**
+         * Creates a TreeNode holding the given non-null key and value.
+         * 
+         * @param hash  the spread hash code of the key
+         * @param key   the key of the mapping
+         * @param value the value of the mapping
+         * @throws NullPointerException if either the key or value are null
+         */
+        TreeNode(int hash, K key, V value) {
+            super(hash, key, value);
+        }
+    }
+    
     private Node<K, V>[] table;
     // This can be negative: this means the number of elements has rolled over. May need plan for
     // more than 2^32 elements.
     // Option 2: long. Probably going to go that way
     private int size = 0;
     
+    /**
+     * The ratio of mappings to buckets that the table is allowed to reach before it grows.
+     */
+    private final float loadFactor;
+    
+    /**
+     * The number of mappings at which the table will next grow: {@code table.length * loadFactor}.
+     */
+    private int threshold;
+    
+    /**
+     * Whether growth migrates the old table a few buckets at a time rather than all at once.
+     */
+    private final boolean incrementalRehash;
+    
+    /**
+     * How keys are hashed. Every node caches the hash this gives for its key.
+     */
+    private final MyHashStrategy hashStrategy;
+    
+    /**
+     * The table being migrated away from during an incremental rehash, or {@code null} if no rehash
+     * is in progress. Buckets below {@code rehashIndex} have already been emptied into
+     * {@code table}; the rest still hold their nodes, so each key lives in exactly one of the two
+     * tables.
+     */
+    private Node<K, V>[] oldTable = null;
+    private int rehashIndex = 0;
+    
+    /**
+     * The filter consulted before a lookup searches its bucket, or {@code null} if there is none.
+     * It holds every key in the map, and possibly some that have been removed since it was built.
+     */
+    private MyBloomFilter bloomFilter = null;
+    
+    /**
+     * The filter that replaces {@code bloomFilter} once an incremental rehash completes, or
+     * {@code null} if there is none. It is filled a bucket at a time as the old table is migrated,
+     * and receives every key inserted meanwhile, so no single operation has to walk the whole map.
+     */
+    private MyBloomFilter nextBloomFilter = null;
+    
     private Set<Entry<K, V>> entrySet = new EntrySet();
     private Set<K> keySet = new KeySet();
     private Collection<V> values = new ValuesCollection();
     
     /**
-     * Creates a new non-rehashable hashtable with a capacity of {@value DEFAULT_SIZE} buckets. This
-     * is for testing purposes: this will be changed to support rehashing, and will be rebalanced at
-     * that time.
+     * Creates a new, empty hashtable with a capacity of {@value DEFAULT_SIZE} buckets and a load
+     * factor of {@value DEFAULT_LOAD_FACTOR}.
      */
-    @SuppressWarnings("unchecked")
     public MyHashTable() {
-        table = (Node<K, V>[]) new Node<?, ?>[DEFAULT_SIZE];
+        this(DEFAULT_SIZE, DEFAULT_LOAD_FACTOR);
     }
     
     /**
-     * Constructs a new non-rehashable hashtable with the same mappings as the given Map.
+     * Creates a new, empty hashtable with the specified initial capacity and a load factor of
+     * {@value DEFAULT_LOAD_FACTOR}.
+     * 
+     * @param initialCapacity the initial number of buckets
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public MyHashTable(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+    
+    /**
+     * Creates a new, empty hashtable with the specified initial capacity and load factor. The table
+     * doubles in size whenever the number of mappings exceeds the capacity multiplied by the load
+     * factor.
+     * 
+     * @param initialCapacity the initial number of buckets, rounded up to a power of two
+     * @param loadFactor      the ratio of mappings to buckets allowed before the table grows
+     * @throws IllegalArgumentException if the initial capacity is negative, or the load factor is
+     *                                      not a positive number
+     */
+    public MyHashTable(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+    
+    /**
+     * Creates a new, empty hashtable with the specified initial capacity and load factor, choosing
+     * how the table grows.
+     * <p>
+     * Normally, growing rehashes every mapping in the operation that crosses the threshold. With
+     * {@code incrementalRehash}, the old and new tables are kept side by side instead, and every
+     * {@code get}, {@code put}, {@code remove} and {@code containsKey} moves a bounded number of
+     * old buckets into the new table. No single operation pays for the whole migration, at the cost
+     * of a slightly slower lookup while one is in progress. Operations that must visit every
+     * mapping anyway, such as iteration, finish any pending migration first.
+     * 
+     * @param initialCapacity   the initial number of buckets, rounded up to a power of two
+     * @param loadFactor        the ratio of mappings to buckets allowed before the table grows
+     * @param incrementalRehash whether growth should be spread across later operations
+     * @throws IllegalArgumentException if the initial capacity is negative, or the load factor is
+     *                                      not a positive number
+     */
+    public MyHashTable(int initialCapacity, float loadFactor, boolean incrementalRehash) {
+        this(initialCapacity, loadFactor, incrementalRehash, MyHashStrategy.standard());
+    }
+    
+    /**
+     * Creates a new, empty hashtable with the specified initial capacity and load factor, choosing
+     * how the table grows and how its keys are hashed.
+     * <p>
+     * Keys are normally hashed by spreading their {@code hashCode}. A table whose keys come from
+     * untrusted input, such as request parameters or header names, should be given a
+     * {@linkplain MyHashStrategy#seeded() seeded} strategy instead: with the standard one, an
+     * attacker can send many keys with equal hash codes and make every operation on them search a
+     * single bucket.
+     * 
+     * @param initialCapacity   the initial number of buckets, rounded up to a power of two
+     * @param loadFactor        the ratio of mappings to buckets allowed before the table grows
+     * @param incrementalRehash whether growth should be spread across later operations
+     * @param hashStrategy      how keys are hashed
+     * @throws IllegalArgumentException if the initial capacity is negative, or the load factor is
+     *                                      not a positive number
+     * @throws NullPointerException     if the hash strategy is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public MyHashTable(int initialCapacity, float loadFactor, boolean incrementalRehash,
+            MyHashStrategy hashStrategy) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("MyHashTable capacity cannot be negative: " + initialCapacity);
+        }
+        if (!(loadFactor > 0) || Float.isInfinite(loadFactor)) {
+            throw new IllegalArgumentException("MyHashTable load factor must be positive: " + loadFactor);
+        }
+        
+        this.loadFactor = loadFactor;
+        this.incrementalRehash = incrementalRehash;
+        this.hashStrategy = Objects.requireNonNull(hashStrategy);
+        int capacity = tableSizeFor(initialCapacity);
+        this.table = (Node<K, V>[]) new Node<?, ?>[capacity];
+        this.threshold = thresholdFor(capacity);
+    }
+    
+    /**
+     * Constructs a new hashtable with the same mappings as the given Map. The table is sized up
+     * front to hold all of the mappings without growing.
      * 
      * @param m the map whose mappings are to be placed in this map
      * @throws NullPointerException if the specified map is null
      */
     public MyHashTable(Map<? extends K, ? extends V> m) {
-        this();
-        Objects.requireNonNull(m);
+        this(capacityFor(m.size(), DEFAULT_LOAD_FACTOR)); // throws NullPointerException
         
         // TODO reimplement to put all without changing size, and set size only at the end to avoid
         // iterating for each item (m.size()) (putAll could also do this)
         this.putAll(m);
     }
     
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of buckets in the table. This is exposed for testing.
+     * 
+     * @return the number of buckets in the table
+     */
+    int capacity() {
+        return table.length;
+    }
+    
+    /**
+     * Increases the capacity of this hashtable, if necessary, to ensure that it can hold at least
+     * the number of mappings specified without growing again. This is useful before adding a large
+     * number of mappings, as it replaces repeated doubling with a single rehash.
+     * 
+     * @param numMappings the number of mappings the table should be able to hold
+     */
+    public void ensureCapacity(int numMappings) {
+        int capacity = capacityFor(numMappings, loadFactor);
+        if (capacity > table.length) {
+            this.finishRehash();
+            this.resize(capacity);
+        }
+    }
+    
+    /**
+     * Shrinks the table to the smallest capacity that holds the current mappings within the load
+     * factor. The table never shrinks on its own, so this is the way to reclaim buckets after a
+     * large number of removals.
+     */
+    public void trimToSize() {
+        this.finishRehash();
+        int capacity = capacityFor(size(), loadFactor);
+        if (capacity < table.length) {
+            this.resize(capacity);
+        }
+    }
+    
+    /**
+     * Returns the number of buckets needed to hold the specified number of mappings without
+     * exceeding the load factor.
+     * 
+     * @param numMappings the number of mappings to hold
+     * @param loadFactor  the load factor of the table
+     * @return the number of buckets needed, a power of two between 1 and {@value MAXIMUM_CAPACITY}
+     */
+    private static int capacityFor(int numMappings, float loadFactor) {
+        double capacity = Math.ceil(numMappings / (double) loadFactor);
+        return tableSizeFor((int) Math.min(capacity, MAXIMUM_CAPACITY));
+    }
+    
+    /**
+     * Returns the smallest power of two that is at least the given capacity, clamped to between 1
+     * and {@value MAXIMUM_CAPACITY}.
+     * 
+     * @param capacity the requested number of buckets
+     * @return a power of two number of buckets
+     */
+    private static int tableSizeFor(int capacity) {
+        if (capacity <= 1) {
+            return 1;
+        }
+        if (capacity >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+    
+    /**
+     * Puts a Bloom filter in front of the table, so that a lookup of a key that isn't in the map
+     * usually returns without reading its bucket. This pays off when most lookups miss and the
+     * table is too large for its buckets and nodes to stay in the processor's caches: the filter
+     * takes about 11 bits per mapping at a 1% false positive rate, and a lookup reads one block of
+     * it, while a missed lookup would otherwise read a bucket and follow its chain. Every hit pays
+     * for the filter as well, so it slows down maps whose lookups mostly succeed.
+     * <p>
+     * The filter is sized for the mappings the table can hold before it next grows, and is rebuilt
+     * from the mappings whenever the table is resized. Removed keys stay in the filter until then,
+     * which only raises its false positive rate. With incremental rehashing, the filter is instead
+     * sized for the growth after next, taking about twice the bits: it keeps serving lookups while
+     * the table migrates, and its replacement is filled bucket by bucket alongside the migration, so
+     * growth never walks every mapping at once. Calling this again finishes any migration in progress
+     * and replaces the filter with one of the new rate.
+     * 
+     * @param falsePositiveRate the probability that a lookup of an absent key still searches its
+     *                              bucket
+     * @throws IllegalArgumentException if the false positive rate is not strictly between 0 and 1
+     * @see MyBloomFilter
+     */
+    public void enableBloomFilter(double falsePositiveRate) {
+        this.finishRehash();
+        bloomFilter = this.newBloomFilter(falsePositiveRate);
+        for (Node<K, V> node : table) {
+            addChain(bloomFilter, node);
+        }
+    }
+    
+    /**
+     * Removes the Bloom filter put in front of the table by {@link #enableBloomFilter(double)}, if
+     * there is one.
+     */
+    public void disableBloomFilter() {
+        bloomFilter = null;
+        nextBloomFilter = null;
+    }
+    
+    /**
+     * Returns the Bloom filter in front of the table, or {@code null} if there is none. This is
+     * exposed for testing.
+     * 
+     * @return the Bloom filter consulted by lookups
+     */
+    MyBloomFilter bloomFilter() {
+        return bloomFilter;
+    }
+    
+    /**
+     * Replaces the Bloom filter, if there is one, with a filter of the same false positive rate
+     * sized for the new capacity. This drops the keys removed since the filter was built. It walks
+     * every mapping, so it is only done where the table is rebuilt all at once anyway.
+     */
+    private void rebuildBloomFilter() {
+        if (bloomFilter != null) {
+            this.enableBloomFilter(bloomFilter.falsePositiveRate());
+        }
+    }
+    
+    /**
+     * Returns a new, empty Bloom filter of the given rate, sized for as long as it will be used. A
+     * filter normally lasts until the table is next resized. With incremental rehashing, it lasts
+     * until the migration after the next growth completes, and migrations always complete before
+     * the table grows again, so it is sized for the threshold of twice the current capacity.
+     * 
+     * @param falsePositiveRate the false positive rate of the filter
+     * @return the new filter
+     */
+    private MyBloomFilter newBloomFilter(double falsePositiveRate) {
+        int capacity = incrementalRehash ? (int) Math.min(table.length * 2L, MAXIMUM_CAPACITY) : table.length;
+        return new MyBloomFilter(Math.max(thresholdFor(capacity), size()), falsePositiveRate);
+    }
+    
+    /**
+     * Adds the key of every node in a bucket to a Bloom filter. Tree buckets keep their nodes
+     * linked in a chain as well, so every bucket is walked as a chain.
+     * 
+     * @param filter the filter the keys are added to
+     * @param node   the first node of the bucket, or {@code null}
+     */
+    private static void addChain(MyBloomFilter filter, Node<?, ?> node) {
+        for (; node != null; node = node.next) {
+            filter.addHash(MyBloomFilter.extend(node.hash));
+        }
+    }
+    
+    /**
+     * Returns the number of mappings a table of the given capacity may hold before growing.
+     * 
+     * @param capacity the number of buckets in the table
+     * @return the growth threshold for that capacity
+     */
+    private int thresholdFor(int capacity) {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(capacity * (double) loadFactor, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Moves every node into a new table with the given number of buckets. The nodes of chains are
+     * relinked rather than copied, so their entries handed out by the views stay attached to the
+     * map. The nodes of tree buckets, and of chains long enough to become trees in the new table,
+     * are replaced by new nodes, which detaches any entries already handed out for them; as with
+     * any structural modification, an entry's behavior afterwards is undefined by {@code Map.Entry}.
+     * 
+     * @param newCapacity the number of buckets in the new table
+     */
+    @SuppressWarnings("unchecked")
+    private void resize(int newCapacity) {
+        Node<K, V>[] newTable = (Node<K, V>[]) new Node<?, ?>[newCapacity];
+        for (Node<K, V> node : table) {
+            transferChain(node, newTable);
+        }
+        for (int i = 0; i < newCapacity; i++) {
+            treeifyIfLong(newTable, i);
+        }
+        table = newTable;
+        threshold = thresholdFor(newCapacity);
+        this.rebuildBloomFilter();
+    }
+    
+    /**
+     * Grows the table after an insertion pushes the size past the threshold, either all at once or
+     * by starting an incremental rehash.
+     */
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        if (!incrementalRehash) {
+            this.resize(table.length * 2);
+            return;
+        }
+        // A rehash normally finishes long before the next doubling, but one can't be left behind
+        this.finishRehash();
+        oldTable = table;
+        rehashIndex = 0;
+        table = (Node<K, V>[]) new Node<?, ?>[oldTable.length * 2];
+        threshold = thresholdFor(table.length);
+        if (bloomFilter != null) {
+            // The current filter already has room for the migration, so it stays in use until the
+            // next one has been filled by the rehash steps
+            nextBloomFilter = this.newBloomFilter(bloomFilter.falsePositiveRate());
+        }
+    }
+    
+    /**
+     * Moves up to {@value REHASH_STEP} buckets of the old table into the new one, if an incremental
+     * rehash is in progress.
+     */
+    private void rehashStep() {
+        if (oldTable != null) {
+            this.rehashBuckets(REHASH_STEP);
+        }
+    }
+    
+    /**
+     * Moves every remaining bucket of the old table into the new one, if an incremental rehash is
+     * in progress.
+     */
+    private void finishRehash() {
+        if (oldTable != null) {
+            this.rehashBuckets(oldTable.length);
+        }
+    }
+    
+    /**
+     * Moves up to the given number of buckets of the old table into the new one, ending the rehash
+     * once the old table is empty. There must be a rehash in progress.
+     * 
+     * @param numBuckets the maximum number of buckets to move
+     */
+    private void rehashBuckets(int numBuckets) {
+        int end = (int) Math.min((long) rehashIndex + numBuckets, oldTable.length);
+        for (; rehashIndex < end; rehashIndex++) {
+            if (nextBloomFilter != null) {
+                addChain(nextBloomFilter, oldTable[rehashIndex]);
+            }
+            transferChain(oldTable[rehashIndex], table);
+            oldTable[rehashIndex] = null;
+            // The table doubled, so an old bucket only splits into these two
+            treeifyIfLong(table, rehashIndex);
+            treeifyIfLong(table, rehashIndex + oldTable.length);
+        }
+        if (rehashIndex == oldTable.length) {
+            oldTable = null;
+            rehashIndex = 0;
+            if (nextBloomFilter != null) {
+                bloomFilter = nextBloomFilter;
+                nextBloomFilter = null;
+            }
+        }
+    }
+    
+    /**
+     * Relinks every node of a chain into the bucket it belongs to in the destination table. Nodes of
+     * a tree bucket are replaced by plain nodes, since the destination buckets start out as chains;
+     * callers convert any that are long enough back into trees.
+     * 
+     * @param node        the first node of the chain, or {@code null}
+     * @param destination the table receiving the nodes
+     */
+    private static <K, V> void transferChain(Node<K, V> node, Node<K, V>[] destination) {
+        while (node != null) {
+            Node<K, V> next = node.next;
+            if (node instanceof TreeNode<?, ?>) {
+                node = new Node<>(node.hash, node.key, node.value);
+            }
+            int index = hashToIndex(node.hash, destination.length);
+            node.next = destination[index];
+            destination[index] = node;
+            node = next;
+        }
+    }
+    
+    /**
+     * Returns the table whose bucket currently holds the given key. Outside of an incremental
+     * rehash this is always {@code table}; during one, it is the old table until the key's old
+     * bucket has been moved.
+     * 
+     * @param hash the spread hash code of the key being looked up
+     * @return the table to search or insert the key into
+     */
+    private Node<K, V>[] tableFor(int hash) {
+        if (oldTable != null && hashToIndex(hash, oldTable.length) >= rehashIndex) {
+            return oldTable;
+        }
+        return table;
+    }
+    
+    /**
+     * Returns whether the bucket holding the given key has been converted into a tree. This is
+     * exposed for testing.
+     * 
+     * @param key a key - never {@code null}
+     * @return {@code true} if the key's bucket is a tree
+     */
+    boolean isTreeBucket(Object key) {
+        int hash = hash(key);
+        Node<K, V>[] tab = this.tableFor(hash);
+        return tab[hashToIndex(hash, tab.length)] instanceof TreeNode<?, ?>;
+    }
+    
+    /**
+     * Returns whether an incremental rehash is in progress. This is exposed for testing.
+     * 
+     * @return {@code true} if the old table has not been fully migrated
+     */
+    boolean isRehashing() {
+        return oldTable != null;
+    }
+    
     // ------------------------------------------------------------------------
     // size operations
     // ------------------------------------------------------------------------
@@ -232,13 +785,7 @@ public final class MyHashTable<K, V> implements Map<K, V> {
     public boolean containsKey(Object key) {
         Objects.requireNonNull(key);
         
-        int index = hashToIndex(key);
-        for (Node<K, V> node = table[index]; node != null; node = node.next) {
-            if (node.getKey().equals(key)) {
-                return true;
-            }
-        }
-        return false;
+        return this.getNode(key) != null;
     }
     
     /**
@@ -254,6 +801,7 @@ public final class MyHashTable<K, V> implements Map<K, V> {
     public boolean containsValue(Object value) {
         Objects.requireNonNull(value);
         
+        this.finishRehash();
         for (Node<K, V> node : table) {
             while (node != null) {
                 if (node.getValue().equals(value)) {
@@ -281,10 +829,31 @@ public final class MyHashTable<K, V> implements Map<K, V> {
     public V get(Object key) {
         Objects.requireNonNull(key);
         
-        int index = hashToIndex(key);
-        for (Node<K, V> node = table[index]; node != null; node = node.next) {
-            if (node.getKey().equals(key)) {
-                return node.getValue();
+        Node<K, V> node = this.getNode(key);
+        return (node == null) ? null : node.getValue();
+    }
+    
+    /**
+     * Returns the node holding the given key, or {@code null} if there is none.
+     * 
+     * @param key the key being looked up - never {@code null}
+     * @return the node holding the key, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private Node<K, V> getNode(Object key) {
+        this.rehashStep();
+        int hash = hash(key);
+        if (bloomFilter != null && !bloomFilter.mightContainHash(MyBloomFilter.extend(hash))) {
+            return null;
+        }
+        Node<K, V>[] tab = this.tableFor(hash);
+        Node<K, V> first = tab[hashToIndex(hash, tab.length)];
+        if (first instanceof TreeNode<?, ?>) {
+            return findTreeNode(((TreeNode<K, V>) first).root, hash, key);
+        }
+        for (Node<K, V> node = first; node != null; node = node.next) {
+            if (node.hasKey(hash, key)) {
+                return node;
             }
         }
         return null;
@@ -302,79 +871,673 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      *             for the key
      * @throws NullPointerException if the specified key or value is {@code null}
      */
-    @Override
-    public V put(K key, V value) {
-        Objects.requireNonNull(key);
-        Objects.requireNonNull(value);
-        
-        int index = hashToIndex(key);
-        Node<K, V> lastNode = null;
-        for (Node<K, V> node = table[index]; node != null; node = node.next) {
-            if (node.getKey().equals(key)) {
-                return node.setValue(value);
-            }
-            lastNode = node;
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        return this.putValue(key, value, false);
+    }
+    
+    /**
+     * Implements put and putIfAbsent with a single traversal of the key's bucket, which either
+     * finds the key's node or ends at the node a new one is linked after.
+     * 
+     * @param key          the key - never {@code null}
+     * @param value        the value - never {@code null}
+     * @param onlyIfAbsent if {@code true}, an existing value is left unchanged
+     * @return the previous value associated with the key, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        this.rehashStep();
+        int hash = hash(key);
+        Node<K, V>[] tab = this.tableFor(hash);
+        int index = hashToIndex(hash, tab.length);
+        Node<K, V> first = tab[index];
+        if (first instanceof TreeNode<?, ?>) {
+            TreeNode<K, V> existing = findTreeNode(((TreeNode<K, V>) first).root, hash, key);
+            if (existing != null) {
+                return onlyIfAbsent ? existing.getValue() : existing.setValue(value);
+            }
+            this.addNode(tab, index, hash, key, value, null, 0);
+            return null;
+        }
+        
+        Node<K, V> lastNode = null;
+        int chainLength = 0;
+        for (Node<K, V> node = first; node != null; node = node.next) {
+            if (node.hasKey(hash, key)) {
+                return onlyIfAbsent ? node.getValue() : node.setValue(value);
+            }
+            lastNode = node;
+            chainLength++;
+        }
+        this.addNode(tab, index, hash, key, value, lastNode, chainLength);
+        return null;
+    }
+    
+    /**
+     * Adds a mapping for a key known to be absent to its bucket, converting the bucket into a tree
+     * if it gets long enough, and grows the table if it has passed its threshold.
+     * 
+     * @param tab         the table holding the key's bucket
+     * @param index       the index of the bucket
+     * @param hash        the spread hash code of the key
+     * @param key         the key
+     * @param value       the value
+     * @param lastNode    the last node of the bucket's chain, or {@code null} if it is empty; unused
+     *                        for tree buckets
+     * @param chainLength the number of nodes in the bucket's chain; unused for tree buckets
+     */
+    @SuppressWarnings("unchecked")
+    private void addNode(Node<K, V>[] tab, int index, int hash, K key, V value, Node<K, V> lastNode,
+            int chainLength) {
+        if (tab[index] instanceof TreeNode<?, ?>) {
+            addTreeNode((TreeNode<K, V>) tab[index], new TreeNode<>(hash, key, value));
+        } else {
+            Node<K, V> node = new Node<>(hash, key, value);
+            if (lastNode == null) {
+                tab[index] = node;
+            } else {
+                lastNode.next = node;
+            }
+            if (chainLength + 1 >= TREEIFY_THRESHOLD) {
+                this.treeifyBin(tab, index);
+            }
+        }
+        if (bloomFilter != null) {
+            bloomFilter.addHash(MyBloomFilter.extend(hash));
+            if (nextBloomFilter != null) {
+                nextBloomFilter.addHash(MyBloomFilter.extend(hash));
+            }
+        }
+        // Since using integer overflow, -1 represents 2^32 elements.
+        if (size != -1) {
+            size++;
+        }
+        if (size > threshold && table.length < MAXIMUM_CAPACITY) {
+            this.grow();
+        }
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present. More formally, if this map
+     * contains a mapping from key k to value v such that {@code Objects.equals(key, k)}, that
+     * mapping is removed. (The map can contain at most one such mapping.) Returns the value to
+     * which this map previously associated the key, or {@code null} if the map contained no mapping
+     * for the key. The map will not contain a mapping for the specified key once the call returns.
+     * 
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        return this.removeNode(key, null, true);
+    }
+    
+    /**
+     * Implements remove and remove(key, value) with a single traversal of the key's bucket.
+     * 
+     * @param key           the key - never {@code null}
+     * @param expectedValue the value the key must be mapped to for it to be removed, or
+     *                          {@code null} to remove it whatever its value
+     * @param movable       whether a tree bucket may be converted back into a chain, which replaces
+     *                          its nodes; {@code false} when removing through an iterator
+     * @return the removed value, or {@code null} if nothing was removed
+     */
+    @SuppressWarnings("unchecked")
+    private V removeNode(Object key, Object expectedValue, boolean movable) {
+        this.rehashStep();
+        int hash = hash(key);
+        Node<K, V>[] tab = this.tableFor(hash);
+        int index = hashToIndex(hash, tab.length);
+        Node<K, V> first = tab[index];
+        Node<K, V> node = null;
+        Node<K, V> prevNode = null;
+        if (first instanceof TreeNode<?, ?>) {
+            node = findTreeNode(((TreeNode<K, V>) first).root, hash, key);
+        } else {
+            for (node = first; node != null && !node.hasKey(hash, key); node = node.next) {
+                prevNode = node;
+            }
+        }
+        if (node == null || (expectedValue != null && !expectedValue.equals(node.getValue()))) {
+            return null;
+        }
+        this.unlinkNode(tab, index, node, prevNode, movable);
+        return node.getValue();
+    }
+    
+    /**
+     * Removes a node from its bucket.
+     * 
+     * @param tab      the table holding the node's bucket
+     * @param index    the index of the bucket
+     * @param node     the node to remove
+     * @param prevNode the node before it in a chain bucket, or {@code null} if it is the first;
+     *                     unused for tree buckets
+     * @param movable  whether a tree bucket may be converted back into a chain
+     */
+    private void unlinkNode(Node<K, V>[] tab, int index, Node<K, V> node, Node<K, V> prevNode,
+            boolean movable) {
+        if (node instanceof TreeNode<?, ?>) {
+            removeTreeNode(tab, index, (TreeNode<K, V>) node, movable);
+        } else if (prevNode == null) {
+            tab[index] = node.next;
+        } else {
+            prevNode.next = node.next;
+        }
+        size--;
+    }
+    
+    /**
+     * Implements the compute methods and merge with a single traversal of the key's bucket, which
+     * finds either the key's node or the point a new node would be linked at. The function is
+     * applied to the current value, or {@code null} if there is none, and its result replaces the
+     * value, adds a mapping if there was none, or removes the mapping if it is {@code null}.
+     * <p>
+     * Lookups by the function may move the bucket along with an incremental rehash, in which case
+     * the result is stored with a second lookup. Any other structural change by the function is
+     * reported.
+     * 
+     * @param key               the key - never {@code null}
+     * @param remappingFunction the function computing the new value from the key and the current
+     *                              value
+     * @param applyIfAbsent     whether to apply the function if the key has no mapping
+     * @param applyIfPresent    whether to apply the function if the key has a mapping
+     * @return the new value, or the current value if the function wasn't applied
+     * @throws ConcurrentModificationException if the function added or removed mappings
+     */
+    @SuppressWarnings("unchecked")
+    private V remap(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, boolean applyIfAbsent,
+            boolean applyIfPresent) {
+        this.rehashStep();
+        int hash = hash(key);
+        Node<K, V>[] tab = this.tableFor(hash);
+        int index = hashToIndex(hash, tab.length);
+        Node<K, V> first = tab[index];
+        Node<K, V> node = null;
+        Node<K, V> prevNode = null;
+        int chainLength = 0;
+        if (first instanceof TreeNode<?, ?>) {
+            node = findTreeNode(((TreeNode<K, V>) first).root, hash, key);
+        } else {
+            // If the key is absent, this leaves prevNode at the last node of the chain
+            for (node = first; node != null && !node.hasKey(hash, key); node = node.next) {
+                prevNode = node;
+                chainLength++;
+            }
+        }
+        
+        V oldValue = (node == null) ? null : node.getValue();
+        if ((node == null) ? !applyIfAbsent : !applyIfPresent) {
+            return oldValue;
+        }
+        int expectedSize = size;
+        V newValue = remappingFunction.apply(key, oldValue);
+        if (size != expectedSize) {
+            throw new ConcurrentModificationException();
+        }
+        if (tab[index] != first || this.tableFor(hash) != tab) {
+            if (newValue != null) {
+                this.put(key, newValue);
+            } else if (node != null) {
+                this.remove(key);
+            }
+            return newValue;
+        }
+        
+        if (node == null) {
+            if (newValue != null) {
+                this.addNode(tab, index, hash, key, newValue, prevNode, chainLength);
+            }
+        } else if (newValue != null) {
+            node.setValue(newValue);
+        } else {
+            this.unlinkNode(tab, index, node, prevNode, true);
+        }
+        return newValue;
+    }
+    
+    /**
+     * Computes the hash of a key with this table's hash strategy; by default, its spread hash code.
+     * This is stored in the key's node, so it is computed once per operation and never again for
+     * that node, and every index is derived from it by {@link #hashToIndex(int, int)}.
+     * 
+     * @param key the key being stored or looked up - never {@code null}
+     * @return the hash of the key
+     */
+    private int hash(Object key) {
+        return hashStrategy.hash(key);
+    }
+    
+    /**
+     * Determines the index that a key with the supplied spread hash code will be stored at in a
+     * table of the given length. Since every table length is a power of two, the low bits of the
+     * spread hash code select the bucket directly, with no division.
+     * 
+     * @param hash   the spread hash code of the key
+     * @param length the length of the table - always a power of two
+     * @return an index that fits in a table of that length
+     */
+    private static int hashToIndex(int hash, int length) {
+        return hash & (length - 1);
+    }
+    
+    /**
+     * Mixes the bits of a hash code so that every bit of it affects the low bits used to pick a
+     * bucket. Without this, masking would only ever see the low bits of the hash code, and keys
+     * that differ only in their high bits (strided IDs, Floats and Doubles, Strings with common
+     * suffixes) would all land in the same few buckets. This is the 32-bit finalizer of MurmurHash3:
+     * each shift folds high bits down, and each multiplication carries low bits back up, so every
+     * input bit flips each output bit with probability close to one half.
+     * 
+     * @param hashCode the hash code of a key
+     * @return the spread hash code
+     */
+    static int spread(int hashCode) {
+        int h = hashCode;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+    
+    // ------------------------------------------------------------------------
+    // tree buckets
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Converts a long chain into a tree, or grows the table instead if it is too small for tree
+     * buckets to be worthwhile.
+     * 
+     * @param tab   the table holding the chain
+     * @param index the index of the chain
+     */
+    private void treeifyBin(Node<K, V>[] tab, int index) {
+        if (tab.length >= MIN_TREEIFY_CAPACITY) {
+            treeify(tab, index);
+        } else if (oldTable == null) {
+            this.resize(table.length * 2);
+        }
+    }
+    
+    /**
+     * Converts the chain at the given index into a tree if it is at least
+     * {@value TREEIFY_THRESHOLD} nodes long and the table is large enough for tree buckets.
+     * 
+     * @param tab   the table holding the chain
+     * @param index the index of the chain
+     */
+    private static <K, V> void treeifyIfLong(Node<K, V>[] tab, int index) {
+        if (tab.length < MIN_TREEIFY_CAPACITY || tab[index] instanceof TreeNode<?, ?>) {
+            return;
+        }
+        int chainLength = 0;
+        for (Node<K, V> node = tab[index]; node != null && chainLength < TREEIFY_THRESHOLD; node = node.next) {
+            chainLength++;
+        }
+        if (chainLength >= TREEIFY_THRESHOLD) {
+            treeify(tab, index);
+        }
+    }
+    
+    /**
+     * Replaces the chain at the given index with tree nodes holding the same mappings, in the same
+     * order.
+     * 
+     * @param tab   the table holding the chain
+     * @param index the index of the chain
+     */
+    private static <K, V> void treeify(Node<K, V>[] tab, int index) {
+        TreeNode<K, V> first = null;
+        TreeNode<K, V> last = null;
+        for (Node<K, V> node = tab[index]; node != null; node = node.next) {
+            TreeNode<K, V> treeNode = new TreeNode<>(node.hash, node.key, node.value);
+            if (last == null) {
+                first = treeNode;
+            } else {
+                last.next = treeNode;
+                treeNode.prev = last;
+            }
+            last = treeNode;
+            first.root = insertTreeNode(first.root, treeNode);
+        }
+        tab[index] = first;
+    }
+    
+    /**
+     * Replaces a tree bucket with a chain of plain nodes holding the same mappings, in the same
+     * order.
+     * 
+     * @param first the first node of the tree bucket
+     * @return the first node of the new chain
+     */
+    private static <K, V> Node<K, V> untreeify(TreeNode<K, V> first) {
+        Node<K, V> head = null;
+        Node<K, V> last = null;
+        for (Node<K, V> node = first; node != null; node = node.next) {
+            Node<K, V> plainNode = new Node<>(node.hash, node.key, node.value);
+            if (last == null) {
+                head = plainNode;
+            } else {
+                last.next = plainNode;
+            }
+            last = plainNode;
+        }
+        return head;
+    }
+    
+    /**
+     * Links a new node into a tree bucket, both after the first node of its list and into its tree.
+     * The first node doesn't change, so an iteration over the bucket is never reordered.
+     * 
+     * @param first    the first node of the tree bucket
+     * @param treeNode the node to add, whose key is not already in the bucket
+     */
+    private static <K, V> void addTreeNode(TreeNode<K, V> first, TreeNode<K, V> treeNode) {
+        TreeNode<K, V> next = (TreeNode<K, V>) first.next;
+        treeNode.prev = first;
+        treeNode.next = next;
+        if (next != null) {
+            next.prev = treeNode;
+        }
+        first.next = treeNode;
+        first.root = insertTreeNode(first.root, treeNode);
+    }
+    
+    /**
+     * Unlinks a node from a tree bucket, both from its list and from its tree. If allowed, the
+     * bucket is converted back into a chain once it holds {@value UNTREEIFY_THRESHOLD} or fewer
+     * nodes; that replaces every node of the bucket, so it is skipped during an iteration, whose
+     * entries must stay attached to the map. A small tree bucket left behind still works, and is
+     * converted on a later removal or resize.
+     * 
+     * @param tab      the table holding the bucket
+     * @param index    the index of the bucket
+     * @param treeNode the node to remove, which must be in the bucket
+     * @param movable  whether the bucket may be converted back into a chain
+     */
+    private static <K, V> void removeTreeNode(Node<K, V>[] tab, int index, TreeNode<K, V> treeNode,
+            boolean movable) {
+        TreeNode<K, V> first = (TreeNode<K, V>) tab[index];
+        TreeNode<K, V> root = deleteTreeNode(first.root, treeNode);
+        
+        TreeNode<K, V> next = (TreeNode<K, V>) treeNode.next;
+        if (treeNode.prev == null) {
+            first = next;
+            tab[index] = next;
+        } else {
+            treeNode.prev.next = next;
+        }
+        if (next != null) {
+            next.prev = treeNode.prev;
+        }
+        if (first == null) {
+            return;
+        }
+        first.root = root;
+        
+        // Only a tree this short can hold few enough nodes, so this count stays cheap
+        if (movable && root.height <= 3) {
+            int count = 0;
+            for (Node<K, V> node = first; node != null; node = node.next) {
+                count++;
+            }
+            if (count <= UNTREEIFY_THRESHOLD) {
+                tab[index] = untreeify(first);
+            }
+        }
+    }
+    
+    /**
+     * Searches a tree for the node holding the given key. When the ordering can't tell which side
+     * the key is on (equal hash codes and keys that aren't mutually comparable), both subtrees are
+     * searched.
+     * 
+     * @param node the root of the tree, or {@code null}
+     * @param hash the spread hash code of the key
+     * @param key  the key being looked up - never {@code null}
+     * @return the node holding the key, or {@code null}
+     */
+    private static <K, V> TreeNode<K, V> findTreeNode(TreeNode<K, V> node, int hash, Object key) {
+        Class<?> keyClass = comparableClassFor(key);
+        while (node != null) {
+            if (hash < node.hash) {
+                node = node.left;
+            } else if (hash > node.hash) {
+                node = node.right;
+            } else if (node.hasKey(hash, key)) {
+                return node;
+            } else if (node.left == null) {
+                node = node.right;
+            } else if (node.right == null) {
+                node = node.left;
+            } else {
+                int order = (keyClass == null) ? 0 : compareComparables(keyClass, key, node.getKey());
+                if (order < 0) {
+                    node = node.left;
+                } else if (order > 0) {
+                    node = node.right;
+                } else {
+                    TreeNode<K, V> found = findTreeNode(node.right, hash, key);
+                    if (found != null) {
+                        return found;
+                    }
+                    node = node.left;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Inserts a node into a tree and rebalances it.
+     * 
+     * @param root     the root of the tree, or {@code null}
+     * @param treeNode the node to insert
+     * @return the new root of the tree
+     */
+    private static <K, V> TreeNode<K, V> insertTreeNode(TreeNode<K, V> root, TreeNode<K, V> treeNode) {
+        if (root == null) {
+            return treeNode;
+        }
+        if (treeOrder(treeNode, root) <= 0) {
+            root.left = insertTreeNode(root.left, treeNode);
+        } else {
+            root.right = insertTreeNode(root.right, treeNode);
+        }
+        return rebalance(root);
+    }
+    
+    /**
+     * Deletes a node from a tree and rebalances it. The node is relinked rather than having its
+     * mapping copied into another node, since entries handed out by the views are the nodes
+     * themselves.
+     * 
+     * @param root     the root of the tree
+     * @param treeNode the node to delete, which must be in the tree
+     * @return the new root of the tree, or {@code null} if it is now empty
+     */
+    private static <K, V> TreeNode<K, V> deleteTreeNode(TreeNode<K, V> root, TreeNode<K, V> treeNode) {
+        if (root == treeNode) {
+            TreeNode<K, V> left = root.left;
+            TreeNode<K, V> right = root.right;
+            root.left = null;
+            root.right = null;
+            root.height = 1;
+            if (left == null) {
+                return right;
+            }
+            if (right == null) {
+                return left;
+            }
+            TreeNode<K, V> successor = right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMinimum(right);
+            successor.left = left;
+            return rebalance(successor);
+        }
+        int order = treeOrder(treeNode, root);
+        // A tie can only come from colliding identity hash codes, and may have rotated to either side
+        if (order < 0 || (order == 0 && containsTreeNode(root.left, treeNode))) {
+            root.left = deleteTreeNode(root.left, treeNode);
+        } else {
+            root.right = deleteTreeNode(root.right, treeNode);
+        }
+        return rebalance(root);
+    }
+    
+    /**
+     * Unlinks the leftmost node of a tree and rebalances it.
+     * 
+     * @param root the root of the tree
+     * @return the new root of the tree, or {@code null} if it is now empty
+     */
+    private static <K, V> TreeNode<K, V> deleteMinimum(TreeNode<K, V> root) {
+        if (root.left == null) {
+            return root.right;
+        }
+        root.left = deleteMinimum(root.left);
+        return rebalance(root);
+    }
+    
+    /**
+     * Returns whether the given node is somewhere in a tree, by identity.
+     * 
+     * @param root     the root of the tree, or {@code null}
+     * @param treeNode the node to look for
+     * @return {@code true} if the node is in the tree
+     */
+    private static boolean containsTreeNode(TreeNode<?, ?> root, TreeNode<?, ?> treeNode) {
+        return root != null && (root == treeNode || containsTreeNode(root.left, treeNode)
+                || containsTreeNode(root.right, treeNode));
+    }
+    
+    /**
+     * Restores the AVL balance of a node whose subtrees differ in height by at most two, and
+     * updates its height.
+     * 
+     * @param node the node to rebalance
+     * @return the node now at its position in the tree
+     */
+    private static <K, V> TreeNode<K, V> rebalance(TreeNode<K, V> node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        updateHeight(node);
+        return node;
+    }
+    
+    private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> node) {
+        TreeNode<K, V> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        updateHeight(node);
+        updateHeight(right);
+        return right;
+    }
+    
+    private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> node) {
+        TreeNode<K, V> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        updateHeight(node);
+        updateHeight(left);
+        return left;
+    }
+    
+    private static int height(TreeNode<?, ?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+    
+    private static void updateHeight(TreeNode<?, ?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+    
+    /**
+     * Orders a node relative to another in the same tree: by hash code, then by {@code compareTo}
+     * if the keys are of the same {@code Comparable} class, then by class name and identity hash
+     * code. This only returns 0 for distinct nodes if their identity hash codes collide.
+     * 
+     * @param a the node being placed
+     * @param b the node already in the tree
+     * @return a negative number, zero, or a positive number as {@code a} orders before, the same
+     *             as, or after {@code b}
+     */
+    private static int treeOrder(Node<?, ?> a, Node<?, ?> b) {
+        if (a.hash != b.hash) {
+            return Integer.compare(a.hash, b.hash);
         }
-        
-        Node<K, V> node = new Node<>(key, value);
-        if (lastNode == null) {
-            table[index] = node;
-        } else {
-            lastNode.next = node;
+        Class<?> keyClass = comparableClassFor(a.key);
+        int order = (keyClass == null) ? 0 : compareComparables(keyClass, a.key, b.key);
+        if (order != 0) {
+            return order;
         }
-        // Since using integer overflow, -1 represents 2^32 elements.
-        if (size != -1) {
-            size++;
+        order = a.key.getClass().getName().compareTo(b.key.getClass().getName());
+        if (order != 0) {
+            return order;
         }
-        return null;
+        return Integer.compare(System.identityHashCode(a.key), System.identityHashCode(b.key));
     }
     
     /**
-     * Removes the mapping for a key from this map if it is present. More formally, if this map
-     * contains a mapping from key k to value v such that {@code Objects.equals(key, k)}, that
-     * mapping is removed. (The map can contain at most one such mapping.) Returns the value to
-     * which this map previously associated the key, or {@code null} if the map contained no mapping
-     * for the key. The map will not contain a mapping for the specified key once the call returns.
+     * Returns the class of the given object if it is of the form {@code class C implements
+     * Comparable<C>}, so that two keys of that class can safely be compared to each other.
      * 
-     * @param key key whose mapping is to be removed from the map
-     * @return the previous value associated with key, or {@code null} if there was no mapping for
-     *             key.
-     * @throws NullPointerException if the specified key is {@code null}
+     * @param obj the object to check
+     * @return the class of the object if it is comparable to itself, otherwise {@code null}
      */
-    @Override
-    public V remove(Object key) {
-        Objects.requireNonNull(key);
-        
-        int index = hashToIndex(key);
-        for (Node<K, V> node = table[index], prevNode = null; node != null; prevNode = node, node = node.next) {
-            if (node.getKey().equals(key)) {
-                V value = node.getValue();
-                if (prevNode == null) {
-                    table[index] = null;
-                } else {
-                    prevNode.next = node.next;
+    private static Class<?> comparableClassFor(Object obj) {
+        if (!(obj instanceof Comparable<?>)) {
+            return null;
+        }
+        Class<?> objClass = obj.getClass();
+        if (objClass == String.class) {
+            return objClass;
+        }
+        for (Type type : objClass.getGenericInterfaces()) {
+            if (type instanceof ParameterizedType) {
+                ParameterizedType parameterizedType = (ParameterizedType) type;
+                Type[] arguments = parameterizedType.getActualTypeArguments();
+                if (parameterizedType.getRawType() == Comparable.class && arguments.length == 1
+                        && arguments[0] == objClass) {
+                    return objClass;
                 }
-                size--;
-                return value;
             }
         }
         return null;
     }
     
     /**
-     * Determines the index that the supplied object will be stored at.
+     * Compares two keys if the second is also of the given comparable class.
      * 
-     * @param obj the object being stored - never {@code null}
-     * @return an index that fits in the table
+     * @param keyClass the class of {@code key}, as returned by {@link #comparableClassFor(Object)}
+     * @param key      the key being compared
+     * @param other    the key it is compared to
+     * @return the result of {@code key.compareTo(other)}, or 0 if {@code other} is of another class
      */
-    private int hashToIndex(Object obj) {
-        // Table.length must not be 0, or this will throw ArithmeticException
-        int index = obj.hashCode() % table.length;
-        if (index < 0) {
-            index = -index;
-        }
-        // TODO rehash if index is OOB (fails on empty table)
-        return index;
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareComparables(Class<?> keyClass, Object key, Object other) {
+        return (other.getClass() != keyClass) ? 0 : ((Comparable) key).compareTo(other);
     }
     
     // ------------------------------------------------------------------------
@@ -395,6 +1558,7 @@ public final class MyHashTable<K, V> implements Map<K, V> {
     public void putAll(Map<? extends K, ? extends V> m) {
         Objects.requireNonNull(m);
         
+        this.ensureCapacity(m.size());
         m.forEach(this::put);
     }
     
@@ -406,7 +1570,13 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         for (int i = 0; i < table.length; i++) {
             table[i] = null;
         }
+        oldTable = null;
+        rehashIndex = 0;
         size = 0;
+        if (bloomFilter != null) {
+            bloomFilter.clear();
+        }
+        nextBloomFilter = null;
     }
     
     /**
@@ -558,15 +1728,10 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      */
     @Override
     public V putIfAbsent(K key, V value) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(value);
         
-        V storedValue = this.get(key);
-        if (storedValue == null) {
-            this.put(key, value);
-        }
-        return storedValue;
+        return this.putValue(key, value, true);
     }
     
     /**
@@ -588,17 +1753,10 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      */
     @Override
     public boolean remove(Object key, Object value) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(value);
         
-        V storedValue = this.get(key);
-        if (storedValue.equals(value)) {
-            this.remove(key);
-            return true;
-        } else {
-            return false;
-        }
+        return this.removeNode(key, value, true) != null;
     }
     
     /**
@@ -622,15 +1780,13 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      */
     @Override
     public boolean replace(K key, V oldValue, V newValue) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(oldValue);
         Objects.requireNonNull(newValue);
         
-        V storedValue = this.get(key);
-        // Also returns false on null
-        if (oldValue.equals(storedValue)) {
-            this.put(key, newValue);
+        Node<K, V> node = this.getNode(key);
+        if (node != null && oldValue.equals(node.getValue())) {
+            node.setValue(newValue);
             return true;
         } else {
             return false;
@@ -655,15 +1811,11 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      */
     @Override
     public V replace(K key, V value) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(value);
         
-        if (this.containsKey(key)) {
-            return this.put(key, value);
-        } else {
-            return null;
-        }
+        Node<K, V> node = this.getNode(key);
+        return (node == null) ? null : node.setValue(value);
     }
     
     /**
@@ -706,22 +1858,17 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      * @param mappingFunction the mapping function to compute a value
      * @return the current (existing or computed) value associated with the specified key, or null
      *             if the computed value is null
-     * @throws NullPointerException if the specified key or the mappingFunction is null
+     * @throws NullPointerException            if the specified key or the mappingFunction is
+     *                                             null
+     * @throws ConcurrentModificationException if it is detected that the function added or removed
+     *                                             mappings
      */
     @Override
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(mappingFunction);
         
-        V value = this.get(key);
-        if (value == null) {
-            value = mappingFunction.apply(key);
-            if (value != null) {
-                this.put(key, value);
-            }
-        }
-        return value;
+        return this.remap(key, (k, absent) -> mappingFunction.apply(k), true, false);
     }
     
     /**
@@ -757,26 +1904,17 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      * @param key               key with which the specified value is to be associated
      * @param remappingFunction the remapping function to compute a value
      * @return the new value associated with the specified key, or null if none
-     * @throws NullPointerException if the specified key or the remappingFunction is null
+     * @throws NullPointerException            if the specified key or the remappingFunction is
+     *                                             null
+     * @throws ConcurrentModificationException if it is detected that the function added or removed
+     *                                             mappings
      */
     @Override
     public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(remappingFunction);
         
-        V oldValue = this.get(key);
-        if (oldValue == null) {
-            return null;
-        }
-        
-        V newValue = remappingFunction.apply(key, oldValue);
-        if (newValue == null) {
-            this.remove(key);
-        } else {
-            this.put(key, newValue);
-        }
-        return newValue;
+        return this.remap(key, remappingFunction, false, true);
     }
     
     /**
@@ -816,22 +1954,17 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      * @param key               key with which the specified value is to be associated
      * @param remappingFunction the remapping function to compute a value
      * @return the new value associated with the specified key, or null if none
-     * @throws NullPointerException if the specified key or the remappingFunction is null
+     * @throws NullPointerException            if the specified key or the remappingFunction is
+     *                                             null
+     * @throws ConcurrentModificationException if it is detected that the function added or removed
+     *                                             mappings
      */
     @Override
     public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(remappingFunction);
         
-        V oldValue = this.get(key);
-        V newValue = remappingFunction.apply(key, oldValue);
-        if (newValue != null) {
-            this.put(key, newValue);
-        } else if (oldValue != null) {
-            this.remove(key);
-        }
-        return newValue;
+        return this.remap(key, remappingFunction, true, true);
     }
     
     /**
@@ -880,28 +2013,329 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      * @param remappingFunction the remapping function to recompute a value if present
      * @return the new value associated with the specified key, or null if no value is associated
      *             with the key
-     * @throws NullPointerException if the specified key, value, or remappingFunction is null
+     * @throws NullPointerException            if the specified key, value, or remappingFunction
+     *                                             is null
+     * @throws ConcurrentModificationException if it is detected that the function added or removed
+     *                                             mappings
      */
     @Override
     public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
-        // TODO more efficient: use internals
         Objects.requireNonNull(key);
         Objects.requireNonNull(value);
         Objects.requireNonNull(remappingFunction);
         
-        V oldValue = this.get(key);
-        if (oldValue == null) {
-            this.put(key, value);
-            return value;
+        return this.remap(key, (k, oldValue) -> (oldValue == null) ? value : remappingFunction.apply(oldValue, value),
+                true, true);
+    }
+    
+    /**
+     * Returns an immutable copy of this map, whose lookups go through a minimal perfect hash
+     * function. This suits maps that are built once and then only read. Later changes to this map
+     * are not reflected in the copy.
+     *
+     * @return an immutable copy of this map
+     * @see MyFrozenHashTable
+     */
+    public MyFrozenHashTable<K, V> freeze() {
+        return MyFrozenHashTable.copyOf(this);
+    }
+    
+    /**
+     * Returns an immutable copy of this map whose updates return new versions in logarithmic time,
+     * sharing structure with the versions before them. This suits maps that are shared between
+     * threads while they keep changing, where copying the whole table for every change would take
+     * linear time. Later changes to this map are not reflected in the copy.
+     * 
+     * @return a persistent copy of this map
+     * @see MyPersistentHashTable
+     */
+    public MyPersistentHashTable<K, V> toPersistent() {
+        return MyPersistentHashTable.copyOf(this);
+    }
+    
+    // ------------------------------------------------------------------------
+    // parallel bulk operations
+    // ------------------------------------------------------------------------
+    
+    /*
+     * These work directly on the bucket array, forking tasks over ranges of buckets into the common
+     * ForkJoinPool, without creating iterators or views. Each takes a parallelismThreshold: the
+     * estimated number of mappings below which an operation runs sequentially in the calling
+     * thread. Long.MAX_VALUE always runs sequentially, and 1 uses as many tasks as the pool can
+     * usefully run.
+     * 
+     * This hashtable is not thread-safe, so the map must not be modified while a bulk operation
+     * runs, and the functions passed to one must not modify it either. The functions may be
+     * called from several threads at once, so they should not depend on shared mutable state.
+     */
+    
+    /**
+     * Performs the given action for each mapping, in no particular order.
+     * 
+     * @param parallelismThreshold the estimated number of mappings needed for the operation to be
+     *                                 executed in parallel
+     * @param action               the action
+     * @throws NullPointerException if the action is null
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        
+        Node<K, V>[] tab = this.bulkTable();
+        new BulkTask<K, V, Void>(tab, 0, tab.length, this.batchFor(parallelismThreshold)) {
+            @Override
+            Void computeRange(int lo, int hi) {
+                for (int i = lo; i < hi; i++) {
+                    for (Node<K, V> node = tab[i]; node != null; node = node.next) {
+                        action.accept(node.key, node.value);
+                    }
+                }
+                return null;
+            }
+            
+            @Override
+            Void combine(Void left, Void right) {
+                return null;
+            }
+        }.invoke();
+    }
+    
+    /**
+     * Returns a non-null result from applying the given search function on each mapping, or null
+     * if none. Once a result is found, the remaining tasks stop searching; if several mappings
+     * would give a result, which one is returned is unspecified.
+     * 
+     * @param <U>                  the type of the result
+     * @param parallelismThreshold the estimated number of mappings needed for the operation to be
+     *                                 executed in parallel
+     * @param searchFunction       a function returning a non-null result on success, else null
+     * @return a non-null result from applying the search function on some mapping, or null if none
+     * @throws NullPointerException if the search function is null
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        
+        Node<K, V>[] tab = this.bulkTable();
+        AtomicReference<U> result = new AtomicReference<>();
+        new BulkTask<K, V, Void>(tab, 0, tab.length, this.batchFor(parallelismThreshold)) {
+            @Override
+            Void computeRange(int lo, int hi) {
+                for (int i = lo; i < hi && result.get() == null; i++) {
+                    for (Node<K, V> node = tab[i]; node != null; node = node.next) {
+                        U u = searchFunction.apply(node.key, node.value);
+                        if (u != null) {
+                            result.compareAndSet(null, u);
+                            return null;
+                        }
+                    }
+                }
+                return null;
+            }
+            
+            @Override
+            boolean hasResult() {
+                return result.get() != null;
+            }
+            
+            @Override
+            Void combine(Void left, Void right) {
+                return null;
+            }
+        }.invoke();
+        return result.get();
+    }
+    
+    /**
+     * Returns the result of accumulating the given transformation of all mappings using the given
+     * reducer to combine values, or null if none.
+     * 
+     * @param <U>                  the type of the result
+     * @param parallelismThreshold the estimated number of mappings needed for the operation to be
+     *                                 executed in parallel
+     * @param transformer          a function returning the transformation for a mapping, or null
+     *                                 if there is no transformation (in which case it is not
+     *                                 combined)
+     * @param reducer              a commutative associative combining function
+     * @return the result of accumulating the given transformation of all mappings
+     * @throws NullPointerException if the transformer or reducer is null
+     */
+    public <U> U reduce(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> transformer,
+            BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        
+        Node<K, V>[] tab = this.bulkTable();
+        return new BulkTask<K, V, U>(tab, 0, tab.length, this.batchFor(parallelismThreshold)) {
+            @Override
+            U computeRange(int lo, int hi) {
+                U r = null;
+                for (int i = lo; i < hi; i++) {
+                    for (Node<K, V> node = tab[i]; node != null; node = node.next) {
+                        U u = transformer.apply(node.key, node.value);
+                        if (u != null) {
+                            r = (r == null) ? u : reducer.apply(r, u);
+                        }
+                    }
+                }
+                return r;
+            }
+            
+            @Override
+            U combine(U left, U right) {
+                return (left == null) ? right : (right == null) ? left : reducer.apply(left, right);
+            }
+        }.invoke();
+    }
+    
+    /**
+     * Returns the result of accumulating all keys using the given reducer to combine values, or
+     * null if none.
+     * 
+     * @param parallelismThreshold the estimated number of mappings needed for the operation to be
+     *                                 executed in parallel
+     * @param reducer              a commutative associative combining function
+     * @return the result of accumulating all keys using the given reducer to combine values, or
+     *             null if none
+     * @throws NullPointerException if the reducer is null
+     */
+    public K reduceKeys(long parallelismThreshold, BiFunction<? super K, ? super K, ? extends K> reducer) {
+        Objects.requireNonNull(reducer);
+        
+        return this.reduce(parallelismThreshold, (key, value) -> key, reducer);
+    }
+    
+    /**
+     * Returns the result of accumulating the given transformation of all values using the given
+     * reducer to combine values, and the given basis as an identity value. The values are never
+     * boxed along the way.
+     * 
+     * @param parallelismThreshold the estimated number of mappings needed for the operation to be
+     *                                 executed in parallel
+     * @param transformer          a function returning the transformation for a value
+     * @param basis                the identity (initial default value) for the reduction
+     * @param reducer              a commutative associative combining function
+     * @return the result of accumulating the given transformation of all values
+     * @throws NullPointerException if the transformer or reducer is null
+     */
+    public long reduceValuesToLong(long parallelismThreshold, ToLongFunction<? super V> transformer, long basis,
+            LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        
+        Node<K, V>[] tab = this.bulkTable();
+        return new BulkTask<K, V, Long>(tab, 0, tab.length, this.batchFor(parallelismThreshold)) {
+            @Override
+            Long computeRange(int lo, int hi) {
+                long r = basis;
+                for (int i = lo; i < hi; i++) {
+                    for (Node<K, V> node = tab[i]; node != null; node = node.next) {
+                        r = reducer.applyAsLong(r, transformer.applyAsLong(node.value));
+                    }
+                }
+                return r;
+            }
+            
+            @Override
+            Long combine(Long left, Long right) {
+                return reducer.applyAsLong(left, right);
+            }
+        }.invoke();
+    }
+    
+    /**
+     * Returns the table for a bulk operation, finishing any incremental rehash first so that every
+     * node is in the one table.
+     * 
+     * @return the table
+     */
+    private Node<K, V>[] bulkTable() {
+        this.finishRehash();
+        return table;
+    }
+    
+    /**
+     * Returns the number of leaf tasks to divide a bulk operation into: none if the map is smaller
+     * than the parallelism threshold, and otherwise one per threshold's worth of mappings, up to
+     * four per thread of the common pool.
+     * 
+     * @param parallelismThreshold the estimated number of mappings needed to run in parallel
+     * @return the number of splits, or 0 to run sequentially
+     */
+    private int batchFor(long parallelismThreshold) {
+        long n = this.size();
+        if (parallelismThreshold == Long.MAX_VALUE || n <= 1 || n < parallelismThreshold) {
+            return 0;
+        }
+        int maxBatch = ForkJoinPool.getCommonPoolParallelism() << 2;
+        if (parallelismThreshold <= 0) {
+            return maxBatch;
         }
+        return (int) Math.min(n / parallelismThreshold, maxBatch);
+    }
+    
+    /**
+     * A fork/join task over a range of buckets. It halves its range, forking the upper half, until
+     * it has been split {@code batch} ways, then runs the operation on its range sequentially and
+     * combines its result with those of the halves it forked.
+     * 
+     * @param <K> the type of keys maintained by the map
+     * @param <V> the type of mapped values
+     * @param <R> the type of the result
+     */
+    private abstract static class BulkTask<K, V, R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
         
-        V newValue = remappingFunction.apply(oldValue, value);
-        if (newValue == null) {
-            this.remove(key);
-            return null;
-        } else {
-            this.put(key, newValue);
-            return newValue;
+        final Node<K, V>[] tab;
+        private final int lo;
+        private final int hi;
+        private final int batch;
+        
+        BulkTask(Node<K, V>[] tab, int lo, int hi, int batch) {
+            this.tab = tab;
+            this.lo = lo;
+            this.hi = hi;
+            this.batch = batch;
+        }
+        
+        /**
+         * Runs the operation sequentially over a range of buckets.
+         */
+        abstract R computeRange(int lo, int hi);
+        
+        /**
+         * Combines the results of two adjacent ranges.
+         */
+        abstract R combine(R left, R right);
+        
+        /**
+         * Returns whether the operation already has its result, so that remaining ranges can be
+         * skipped.
+         */
+        boolean hasResult() {
+            return false;
+        }
+        
+        @Override
+        protected final R compute() {
+            return this.compute(lo, hi, batch);
+        }
+        
+        private R compute(int lo, int hi, int batch) {
+            if (batch <= 1 || hi - lo <= 1 || this.hasResult()) {
+                return this.computeRange(lo, hi);
+            }
+            int mid = (lo + hi) >>> 1;
+            BulkTask<K, V, R> outer = this;
+            RecursiveTask<R> upper = new RecursiveTask<R>() {
+                private static final long serialVersionUID = 1L;
+                
+                @Override
+                protected R compute() {
+                    return outer.compute(mid, hi, batch >>> 1);
+                }
+            };
+            upper.fork();
+            R left = this.compute(lo, mid, batch >>> 1);
+            return this.combine(left, upper.join());
         }
     }
     
@@ -1296,16 +2730,15 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         }
         
         /**
-         * Creates a Spliterator over the elements in this set. The Spliterator reports
-         * Spliterator.DISTINCT, Spliterator.SIZED, Spliterator.SUBSIZED, and Spliterator.NONNULL.
-         * This implementation creates a late-binding spliterator from the set's Iterator.
+         * Creates a late-binding Spliterator over the elements in this set. It splits by halving
+         * its range of bucket indices, so no elements are copied. The Spliterator reports
+         * Spliterator.DISTINCT and Spliterator.NONNULL, and Spliterator.SIZED until it is split.
          * 
          * @return a Spliterator over the elements in this set
          */
         @Override
         public Spliterator<K> spliterator() {
-            return Spliterators.spliterator(this,
-                    Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED);
+            return new KeySpliterator(0, -1, 0);
         }
         
         /**
@@ -1778,40 +3211,15 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         }
         
         /**
-         * Creates a Spliterator over the elements in this collection. Implementations should
-         * document characteristic values reported by the spliterator. Such characteristic values
-         * are not required to be reported if the spliterator reports Spliterator.SIZED and this
-         * collection contains no elements. The default implementation should be overridden by
-         * subclasses that can return a more efficient spliterator. In order to preserve expected
-         * laziness behavior for the stream() and parallelStream() methods, spliterators should
-         * either have the characteristic of IMMUTABLE or CONCURRENT, or be late-binding. If none of
-         * these is practical, the overriding class should describe the spliterator's documented
-         * policy of binding and structural interference, and should override the stream() and
-         * parallelStream() methods to create streams using a Supplier of the spliterator, as in:
-         * 
-         * Stream<E> s = StreamSupport.stream(() -> spliterator(), spliteratorCharacteristics)
-         * 
-         * These requirements ensure that streams produced by the stream() and parallelStream()
-         * methods will reflect the contents of the collection as of initiation of the terminal
-         * stream operation.
-         * 
-         * Specified by: spliterator in interface Iterable<E> Implementation Requirements: The
-         * default implementation creates a late-binding spliterator from the collection's Iterator.
-         * The spliterator inherits the fail-fast properties of the collection's iterator. The
-         * created Spliterator reports Spliterator.SIZED.
-         * 
-         * Implementation Note: The created Spliterator additionally reports Spliterator.SUBSIZED.
-         * If a spliterator covers no elements then the reporting of additional characteristic
-         * values, beyond that of SIZED and SUBSIZED, does not aid clients to control, specialize or
-         * simplify computation. However, this does enable shared use of an immutable and empty
-         * spliterator instance (see Spliterators.emptySpliterator()) for empty collections, and
-         * enables clients to determine if such a spliterator covers no elements.
+         * Creates a late-binding Spliterator over the elements in this collection. It splits by
+         * halving its range of bucket indices, so no elements are copied. The Spliterator reports
+         * Spliterator.NONNULL, and Spliterator.SIZED until it is split.
          * 
          * @return a Spliterator over the elements in this collection
          */
         @Override
         public Spliterator<V> spliterator() {
-            return Spliterators.spliterator(this, Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED);
+            return new ValueSpliterator(0, -1, 0);
         }
         
         /**
@@ -2241,16 +3649,15 @@ public final class MyHashTable<K, V> implements Map<K, V> {
         }
         
         /**
-         * Creates a Spliterator over the elements in this set. The Spliterator reports
-         * Spliterator.DISTINCT, Spliterator.SIZED, Spliterator.SUBSIZED, and Spliterator.NONNULL.
-         * This implementation creates a late-binding spliterator from the set's Iterator.
+         * Creates a late-binding Spliterator over the elements in this set. It splits by halving
+         * its range of bucket indices, so no elements are copied. The Spliterator reports
+         * Spliterator.DISTINCT and Spliterator.NONNULL, and Spliterator.SIZED until it is split.
          * 
          * @return a Spliterator over the elements in this set
          */
         @Override
         public Spliterator<Entry<K, V>> spliterator() {
-            return Spliterators.spliterator(this,
-                    Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED);
+            return new EntrySpliterator(0, -1, 0);
         }
         
         /**
@@ -2290,16 +3697,18 @@ public final class MyHashTable<K, V> implements Map<K, V> {
      * @param <E> the type of elements returned by this iterator
      */
     private abstract class HashIterator<E> implements Iterator<E> {
-        private Node<K, V>[] table = MyHashTable.this.table;
+        private Node<K, V>[] table;
         private int index = 0;
         private Node<K, V> currentNode = null;
         private Node<K, V> nextNode;
         
         /**
-         * Creates an instance of an iterator that iterates over the outer hashtable's table. This
-         * does not account for an empty HashTable:
+         * Creates an instance of an iterator that iterates over the outer hashtable's table. Any
+         * incremental rehash is finished first, so that every node is in the one table.
          */
         private HashIterator() {
+            MyHashTable.this.finishRehash();
+            this.table = MyHashTable.this.table;
             while (index < table.length && table[index] == null) {
                 index++;
             }
@@ -2358,7 +3767,9 @@ public final class MyHashTable<K, V> implements Map<K, V> {
             if (currentNode == null) {
                 throw new IllegalStateException();
             }
-            MyHashTable.this.remove(currentNode.key);
+            // Leave a shrinking tree bucket as a tree, so the entries already handed out, and the
+            // next node of this iteration, stay in the map
+            MyHashTable.this.removeNode(currentNode.key, null, false);
             currentNode = null;
         }
         
@@ -2439,9 +3850,202 @@ public final class MyHashTable<K, V> implements Map<K, V> {
             return "entries";
         }
     }
+    
+    // -------------------------------------------------------------------------
+    // Spliterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * A spliterator over the nodes in a range of buckets of this hashtable. It binds to the table
+     * when it is first traversed, split or sized, finishing any incremental rehash so that every
+     * node is in the one table. Splitting hands the lower half of the remaining buckets to a new
+     * spliterator, so the work divides evenly with no copying as long as the hash codes are spread
+     * well.
+     * 
+     * @param <E> the type of elements returned by this spliterator
+     */
+    private abstract class HashSpliterator<E> implements Spliterator<E> {
+        private Node<K, V>[] table;
+        private int index;
+        /**
+         * One past the last bucket index, or -1 until the spliterator binds to the table.
+         */
+        private int fence;
+        private int estimate;
+        /**
+         * Whether the estimate is exact, which only holds for a spliterator over the whole table
+         * that has never been split.
+         */
+        private boolean sized;
+        private Node<K, V> currentNode = null;
+        
+        /**
+         * Creates a spliterator over a range of buckets.
+         * 
+         * @param index    the first bucket index
+         * @param fence    one past the last bucket index, or -1 to cover the whole table once bound
+         * @param estimate the estimated number of elements; ignored if the fence is -1
+         */
+        HashSpliterator(int index, int fence, int estimate) {
+            this.table = MyHashTable.this.table;
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.sized = fence < 0;
+        }
+        
+        /**
+         * Binds to the table if this spliterator hasn't yet, and returns the fence.
+         * 
+         * @return one past the last bucket index
+         */
+        private int getFence() {
+            if (fence < 0) {
+                MyHashTable.this.finishRehash();
+                table = MyHashTable.this.table;
+                fence = table.length;
+                estimate = MyHashTable.this.size();
+            }
+            return fence;
+        }
+        
+        /**
+         * Creates a spliterator of the same kind over a range of buckets.
+         */
+        abstract HashSpliterator<E> split(int index, int fence, int estimate);
+        
+        /**
+         * Returns the element of this spliterator's kind for a node.
+         */
+        abstract E element(Node<K, V> node);
+        
+        @Override
+        public HashSpliterator<E> trySplit() {
+            int hi = this.getFence();
+            int lo = index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid || currentNode != null) {
+                return null;
+            }
+            index = mid;
+            estimate >>>= 1;
+            sized = false;
+            HashSpliterator<E> prefix = this.split(lo, mid, estimate);
+            prefix.table = table;
+            return prefix;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            
+            int hi = this.getFence();
+            while (currentNode != null || index < hi) {
+                if (currentNode == null) {
+                    currentNode = table[index++];
+                } else {
+                    Node<K, V> node = currentNode;
+                    currentNode = node.next;
+                    action.accept(this.element(node));
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            
+            int hi = this.getFence();
+            Node<K, V>[] tab = table;
+            Node<K, V> node = currentNode;
+            currentNode = null;
+            for (int i = index; node != null || i < hi;) {
+                if (node == null) {
+                    node = tab[i++];
+                } else {
+                    action.accept(this.element(node));
+                    node = node.next;
+                }
+            }
+            index = hi;
+        }
+        
+        @Override
+        public long estimateSize() {
+            this.getFence();
+            return estimate;
+        }
+        
+        @Override
+        public int characteristics() {
+            return (sized ? Spliterator.SIZED : 0) | Spliterator.NONNULL;
+        }
+    }
+    
+    private final class KeySpliterator extends HashSpliterator<K> {
+        
+        KeySpliterator(int index, int fence, int estimate) {
+            super(index, fence, estimate);
+        }
+        
+        @Override
+        HashSpliterator<K> split(int index, int fence, int estimate) {
+            return new KeySpliterator(index, fence, estimate);
+        }
+        
+        @Override
+        K element(Node<K, V> node) {
+            return node.getKey();
+        }
+        
+        @Override
+        public int characteristics() {
+            return super.characteristics() | Spliterator.DISTINCT;
+        }
+    }
+    
+    private final class ValueSpliterator extends HashSpliterator<V> {
+        
+        ValueSpliterator(int index, int fence, int estimate) {
+            super(index, fence, estimate);
+        }
+        
+        @Override
+        HashSpliterator<V> split(int index, int fence, int estimate) {
+            return new ValueSpliterator(index, fence, estimate);
+        }
+        
+        @Override
+        V element(Node<K, V> node) {
+            return node.getValue();
+        }
+    }
+    
+    private final class EntrySpliterator extends HashSpliterator<Entry<K, V>> {
+        
+        EntrySpliterator(int index, int fence, int estimate) {
+            super(index, fence, estimate);
+        }
+        
+        @Override
+        HashSpliterator<Entry<K, V>> split(int index, int fence, int estimate) {
+            return new EntrySpliterator(index, fence, estimate);
+        }
+        
+        @Override
+        Entry<K, V> element(Node<K, V> node) {
+            return node;
+        }
+        
+        @Override
+        public int characteristics() {
+            return super.characteristics() | Spliterator.DISTINCT;
+        }
+    }
 }
-// TODO clean up JavaDocs, more efficient implementations, rehashing, ConcurrentModificationException
+// TODO clean up JavaDocs, more efficient implementations, ConcurrentModificationException
 // TODO possibly refactor (after efficient implementations) to reuse patterns (replacing entry values, etc)
 // TODO stretch goal: serialization, cloneable, elements() + keys() -> Enumeration (legacy, but an interesting exercise)
-// TODO Spliterator implementations
 // TODO possible base class for collection views
@@ -0,0 +1,422 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves a {@link MyHashTable} to a compact binary file and loads it back, with pluggable
+ * {@link Codec}s for the keys and values.
+ * <p>
+ * The file is a 32-byte header followed by chunks of encoded mappings:
+ *
+ * <pre>
+ * header: [magic "MYSN"][version][mapping count: long][chunk count: long][unused]
+ * chunk:  [length of the data][mapping count][key][value][key][value]...
+ * </pre>
+ *
+ * Large tables are written in parallel: each thread encodes the buckets it was given into its own
+ * chunk buffer, and appends the buffer to the file with a positional write whenever it fills, so
+ * the chunks of a file are in no particular order. Loading sizes the table for the whole snapshot
+ * before inserting anything, so the table never grows or rehashes while loading. Chunks are decoded
+ * in parallel, but the table isn't thread-safe, so each decoded chunk is then put into it one
+ * mapping at a time while holding a lock private to the load.
+ */
+public final class MyHashTableSnapshot {
+    
+    private static final int MAGIC = 0x4D59_534E; // "MYSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int CHUNK_SIZE = 1 << 20;
+    
+    /**
+     * The number of mappings a table needs before it is written in parallel.
+     */
+    private static final long PARALLELISM_THRESHOLD = 1 << 16;
+    
+    private MyHashTableSnapshot() {
+    }
+    
+    /**
+     * Converts objects of one type to and from bytes. A codec must be stateless, since it is used by
+     * several threads at once.
+     *
+     * @param <T> the type of the objects
+     */
+    public interface Codec<T> {
+        
+        /**
+         * Writes an object at the buffer's position, advancing it. If the buffer runs out of room,
+         * this should throw the {@code BufferOverflowException} of {@code ByteBuffer}'s methods; the
+         * object is then written again into a larger buffer.
+         *
+         * @param value  the object to write - never {@code null}
+         * @param buffer the buffer to write to
+         * @throws java.nio.BufferOverflowException if the object doesn't fit in the buffer
+         */
+        void encode(T value, ByteBuffer buffer);
+        
+        /**
+         * Reads an object written by {@link #encode} from the buffer's position, advancing it.
+         *
+         * @param buffer the buffer to read from
+         * @return the object read - never {@code null}
+         * @throws java.nio.BufferUnderflowException if the buffer holds only part of an object
+         */
+        T decode(ByteBuffer buffer);
+        
+        /**
+         * Checks a length read from a buffer before an array of that length is allocated, so that
+         * a corrupt length fails instead of exhausting memory.
+         *
+         * @param length the length read
+         * @param buffer the buffer the bytes will be read from
+         * @return the length
+         * @throws java.nio.BufferUnderflowException if the buffer holds fewer bytes than the length
+         */
+        private static int checkLength(int length, ByteBuffer buffer) {
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            return length;
+        }
+        
+        /**
+         * A codec for {@code String}s, as their length and UTF-8 bytes.
+         */
+        Codec<String> STRING = new Codec<>() {
+            @Override
+            public void encode(String value, ByteBuffer buffer) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length).put(bytes);
+            }
+            
+            @Override
+            public String decode(ByteBuffer buffer) {
+                byte[] bytes = new byte[checkLength(buffer.getInt(), buffer)];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+        
+        /**
+         * A codec for {@code byte[]}s, as their length and contents.
+         */
+        Codec<byte[]> BYTES = new Codec<>() {
+            @Override
+            public void encode(byte[] value, ByteBuffer buffer) {
+                buffer.putInt(value.length).put(value);
+            }
+            
+            @Override
+            public byte[] decode(ByteBuffer buffer) {
+                byte[] bytes = new byte[checkLength(buffer.getInt(), buffer)];
+                buffer.get(bytes);
+                return bytes;
+            }
+        };
+        
+        /**
+         * A codec for {@code Integer}s, as 4 bytes.
+         */
+        Codec<Integer> INTEGER = new Codec<>() {
+            @Override
+            public void encode(Integer value, ByteBuffer buffer) {
+                buffer.putInt(value);
+            }
+            
+            @Override
+            public Integer decode(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+        
+        /**
+         * A codec for {@code Long}s, as 8 bytes.
+         */
+        Codec<Long> LONG = new Codec<>() {
+            @Override
+            public void encode(Long value, ByteBuffer buffer) {
+                buffer.putLong(value);
+            }
+            
+            @Override
+            public Long decode(ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+        };
+    }
+    
+    // ------------------------------------------------------------------------
+    // writing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Writes every mapping of a table to a file, replacing the file if it exists. The table must not
+     * be modified while it is written.
+     *
+     * @param <K>        the type of keys maintained by the table
+     * @param <V>        the type of mapped values
+     * @param table      the table to write
+     * @param path       the file to write
+     * @param keyCodec   the codec for the keys
+     * @param valueCodec the codec for the values
+     * @throws IOException          if the file can't be written
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public static <K, V> void write(MyHashTable<K, V> table, Path path, Codec<? super K> keyCodec,
+            Codec<? super V> valueCodec) throws IOException {
+        Objects.requireNonNull(table);
+        Objects.requireNonNull(keyCodec);
+        Objects.requireNonNull(valueCodec);
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            AtomicLong end = new AtomicLong(HEADER_SIZE);
+            AtomicLong chunkCount = new AtomicLong();
+            // The writer of each thread is found through a map that dies with this call, where a
+            // ThreadLocal would leave it, buffer and closed channel included, on the pool's threads
+            MyConcurrentHashTable<Thread, ChunkWriter<K, V>> writers = new MyConcurrentHashTable<>();
+            try {
+                table.forEach(PARALLELISM_THRESHOLD, (key, value) -> {
+                    Thread thread = Thread.currentThread();
+                    ChunkWriter<K, V> writer = writers.get(thread);
+                    if (writer == null) {
+                        // Only this thread adds its own writer, so it can't race with another
+                        writer = new ChunkWriter<>(channel, end, chunkCount, keyCodec, valueCodec);
+                        writers.put(thread, writer);
+                    }
+                    writer.add(key, value);
+                });
+                for (ChunkWriter<K, V> writer : writers.values()) {
+                    writer.flush();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(table.size()).putLong(chunkCount.get()).rewind();
+            writeFully(channel, header, 0);
+        }
+    }
+    
+    /**
+     * Encodes mappings into a buffer, and appends the buffer to the file as a chunk when it fills.
+     * Each writer is used by one thread.
+     */
+    private static final class ChunkWriter<K, V> {
+        
+        private final FileChannel channel;
+        private final AtomicLong end;
+        private final AtomicLong chunkCount;
+        private final Codec<? super K> keyCodec;
+        private final Codec<? super V> valueCodec;
+        private ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).position(CHUNK_HEADER_SIZE);
+        private int count = 0;
+        
+        ChunkWriter(FileChannel channel, AtomicLong end, AtomicLong chunkCount, Codec<? super K> keyCodec,
+                Codec<? super V> valueCodec) {
+            this.channel = channel;
+            this.end = end;
+            this.chunkCount = chunkCount;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+        }
+        
+        void add(K key, V value) {
+            while (true) {
+                int start = buffer.position();
+                try {
+                    keyCodec.encode(key, buffer);
+                    valueCodec.encode(value, buffer);
+                    count++;
+                    return;
+                } catch (BufferOverflowException e) {
+                    buffer.position(start);
+                }
+                if (count > 0) {
+                    this.flush();
+                } else {
+                    // A single mapping doesn't fit in an empty chunk
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).position(CHUNK_HEADER_SIZE);
+                }
+            }
+        }
+        
+        void flush() {
+            if (count == 0) {
+                return;
+            }
+            int length = buffer.position();
+            buffer.putInt(0, length - CHUNK_HEADER_SIZE).putInt(4, count).flip();
+            try {
+                writeFully(channel, buffer, end.getAndAdd(length));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunkCount.incrementAndGet();
+            buffer.clear().position(CHUNK_HEADER_SIZE);
+            count = 0;
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // reading
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Reads a table written by {@link #write}.
+     *
+     * @param <K>        the type of keys maintained by the table
+     * @param <V>        the type of mapped values
+     * @param path       the file to read
+     * @param keyCodec   the codec for the keys
+     * @param valueCodec the codec for the values
+     * @return a new table holding the mappings of the file
+     * @throws IOException          if the file can't be read, or isn't a valid snapshot
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public static <K, V> MyHashTable<K, V> read(Path path, Codec<? extends K> keyCodec,
+            Codec<? extends V> valueCodec) throws IOException {
+        MyHashTable<K, V> table = new MyHashTable<>();
+        readInto(path, table, keyCodec, valueCodec);
+        return table;
+    }
+    
+    /**
+     * Reads the mappings of a file written by {@link #write} into a table, replacing the values of
+     * keys it already contains. If the file isn't a valid snapshot, some of its mappings may have
+     * been put into the table.
+     *
+     * @param <K>        the type of keys maintained by the table
+     * @param <V>        the type of mapped values
+     * @param path       the file to read
+     * @param table      the table to put the mappings into
+     * @param keyCodec   the codec for the keys
+     * @param valueCodec the codec for the values
+     * @throws IOException          if the file can't be read, or isn't a valid snapshot
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public static <K, V> void readInto(Path path, MyHashTable<K, V> table, Codec<? extends K> keyCodec,
+            Codec<? extends V> valueCodec) throws IOException {
+        Objects.requireNonNull(table);
+        Objects.requireNonNull(keyCodec);
+        Objects.requireNonNull(valueCodec);
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE, fileSize);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a MyHashTableSnapshot file: bad magic number");
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException("Unsupported MyHashTableSnapshot version: " + header.getInt(4));
+            }
+            long count = header.getLong();
+            long chunkCount = header.getLong();
+            if (count < 0 || chunkCount < 0 || count > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt MyHashTableSnapshot header");
+            }
+            
+            // Find every chunk first, so that they can be decoded in parallel
+            List<long[]> chunks = new ArrayList<>();
+            long position = HEADER_SIZE;
+            long mappings = 0;
+            for (long i = 0; i < chunkCount; i++) {
+                ByteBuffer chunkHeader = readFully(channel, position, CHUNK_HEADER_SIZE, fileSize);
+                int length = chunkHeader.getInt();
+                int chunkMappings = chunkHeader.getInt();
+                if (length < 0 || chunkMappings <= 0) {
+                    throw new IOException("Corrupt MyHashTableSnapshot chunk at " + position);
+                }
+                chunks.add(new long[] { position + CHUNK_HEADER_SIZE, length, chunkMappings });
+                position += CHUNK_HEADER_SIZE + length;
+                mappings += chunkMappings;
+            }
+            if (mappings != count || position != fileSize) {
+                throw new IOException("Corrupt MyHashTableSnapshot: expected " + count + " mappings in "
+                        + fileSize + " bytes, found " + mappings + " in " + position);
+            }
+            
+            table.ensureCapacity((int) Math.min(table.size() + count, Integer.MAX_VALUE));
+            Object lock = new Object();
+            try {
+                chunks.parallelStream().forEach(chunk -> {
+                    Object[] decoded = decodeChunk(channel, chunk, fileSize, keyCodec, valueCodec);
+                    putChunk(table, decoded, lock);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+    
+    /**
+     * Decodes a chunk into an array of alternating keys and values.
+     */
+    private static Object[] decodeChunk(FileChannel channel, long[] chunk, long fileSize, Codec<?> keyCodec,
+            Codec<?> valueCodec) {
+        try {
+            ByteBuffer buffer = readFully(channel, chunk[0], (int) chunk[1], fileSize);
+            Object[] batch = new Object[(int) chunk[2] * 2];
+            for (int i = 0; i < batch.length; i += 2) {
+                batch[i] = Objects.requireNonNull(keyCodec.decode(buffer));
+                batch[i + 1] = Objects.requireNonNull(valueCodec.decode(buffer));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Corrupt MyHashTableSnapshot chunk at " + chunk[0]);
+            }
+            return batch;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            throw new UncheckedIOException(new IOException("Corrupt MyHashTableSnapshot chunk at " + chunk[0], e));
+        }
+    }
+    
+    /**
+     * Puts the mappings of a decoded chunk into the table with {@code put}, one at a time. The table
+     * isn't thread-safe, so the given lock is held for the whole chunk, which serializes the puts of
+     * the threads decoding other chunks. The lock belongs to the load rather than being the table's
+     * own, which a caller may already hold while waiting for the load.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> void putChunk(MyHashTable<K, V> table, Object[] mappings, Object lock) {
+        synchronized (lock) {
+            for (int i = 0; i < mappings.length; i += 2) {
+                table.put((K) mappings[i], (V) mappings[i + 1]);
+            }
+        }
+    }
+    
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, long fileSize)
+            throws IOException {
+        if (position + length > fileSize) {
+            throw new IOException("Truncated MyHashTableSnapshot: " + (position + length) + " bytes needed, "
+                    + fileSize + " present");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            channel.read(buffer, position + buffer.position());
+        }
+        return buffer.flip();
+    }
+}
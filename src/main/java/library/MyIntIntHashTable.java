@@ -0,0 +1,345 @@
+package library;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * A hashtable which maps {@code int} keys to {@code int} values without boxing. Every key is
+ * allowed, including 0, and absent keys read as 0 unless another default is asked for. It is not
+ * thread-safe.
+ * <p>
+ * Keys and values are stored in two parallel arrays, so a mapping costs 8 bytes plus the empty
+ * slots, and adding one never allocates unless the table grows. Collisions are resolved by linear
+ * probing, and removal shifts the following mappings back rather than leaving tombstones. Slots are
+ * marked free by a key of 0, so the mapping for the key 0 itself is kept beside the arrays.
+ */
+public final class MyIntIntHashTable {
+    
+    private static final int DEFAULT_SIZE = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * An operation that accepts an {@code int} key and an {@code int} value.
+     */
+    @FunctionalInterface
+    public interface IntIntConsumer {
+        
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key   the key
+         * @param value the value
+         */
+        void accept(int key, int value);
+    }
+    
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int maxFill;
+    
+    /**
+     * The number of mappings in the arrays, which excludes the mapping for the key 0.
+     */
+    private int size = 0;
+    private boolean hasZeroKey = false;
+    private int zeroValue = 0;
+    
+    /**
+     * Creates a new, empty hashtable with room for {@value DEFAULT_SIZE} mappings.
+     */
+    public MyIntIntHashTable() {
+        this(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Creates a new, empty hashtable with room for the given number of mappings before it grows.
+     *
+     * @param expectedSize the number of mappings expected
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public MyIntIntHashTable(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("MyIntIntHashTable size cannot be negative: " + expectedSize);
+        }
+        this.allocate(tableSizeFor(expectedSize));
+    }
+    
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of slots in the arrays. This is exposed for testing.
+     *
+     * @return the number of slots
+     */
+    int capacity() {
+        return keys.length;
+    }
+    
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(Integer.highestOneBit((int) needed - 1) << 1, 2);
+    }
+    
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        maxFill = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+    
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        this.allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != 0) {
+                int index = hash(key) & mask;
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of mappings in this map.
+     *
+     * @return the number of mappings in this map
+     */
+    public int size() {
+        return hasZeroKey ? size + 1 : size;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains no mappings.
+     *
+     * @return {@code true} if this map contains no mappings
+     */
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     */
+    public boolean containsKey(int key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return this.indexOf(key) >= 0;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or 0 if this map contains no mapping
+     * for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or 0
+     */
+    public int get(int key) {
+        return this.getOrDefault(key, 0);
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or the given default if this map
+     * contains no mapping for the key.
+     *
+     * @param key          the key whose associated value is to be returned
+     * @param defaultValue the value to return if there is no mapping for the key
+     * @return the value to which the specified key is mapped, or {@code defaultValue}
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int index = this.indexOf(key);
+        return (index < 0) ? defaultValue : values[index];
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or 0 if there was no mapping for the key
+     */
+    public int put(int key, int value) {
+        if (key == 0) {
+            int oldValue = zeroValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return oldValue;
+        }
+        int index = hash(key) & mask;
+        for (int k; (k = keys[index]) != 0; index = (index + 1) & mask) {
+            if (k == key) {
+                int oldValue = values[index];
+                values[index] = value;
+                return oldValue;
+            }
+        }
+        this.insertAt(index, key, value);
+        return 0;
+    }
+    
+    /**
+     * Adds the given increment to the value associated with the specified key, treating an absent
+     * mapping as 0.
+     *
+     * @param key       key whose value is to be incremented
+     * @param increment the amount to add
+     * @return the previous value associated with the key, or 0 if there was no mapping for the key
+     */
+    public int addTo(int key, int increment) {
+        if (key == 0) {
+            int oldValue = zeroValue;
+            zeroValue += increment;
+            hasZeroKey = true;
+            return oldValue;
+        }
+        int index = hash(key) & mask;
+        for (int k; (k = keys[index]) != 0; index = (index + 1) & mask) {
+            if (k == key) {
+                int oldValue = values[index];
+                values[index] += increment;
+                return oldValue;
+            }
+        }
+        this.insertAt(index, key, increment);
+        return 0;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with the key, or 0 if there was no mapping for the key
+     */
+    public int remove(int key) {
+        if (key == 0) {
+            int oldValue = zeroValue;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return oldValue;
+        }
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return 0;
+        }
+        int oldValue = values[index];
+        this.removeAt(index);
+        return oldValue;
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+    
+    /**
+     * Performs the given action for each mapping in this map, in no particular order. The action
+     * must not modify this map.
+     *
+     * @param action the action to be performed for each mapping
+     * @throws NullPointerException if the specified action is {@code null}
+     */
+    public void forEach(IntIntConsumer action) {
+        Objects.requireNonNull(action);
+        
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    /**
+     * Returns a string representation of this map, in the same format as {@code Map}'s.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        this.forEach((key, value) -> joiner.add(key + "=" + value));
+        return joiner.toString();
+    }
+    
+    // ------------------------------------------------------------------------
+    // probing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Mixes all the bits of a key into the low bits used to index the arrays.
+     */
+    static int hash(int key) {
+        return MyHashTable.spread(key);
+    }
+    
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        for (int k; (k = keys[index]) != 0; index = (index + 1) & mask) {
+            if (k == key) {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    private void insertAt(int index, int key, int value) {
+        keys[index] = key;
+        values[index] = value;
+        if (++size > maxFill && keys.length < MAXIMUM_CAPACITY) {
+            this.grow();
+        }
+    }
+    
+    /**
+     * Empties a slot, then shifts back each following mapping of the run which could live there,
+     * so that no probe sequence is broken.
+     */
+    private void removeAt(int index) {
+        size--;
+        int last = index;
+        for (int current = (index + 1) & mask; keys[current] != 0; current = (current + 1) & mask) {
+            int home = hash(keys[current]) & mask;
+            // The mapping can move back unless its home slot lies cyclically in (last, current]
+            boolean homeAfterLast = (last <= current) ? (last < home && home <= current)
+                    : (last < home || home <= current);
+            if (!homeAfterLast) {
+                keys[last] = keys[current];
+                values[last] = values[current];
+                last = current;
+            }
+        }
+        keys[last] = 0;
+        values[last] = 0;
+    }
+}
@@ -0,0 +1,289 @@
+package library;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * A hashtable which maps {@code int} keys to object values without boxing the keys. Every key is
+ * allowed, but {@code null} values are rejected, so {@code get} returning {@code null} always
+ * means that the key is absent. It is not thread-safe.
+ * <p>
+ * Keys and values are stored in two parallel arrays, so a mapping costs an {@code int} and a
+ * reference plus the empty slots, and adding one never allocates unless the table grows.
+ * Collisions are resolved by linear probing, and removal shifts the following mappings back rather
+ * than leaving tombstones. Slots are marked free by a {@code null} value.
+ *
+ * @param <V> the type of mapped values
+ */
+public final class MyIntObjectHashTable<V> {
+    
+    private static final int DEFAULT_SIZE = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * An operation that accepts an {@code int} key and an object value.
+     *
+     * @param <V> the type of the value
+     */
+    @FunctionalInterface
+    public interface IntObjConsumer<V> {
+        
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key   the key
+         * @param value the value
+         */
+        void accept(int key, V value);
+    }
+    
+    private int[] keys;
+    private V[] values;
+    private int mask;
+    private int maxFill;
+    private int size = 0;
+    
+    /**
+     * Creates a new, empty hashtable with room for {@value DEFAULT_SIZE} mappings.
+     */
+    public MyIntObjectHashTable() {
+        this(DEFAULT_SIZE);
+    }
+    
+    /**
+     * Creates a new, empty hashtable with room for the given number of mappings before it grows.
+     *
+     * @param expectedSize the number of mappings expected
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public MyIntObjectHashTable(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("MyIntObjectHashTable size cannot be negative: " + expectedSize);
+        }
+        this.allocate(tableSizeFor(expectedSize));
+    }
+    
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of slots in the arrays. This is exposed for testing.
+     *
+     * @return the number of slots
+     */
+    int capacity() {
+        return keys.length;
+    }
+    
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(Integer.highestOneBit((int) needed - 1) << 1, 2);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+        maxFill = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+    
+    private void grow() {
+        int[] oldKeys = keys;
+        V[] oldValues = values;
+        this.allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i]) & mask;
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of mappings in this map.
+     *
+     * @return the number of mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains no mappings.
+     *
+     * @return {@code true} if this map contains no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     */
+    public boolean containsKey(int key) {
+        return this.indexOf(key) >= 0;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null}
+     */
+    public V get(int key) {
+        int index = this.indexOf(key);
+        return (index < 0) ? null : values[index];
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or the given default if this map
+     * contains no mapping for the key.
+     *
+     * @param key          the key whose associated value is to be returned
+     * @param defaultValue the value to return if there is no mapping for the key
+     * @return the value to which the specified key is mapped, or {@code defaultValue}
+     */
+    public V getOrDefault(int key, V defaultValue) {
+        int index = this.indexOf(key);
+        return (index < 0) ? defaultValue : values[index];
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified value is {@code null}
+     */
+    public V put(int key, V value) {
+        Objects.requireNonNull(value);
+        
+        int index = hash(key) & mask;
+        for (V v; (v = values[index]) != null; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return v;
+            }
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > maxFill && keys.length < MAXIMUM_CAPACITY) {
+            this.grow();
+        }
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     */
+    public V remove(int key) {
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = values[index];
+        this.removeAt(index);
+        return oldValue;
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    
+    /**
+     * Performs the given action for each mapping in this map, in no particular order. The action
+     * must not modify this map.
+     *
+     * @param action the action to be performed for each mapping
+     * @throws NullPointerException if the specified action is {@code null}
+     */
+    public void forEach(IntObjConsumer<? super V> action) {
+        Objects.requireNonNull(action);
+        
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+    
+    /**
+     * Returns a string representation of this map, in the same format as {@code Map}'s.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        this.forEach((key, value) -> joiner.add(key + "=" + value));
+        return joiner.toString();
+    }
+    
+    // ------------------------------------------------------------------------
+    // probing
+    // ------------------------------------------------------------------------
+    
+    private static int hash(int key) {
+        return MyHashTable.spread(key);
+    }
+    
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        for (; values[index] != null; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Empties a slot, then shifts back each following mapping of the run which could live there,
+     * so that no probe sequence is broken.
+     */
+    private void removeAt(int index) {
+        size--;
+        int last = index;
+        for (int current = (index + 1) & mask; values[current] != null; current = (current + 1) & mask) {
+            int home = hash(keys[current]) & mask;
+            // The mapping can move back unless its home slot lies cyclically in (last, current]
+            boolean homeAfterLast = (last <= current) ? (last < home && home <= current)
+                    : (last < home || home <= current);
+            if (!homeAfterLast) {
+                keys[last] = keys[current];
+                values[last] = values[current];
+                last = current;
+            }
+        }
+        values[last] = null;
+    }
+}
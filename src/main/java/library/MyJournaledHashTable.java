@@ -0,0 +1,857 @@
+package library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.zip.CRC32;
+
+import library.MyHashTableSnapshot.Codec;
+
+/**
+ * A hashtable which maps keys to values, and makes every change durable in a write-ahead journal
+ * before returning. It supports all of the operations of {@code Map}, including optional
+ * operations. It rejects {@code null} keys and values.
+ * <p>
+ * The mappings are kept in a {@link MyHashTable}, and a directory holds a {@code snapshot}, in the
+ * format of {@link MyHashTableSnapshot}, and a {@code journal} of the changes made since. Each
+ * {@code put}, {@code remove}, {@code merge} and {@code clear} appends a record of its outcome to
+ * the journal, and waits until a single writer thread has written the record and forced it to the
+ * storage device. The writer takes every record appended while it was forcing the previous batch,
+ * so concurrent updates share one {@code fsync} (group commit), and throughput grows with the
+ * number of updating threads. {@link #checkpoint()} writes a new snapshot and empties the journal.
+ * <p>
+ * A change only becomes visible to reads once its record is durable, so nothing is ever read that a
+ * crash could lose. Until then, it is held in a queue of unpublished changes, which later changes
+ * build on, and which is applied to the readable mappings in journal order as records become
+ * durable. If the journal can't be written, the map is closed, and its mappings stay those of the
+ * durable records, as reopening it would find them.
+ * <p>
+ * Opening a directory loads the snapshot and replays the journal on top of it. Each record holds a
+ * CRC-32 of its contents. A last record which is incomplete or damaged is where a crash interrupted
+ * the writer, so it was never acknowledged, and is dropped. Damage anywhere else would lose
+ * acknowledged changes, so opening fails instead.
+ * <p>
+ * This map is thread-safe: every method synchronizes on the map, but updates wait for the journal
+ * outside of that lock, and iterating first waits for every unpublished change. As with
+ * {@link java.util.Collections#synchronizedMap(java.util.Map)}, iterating over a view must be done
+ * while synchronized on the map. Compound operations other than {@code merge} and
+ * {@code replaceAll} are made of several journaled operations, and are not atomic.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyJournaledHashTable<K, V> extends MySkeletalMap<K, V> implements AutoCloseable {
+    
+    private static final String SNAPSHOT = "snapshot";
+    private static final String JOURNAL = "journal";
+    
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    
+    /**
+     * The size of a record's header: the length and CRC-32 of its contents.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 12;
+    
+    private final Path directory;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    /**
+     * The mappings of the durable records, which are the ones reads see.
+     */
+    private final MyHashTable<K, V> data = new MyHashTable<>();
+    private final Journal journal;
+    
+    /**
+     * The changes appended to the journal but not yet applied to {@code data}, in journal order.
+     */
+    private final ArrayDeque<Change<K, V>> unpublished = new ArrayDeque<>();
+    
+    /**
+     * The last unpublished change to each key, which updates read instead of {@code data} so that
+     * each builds on the ones before it.
+     */
+    private final MyHashTable<K, Change<K, V>> latest = new MyHashTable<>();
+    
+    /**
+     * The last unpublished change clearing the map, or {@code null} if there is none. Keys with no
+     * later change are absent.
+     */
+    private Change<K, V> latestClear = null;
+    
+    /**
+     * A buffer that records are encoded into, while holding the lock of the map.
+     */
+    private ByteBuffer record = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    
+    /**
+     * Opens the map stored in a directory, creating the directory if needed, and loads its
+     * mappings.
+     *
+     * @param directory  the directory storing the map
+     * @param keyCodec   the codec for the keys
+     * @param valueCodec the codec for the values
+     * @throws IOException          if the directory can't be read, or its files are not valid
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public MyJournaledHashTable(Path directory, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.directory = directory;
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        
+        Files.createDirectories(directory); // throws NullPointerException
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            MyHashTableSnapshot.readInto(snapshot, data, keyCodec, valueCodec);
+        }
+        FileChannel channel = FileChannel.open(directory.resolve(JOURNAL), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = this.replay(channel);
+            // Drop a torn last record, so that new records follow the last complete one
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.journal = new Journal(channel);
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    @Override
+    public synchronized int size() {
+        return data.size();
+    }
+    
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+    
+    @Override
+    public synchronized V get(Object key) {
+        return data.get(key);
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map, and returns once the
+     * change is durable.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException  if the specified key or value is {@code null}
+     * @throws IllegalStateException if this map is closed
+     * @throws UncheckedIOException  if the journal can't be written
+     */
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        V oldValue;
+        long sequence;
+        synchronized (this) {
+            journal.ensureOpen();
+            oldValue = this.current(key);
+            sequence = this.change(PUT, key, value);
+        }
+        this.awaitPublished(sequence);
+        return oldValue;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present, and returns once the change is
+     * durable.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key
+     * @throws NullPointerException  if the specified key is {@code null}
+     * @throws IllegalStateException if this map is closed
+     * @throws UncheckedIOException  if the journal can't be written
+     */
+    @Override
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        V oldValue;
+        long sequence;
+        synchronized (this) {
+            journal.ensureOpen();
+            oldValue = this.current(key);
+            if (oldValue == null) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            K k = (K) key; // the key is in the map, so it is a K
+            sequence = this.change(REMOVE, k, null);
+        }
+        this.awaitPublished(sequence);
+        return oldValue;
+    }
+    
+    /**
+     * Atomically merges the given value with the value mapped to the key, as
+     * {@link java.util.Map#merge} does, and returns once the change is durable. The outcome is
+     * journaled, so the remapping function isn't called again on replay.
+     *
+     * @throws NullPointerException  if the specified key, value or remapping function is
+     *                                   {@code null}
+     * @throws IllegalStateException if this map is closed
+     * @throws UncheckedIOException  if the journal can't be written
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        
+        V newValue;
+        long sequence;
+        synchronized (this) {
+            journal.ensureOpen();
+            V oldValue = this.current(key);
+            newValue = (oldValue == null) ? value : remappingFunction.apply(oldValue, value);
+            if (newValue != null) {
+                sequence = this.change(PUT, key, newValue);
+            } else if (oldValue != null) {
+                sequence = this.change(REMOVE, key, null);
+            } else {
+                return null;
+            }
+        }
+        this.awaitPublished(sequence);
+        return newValue;
+    }
+    
+    /**
+     * Removes all of the mappings from this map, and returns once the change is durable.
+     *
+     * @throws IllegalStateException if this map is closed
+     * @throws UncheckedIOException  if the journal can't be written
+     */
+    @Override
+    public void clear() {
+        long sequence;
+        synchronized (this) {
+            journal.ensureOpen();
+            sequence = this.change(CLEAR, null, null);
+        }
+        this.awaitPublished(sequence);
+    }
+    
+    /**
+     * Atomically replaces each value with the result of the function, as
+     * {@link java.util.Map#replaceAll} does, and returns once the changes are durable. It first
+     * waits for every unpublished change, and then journals every new value before the map's lock
+     * is released, so the changes share the wait for the journal rather than waiting once each.
+     *
+     * @throws NullPointerException  if the function is {@code null} or returns {@code null}
+     * @throws IllegalStateException if this map is closed
+     * @throws UncheckedIOException  if the journal can't be written
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        
+        long sequence = 0;
+        try {
+            synchronized (this) {
+                journal.ensureOpen();
+                this.publishAll();
+                // Only latest is updated while iterating, so data can't change underneath
+                for (Entry<K, V> entry : data.entrySet()) {
+                    V value = Objects.requireNonNull(function.apply(entry.getKey(), entry.getValue()));
+                    sequence = this.change(PUT, entry.getKey(), value);
+                }
+            }
+        } finally {
+            // If the function failed part of the way, the values already journaled still apply
+            this.awaitPublished(sequence);
+        }
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map, which must be used while synchronized on
+     * the map. It first waits for every unpublished change. Its entries' {@code setValue} is
+     * journaled like {@link #put(Object, Object)}, and its {@code remove} like
+     * {@link #remove(Object)}, but both wait for the journal while holding the map's lock.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        synchronized (this) {
+            this.publishAll();
+            return new JournaledIterator();
+        }
+    }
+    
+    private final class JournaledIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<Entry<K, V>> entries = data.entrySet().iterator();
+        private K lastKey = null;
+        
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> entry = entries.next();
+            lastKey = entry.getKey();
+            return new JournaledEntry(entry);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            // No other change can be unpublished while the map is locked for iteration, so this
+            // one is applied directly, without disturbing the iteration
+            synchronized (MyJournaledHashTable.this) {
+                journal.ensureOpen();
+                journal.awaitDurable(MyJournaledHashTable.this.log(REMOVE, lastKey, null));
+                entries.remove();
+            }
+            lastKey = null;
+        }
+    }
+    
+    /**
+     * An entry returned by the iterator, which reads through to the mapping in the backing table,
+     * and whose {@code setValue} journals the new value before writing it through.
+     */
+    private final class JournaledEntry implements Entry<K, V> {
+        private final Entry<K, V> entry;
+        
+        JournaledEntry(Entry<K, V> entry) {
+            this.entry = entry;
+        }
+        
+        @Override
+        public K getKey() {
+            return entry.getKey();
+        }
+        
+        @Override
+        public V getValue() {
+            return entry.getValue();
+        }
+        
+        /**
+         * Replaces the value of this entry's mapping once the change is durable.
+         *
+         * @throws NullPointerException  if the value is {@code null}
+         * @throws IllegalStateException if this map is closed
+         * @throws UncheckedIOException  if the journal can't be written
+         */
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            
+            synchronized (MyJournaledHashTable.this) {
+                journal.ensureOpen();
+                journal.awaitDurable(MyJournaledHashTable.this.log(PUT, entry.getKey(), value));
+                return entry.setValue(value);
+            }
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return entry.equals(o);
+        }
+        
+        @Override
+        public int hashCode() {
+            return entry.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // durability operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Writes a snapshot of this map and empties the journal, so that reopening the map doesn't
+     * replay the changes made so far. Updates wait while the snapshot is written.
+     * <p>
+     * The new snapshot replaces the old one atomically. If a crash happens before the journal is
+     * emptied, replaying it on top of the new snapshot leads to the same mappings, since every
+     * record holds the outcome of its change.
+     *
+     * @throws IOException           if the snapshot can't be written
+     * @throws IllegalStateException if this map is closed
+     */
+    public synchronized void checkpoint() throws IOException {
+        journal.ensureOpen();
+        journal.awaitDurable(journal.appended());
+        this.publish();
+        
+        Path temporary = directory.resolve(SNAPSHOT + ".tmp");
+        MyHashTableSnapshot.write(data, temporary, keyCodec, valueCodec);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        journal.truncate();
+    }
+    
+    /**
+     * Returns the size of the journal, which grows with every change until the next
+     * {@link #checkpoint()}.
+     *
+     * @return the size of the journal in bytes
+     * @throws IOException if the size can't be read
+     */
+    public synchronized long journalSize() throws IOException {
+        return Files.size(directory.resolve(JOURNAL));
+    }
+    
+    /**
+     * Waits for the journal to be written, stops the writer thread and closes the journal. The
+     * map can't be used afterwards.
+     *
+     * @throws IOException if the journal can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+    
+    // ------------------------------------------------------------------------
+    // journal records
+    // ------------------------------------------------------------------------
+    
+    /**
+     * A change appended to the journal, which is applied to the readable mappings once durable.
+     */
+    private static final class Change<K, V> {
+        final long sequence;
+        final byte operation;
+        final K key;
+        final V value;
+        
+        Change(long sequence, byte operation, K key, V value) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.key = key;
+            this.value = value;
+        }
+    }
+    
+    /**
+     * Returns the value of a key once every unpublished change is applied. The caller holds the
+     * map's lock.
+     */
+    private V current(Object key) {
+        Change<K, V> change = latest.get(key);
+        if (change != null) {
+            return change.value;
+        }
+        return (latestClear != null) ? null : data.get(key);
+    }
+    
+    /**
+     * Appends a change to the journal and queues it to be published. The caller holds the map's
+     * lock. Nothing is queued if the record can't be encoded.
+     *
+     * @return the sequence number of the record
+     */
+    private long change(byte operation, K key, V value) {
+        Change<K, V> change = new Change<>(this.log(operation, key, value), operation, key, value);
+        unpublished.add(change);
+        if (operation == CLEAR) {
+            latest.clear();
+            latestClear = change;
+        } else {
+            latest.put(key, change);
+        }
+        return change.sequence;
+    }
+    
+    /**
+     * Waits until the record with the given sequence number is durable, and then publishes every
+     * durable change. If the journal fails, the durable changes are still published, and the
+     * others never will be.
+     *
+     * @throws UncheckedIOException if the journal can't be written
+     */
+    private void awaitPublished(long sequence) {
+        try {
+            journal.awaitDurable(sequence);
+        } finally {
+            synchronized (this) {
+                this.publish();
+            }
+        }
+    }
+    
+    /**
+     * Waits until every appended record is durable or the journal has failed, and publishes the
+     * durable changes. The caller holds the map's lock.
+     */
+    private void publishAll() {
+        try {
+            journal.awaitDurable(journal.appended());
+        } catch (UncheckedIOException e) {
+            // The changes that aren't durable are lost, and the durable ones are published below
+        }
+        this.publish();
+    }
+    
+    /**
+     * Applies the durable changes to the readable mappings, in journal order. The caller holds the
+     * map's lock.
+     */
+    private void publish() {
+        long durable = journal.durable();
+        while (!unpublished.isEmpty() && unpublished.peekFirst().sequence <= durable) {
+            Change<K, V> change = unpublished.pollFirst();
+            switch (change.operation) {
+                case PUT:
+                    data.put(change.key, change.value);
+                    latest.remove(change.key, change);
+                    break;
+                case REMOVE:
+                    data.remove(change.key);
+                    latest.remove(change.key, change);
+                    break;
+                default:
+                    data.clear();
+                    if (latestClear == change) {
+                        latestClear = null;
+                    }
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Encodes a record as {@code [length][CRC-32][operation][key][value]}, and appends it to the
+     * journal.
+     *
+     * @return the sequence number of the record
+     */
+    private long log(byte operation, K key, V value) {
+        while (true) {
+            record.clear().position(RECORD_HEADER_SIZE);
+            try {
+                record.put(operation);
+                if (key != null) {
+                    keyCodec.encode(key, record);
+                }
+                if (value != null) {
+                    valueCodec.encode(value, record);
+                }
+                break;
+            } catch (BufferOverflowException e) {
+                record = ByteBuffer.allocate(record.capacity() * 2);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate().flip().position(RECORD_HEADER_SIZE));
+        record.putInt(0, record.position() - RECORD_HEADER_SIZE).putInt(4, (int) crc.getValue()).flip();
+        return journal.append(record);
+    }
+    
+    /**
+     * Applies the complete records of the journal to the mappings. A damaged record is only
+     * expected at the end of the journal, where the writer was interrupted: one which claims to run
+     * past the end, or whose contents fail the CRC and end the file, or a header of zeros followed
+     * only by zeros, as a file extended but never written holds.
+     *
+     * @return the position after the last complete record
+     * @throws IOException if a damaged record is followed by more of the journal
+     */
+    private long replay(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            readFully(channel, header.clear(), position);
+            int length = header.getInt(0);
+            long end = position + RECORD_HEADER_SIZE + length;
+            if (end > size) {
+                break;
+            }
+            if (length <= 0) {
+                if (isZeroFrom(channel, position, size)) {
+                    break;
+                }
+                throw new IOException("Corrupt MyJournaledHashTable journal record at " + position);
+            }
+            ByteBuffer contents = ByteBuffer.allocate(length);
+            readFully(channel, contents, position + RECORD_HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(contents.flip());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                if (end == size) {
+                    break;
+                }
+                throw new IOException("Corrupt MyJournaledHashTable journal record at " + position);
+            }
+            this.apply(contents.flip());
+            position = end;
+        }
+        return position;
+    }
+    
+    /**
+     * Returns whether every byte of the journal from a position to its end is zero.
+     */
+    private static boolean isZeroFrom(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        while (position < size) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            readFully(channel, buffer, position);
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += buffer.limit();
+        }
+        return true;
+    }
+    
+    private void apply(ByteBuffer contents) throws IOException {
+        try {
+            byte operation = contents.get();
+            switch (operation) {
+                case PUT:
+                    data.put(keyCodec.decode(contents), valueCodec.decode(contents));
+                    break;
+                case REMOVE:
+                    data.remove(keyCodec.decode(contents));
+                    break;
+                case CLEAR:
+                    data.clear();
+                    break;
+                default:
+                    throw new IOException("Unknown MyJournaledHashTable operation: " + operation);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt MyJournaledHashTable journal record", e);
+        }
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of MyJournaledHashTable journal");
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // journal writer
+    // ------------------------------------------------------------------------
+    
+    /**
+     * The journal file, with the buffer of appended records and the thread that writes them. Its
+     * state is guarded by its own lock, which is never held while calling into the map.
+     */
+    private static final class Journal {
+        
+        private final FileChannel channel;
+        private final Thread writer;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition recordsPending = lock.newCondition();
+        private final Condition batchWritten = lock.newCondition();
+        
+        /**
+         * The records appended but not yet taken by the writer.
+         */
+        private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private long appended = 0;
+        private long durable = 0;
+        private IOException failure = null;
+        private boolean closed = false;
+        
+        Journal(FileChannel channel) {
+            this.channel = channel;
+            this.writer = new Thread(this::run, "MyJournaledHashTable-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        
+        void ensureOpen() {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("MyJournaledHashTable is closed");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        long appended() {
+            lock.lock();
+            try {
+                return appended;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        long durable() {
+            lock.lock();
+            try {
+                return durable;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Copies a record into the pending buffer, and wakes the writer.
+         *
+         * @return the sequence number of the record
+         */
+        long append(ByteBuffer record) {
+            lock.lock();
+            try {
+                if (pending.remaining() < record.remaining()) {
+                    int capacity = Math.max(pending.capacity() * 2, pending.position() + record.remaining());
+                    pending = ByteBuffer.allocate(capacity).put(pending.flip());
+                }
+                pending.put(record);
+                recordsPending.signal();
+                return ++appended;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Waits until the record with the given sequence number has been forced to the device.
+         */
+        void awaitDurable(long sequence) {
+            lock.lock();
+            try {
+                while (durable < sequence && failure == null) {
+                    batchWritten.awaitUninterruptibly();
+                }
+                if (durable < sequence) {
+                    throw new UncheckedIOException(failure);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Empties the journal. Every record must be durable, and no more may be appended until this
+         * returns.
+         */
+        void truncate() throws IOException {
+            channel.truncate(0);
+            channel.force(true);
+        }
+        
+        void close() throws IOException {
+            lock.lock();
+            try {
+                if (closed && !writer.isAlive()) {
+                    return;
+                }
+                closed = true;
+                recordsPending.signal();
+            } finally {
+                lock.unlock();
+            }
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+        
+        /**
+         * Repeatedly takes every pending record, writes them and forces them to the device, until
+         * the journal is closed and nothing is pending.
+         */
+        private void run() {
+            while (true) {
+                long batchEnd;
+                lock.lock();
+                try {
+                    while (pending.position() == 0 && !closed) {
+                        recordsPending.awaitUninterruptibly();
+                    }
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    ByteBuffer batch = pending;
+                    pending = writing.clear();
+                    writing = batch;
+                    batchEnd = appended;
+                } finally {
+                    lock.unlock();
+                }
+                IOException exception = null;
+                try {
+                    writing.flip();
+                    while (writing.hasRemaining()) {
+                        channel.write(writing);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    exception = e;
+                }
+                lock.lock();
+                try {
+                    if (exception == null) {
+                        durable = batchEnd;
+                    } else {
+                        failure = exception;
+                        closed = true;
+                    }
+                    batchWritten.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                if (exception != null) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package library;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A hashtable which maps keys to values, and keeps its mappings in a doubly linked list in either
+ * insertion order or access order. It supports all of the operations of {@code Map}, including
+ * optional operations. It rejects {@code null} keys and values. It is not thread-safe.
+ * <p>
+ * Each node carries {@code before} and {@code after} links beside its bucket chain link, so the
+ * order costs two references per mapping rather than a second collection. Iteration follows the
+ * list, so it takes time proportional to the size of the map rather than its capacity, and so does
+ * resizing.
+ * <p>
+ * In insertion order, re-inserting a key doesn't change its position. In access order, every
+ * {@code get}, and every {@code put} or other operation that finds the key, moves the mapping to
+ * the end of the list, so the first mapping is the least recently used. A subclass can override
+ * {@link #removeEldestEntry(Entry)} to evict that mapping as new ones are added, which turns an
+ * access-ordered table into an LRU cache.
+ * <p>
+ * Iterators are fail-fast: if the map is structurally modified after an iterator is created, or in
+ * access order if a mapping is accessed, other than through the iterator's own {@code remove}, the
+ * iterator throws a {@code ConcurrentModificationException} on a best-effort basis.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class MyLinkedHashTable<K, V> extends MySkeletalMap<K, V> {
+    
+    private static final int DEFAULT_SIZE = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * A mapping, linked both into its bucket's chain and into the list of all mappings.
+     *
+     * @param <K> the type of key in the map this node belongs to
+     * @param <V> the type of mapped values for the map this node belongs to
+     */
+    private static final class LinkedNode<K, V> implements Entry<K, V> {
+        final int hash;
+        final K key;
+        V value;
+        LinkedNode<K, V> next;
+        LinkedNode<K, V> before;
+        LinkedNode<K, V> after;
+        
+        LinkedNode(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+        
+        boolean hasKey(int hash, Object key) {
+            return this.hash == hash && (this.key == key || this.key.equals(key));
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        /**
+         * Replaces the value corresponding to this entry with the specified value, writing through
+         * to the map. This doesn't count as an access.
+         *
+         * @param value new value to be stored in this entry
+         * @return old value corresponding to the entry
+         * @throws NullPointerException if the specified value is null
+         */
+        @Override
+        public V setValue(V value) {
+            V oldValue = this.value;
+            this.value = Objects.requireNonNull(value);
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+    
+    private LinkedNode<K, V>[] table;
+    private int size = 0;
+    private final float loadFactor;
+    private int threshold;
+    
+    /**
+     * The eldest (first) and youngest (last) mappings.
+     */
+    private LinkedNode<K, V> head;
+    private LinkedNode<K, V> tail;
+    
+    /**
+     * {@code true} for access order, {@code false} for insertion order.
+     */
+    private final boolean accessOrder;
+    
+    /**
+     * The number of structural modifications and, in access order, accesses. Iterators compare it
+     * to detect modification.
+     */
+    private int modCount = 0;
+    
+    /**
+     * Creates a new, empty, insertion-ordered hashtable with an initial capacity of
+     * {@value DEFAULT_SIZE} and a load factor of {@value DEFAULT_LOAD_FACTOR}.
+     */
+    public MyLinkedHashTable() {
+        this(DEFAULT_SIZE, DEFAULT_LOAD_FACTOR, false);
+    }
+    
+    /**
+     * Creates a new, empty, insertion-ordered hashtable with at least the given initial capacity
+     * and a load factor of {@value DEFAULT_LOAD_FACTOR}.
+     *
+     * @param initialCapacity the initial capacity
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public MyLinkedHashTable(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR, false);
+    }
+    
+    /**
+     * Creates a new, empty hashtable with at least the given initial capacity, the given load
+     * factor, and the given ordering mode.
+     *
+     * @param initialCapacity the initial capacity
+     * @param loadFactor      the ratio of mappings to buckets allowed before the table grows
+     * @param accessOrder     {@code true} for access order, {@code false} for insertion order
+     * @throws IllegalArgumentException if the initial capacity is negative or the load factor is
+     *                                      not positive
+     */
+    public MyLinkedHashTable(int initialCapacity, float loadFactor, boolean accessOrder) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("MyLinkedHashTable capacity cannot be negative: " + initialCapacity);
+        }
+        if (!(loadFactor > 0)) {
+            throw new IllegalArgumentException("MyLinkedHashTable load factor must be positive: " + loadFactor);
+        }
+        
+        this.loadFactor = loadFactor;
+        this.accessOrder = accessOrder;
+        this.allocate(tableSizeFor(initialCapacity));
+    }
+    
+    /**
+     * Constructs a new, insertion-ordered hashtable with the same mappings as the given Map, in the
+     * order of its entry set's iterator.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    public MyLinkedHashTable(Map<? extends K, ? extends V> m) {
+        this((int) Math.min(m.size() / (double) DEFAULT_LOAD_FACTOR + 1, MAXIMUM_CAPACITY)); // throws NullPointerException
+        this.putAll(m);
+    }
+    
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of buckets in the table. This is exposed for testing.
+     *
+     * @return the number of buckets in the table
+     */
+    int capacity() {
+        return table.length;
+    }
+    
+    private static int tableSizeFor(int capacity) {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1, 2);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        table = (LinkedNode<K, V>[]) new LinkedNode<?, ?>[capacity];
+        threshold = (capacity >= MAXIMUM_CAPACITY) ? Integer.MAX_VALUE
+                : (int) Math.min(capacity * (double) loadFactor, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Doubles the table, re-bucketing the nodes by walking the list rather than the old buckets.
+     */
+    private void grow() {
+        this.allocate(table.length * 2);
+        for (LinkedNode<K, V> node = head; node != null; node = node.after) {
+            int index = node.hash & (table.length - 1);
+            node.next = table[index];
+            table[index] = node;
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // single element operations
+    // ------------------------------------------------------------------------
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        Objects.requireNonNull(key);
+        
+        return this.getNode(key) != null;
+    }
+    
+    /**
+     * Returns {@code true} if this map maps one or more keys to the specified value. This walks
+     * the list, so it takes time proportional to the size of the map.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the specified value
+     * @throws NullPointerException if the specified value is {@code null}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        
+        for (LinkedNode<K, V> node = head; node != null; node = node.after) {
+            if (value.equals(node.value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key. In access order, this moves the mapping to the end of the list.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        
+        LinkedNode<K, V> node = this.getNode(key);
+        if (node == null) {
+            return null;
+        }
+        this.afterAccess(node);
+        return node.value;
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map. A new mapping goes to the
+     * end of the list. An existing mapping keeps its position in insertion order, and moves to the
+     * end in access order. After adding a new mapping, the eldest mapping is removed if
+     * {@link #removeEldestEntry(Entry)} says so.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        int hash = MyHashTable.spread(key.hashCode());
+        int index = hash & (table.length - 1);
+        for (LinkedNode<K, V> node = table[index]; node != null; node = node.next) {
+            if (node.hasKey(hash, key)) {
+                V oldValue = node.value;
+                node.value = value;
+                this.afterAccess(node);
+                return oldValue;
+            }
+        }
+        
+        LinkedNode<K, V> node = new LinkedNode<>(hash, key, value);
+        node.next = table[index];
+        table[index] = node;
+        this.linkLast(node);
+        size++;
+        modCount++;
+        if (size > threshold && table.length < MAXIMUM_CAPACITY) {
+            this.grow();
+        }
+        
+        LinkedNode<K, V> eldest = head;
+        if (eldest != node && this.removeEldestEntry(eldest)) {
+            this.removeNode(eldest);
+        }
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        LinkedNode<K, V> node = this.getNode(key);
+        if (node == null) {
+            return null;
+        }
+        this.removeNode(node);
+        return node.value;
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged.
+     */
+    @Override
+    public void clear() {
+        if (size > 0) {
+            for (LinkedNode<K, V> node = head; node != null; node = node.after) {
+                table[node.hash & (table.length - 1)] = null;
+            }
+            head = null;
+            tail = null;
+            size = 0;
+            modCount++;
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // ordering
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns whether this map removes its eldest mapping after adding a new one. This is called by
+     * {@code put} and {@code putAll} after a new mapping has been added, with the first mapping of
+     * the list: in insertion order the oldest, in access order the least recently used.
+     * <p>
+     * The default implementation always returns {@code false}. For example, an LRU cache of at
+     * most 100 mappings is:
+     *
+     * <pre>
+     * new MyLinkedHashTable&lt;K, V&gt;(16, 0.75f, true) {
+     *     protected boolean removeEldestEntry(Entry&lt;K, V&gt; eldest) {
+     *         return size() &gt; 100;
+     *     }
+     * };
+     * </pre>
+     *
+     * The method may instead modify the map itself, in which case it must return {@code false}.
+     *
+     * @param eldest the first mapping in the list
+     * @return {@code true} if the eldest mapping should be removed
+     */
+    protected boolean removeEldestEntry(Entry<K, V> eldest) {
+        return false;
+    }
+    
+    /**
+     * Returns the first mapping in the list, which is the eldest in insertion order and the least
+     * recently used in access order, or {@code null} if the map is empty. This doesn't count as an
+     * access.
+     *
+     * @return the first mapping, or {@code null}
+     */
+    public Entry<K, V> eldestEntry() {
+        return head;
+    }
+    
+    /**
+     * Returns whether this map is in access order rather than insertion order.
+     *
+     * @return {@code true} for access order, {@code false} for insertion order
+     */
+    public boolean isAccessOrder() {
+        return accessOrder;
+    }
+    
+    private LinkedNode<K, V> getNode(Object key) {
+        int hash = MyHashTable.spread(key.hashCode());
+        for (LinkedNode<K, V> node = table[hash & (table.length - 1)]; node != null; node = node.next) {
+            if (node.hasKey(hash, key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Unlinks a node from its bucket and from the list.
+     */
+    private void removeNode(LinkedNode<K, V> node) {
+        int index = node.hash & (table.length - 1);
+        if (table[index] == node) {
+            table[index] = node.next;
+        } else {
+            LinkedNode<K, V> prevNode = table[index];
+            while (prevNode.next != node) {
+                prevNode = prevNode.next;
+            }
+            prevNode.next = node.next;
+        }
+        this.unlink(node);
+        size--;
+        modCount++;
+    }
+    
+    /**
+     * In access order, moves an accessed node to the end of the list.
+     */
+    private void afterAccess(LinkedNode<K, V> node) {
+        if (accessOrder && tail != node) {
+            this.unlink(node);
+            this.linkLast(node);
+            modCount++;
+        }
+    }
+    
+    private void linkLast(LinkedNode<K, V> node) {
+        node.before = tail;
+        node.after = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.after = node;
+        }
+        tail = node;
+    }
+    
+    private void unlink(LinkedNode<K, V> node) {
+        if (node.before == null) {
+            head = node.after;
+        } else {
+            node.before.after = node.after;
+        }
+        if (node.after == null) {
+            tail = node.before;
+        } else {
+            node.after.before = node.before;
+        }
+        node.before = null;
+        node.after = null;
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * Returns an iterator over the mappings in list order.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new LinkedIterator();
+    }
+    
+    /**
+     * A fail-fast iterator that follows the list from the eldest mapping.
+     */
+    private final class LinkedIterator implements Iterator<Entry<K, V>> {
+        private LinkedNode<K, V> next = head;
+        private LinkedNode<K, V> lastReturned = null;
+        private int expectedModCount = modCount;
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.after;
+            return lastReturned;
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            MyLinkedHashTable.this.removeNode(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
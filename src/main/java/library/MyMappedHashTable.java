@@ -0,0 +1,544 @@
+package library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A hashtable which maps byte-string keys to byte-string values, and whose buckets and entries live
+ * in a memory-mapped file. It is not thread-safe, and only one instance may open a file at a time.
+ * <p>
+ * Opening an existing file only maps it, so it is instant whatever the file's size, and the
+ * operating system pages the mappings in as lookups touch them. Lookups hash the key, read the
+ * bucket and follow the chain straight from the mapping, and {@link #get(ByteBuffer)} returns a
+ * view of the value in the mapping, so nothing is deserialized.
+ * <p>
+ * The file is a 64-byte header, followed by an append-only region of entries and bucket arrays:
+ *
+ * <pre>
+ * header:  [magic "MYHT"][version][size: long][end of data: long][buckets offset: long][capacity]
+ * buckets: capacity longs, each the offset of the first entry of its chain, or 0
+ * entry:   [offset of the next entry: long][hash][key length][value length][key][value]
+ * </pre>
+ *
+ * All numbers are big-endian. The file is mapped in segments of up to 1 GiB, and no entry or bucket
+ * array crosses a segment boundary. Replacing a value of the same length overwrites it in place.
+ * Otherwise, and on removal, the old entry is unlinked and its space isn't reused. When the table
+ * grows, a bucket array of twice the size is appended and the chains are relinked into it.
+ * <p>
+ * Changes reach the file when the operating system writes the pages back, and are durable once
+ * {@link #force()} returns. Pages may be written back in any order, so a crash before
+ * {@code force} can leave the file inconsistent.
+ */
+public final class MyMappedHashTable implements AutoCloseable {
+    
+    private static final int MAGIC = 0x4D59_4854; // "MYHT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SIZE_OFFSET = 8;
+    private static final int END_OFFSET = 16;
+    private static final int BUCKETS_OFFSET = 24;
+    private static final int CAPACITY_OFFSET = 32;
+    
+    /**
+     * The size of an entry's header: its next offset, hash, key length and value length.
+     */
+    private static final int ENTRY_HEADER_SIZE = 20;
+    
+    private static final int DEFAULT_SEGMENT_SHIFT = 30;
+    private static final int MINIMUM_FILE_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    
+    private final FileChannel channel;
+    private final int segmentShift;
+    private final long segmentSize;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long fileSize;
+    
+    // Cached copies of the header fields
+    private long size;
+    private long end;
+    private long buckets;
+    private int capacity;
+    
+    /**
+     * Opens the table stored in a file, creating an empty one if the file doesn't exist or is
+     * empty.
+     *
+     * @param path the file storing the table
+     * @throws IOException          if the file can't be opened or mapped, or isn't a table
+     * @throws NullPointerException if the path is {@code null}
+     */
+    public MyMappedHashTable(Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_SHIFT);
+    }
+    
+    /**
+     * Opens a table with segments of {@code 1 << segmentShift} bytes. This is exposed for testing,
+     * so that segment boundaries are crossed with small files.
+     */
+    MyMappedHashTable(Path path, int segmentShift) throws IOException {
+        this.segmentShift = segmentShift;
+        this.segmentSize = 1L << segmentShift;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long existingSize = channel.size();
+            if (existingSize == 0) {
+                this.create();
+            } else {
+                this.open(existingSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    private void create() throws IOException {
+        fileSize = 0;
+        this.ensureFileSize(MINIMUM_FILE_SIZE);
+        ByteBuffer header = segments[0];
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        end = HEADER_SIZE;
+        size = 0;
+        capacity = INITIAL_CAPACITY;
+        buckets = this.allocate((long) INITIAL_CAPACITY * Long.BYTES);
+        this.writeHeader();
+    }
+    
+    private void open(long existingSize) throws IOException {
+        if (existingSize < HEADER_SIZE) {
+            throw new IOException("Not a MyMappedHashTable file: too short");
+        }
+        // Check the header before mapping, since mapping past the end would extend the file
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            channel.read(header, header.position());
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a MyMappedHashTable file: bad magic number");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported MyMappedHashTable version: " + header.getInt(4));
+        }
+        size = header.getLong(SIZE_OFFSET);
+        end = header.getLong(END_OFFSET);
+        buckets = header.getLong(BUCKETS_OFFSET);
+        capacity = header.getInt(CAPACITY_OFFSET);
+        if (end > existingSize || buckets + (long) capacity * Long.BYTES > end || Integer.bitCount(capacity) != 1) {
+            throw new IOException("Corrupt MyMappedHashTable header");
+        }
+        fileSize = 0;
+        this.map(existingSize);
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of mappings in this table.
+     *
+     * @return the number of mappings in this table
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if this table contains no mappings.
+     *
+     * @return {@code true} if this table contains no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns {@code true} if this table contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return {@code true} if this table contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public boolean containsKey(byte[] key) {
+        return this.containsKey(ByteBuffer.wrap(key)); // throws NullPointerException
+    }
+    
+    /**
+     * Returns {@code true} if this table contains a mapping for the remaining bytes of the specified
+     * key. The key's position is not changed.
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return {@code true} if this table contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public boolean containsKey(ByteBuffer key) {
+        this.ensureOpen();
+        return this.findEntry(key, hash(key)) != 0;
+    }
+    
+    /**
+     * Returns a copy of the value to which the specified key is mapped, or {@code null} if this
+     * table contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return a copy of the value, or {@code null}
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public byte[] get(byte[] key) {
+        ByteBuffer value = this.get(ByteBuffer.wrap(key)); // throws NullPointerException
+        if (value == null) {
+            return null;
+        }
+        byte[] copy = new byte[value.remaining()];
+        value.get(copy);
+        return copy;
+    }
+    
+    /**
+     * Returns a read-only view into the mapping of the value to which the remaining bytes of the
+     * specified key are mapped, or {@code null} if this table contains no mapping for the key. The
+     * view is only valid until this table is next modified or closed. The key's position is not
+     * changed.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return a view of the value, or {@code null}
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public ByteBuffer get(ByteBuffer key) {
+        this.ensureOpen();
+        long entry = this.findEntry(key, hash(key));
+        if (entry == 0) {
+            return null;
+        }
+        ByteBuffer segment = this.segment(entry);
+        int offset = this.offsetIn(entry);
+        int start = offset + ENTRY_HEADER_SIZE + segment.getInt(offset + 12);
+        return segment.asReadOnlyBuffer().limit(start + segment.getInt(offset + 16)).position(start).slice();
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this table.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return a copy of the previous value associated with the key, or {@code null} if there was no
+     *             mapping for the key
+     * @throws NullPointerException     if the specified key or value is {@code null}
+     * @throws IllegalArgumentException if the entry doesn't fit in a segment
+     * @throws IOException              if the file can't be extended
+     */
+    public byte[] put(byte[] key, byte[] value) throws IOException {
+        byte[] oldValue = this.get(key); // throws NullPointerException
+        this.put(ByteBuffer.wrap(key), ByteBuffer.wrap(value)); // throws NullPointerException
+        return oldValue;
+    }
+    
+    /**
+     * Associates the remaining bytes of the specified value with the remaining bytes of the
+     * specified key in this table. The positions of the arguments are not changed.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return {@code true} if a previous value was replaced
+     * @throws NullPointerException     if the specified key or value is {@code null}
+     * @throws IllegalArgumentException if the entry doesn't fit in a segment
+     * @throws IOException              if the file can't be extended
+     */
+    public boolean put(ByteBuffer key, ByteBuffer value) throws IOException {
+        Objects.requireNonNull(value);
+        this.ensureOpen();
+        
+        int hash = hash(key); // throws NullPointerException
+        long entrySize = (long) ENTRY_HEADER_SIZE + key.remaining() + value.remaining();
+        if (entrySize > segmentSize) {
+            throw new IllegalArgumentException("MyMappedHashTable entry of " + entrySize
+                    + " bytes doesn't fit in a segment of " + segmentSize);
+        }
+        
+        long existing = this.findEntry(key, hash);
+        if (existing != 0) {
+            ByteBuffer segment = this.segment(existing);
+            int offset = this.offsetIn(existing);
+            if (segment.getInt(offset + 16) == value.remaining()) {
+                copy(value, segment, offset + ENTRY_HEADER_SIZE + segment.getInt(offset + 12));
+                return true;
+            }
+            this.unlink(existing, hash);
+            size--;
+        }
+        
+        long entry = this.allocate(entrySize);
+        ByteBuffer segment = this.segment(entry);
+        int offset = this.offsetIn(entry);
+        long bucket = buckets + (long) (hash & (capacity - 1)) * Long.BYTES;
+        segment.putLong(offset, this.getLong(bucket));
+        segment.putInt(offset + 8, hash);
+        segment.putInt(offset + 12, key.remaining());
+        segment.putInt(offset + 16, value.remaining());
+        copy(key, segment, offset + ENTRY_HEADER_SIZE);
+        copy(value, segment, offset + ENTRY_HEADER_SIZE + key.remaining());
+        this.putLong(bucket, entry);
+        size++;
+        if (size > capacity * LOAD_FACTOR && (long) capacity * 2 * Long.BYTES <= segmentSize) {
+            this.grow();
+        }
+        this.writeHeader();
+        return existing != 0;
+    }
+    
+    /**
+     * Removes the mapping for a key from this table if it is present.
+     *
+     * @param key key whose mapping is to be removed from the table
+     * @return a copy of the previous value associated with the key, or {@code null} if there was no
+     *             mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public byte[] remove(byte[] key) {
+        byte[] oldValue = this.get(key); // throws NullPointerException
+        if (oldValue != null) {
+            this.remove(ByteBuffer.wrap(key));
+        }
+        return oldValue;
+    }
+    
+    /**
+     * Removes the mapping for the remaining bytes of a key from this table if it is present. The
+     * key's position is not changed.
+     *
+     * @param key key whose mapping is to be removed from the table
+     * @return {@code true} if a mapping was removed
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public boolean remove(ByteBuffer key) {
+        this.ensureOpen();
+        int hash = hash(key);
+        long entry = this.findEntry(key, hash);
+        if (entry == 0) {
+            return false;
+        }
+        this.unlink(entry, hash);
+        size--;
+        this.writeHeader();
+        return true;
+    }
+    
+    /**
+     * Performs the given action for each mapping in this table, in no particular order, with
+     * read-only views of the key and value in the mapping. The action must not modify this table.
+     *
+     * @param action the action to be performed for each mapping
+     * @throws NullPointerException if the specified action is {@code null}
+     */
+    public void forEach(BiConsumer<? super ByteBuffer, ? super ByteBuffer> action) {
+        Objects.requireNonNull(action);
+        this.ensureOpen();
+        
+        for (int i = 0; i < capacity; i++) {
+            for (long entry = this.getLong(buckets + (long) i * Long.BYTES); entry != 0;) {
+                ByteBuffer segment = this.segment(entry).asReadOnlyBuffer();
+                int offset = this.offsetIn(entry);
+                int keyStart = offset + ENTRY_HEADER_SIZE;
+                int valueStart = keyStart + segment.getInt(offset + 12);
+                int valueEnd = valueStart + segment.getInt(offset + 16);
+                action.accept(segment.limit(valueStart).position(keyStart).slice(),
+                        segment.limit(valueEnd).position(valueStart).slice());
+                entry = segment.getLong(offset);
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // file operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the size of the file, which includes the space of replaced and removed entries.
+     *
+     * @return the size of the file in bytes
+     */
+    public long fileSize() {
+        return fileSize;
+    }
+    
+    /**
+     * Writes all changes to the storage device, so that they survive a crash.
+     *
+     * @throws IOException if the changes can't be written
+     */
+    public void force() throws IOException {
+        this.ensureOpen();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.force(true);
+    }
+    
+    /**
+     * Closes the file. Changes not yet written by {@link #force()} are still written back by the
+     * operating system, unless it crashes.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        segments = null;
+        channel.close();
+    }
+    
+    private void ensureOpen() {
+        if (segments == null) {
+            throw new IllegalStateException("MyMappedHashTable is closed");
+        }
+    }
+    
+    private void writeHeader() {
+        ByteBuffer header = segments[0];
+        header.putLong(SIZE_OFFSET, size);
+        header.putLong(END_OFFSET, end);
+        header.putLong(BUCKETS_OFFSET, buckets);
+        header.putInt(CAPACITY_OFFSET, capacity);
+    }
+    
+    // ------------------------------------------------------------------------
+    // chains
+    // ------------------------------------------------------------------------
+    
+    private static int hash(ByteBuffer key) {
+        return MyHashTable.spread(key.hashCode()); // throws NullPointerException
+    }
+    
+    /**
+     * Returns the offset of the entry whose key equals the remaining bytes of the given key, or 0.
+     */
+    private long findEntry(ByteBuffer key, int hash) {
+        long entry = this.getLong(buckets + (long) (hash & (capacity - 1)) * Long.BYTES);
+        while (entry != 0) {
+            ByteBuffer segment = this.segment(entry);
+            int offset = this.offsetIn(entry);
+            if (segment.getInt(offset + 8) == hash && segment.getInt(offset + 12) == key.remaining()) {
+                int keyStart = offset + ENTRY_HEADER_SIZE;
+                if (segment.duplicate().limit(keyStart + key.remaining()).position(keyStart).equals(key)) {
+                    return entry;
+                }
+            }
+            entry = segment.getLong(offset);
+        }
+        return 0;
+    }
+    
+    private void unlink(long entry, int hash) {
+        long link = buckets + (long) (hash & (capacity - 1)) * Long.BYTES;
+        for (long current; (current = this.getLong(link)) != entry;) {
+            link = current;
+        }
+        this.putLong(link, this.getLong(entry));
+    }
+    
+    /**
+     * Appends a bucket array of twice the capacity, and relinks every entry into it.
+     */
+    private void grow() throws IOException {
+        long oldBuckets = buckets;
+        int oldCapacity = capacity;
+        long newBuckets = this.allocate((long) oldCapacity * 2 * Long.BYTES);
+        int newCapacity = oldCapacity * 2;
+        for (int i = 0; i < oldCapacity; i++) {
+            long entry = this.getLong(oldBuckets + (long) i * Long.BYTES);
+            while (entry != 0) {
+                long next = this.getLong(entry);
+                int hash = this.segment(entry).getInt(this.offsetIn(entry) + 8);
+                long bucket = newBuckets + (long) (hash & (newCapacity - 1)) * Long.BYTES;
+                this.putLong(entry, this.getLong(bucket));
+                this.putLong(bucket, entry);
+                entry = next;
+            }
+        }
+        buckets = newBuckets;
+        capacity = newCapacity;
+    }
+    
+    // ------------------------------------------------------------------------
+    // mapping
+    // ------------------------------------------------------------------------
+    
+    private ByteBuffer segment(long position) {
+        return segments[(int) (position >>> segmentShift)];
+    }
+    
+    private int offsetIn(long position) {
+        return (int) (position & (segmentSize - 1));
+    }
+    
+    private long getLong(long position) {
+        return this.segment(position).getLong(this.offsetIn(position));
+    }
+    
+    private void putLong(long position, long value) {
+        this.segment(position).putLong(this.offsetIn(position), value);
+    }
+    
+    private static void copy(ByteBuffer source, ByteBuffer segment, int offset) {
+        ByteBuffer target = segment.duplicate();
+        target.position(offset);
+        target.put(source.duplicate());
+    }
+    
+    /**
+     * Reserves space at the end of the data, skipping to the next segment if it would cross a
+     * boundary, and extends the file if needed. The space is zeroed.
+     *
+     * @return the position of the space
+     */
+    private long allocate(long length) throws IOException {
+        long position = end;
+        if ((position >>> segmentShift) != ((position + length - 1) >>> segmentShift)) {
+            position = ((position >>> segmentShift) + 1) << segmentShift;
+        }
+        this.ensureFileSize(position + length);
+        end = position + length;
+        return position;
+    }
+    
+    /**
+     * Grows the file, at least doubling it, and maps the segments it now covers.
+     */
+    private void ensureFileSize(long required) throws IOException {
+        if (required <= fileSize) {
+            return;
+        }
+        long newSize = Math.max(required, Math.max(fileSize * 2, MINIMUM_FILE_SIZE));
+        // Round up to whole segments once past the first, so segments are remapped at most once
+        if (newSize > segmentSize) {
+            newSize = ((newSize + segmentSize - 1) >>> segmentShift) << segmentShift;
+        }
+        this.map(newSize);
+    }
+    
+    /**
+     * Maps the segments between the current and the new size of the file, remapping the last
+     * segment if it was partial.
+     */
+    private void map(long newSize) throws IOException {
+        int first = (fileSize == 0) ? 0 : (int) ((fileSize - 1) >>> segmentShift);
+        int last = (int) ((newSize - 1) >>> segmentShift);
+        segments = Arrays.copyOf(segments, last + 1);
+        for (int i = first; i <= last; i++) {
+            long start = (long) i << segmentShift;
+            segments[i] = channel.map(MapMode.READ_WRITE, start, Math.min(segmentSize, newSize - start));
+        }
+        fileSize = newSize;
+    }
+}
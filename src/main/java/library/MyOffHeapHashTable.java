@@ -0,0 +1,581 @@
+package library;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A hashtable which maps byte-string keys to byte-string values, and keeps both in direct memory
+ * outside the Java heap. It is not thread-safe.
+ * <p>
+ * Each mapping is serialized into a record, {@code [hash][key length][value length][key][value]},
+ * allocated by bumping a pointer through large direct {@code ByteBuffer} slabs. The heap only holds
+ * the open-addressed index: for each slot, the record's address and the key's hash, 12 bytes in
+ * all, so the garbage collector never sees the mappings themselves. Probing compares hashes on the
+ * heap and only reads a record when its hash matches.
+ * <p>
+ * Replacing a value of the same length overwrites it in place. Otherwise the new record is appended
+ * and the old one becomes garbage in its slab. When a slab is more than half garbage, its live
+ * records are copied to the current slab and it is recycled, which is also what
+ * {@link #compact()} does to every slab with any garbage.
+ * <p>
+ * The {@code byte[]} methods copy, and mirror {@code MyHashTable}'s. The {@code ByteBuffer}
+ * methods read the remaining bytes of their arguments without copying them to the heap, and
+ * {@link #get(ByteBuffer)} returns a read-only view of the value in the slab, which is only valid
+ * until this table is next modified.
+ * <p>
+ * Direct memory is only returned to the operating system when the slabs are garbage collected, so
+ * {@link #close()} drops them and the table can't be used afterwards.
+ */
+public final class MyOffHeapHashTable implements AutoCloseable {
+    
+    private static final int DEFAULT_SLAB_SIZE = 64 << 20;
+    private static final int MINIMUM_SLAB_SIZE = 4 << 10;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /**
+     * The size of a record's header: its hash, key length and value length.
+     */
+    private static final int HEADER_SIZE = 12;
+    
+    /**
+     * For each slot, the address of its record plus one, or 0 if the slot is free. An address is
+     * the slab's index in the high 32 bits and the record's offset in the slab in the low 32 bits.
+     */
+    private long[] addresses;
+    private int[] hashes;
+    private int mask;
+    private int maxFill;
+    private int size = 0;
+    
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    
+    /**
+     * For each slab, the number of bytes allocated and the number of them that are garbage.
+     */
+    private int[] slabUsed = new int[0];
+    private int[] slabGarbage = new int[0];
+    private final ArrayDeque<Integer> freeSlabs = new ArrayDeque<>();
+    private int currentSlab = -1;
+    private boolean closed = false;
+    
+    /**
+     * Creates a new, empty table with 64 MiB slabs.
+     */
+    public MyOffHeapHashTable() {
+        this(16, DEFAULT_SLAB_SIZE);
+    }
+    
+    /**
+     * Creates a new, empty table with room in its index for the given number of mappings, and slabs
+     * of the given size. A record, which is 12 bytes plus the key and value, can't be larger than a
+     * slab.
+     *
+     * @param expectedSize the number of mappings expected
+     * @param slabSize     the size of each direct memory slab, in bytes
+     * @throws IllegalArgumentException if the expected size is negative or the slab size is less
+     *                                      than 4 KiB
+     */
+    public MyOffHeapHashTable(int expectedSize, int slabSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("MyOffHeapHashTable size cannot be negative: " + expectedSize);
+        }
+        if (slabSize < MINIMUM_SLAB_SIZE) {
+            throw new IllegalArgumentException("MyOffHeapHashTable slab size must be at least 4 KiB: " + slabSize);
+        }
+        this.slabSize = slabSize;
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        this.allocateIndex((needed >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY
+                : Math.max(Integer.highestOneBit((int) needed - 1) << 1, 2));
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of mappings in this table.
+     *
+     * @return the number of mappings in this table
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if this table contains no mappings.
+     *
+     * @return {@code true} if this table contains no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns {@code true} if this table contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return {@code true} if this table contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public boolean containsKey(byte[] key) {
+        return this.containsKey(ByteBuffer.wrap(key)); // throws NullPointerException
+    }
+    
+    /**
+     * Returns {@code true} if this table contains a mapping for the remaining bytes of the specified
+     * key. The key's position is not changed.
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return {@code true} if this table contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public boolean containsKey(ByteBuffer key) {
+        this.ensureOpen();
+        return this.indexOf(key, hash(key)) >= 0;
+    }
+    
+    /**
+     * Returns a copy of the value to which the specified key is mapped, or {@code null} if this
+     * table contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return a copy of the value, or {@code null}
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public byte[] get(byte[] key) {
+        ByteBuffer value = this.get(ByteBuffer.wrap(key)); // throws NullPointerException
+        if (value == null) {
+            return null;
+        }
+        byte[] copy = new byte[value.remaining()];
+        value.get(copy);
+        return copy;
+    }
+    
+    /**
+     * Returns a read-only view of the value to which the remaining bytes of the specified key are
+     * mapped, or {@code null} if this table contains no mapping for the key. The view is only valid
+     * until this table is next modified. The key's position is not changed.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return a view of the value, or {@code null}
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public ByteBuffer get(ByteBuffer key) {
+        this.ensureOpen();
+        int slot = this.indexOf(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        long address = addresses[slot] - 1;
+        ByteBuffer slab = slabs.get(slabOf(address));
+        int offset = offsetOf(address);
+        int keyLength = slab.getInt(offset + 4);
+        int valueLength = slab.getInt(offset + 8);
+        int start = offset + HEADER_SIZE + keyLength;
+        return slab.asReadOnlyBuffer().limit(start + valueLength).position(start).slice();
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this table, copying both into direct
+     * memory.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return a copy of the previous value associated with the key, or {@code null} if there was no
+     *             mapping for the key
+     * @throws NullPointerException     if the specified key or value is {@code null}
+     * @throws IllegalArgumentException if the record doesn't fit in a slab
+     */
+    public byte[] put(byte[] key, byte[] value) {
+        byte[] oldValue = this.get(key); // throws NullPointerException
+        this.put(ByteBuffer.wrap(key), ByteBuffer.wrap(value)); // throws NullPointerException
+        return oldValue;
+    }
+    
+    /**
+     * Associates the remaining bytes of the specified value with the remaining bytes of the
+     * specified key in this table, copying both into direct memory. The positions of the arguments
+     * are not changed.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return {@code true} if a previous value was replaced
+     * @throws NullPointerException     if the specified key or value is {@code null}
+     * @throws IllegalArgumentException if the record doesn't fit in a slab
+     */
+    public boolean put(ByteBuffer key, ByteBuffer value) {
+        Objects.requireNonNull(value);
+        this.ensureOpen();
+        
+        int hash = hash(key); // throws NullPointerException
+        long recordSize = (long) HEADER_SIZE + key.remaining() + value.remaining();
+        if (recordSize > slabSize) {
+            throw new IllegalArgumentException("MyOffHeapHashTable record of " + recordSize
+                    + " bytes doesn't fit in a slab of " + slabSize);
+        }
+        
+        int slot = this.indexOf(key, hash);
+        if (slot >= 0) {
+            long address = addresses[slot] - 1;
+            ByteBuffer slab = slabs.get(slabOf(address));
+            int offset = offsetOf(address);
+            int keyLength = slab.getInt(offset + 4);
+            if (slab.getInt(offset + 8) == value.remaining()) {
+                copy(value, slab, offset + HEADER_SIZE + keyLength);
+                return true;
+            }
+            addresses[slot] = this.writeRecord(hash, key, value) + 1;
+            this.release(address);
+            return true;
+        }
+        
+        long address = this.writeRecord(hash, key, value);
+        slot = hash & mask;
+        while (addresses[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        addresses[slot] = address + 1;
+        hashes[slot] = hash;
+        if (++size > maxFill && addresses.length < MAXIMUM_CAPACITY) {
+            this.growIndex();
+        }
+        return false;
+    }
+    
+    /**
+     * Removes the mapping for a key from this table if it is present.
+     *
+     * @param key key whose mapping is to be removed from the table
+     * @return a copy of the previous value associated with the key, or {@code null} if there was no
+     *             mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public byte[] remove(byte[] key) {
+        byte[] oldValue = this.get(key); // throws NullPointerException
+        if (oldValue != null) {
+            this.remove(ByteBuffer.wrap(key));
+        }
+        return oldValue;
+    }
+    
+    /**
+     * Removes the mapping for the remaining bytes of a key from this table if it is present. The
+     * key's position is not changed.
+     *
+     * @param key key whose mapping is to be removed from the table
+     * @return {@code true} if a mapping was removed
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public boolean remove(ByteBuffer key) {
+        this.ensureOpen();
+        int slot = this.indexOf(key, hash(key));
+        if (slot < 0) {
+            return false;
+        }
+        long address = addresses[slot] - 1;
+        this.removeSlot(slot);
+        this.release(address);
+        return true;
+    }
+    
+    /**
+     * Removes all of the mappings from this table, and recycles all of the slabs.
+     */
+    public void clear() {
+        this.ensureOpen();
+        Arrays.fill(addresses, 0);
+        size = 0;
+        freeSlabs.clear();
+        for (int i = 0; i < slabs.size(); i++) {
+            slabUsed[i] = 0;
+            slabGarbage[i] = 0;
+            if (i != currentSlab) {
+                freeSlabs.add(i);
+            }
+        }
+    }
+    
+    /**
+     * Performs the given action for each mapping in this table, in no particular order, with
+     * read-only views of the key and value. The views are only valid during the call, and the
+     * action must not modify this table.
+     *
+     * @param action the action to be performed for each mapping
+     * @throws NullPointerException if the specified action is {@code null}
+     */
+    public void forEach(BiConsumer<? super ByteBuffer, ? super ByteBuffer> action) {
+        Objects.requireNonNull(action);
+        this.ensureOpen();
+        
+        for (int slot = 0; slot < addresses.length; slot++) {
+            if (addresses[slot] != 0) {
+                long address = addresses[slot] - 1;
+                ByteBuffer slab = slabs.get(slabOf(address)).asReadOnlyBuffer();
+                int offset = offsetOf(address);
+                int keyStart = offset + HEADER_SIZE;
+                int valueStart = keyStart + slab.getInt(offset + 4);
+                ByteBuffer key = slab.limit(valueStart).position(keyStart).slice();
+                ByteBuffer value = slab.limit(valueStart + slab.getInt(offset + 8)).position(valueStart).slice();
+                action.accept(key, value);
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // memory operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of bytes of direct memory held in slabs, in use or not.
+     *
+     * @return the direct memory held
+     */
+    public long offHeapBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+    
+    /**
+     * Returns the number of bytes of live records in the slabs.
+     *
+     * @return the bytes in live records
+     */
+    public long liveBytes() {
+        long live = 0;
+        for (int i = 0; i < slabs.size(); i++) {
+            live += slabUsed[i] - slabGarbage[i];
+        }
+        return live;
+    }
+    
+    /**
+     * Copies the live records out of every slab with garbage other than the current one, and
+     * recycles those slabs.
+     */
+    public void compact() {
+        this.ensureOpen();
+        for (int i = 0; i < slabs.size(); i++) {
+            if (i != currentSlab && slabGarbage[i] > 0) {
+                this.evacuate(i);
+            }
+        }
+    }
+    
+    /**
+     * Drops the slabs and the index, so that their memory can be reclaimed. The table can't be used
+     * afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        slabs.clear();
+        freeSlabs.clear();
+        addresses = null;
+        hashes = null;
+        size = 0;
+    }
+    
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("MyOffHeapHashTable is closed");
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // allocation
+    // ------------------------------------------------------------------------
+    
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+    
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+    
+    /**
+     * Appends a record to the current slab, moving to a recycled or new slab if it doesn't fit.
+     *
+     * @return the address of the record
+     */
+    private long writeRecord(int hash, ByteBuffer key, ByteBuffer value) {
+        int recordSize = HEADER_SIZE + key.remaining() + value.remaining();
+        if (currentSlab < 0 || slabSize - slabUsed[currentSlab] < recordSize) {
+            this.nextSlab();
+        }
+        ByteBuffer slab = slabs.get(currentSlab);
+        int offset = slabUsed[currentSlab];
+        slab.putInt(offset, hash);
+        slab.putInt(offset + 4, key.remaining());
+        slab.putInt(offset + 8, value.remaining());
+        copy(key, slab, offset + HEADER_SIZE);
+        copy(value, slab, offset + HEADER_SIZE + key.remaining());
+        slabUsed[currentSlab] += recordSize;
+        return ((long) currentSlab << 32) | offset;
+    }
+    
+    /**
+     * Copies the remaining bytes of a buffer into a slab at the given offset, without changing the
+     * buffer's position.
+     */
+    private static void copy(ByteBuffer source, ByteBuffer slab, int offset) {
+        ByteBuffer target = slab.duplicate();
+        target.position(offset);
+        target.put(source.duplicate());
+    }
+    
+    private void nextSlab() {
+        if (!freeSlabs.isEmpty()) {
+            currentSlab = freeSlabs.poll();
+            return;
+        }
+        slabs.add(ByteBuffer.allocateDirect(slabSize));
+        currentSlab = slabs.size() - 1;
+        if (currentSlab >= slabUsed.length) {
+            slabUsed = Arrays.copyOf(slabUsed, Math.max(4, slabUsed.length * 2));
+            slabGarbage = Arrays.copyOf(slabGarbage, slabUsed.length);
+        }
+    }
+    
+    /**
+     * Marks a record as garbage, and evacuates its slab if it is now more than half garbage.
+     */
+    private void release(long address) {
+        int slabIndex = slabOf(address);
+        ByteBuffer slab = slabs.get(slabIndex);
+        int offset = offsetOf(address);
+        slabGarbage[slabIndex] += HEADER_SIZE + slab.getInt(offset + 4) + slab.getInt(offset + 8);
+        if (slabGarbage[slabIndex] == slabUsed[slabIndex]) {
+            this.recycle(slabIndex);
+        } else if (slabIndex != currentSlab && slabGarbage[slabIndex] > slabSize / 2) {
+            this.evacuate(slabIndex);
+        }
+    }
+    
+    private void recycle(int slabIndex) {
+        slabUsed[slabIndex] = 0;
+        slabGarbage[slabIndex] = 0;
+        if (slabIndex != currentSlab) {
+            freeSlabs.add(slabIndex);
+        }
+    }
+    
+    /**
+     * Copies the live records of a slab to the current slab, repointing their index slots, then
+     * recycles it. A record is live if an index slot points to it.
+     */
+    private void evacuate(int slabIndex) {
+        ByteBuffer slab = slabs.get(slabIndex);
+        int end = slabUsed[slabIndex];
+        for (int offset = 0; offset < end;) {
+            int hash = slab.getInt(offset);
+            int keyLength = slab.getInt(offset + 4);
+            int valueLength = slab.getInt(offset + 8);
+            long address = ((long) slabIndex << 32) | offset;
+            int slot = this.slotOf(address, hash);
+            if (slot >= 0) {
+                int keyStart = offset + HEADER_SIZE;
+                ByteBuffer key = slab.duplicate().limit(keyStart + keyLength).position(keyStart);
+                ByteBuffer value = slab.duplicate().limit(keyStart + keyLength + valueLength)
+                        .position(keyStart + keyLength);
+                addresses[slot] = this.writeRecord(hash, key, value) + 1;
+            }
+            offset += HEADER_SIZE + keyLength + valueLength;
+        }
+        this.recycle(slabIndex);
+    }
+    
+    // ------------------------------------------------------------------------
+    // index
+    // ------------------------------------------------------------------------
+    
+    private static int hash(ByteBuffer key) {
+        return MyHashTable.spread(key.hashCode()); // throws NullPointerException
+    }
+    
+    private void allocateIndex(int capacity) {
+        addresses = new long[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        maxFill = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+    
+    private void growIndex() {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        this.allocateIndex(addresses.length * 2);
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (addresses[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                addresses[slot] = oldAddresses[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+    
+    /**
+     * Returns the slot of the record whose key equals the remaining bytes of the given key, or -1.
+     */
+    private int indexOf(ByteBuffer key, int hash) {
+        for (int slot = hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && this.keyEquals(addresses[slot] - 1, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the slot pointing to the record at the given address, or -1 if it is garbage.
+     */
+    private int slotOf(long address, int hash) {
+        for (int slot = hash & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+            if (addresses[slot] == address + 1) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    private boolean keyEquals(long address, ByteBuffer key) {
+        ByteBuffer slab = slabs.get(slabOf(address));
+        int offset = offsetOf(address);
+        int keyLength = slab.getInt(offset + 4);
+        if (keyLength != key.remaining()) {
+            return false;
+        }
+        int keyStart = offset + HEADER_SIZE;
+        return slab.duplicate().limit(keyStart + keyLength).position(keyStart).equals(key);
+    }
+    
+    /**
+     * Empties a slot, then shifts back each following slot of the run which could live there, so
+     * that no probe sequence is broken.
+     */
+    private void removeSlot(int slot) {
+        size--;
+        int last = slot;
+        for (int current = (slot + 1) & mask; addresses[current] != 0; current = (current + 1) & mask) {
+            int home = hashes[current] & mask;
+            // The slot can move back unless its home lies cyclically in (last, current]
+            boolean homeAfterLast = (last <= current) ? (last < home && home <= current)
+                    : (last < home || home <= current);
+            if (!homeAfterLast) {
+                addresses[last] = addresses[current];
+                hashes[last] = hashes[current];
+                last = current;
+            }
+        }
+        addresses[last] = 0;
+    }
+}
@@ -0,0 +1,684 @@
+package library;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable map whose updates return new versions of it, implemented as a hash array mapped
+ * trie (HAMT). {@link #with(Object, Object)} and {@link #without(Object)} leave this map unchanged
+ * and return a map that shares every part of the trie they didn't touch, so an update costs
+ * O(log<sub>32</sub> n) time and memory rather than a copy of the whole map. It rejects
+ * {@code null} keys and values, and every method of {@code Map} that would modify it throws an
+ * {@code UnsupportedOperationException}. Being immutable, it is thread-safe, and a version can be
+ * handed to other threads while newer versions are made.
+ * <p>
+ * The trie branches on five bits of the spread hash code of a key at a time, so it is at most seven
+ * levels deep. Each inner node holds a 32-bit bitmap of the branches that are present and a dense
+ * array with one slot per present branch, either a mapping or a child node, so a node costs space
+ * in proportion to its branches. A mapping sits at the shallowest level at which its hash code
+ * differs from those of the other keys; keys with equal spread hash codes share a collision node
+ * at the bottom. A lookup reads one node per level, and removals pull a lone mapping back up into
+ * its parent, so the trie stays as shallow as the keys allow.
+ * <p>
+ * Loading many mappings one version at a time would allocate a new path per mapping, most of it
+ * discarded by the next update. A {@link Builder} makes the same changes in place on nodes that it
+ * created itself, and only copies nodes shared with a map it has built.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyPersistentHashTable<K, V> extends MySkeletalMap<K, V> {
+    
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int BRANCH_MASK = (1 << BITS_PER_LEVEL) - 1;
+    
+    /**
+     * The deepest a mapping can be: seven levels of inner nodes, whose last branches on the top two
+     * bits of the hash code, and a collision node below them.
+     */
+    private static final int MAXIMUM_DEPTH = 8;
+    
+    @SuppressWarnings("rawtypes")
+    private static final MyPersistentHashTable EMPTY = new MyPersistentHashTable<>(
+            new BitmapNode<>(null, 0, new Object[0]), 0);
+    
+    /**
+     * A mapping in the trie, which keeps its key's spread hash code so that it never has to be
+     * recomputed when the mapping is pushed down a level.
+     */
+    private static final class Leaf<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+        
+        final int hash;
+        
+        Leaf(int hash, K key, V value) {
+            super(key, value);
+            this.hash = hash;
+        }
+        
+        boolean hasKey(int hash, Object key) {
+            return this.hash == hash && this.getKey().equals(key);
+        }
+    }
+    
+    /**
+     * What an update did, filled in by the nodes along its path.
+     */
+    private static final class Change {
+        int sizeDelta = 0;
+    }
+    
+    /**
+     * A node of the trie. A node may be changed in place only by the builder whose edit token it was
+     * created with; every other update copies it.
+     */
+    private abstract static class Node<K, V> {
+        
+        /**
+         * The token of the builder that created this node, or {@code null} if it was created by an
+         * update of a map.
+         */
+        final Object edit;
+        
+        Node(Object edit) {
+            this.edit = edit;
+        }
+        
+        boolean isEditable(Object edit) {
+            return edit != null && edit == this.edit;
+        }
+        
+        /**
+         * Returns the mapping for a key in this node or below it, or {@code null} if there is none.
+         */
+        abstract Leaf<K, V> find(int hash, Object key, int shift);
+        
+        /**
+         * Returns this node with the given mapping added, or replacing the mapping for its key.
+         * Returns this node itself if that changes nothing, or if it could be changed in place.
+         */
+        abstract Node<K, V> with(Object edit, int shift, Leaf<K, V> leaf, Change change);
+        
+        /**
+         * Returns this node without the mapping for a key, {@code null} if that leaves it empty, or
+         * this node itself if there was no mapping or it could be changed in place.
+         */
+        abstract Node<K, V> without(Object edit, int shift, int hash, Object key, Change change);
+        
+        /**
+         * Returns the mappings and child nodes of this node.
+         */
+        abstract Object[] slots();
+        
+        /**
+         * Returns the only mapping of this node, if it has no other mappings or children, so that
+         * its parent can hold the mapping directly; otherwise returns {@code null}.
+         */
+        abstract Leaf<K, V> singleLeaf();
+    }
+    
+    /**
+     * An inner node, with a slot for each branch whose bit is set in the bitmap, in bit order.
+     */
+    private static final class BitmapNode<K, V> extends Node<K, V> {
+        int bitmap;
+        Object[] slots;
+        
+        BitmapNode(Object edit, int bitmap, Object[] slots) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+        
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        Leaf<K, V> find(int hash, Object key, int shift) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[this.indexOf(bit)];
+            if (slot instanceof Leaf<?, ?>) {
+                Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                return leaf.hasKey(hash, key) ? leaf : null;
+            }
+            return ((Node<K, V>) slot).find(hash, key, shift + BITS_PER_LEVEL);
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> with(Object edit, int shift, Leaf<K, V> leaf, Change change) {
+            int bit = bitFor(leaf.hash, shift);
+            int index = this.indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                change.sizeDelta = 1;
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = leaf;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                if (this.isEditable(edit)) {
+                    bitmap |= bit;
+                    slots = newSlots;
+                    return this;
+                }
+                return new BitmapNode<>(edit, bitmap | bit, newSlots);
+            }
+            
+            Object slot = slots[index];
+            if (slot instanceof Leaf<?, ?>) {
+                Leaf<K, V> existing = (Leaf<K, V>) slot;
+                if (existing.hasKey(leaf.hash, leaf.getKey())) {
+                    if (existing.getValue() == leaf.getValue()) {
+                        return this;
+                    }
+                    return this.withSlot(edit, index, leaf);
+                }
+                change.sizeDelta = 1;
+                return this.withSlot(edit, index, merge(edit, shift + BITS_PER_LEVEL, existing, leaf));
+            }
+            Node<K, V> child = (Node<K, V>) slot;
+            Node<K, V> newChild = child.with(edit, shift + BITS_PER_LEVEL, leaf, change);
+            return (newChild == child) ? this : this.withSlot(edit, index, newChild);
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> without(Object edit, int shift, int hash, Object key, Change change) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = this.indexOf(bit);
+            Object slot = slots[index];
+            if (slot instanceof Leaf<?, ?>) {
+                if (!((Leaf<K, V>) slot).hasKey(hash, key)) {
+                    return this;
+                }
+                change.sizeDelta = -1;
+                return this.withoutSlot(edit, bit, index);
+            }
+            Node<K, V> child = (Node<K, V>) slot;
+            Node<K, V> newChild = child.without(edit, shift + BITS_PER_LEVEL, hash, key, change);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild == null) {
+                return this.withoutSlot(edit, bit, index);
+            }
+            Leaf<K, V> single = newChild.singleLeaf();
+            return this.withSlot(edit, index, (single == null) ? newChild : single);
+        }
+        
+        /**
+         * Returns this node with one slot replaced.
+         */
+        private Node<K, V> withSlot(Object edit, int index, Object slot) {
+            if (this.isEditable(edit)) {
+                slots[index] = slot;
+                return this;
+            }
+            Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new BitmapNode<>(edit, bitmap, newSlots);
+        }
+        
+        /**
+         * Returns this node without one slot, or {@code null} if that was its only slot.
+         */
+        private Node<K, V> withoutSlot(Object edit, int bit, int index) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+            if (this.isEditable(edit)) {
+                bitmap &= ~bit;
+                slots = newSlots;
+                return this;
+            }
+            return new BitmapNode<>(edit, bitmap & ~bit, newSlots);
+        }
+        
+        @Override
+        Object[] slots() {
+            return slots;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        Leaf<K, V> singleLeaf() {
+            return (slots.length == 1 && slots[0] instanceof Leaf<?, ?>) ? (Leaf<K, V>) slots[0] : null;
+        }
+    }
+    
+    /**
+     * A node holding the mappings of keys whose spread hash codes are all equal, which no number of
+     * levels could tell apart.
+     */
+    private static final class CollisionNode<K, V> extends Node<K, V> {
+        final int hash;
+        Leaf<K, V>[] leaves;
+        
+        CollisionNode(Object edit, int hash, Leaf<K, V>[] leaves) {
+            super(edit);
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+        
+        private int indexOf(Object key) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].getKey().equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        @Override
+        Leaf<K, V> find(int hash, Object key, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            int index = this.indexOf(key);
+            return (index < 0) ? null : leaves[index];
+        }
+        
+        @Override
+        Node<K, V> with(Object edit, int shift, Leaf<K, V> leaf, Change change) {
+            if (leaf.hash != hash) {
+                // Branch above this node on the level it sits at, then add the new key beside it
+                return new BitmapNode<K, V>(edit, bitFor(hash, shift), new Object[] { this })
+                        .with(edit, shift, leaf, change);
+            }
+            int index = this.indexOf(leaf.getKey());
+            Leaf<K, V>[] newLeaves;
+            if (index >= 0) {
+                if (leaves[index].getValue() == leaf.getValue()) {
+                    return this;
+                }
+                if (this.isEditable(edit)) {
+                    leaves[index] = leaf;
+                    return this;
+                }
+                newLeaves = leaves.clone();
+                newLeaves[index] = leaf;
+            } else {
+                change.sizeDelta = 1;
+                newLeaves = Arrays.copyOf(leaves, leaves.length + 1);
+                newLeaves[leaves.length] = leaf;
+            }
+            if (this.isEditable(edit)) {
+                leaves = newLeaves;
+                return this;
+            }
+            return new CollisionNode<>(edit, hash, newLeaves);
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> without(Object edit, int shift, int hash, Object key, Change change) {
+            int index = (hash == this.hash) ? this.indexOf(key) : -1;
+            if (index < 0) {
+                return this;
+            }
+            change.sizeDelta = -1;
+            if (leaves.length == 1) {
+                return null;
+            }
+            Leaf<K, V>[] newLeaves = (Leaf<K, V>[]) new Leaf<?, ?>[leaves.length - 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, index);
+            System.arraycopy(leaves, index + 1, newLeaves, index, newLeaves.length - index);
+            if (this.isEditable(edit)) {
+                leaves = newLeaves;
+                return this;
+            }
+            return new CollisionNode<>(edit, hash, newLeaves);
+        }
+        
+        @Override
+        Object[] slots() {
+            return leaves;
+        }
+        
+        @Override
+        Leaf<K, V> singleLeaf() {
+            return (leaves.length == 1) ? leaves[0] : null;
+        }
+    }
+    
+    /**
+     * Returns a node holding two mappings whose keys are different, at the given level.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> merge(Object edit, int shift, Leaf<K, V> a, Leaf<K, V> b) {
+        if (a.hash == b.hash) {
+            return new CollisionNode<>(edit, a.hash, (Leaf<K, V>[]) new Leaf<?, ?>[] { a, b });
+        }
+        int bitA = bitFor(a.hash, shift);
+        int bitB = bitFor(b.hash, shift);
+        if (bitA == bitB) {
+            return new BitmapNode<>(edit, bitA, new Object[] { merge(edit, shift + BITS_PER_LEVEL, a, b) });
+        }
+        Object[] slots = (Integer.compareUnsigned(bitA, bitB) < 0) ? new Object[] { a, b } : new Object[] { b, a };
+        return new BitmapNode<>(edit, bitA | bitB, slots);
+    }
+    
+    /**
+     * Returns the bit of the branch that a hash code takes at the level with the given shift.
+     */
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & BRANCH_MASK);
+    }
+    
+    private final Node<K, V> root;
+    private final int size;
+    
+    private MyPersistentHashTable(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    /**
+     * Returns the empty map. Every empty map is this one instance.
+     *
+     * @param <K> the type of keys maintained by the map
+     * @param <V> the type of mapped values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> MyPersistentHashTable<K, V> empty() {
+        return EMPTY;
+    }
+    
+    /**
+     * Returns a map with the same mappings as the given map, built in place with a
+     * {@link Builder}.
+     *
+     * @param <K> the type of keys maintained by the map
+     * @param <V> the type of mapped values
+     * @param m   the map whose mappings are to be copied
+     * @return a map with the same mappings
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> MyPersistentHashTable<K, V> copyOf(Map<? extends K, ? extends V> m) {
+        if (m instanceof MyPersistentHashTable<?, ?>) {
+            return (MyPersistentHashTable<K, V>) m;
+        }
+        return MyPersistentHashTable.<K, V>builder().putAll(m).build();
+    }
+    
+    /**
+     * Returns a new builder, holding no mappings.
+     *
+     * @param <K> the type of keys maintained by the maps built
+     * @param <V> the type of mapped values
+     * @return a new, empty builder
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(MyPersistentHashTable.<K, V>empty());
+    }
+    
+    /**
+     * Returns a new builder which starts out with the mappings of this map. This map is unaffected
+     * by changes made through the builder.
+     *
+     * @return a new builder holding the mappings of this map
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(this);
+    }
+    
+    // ------------------------------------------------------------------------
+    // versioning operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns a map with the mappings of this map, and the given key mapped to the given value.
+     * This map is unchanged. If the key is already mapped to that same value, this map is returned.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return a map in which the key is mapped to the value
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    public MyPersistentHashTable<K, V> with(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        Change change = new Change();
+        Node<K, V> newRoot = root.with(null, 0, new Leaf<>(hash(key), key, value), change);
+        return (newRoot == root) ? this : new MyPersistentHashTable<>(newRoot, size + change.sizeDelta);
+    }
+    
+    /**
+     * Returns a map with the mappings of this map, except for the mapping for the given key. This
+     * map is unchanged. If it has no mapping for the key, it is returned.
+     *
+     * @param key key whose mapping is to be left out
+     * @return a map with no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    public MyPersistentHashTable<K, V> without(Object key) {
+        Objects.requireNonNull(key);
+        
+        Change change = new Change();
+        Node<K, V> newRoot = root.without(null, 0, hash(key), key, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return (newRoot == null) ? empty() : new MyPersistentHashTable<>(newRoot, size + change.sizeDelta);
+    }
+    
+    private static int hash(Object key) {
+        return MyHashTable.spread(key.hashCode());
+    }
+    
+    // ------------------------------------------------------------------------
+    // map operations
+    // ------------------------------------------------------------------------
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key. This follows the key's hash code down the trie.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V get(Object key) {
+        Leaf<K, V> leaf = root.find(hash(key), key, 0); // throws NullPointerException
+        return (leaf == null) ? null : leaf.getValue();
+    }
+    
+    /**
+     * Throws an {@code UnsupportedOperationException}, since this map is immutable. Use
+     * {@link #without(Object)} instead.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Throws an {@code UnsupportedOperationException}, since this map is immutable. Use
+     * {@link #empty()} instead.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map, whose entries are immutable and which
+     * doesn't support removal. It walks the trie depth first, with a stack of the nodes it is in.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new Iterator<Entry<K, V>>() {
+            private final Object[][] stack = new Object[MAXIMUM_DEPTH][];
+            private final int[] positions = new int[MAXIMUM_DEPTH];
+            private int depth = 0;
+            private Leaf<K, V> nextLeaf;
+            
+            {
+                stack[0] = root.slots();
+                this.advance();
+            }
+            
+            @SuppressWarnings("unchecked")
+            private void advance() {
+                nextLeaf = null;
+                while (depth >= 0) {
+                    if (positions[depth] == stack[depth].length) {
+                        depth--;
+                        continue;
+                    }
+                    Object slot = stack[depth][positions[depth]++];
+                    if (slot instanceof Leaf<?, ?>) {
+                        nextLeaf = (Leaf<K, V>) slot;
+                        return;
+                    }
+                    depth++;
+                    stack[depth] = ((Node<K, V>) slot).slots();
+                    positions[depth] = 0;
+                }
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return nextLeaf != null;
+            }
+            
+            @Override
+            public Entry<K, V> next() {
+                if (nextLeaf == null) {
+                    throw new NoSuchElementException();
+                }
+                Leaf<K, V> leaf = nextLeaf;
+                this.advance();
+                return leaf;
+            }
+        };
+    }
+    
+    // ------------------------------------------------------------------------
+    // builder
+    // ------------------------------------------------------------------------
+    
+    /**
+     * A mutable stage for making many changes to a {@code MyPersistentHashTable} at once, such as a
+     * bulk load. Nodes the builder creates are marked with its edit token and changed in place by
+     * later updates, so a run of puts allocates little more than the nodes of the finished trie.
+     * Nodes shared with any other map are copied before they are changed.
+     * <p>
+     * {@link #build()} returns a map of the current mappings and then gives the builder a new
+     * token, so that the map's nodes are never changed again; the builder remains usable. It is
+     * not thread-safe.
+     *
+     * @param <K> the type of keys maintained by the maps built
+     * @param <V> the type of mapped values
+     */
+    public static final class Builder<K, V> {
+        private Object edit = new Object();
+        private Node<K, V> root;
+        private int size;
+        
+        private Builder(MyPersistentHashTable<K, V> map) {
+            this.root = map.root;
+            this.size = map.size;
+        }
+        
+        /**
+         * Maps a key to a value, replacing any mapping the key had.
+         *
+         * @param key   key with which the specified value is to be associated
+         * @param value value to be associated with the specified key
+         * @return this builder
+         * @throws NullPointerException if the specified key or value is {@code null}
+         */
+        public Builder<K, V> put(K key, V value) {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(value);
+            
+            Change change = new Change();
+            root = root.with(edit, 0, new Leaf<>(hash(key), key, value), change);
+            size += change.sizeDelta;
+            return this;
+        }
+        
+        /**
+         * Adds every mapping of the given map, replacing the mappings of keys already present.
+         *
+         * @param m the map whose mappings are to be added
+         * @return this builder
+         * @throws NullPointerException if the specified map is null, or contains null keys or
+         *                                  values
+         */
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> m) {
+            for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                this.put(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+        
+        /**
+         * Removes the mapping for a key, if there is one.
+         *
+         * @param key key whose mapping is to be removed
+         * @return this builder
+         * @throws NullPointerException if the specified key is {@code null}
+         */
+        public Builder<K, V> remove(Object key) {
+            Objects.requireNonNull(key);
+            
+            Change change = new Change();
+            Node<K, V> newRoot = root.without(edit, 0, hash(key), key, change);
+            root = (newRoot == null) ? MyPersistentHashTable.<K, V>empty().root : newRoot;
+            size += change.sizeDelta;
+            return this;
+        }
+        
+        /**
+         * Returns the number of mappings in this builder.
+         *
+         * @return the number of mappings
+         */
+        public int size() {
+            return size;
+        }
+        
+        /**
+         * Returns a map of the mappings in this builder. Later changes through this builder don't
+         * affect the map.
+         *
+         * @return a map of the current mappings
+         */
+        public MyPersistentHashTable<K, V> build() {
+            edit = new Object();
+            return (size == 0) ? empty() : new MyPersistentHashTable<>(root, size);
+        }
+    }
+}
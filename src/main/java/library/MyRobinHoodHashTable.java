@@ -0,0 +1,580 @@
+package library;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A hashtable which maps keys to values using open addressing with Robin Hood displacement. It
+ * supports all of the operations of {@code Map}, including optional operations. It rejects
+ * {@code null} keys and values. It is not thread-safe.
+ * <p>
+ * Unlike {@link MyHashTable}, there is no node per mapping: keys, values and their spread hash
+ * codes are stored in three parallel arrays, and a key is found by probing consecutive slots from
+ * its home slot. On insertion, a key that has probed further from its home than the key occupying a
+ * slot takes that slot, and the displaced key continues probing. This keeps every key close to its
+ * home, and lets a lookup for an absent key stop as soon as it reaches a key closer to home than it
+ * would be. Removal shifts the following keys of the cluster back one slot rather than leaving a
+ * tombstone, so probe lengths don't degrade as mappings come and go.
+ * <p>
+ * A mapping costs roughly {@code 12 / loadFactor} bytes of arrays (with compressed references),
+ * compared to a 32 byte node plus its share of the bucket array in {@code MyHashTable}.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MyRobinHoodHashTable<K, V> extends MySkeletalMap<K, V> {
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    /**
+     * The load factor used when none is specified in a constructor. Robin Hood displacement keeps
+     * probe lengths short at load factors that would cripple plain linear probing.
+     */
+    private static final float DEFAULT_LOAD_FACTOR = 0.875f;
+    
+    /**
+     * The largest number of slots the table will grow to. Like every capacity, this is a power of
+     * two.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    
+    /*
+     * A slot is empty when its key is null. The hash of an occupied slot is the spread hash code of
+     * its key, from which its home slot, and so its probe distance, can be recomputed.
+     */
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    
+    private int size = 0;
+    
+    /**
+     * The ratio of mappings to slots that the table is allowed to reach before it grows. This is
+     * always less than 1, so there is always an empty slot to end a probe.
+     */
+    private final float loadFactor;
+    
+    /**
+     * The number of mappings at which the table will next grow.
+     */
+    private int threshold;
+    
+    /**
+     * Creates a new, empty hashtable with a capacity of {@value DEFAULT_CAPACITY} slots and a load
+     * factor of {@value DEFAULT_LOAD_FACTOR}.
+     */
+    public MyRobinHoodHashTable() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+    
+    /**
+     * Creates a new, empty hashtable that can hold the specified number of mappings without
+     * growing, with a load factor of {@value DEFAULT_LOAD_FACTOR}.
+     *
+     * @param expectedSize the number of mappings the table should hold without growing
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public MyRobinHoodHashTable(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+    
+    /**
+     * Creates a new, empty hashtable that can hold the specified number of mappings without
+     * growing, with the specified load factor.
+     *
+     * @param expectedSize the number of mappings the table should hold without growing
+     * @param loadFactor   the ratio of mappings to slots allowed before the table grows
+     * @throws IllegalArgumentException if the expected size is negative, or the load factor is not
+     *                                      strictly between 0 and 1
+     */
+    public MyRobinHoodHashTable(int expectedSize, float loadFactor) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("MyRobinHoodHashTable size cannot be negative: " + expectedSize);
+        }
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("MyRobinHoodHashTable load factor must be between 0 and 1: " + loadFactor);
+        }
+        
+        this.loadFactor = loadFactor;
+        this.allocate(capacityFor(expectedSize, loadFactor));
+    }
+    
+    /**
+     * Constructs a new hashtable with the same mappings as the given Map. The table is sized up
+     * front to hold all of the mappings without growing.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    public MyRobinHoodHashTable(Map<? extends K, ? extends V> m) {
+        this(m.size()); // throws NullPointerException
+        this.putAll(m);
+    }
+    
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of slots in the table. This is exposed for testing.
+     *
+     * @return the number of slots in the table
+     */
+    int capacity() {
+        return keys.length;
+    }
+    
+    /**
+     * Increases the capacity of this hashtable, if necessary, to ensure that it can hold at least
+     * the number of mappings specified without growing again.
+     *
+     * @param numMappings the number of mappings the table should be able to hold
+     */
+    public void ensureCapacity(int numMappings) {
+        int capacity = capacityFor(numMappings, loadFactor);
+        if (capacity > keys.length) {
+            this.resize(capacity);
+        }
+    }
+    
+    /**
+     * Shrinks the table to the smallest capacity that holds the current mappings within the load
+     * factor.
+     */
+    public void trimToSize() {
+        int capacity = capacityFor(size, loadFactor);
+        if (capacity < keys.length) {
+            this.resize(capacity);
+        }
+    }
+    
+    /**
+     * Returns the power-of-two number of slots needed to hold the specified number of mappings
+     * within the load factor, leaving at least one slot empty.
+     *
+     * @param numMappings the number of mappings to hold
+     * @param loadFactor  the load factor of the table
+     * @return the number of slots needed, between 2 and {@value MAXIMUM_CAPACITY}
+     */
+    private static int capacityFor(int numMappings, float loadFactor) {
+        double capacity = Math.max(Math.ceil(numMappings / (double) loadFactor), numMappings + 1.0);
+        if (capacity >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Math.max(Integer.highestOneBit((int) capacity - 1) << 1, 2);
+    }
+    
+    /**
+     * Replaces the arrays with empty ones of the given capacity.
+     *
+     * @param capacity the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        threshold = (capacity >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY - 1
+                : Math.min((int) (capacity * (double) loadFactor), capacity - 1);
+    }
+    
+    /**
+     * Reinserts every mapping into new arrays of the given capacity.
+     *
+     * @param newCapacity the number of slots in the new arrays, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void resize(int newCapacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        this.allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                this.insert(oldHashes[i], (K) oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // single element operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        Objects.requireNonNull(key);
+        
+        return this.indexOf(key) >= 0;
+    }
+    
+    /**
+     * Returns {@code true} if this map maps one or more keys to the specified value. This scans
+     * the value array directly.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the specified value
+     * @throws NullPointerException if the specified value is {@code null}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        
+        for (Object storedValue : values) {
+            if (value.equals(storedValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        
+        int index = this.indexOf(key);
+        return (index < 0) ? null : (V) values[index];
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map. If the map previously
+     * contained a mapping for the key, the old value is replaced by the specified value.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        int hash = MyHashTable.spread(key.hashCode());
+        int index = this.indexOf(hash, key);
+        if (index >= 0) {
+            V oldValue = (V) values[index];
+            values[index] = value;
+            return oldValue;
+        }
+        if (size >= threshold) {
+            if (keys.length == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("MyRobinHoodHashTable cannot hold more than " + threshold + " mappings");
+            }
+            this.resize(keys.length * 2);
+        }
+        this.insert(hash, key, value);
+        size++;
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = (V) values[index];
+        this.removeAt(index);
+        return oldValue;
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+    
+    // ------------------------------------------------------------------------
+    // probing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the slot holding the given key, or -1 if it is absent.
+     *
+     * @param key the key being looked up - never {@code null}
+     * @return the index of the key's slot, or -1
+     */
+    private int indexOf(Object key) {
+        return this.indexOf(MyHashTable.spread(key.hashCode()), key);
+    }
+    
+    /**
+     * Returns the slot holding the given key, or -1 if it is absent. The probe stops at an empty
+     * slot, or at a key closer to its home than the given key would be at that slot, since Robin
+     * Hood insertion would have placed the given key there.
+     *
+     * @param hash the spread hash code of the key
+     * @param key  the key being looked up - never {@code null}
+     * @return the index of the key's slot, or -1
+     */
+    private int indexOf(int hash, Object key) {
+        int mask = keys.length - 1;
+        int index = hash & mask;
+        for (int distance = 0;; distance++) {
+            Object storedKey = keys[index];
+            if (storedKey == null || probeDistance(hashes[index], index) < distance) {
+                return -1;
+            }
+            if (hashes[index] == hash && (storedKey == key || storedKey.equals(key))) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+    
+    /**
+     * Inserts a mapping whose key is known to be absent, displacing any key closer to its home than
+     * the one being carried. There must be an empty slot.
+     *
+     * @param hash  the spread hash code of the key
+     * @param key   the key to insert
+     * @param value the value to insert
+     */
+    private void insert(int hash, Object key, Object value) {
+        int mask = keys.length - 1;
+        int index = hash & mask;
+        for (int distance = 0;; distance++) {
+            if (keys[index] == null) {
+                keys[index] = key;
+                values[index] = value;
+                hashes[index] = hash;
+                return;
+            }
+            int storedDistance = probeDistance(hashes[index], index);
+            if (storedDistance < distance) {
+                Object displacedKey = keys[index];
+                Object displacedValue = values[index];
+                int displacedHash = hashes[index];
+                keys[index] = key;
+                values[index] = value;
+                hashes[index] = hash;
+                key = displacedKey;
+                value = displacedValue;
+                hash = displacedHash;
+                distance = storedDistance;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+    
+    /**
+     * Empties a slot by shifting the rest of its cluster back one slot, stopping at an empty slot or
+     * a key already in its home slot.
+     *
+     * @param index the index of the slot to empty
+     */
+    private void removeAt(int index) {
+        int mask = keys.length - 1;
+        int next = (index + 1) & mask;
+        while (keys[next] != null && probeDistance(hashes[next], next) > 0) {
+            keys[index] = keys[next];
+            values[index] = values[next];
+            hashes[index] = hashes[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        keys[index] = null;
+        values[index] = null;
+        size--;
+    }
+    
+    /**
+     * Returns how many slots past its home slot a key with the given hash is.
+     *
+     * @param hash  the spread hash code of the key
+     * @param index the slot it is stored in
+     * @return the key's distance from its home slot
+     */
+    private int probeDistance(int hash, int index) {
+        return (index - hash) & (keys.length - 1);
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * An iterator over the occupied slots of this hashtable.
+     * <p>
+     * Removal shifts the next keys of a cluster back into the removed slot, so after a removal the
+     * same slot is visited again. Iteration starts just past an empty slot: no cluster spans an
+     * empty slot, so a shift never moves a key that has already been returned to a slot that is yet
+     * to be visited.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final int end;
+        private int position;
+        private int lastReturned = -1;
+        
+        private EntryIterator() {
+            int start = 0;
+            while (keys[start] != null) {
+                start++;
+            }
+            // Positions run from one past the empty slot through to it, wrapping around the table
+            this.position = start + 1;
+            this.end = start + keys.length;
+            this.advance();
+        }
+        
+        /**
+         * Moves the position forward to the next occupied slot, or to the end.
+         */
+        private void advance() {
+            while (position < end && keys[position & (keys.length - 1)] == null) {
+                position++;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = position;
+            position++;
+            this.advance();
+            return new SlotEntry(lastReturned & (keys.length - 1));
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            MyRobinHoodHashTable.this.removeAt(lastReturned & (keys.length - 1));
+            // The slot may have been refilled from the rest of its cluster
+            position = lastReturned;
+            lastReturned = -1;
+            this.advance();
+        }
+    }
+    
+    /**
+     * A map entry returned by the iterator. The mapping may move between slots as other mappings
+     * are added and removed, so it holds its own key and value, and writes a new value through to
+     * the map by key.
+     */
+    private final class SlotEntry implements Entry<K, V> {
+        private final K key;
+        private V value;
+        
+        @SuppressWarnings("unchecked")
+        private SlotEntry(int index) {
+            this.key = (K) keys[index];
+            this.value = (V) values[index];
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        /**
+         * Replaces the value corresponding to this entry with the specified value, writing through
+         * to the map. If the mapping has been removed from the map, the results of this call are
+         * undefined.
+         *
+         * @param value new value to be stored in this entry
+         * @return old value corresponding to the entry
+         * @throws NullPointerException if the specified value is null
+         */
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            
+            V oldValue = this.value;
+            this.value = value;
+            MyRobinHoodHashTable.this.replace(key, value);
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
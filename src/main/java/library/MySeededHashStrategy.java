@@ -0,0 +1,190 @@
+package library;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
+
+/**
+ * A hash strategy that resists hash flooding, where an attacker sends many keys that share a
+ * bucket. {@code String} and {@code byte[]} keys are hashed by SipHash-1-3, a keyed hash function,
+ * under a 128-bit secret key drawn from a {@code SecureRandom} for each instance: without the
+ * secret key, finding colliding keys is no easier than guessing. SipHash-1-3 makes one compression
+ * round per 8 bytes of input and three finalization rounds, which is a few nanoseconds for short
+ * keys, slower than a cached {@code String.hashCode} but far cheaper than a bucket of colliding
+ * keys.
+ * <p>
+ * Strings are hashed as their UTF-16 code units, so this agrees with {@code String.equals}. Arrays
+ * are hashed by their contents; as {@code byte[]} compares by identity, identical arrays still have
+ * equal hashes. Every other key is hashed by its {@code hashCode}, mixed with the secret key, which
+ * moves keys to unpredictable buckets but can't separate keys whose hash codes are equal. Such keys
+ * still rely on the table's tree buckets.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class MySeededHashStrategy implements MyHashStrategy {
+    
+    private static final SecureRandom SEEDS = new SecureRandom();
+    
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    
+    private final long k0;
+    private final long k1;
+    
+    /**
+     * Creates a new strategy with a random secret key.
+     */
+    public MySeededHashStrategy() {
+        this(SEEDS.nextLong(), SEEDS.nextLong());
+    }
+    
+    /**
+     * Creates a new strategy with the given secret key. Anyone who knows the key can find colliding
+     * keys, so this is for reproducing a particular layout, such as in tests.
+     *
+     * @param k0 the first half of the key, read as little-endian bytes 0 to 7
+     * @param k1 the second half of the key, read as little-endian bytes 8 to 15
+     */
+    public MySeededHashStrategy(long k0, long k1) {
+        this.k0 = k0;
+        this.k1 = k1;
+    }
+    
+    /**
+     * Returns the hash of a key: the SipHash-1-3 of a {@code String} or {@code byte[]} folded to 32
+     * bits, or the keyed mix of any other key's hash code.
+     *
+     * @param key a key - never {@code null}
+     * @return the hash of the key
+     */
+    @Override
+    public int hash(Object key) {
+        long h;
+        if (key instanceof String) {
+            h = this.hashChars((String) key);
+        } else if (key instanceof byte[]) {
+            byte[] bytes = (byte[]) key;
+            h = this.hashBytes(bytes, 0, bytes.length);
+        } else {
+            h = mix(key.hashCode() ^ k0) + k1;
+            h = mix(h);
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    /**
+     * Returns the 64-bit SipHash-1-3 of a range of bytes under this strategy's key.
+     *
+     * @param bytes  the array holding the bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the SipHash-1-3 of the bytes
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    public long hashBytes(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + bytes.length);
+        }
+        
+        SipState state = new SipState(k0, k1);
+        int end = offset + length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            state.compress((long) LONGS.get(bytes, i));
+        }
+        long last = (long) length << 56;
+        for (int shift = 0; i < end; i++, shift += Byte.SIZE) {
+            last |= (bytes[i] & 0xFFL) << shift;
+        }
+        state.compress(last);
+        return state.finish();
+    }
+    
+    /**
+     * Returns the 64-bit SipHash-1-3 of a string's UTF-16 code units in little-endian order, four
+     * to a word, without encoding the string into bytes first.
+     *
+     * @param s the string
+     * @return the SipHash-1-3 of the string
+     */
+    private long hashChars(String s) {
+        SipState state = new SipState(k0, k1);
+        int length = s.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            state.compress(s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32
+                    | (long) s.charAt(i + 3) << 48);
+        }
+        long last = (long) (length * 2) << 56;
+        for (int shift = 0; i < length; i++, shift += Character.SIZE) {
+            last |= (long) s.charAt(i) << shift;
+        }
+        state.compress(last);
+        return state.finish();
+    }
+    
+    /**
+     * The finalizer of SplitMix64, a bijection whose every output bit depends on every input bit.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * The four words of SipHash state for one message.
+     */
+    private static final class SipState {
+        private long v0;
+        private long v1;
+        private long v2;
+        private long v3;
+        
+        SipState(long k0, long k1) {
+            v0 = k0 ^ 0x736F_6D65_7073_6575L;
+            v1 = k1 ^ 0x646F_7261_6E64_6F6DL;
+            v2 = k0 ^ 0x6C79_6765_6E65_7261L;
+            v3 = k1 ^ 0x7465_6462_7974_6573L;
+        }
+        
+        /**
+         * Absorbs one 64-bit word of the message with a single round.
+         */
+        void compress(long m) {
+            v3 ^= m;
+            this.round();
+            v0 ^= m;
+        }
+        
+        /**
+         * Returns the hash of the absorbed message after three finalization rounds.
+         */
+        long finish() {
+            v2 ^= 0xFF;
+            this.round();
+            this.round();
+            this.round();
+            return v0 ^ v1 ^ v2 ^ v3;
+        }
+        
+        private void round() {
+            v0 += v1;
+            v1 = Long.rotateLeft(v1, 13);
+            v1 ^= v0;
+            v0 = Long.rotateLeft(v0, 32);
+            v2 += v3;
+            v3 = Long.rotateLeft(v3, 16);
+            v3 ^= v2;
+            v0 += v3;
+            v3 = Long.rotateLeft(v3, 21);
+            v3 ^= v0;
+            v2 += v1;
+            v1 = Long.rotateLeft(v1, 17);
+            v1 ^= v2;
+            v2 = Long.rotateLeft(v2, 32);
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package library;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+
+/**
+ * This class provides a skeletal implementation of the {@code Map} interface for maps that reject
+ * {@code null} keys and values, to minimize the effort required to implement this interface.
+ * <p>
+ * To implement an unmodifiable map, the programmer needs only to extend this class and provide
+ * implementations for the {@code entryIterator} and {@code size} methods. The key set, values
+ * collection and entry set views are implemented by this class on top of the entry iterator.
+ * <p>
+ * To implement a modifiable map, the programmer must additionally override this class's
+ * {@code put} method (which otherwise throws an {@code UnsupportedOperationException}), and the
+ * iterator returned by {@code entryIterator} must additionally implement its {@code remove}
+ * method.
+ * <p>
+ * Since {@code null} is never a key or value, {@code get} returning {@code null} always means that
+ * the key is absent. Methods of this class rely on that, and throw {@code NullPointerException}
+ * when given a {@code null} key or value.
+ * <p>
+ * The documentation for each non-abstract method in this class describes its implementation in
+ * detail. Each of these methods may be overridden if the map being implemented admits a more
+ * efficient implementation.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public abstract class MySkeletalMap<K, V> implements Map<K, V> {
+    
+    private final Set<K> keySet = new KeySet();
+    private final Collection<V> values = new ValuesCollection();
+    private final Set<Entry<K, V>> entrySet = new EntrySet();
+    
+    /**
+     * Sole constructor. (For invocation by subclass constructors, typically implicit.)
+     */
+    protected MySkeletalMap() {
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map. The entries it returns should write
+     * through to the map when their value is set.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    protected abstract Iterator<Entry<K, V>> entryIterator();
+    
+    /**
+     * Returns the number of key-value mappings in this map. If the map contains more than
+     * {@code Integer.MAX_VALUE} elements, returns {@code Integer.MAX_VALUE}.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    @Override
+    public abstract int size();
+    
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @implSpec This implementation returns {@code size() == 0}.
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key.
+     *
+     * @implSpec This implementation returns {@code get(key) != null}.
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+    
+    /**
+     * Returns {@code true} if this map maps one or more keys to the specified value.
+     *
+     * @implSpec This implementation iterates over the entries of this map, checking each value in
+     * turn for equality with the specified value.
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the specified value
+     * @throws NullPointerException if the specified value is {@code null}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            if (value.equals(iterator.next().getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key.
+     *
+     * @implSpec This implementation iterates over the entries of this map, checking each key in
+     * turn for equality with the specified key. Nearly every implementation will override this with
+     * a lookup that doesn't visit every entry.
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *     no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            Entry<K, V> entry = iterator.next();
+            if (key.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map (optional operation).
+     *
+     * @implSpec This implementation always throws an {@code UnsupportedOperationException}.
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *     for the key
+     * @throws UnsupportedOperationException if the {@code put} operation is not supported by this
+     *     map
+     */
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present (optional operation).
+     *
+     * @implSpec This implementation iterates over the entries of this map searching for the key,
+     * and removes it with the iterator's {@code remove} operation.
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *     key
+     * @throws NullPointerException if the specified key is {@code null}
+     * @throws UnsupportedOperationException if the entry iterator does not support removal
+     */
+    @Override
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            Entry<K, V> entry = iterator.next();
+            if (key.equals(entry.getKey())) {
+                V value = entry.getValue();
+                iterator.remove();
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Copies all of the mappings from the specified map to this map (optional operation).
+     *
+     * @implSpec This implementation calls {@code put} once for each mapping in the specified map.
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null, or if the specified map contains
+     *     null keys or values
+     * @throws UnsupportedOperationException if the {@code put} operation is not supported by this
+     *     map
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        Objects.requireNonNull(m);
+        
+        m.forEach(this::put);
+    }
+    
+    /**
+     * Removes all of the mappings from this map (optional operation).
+     *
+     * @implSpec This implementation removes every entry with the entry iterator's {@code remove}
+     * operation.
+     * @throws UnsupportedOperationException if the entry iterator does not support removal
+     */
+    @Override
+    public void clear() {
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * Returns a {@code Set} view of the keys contained in this map. The set is backed by the map,
+     * so changes to the map are reflected in the set, and vice-versa. It supports element removal,
+     * but not the {@code add} or {@code addAll} operations.
+     *
+     * @return a set view of the keys contained in this map
+     */
+    @Override
+    public Set<K> keySet() {
+        return keySet;
+    }
+    
+    /**
+     * Returns a {@code Collection} view of the values contained in this map. The collection is
+     * backed by the map, so changes to the map are reflected in the collection, and vice-versa. It
+     * supports element removal, but not the {@code add} or {@code addAll} operations.
+     *
+     * @return a collection view of the values contained in this map
+     */
+    @Override
+    public Collection<V> values() {
+        return values;
+    }
+    
+    /**
+     * Returns a {@code Set} view of the mappings contained in this map. The set is backed by the
+     * map, so changes to the map are reflected in the set, and vice-versa. It supports element
+     * removal, but not the {@code add} or {@code addAll} operations.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return entrySet;
+    }
+    
+    /**
+     * Compares the specified object with this map for equality. Returns true if the given object is
+     * also a map and the two maps represent the same mappings.
+     *
+     * @implSpec This implementation checks that the sizes match, then checks that every entry of
+     * this map is mapped to an equal value in the specified map.
+     * @param o object to be compared for equality with this map
+     * @return true if the specified object is equal to this map
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Map<?, ?>)) {
+            return false;
+        }
+        Map<?, ?> map = (Map<?, ?>) o;
+        if (map.size() != this.size()) {
+            return false;
+        }
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            Entry<K, V> entry = iterator.next();
+            if (!entry.getValue().equals(map.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the hash code value for this map, defined to be the sum of the hash codes of each
+     * entry in the map's entry set view.
+     *
+     * @implSpec This implementation sums {@code key.hashCode() ^ value.hashCode()} over the entry
+     * iterator.
+     * @return the hash code value for this map
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            Entry<K, V> entry = iterator.next();
+            hashCode += entry.getKey().hashCode() ^ entry.getValue().hashCode();
+        }
+        return hashCode;
+    }
+    
+    /**
+     * Returns a string representation of this map: its mappings in entry iterator order, enclosed
+     * in braces ("{}") and separated by ", ", each rendered as the key, an equals sign ("="), and
+     * the value.
+     *
+     * @return a string representation of this map
+     */
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (Iterator<Entry<K, V>> iterator = this.entryIterator(); iterator.hasNext();) {
+            Entry<K, V> entry = iterator.next();
+            joiner.add(entry.getKey() + "=" + entry.getValue());
+        }
+        return joiner.toString();
+    }
+    
+    // ------------------------------------------------------------------------
+    // collection views
+    // ------------------------------------------------------------------------
+    
+    /**
+     * An iterator that maps the entries of the entry iterator to one of their parts, and removes
+     * through it.
+     *
+     * @param <E> the type of elements returned by this iterator
+     */
+    private abstract class ViewIterator<E> implements Iterator<E> {
+        private final Iterator<Entry<K, V>> entries = MySkeletalMap.this.entryIterator();
+        
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+        
+        @Override
+        public E next() {
+            return this.view(entries.next());
+        }
+        
+        @Override
+        public void remove() {
+            entries.remove();
+        }
+        
+        /**
+         * Returns the part of the entry this iterator returns.
+         *
+         * @param entry the next entry of the map
+         * @return the next element of this iterator
+         */
+        abstract E view(Entry<K, V> entry);
+    }
+    
+    /**
+     * The stateless KeySet that delegates its calls to the outer map instance.
+     */
+    private final class KeySet extends MySkeletalCollection<K> implements Set<K> {
+        
+        @Override
+        public Iterator<K> iterator() {
+            return new ViewIterator<K>() {
+                @Override
+                K view(Entry<K, V> entry) {
+                    return entry.getKey();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return MySkeletalMap.this.size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return MySkeletalMap.this.containsKey(o);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            return MySkeletalMap.this.remove(o) != null;
+        }
+        
+        @Override
+        public void clear() {
+            MySkeletalMap.this.clear();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return setEquals(this, o);
+        }
+        
+        @Override
+        public int hashCode() {
+            return setHashCode(this);
+        }
+        
+        @Override
+        public Spliterator<K> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
+    }
+    
+    /**
+     * The stateless ValuesCollection that delegates its calls to the outer map instance. Like other
+     * collections that are neither lists nor sets, it uses identity equality.
+     */
+    private final class ValuesCollection extends MySkeletalCollection<V> {
+        
+        @Override
+        public Iterator<V> iterator() {
+            return new ViewIterator<V>() {
+                @Override
+                V view(Entry<K, V> entry) {
+                    return entry.getValue();
+                }
+            };
+        }
+        
+        @Override
+        public int size() {
+            return MySkeletalMap.this.size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return MySkeletalMap.this.containsValue(o);
+        }
+        
+        @Override
+        public void clear() {
+            MySkeletalMap.this.clear();
+        }
+        
+        @Override
+        public Spliterator<V> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.NONNULL);
+        }
+    }
+    
+    /**
+     * The stateless EntrySet that delegates its calls to the outer map instance.
+     */
+    private final class EntrySet extends MySkeletalCollection<Entry<K, V>> implements Set<Entry<K, V>> {
+        
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return MySkeletalMap.this.entryIterator();
+        }
+        
+        @Override
+        public int size() {
+            return MySkeletalMap.this.size();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            Objects.requireNonNull(o);
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            V storedValue = MySkeletalMap.this.get(Objects.requireNonNull(entry.getKey()));
+            return Objects.requireNonNull(entry.getValue()).equals(storedValue);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            Objects.requireNonNull(o);
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return MySkeletalMap.this.remove(Objects.requireNonNull(entry.getKey()),
+                    Objects.requireNonNull(entry.getValue()));
+        }
+        
+        @Override
+        public void clear() {
+            MySkeletalMap.this.clear();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return setEquals(this, o);
+        }
+        
+        @Override
+        public int hashCode() {
+            return setHashCode(this);
+        }
+        
+        @Override
+        public Spliterator<Entry<K, V>> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
+    }
+    
+    /**
+     * Compares a set view with another object as required by {@code Set.equals}.
+     *
+     * @param set the set view
+     * @param o   the object to compare it with
+     * @return {@code true} if the object is a set of the same size containing every element
+     */
+    private static boolean setEquals(Set<?> set, Object o) {
+        if (set == o) {
+            return true;
+        }
+        if (!(o instanceof Set<?>)) {
+            return false;
+        }
+        Set<?> other = (Set<?>) o;
+        return set.size() == other.size() && set.containsAll(other);
+    }
+    
+    /**
+     * Computes the hash code of a set view as required by {@code Set.hashCode}.
+     *
+     * @param set the set view
+     * @return the sum of the hash codes of its elements
+     */
+    private static int setHashCode(Set<?> set) {
+        int hashCode = 0;
+        for (Object element : set) {
+            hashCode += element.hashCode();
+        }
+        return hashCode;
+    }
+}
@@ -0,0 +1,637 @@
+package library;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A hashtable which maps keys to values using open addressing over groups of slots, each slot
+ * having a one-byte control tag. It supports all of the operations of {@code Map}, including
+ * optional operations. It rejects {@code null} keys and values. It is not thread-safe.
+ * <p>
+ * Slots are arranged in groups of eight, and the control bytes of a group are packed into a single
+ * {@code long}. A control byte is either empty, deleted, or holds the low 7 bits of the spread hash
+ * code of the key in that slot. A lookup takes the remaining bits of the hash to choose a starting
+ * group, then tests all eight control bytes of each group it visits at once with word arithmetic
+ * ("SIMD within a register"): keys are only compared in slots whose tag matches, which for an
+ * absent key happens for one occupied slot in 128. The probe ends at the first group with an empty
+ * slot.
+ * <p>
+ * Removal leaves a deleted marker only if the group was ever full, since only then can a probe
+ * have passed through it. Markers are cleared whenever the table is rebuilt, which also happens at
+ * the same capacity once they use up the free slots.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public final class MySwissTable<K, V> extends MySkeletalMap<K, V> {
+    
+    private static final int GROUP_SIZE = Long.BYTES;
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    /**
+     * The largest number of slots the table will grow to. Seven bits of the hash go to the control
+     * bytes and the other 25 choose a group, so 2^25 groups of eight slots use every bit of it.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 28;
+    
+    /*
+     * Control bytes. Full slots have the high bit clear, so an empty or deleted slot never matches a
+     * hash tag. EMPTY and DELETED are told apart by their low bit.
+     */
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final long EMPTY_GROUP = 0x8080808080808080L;
+    
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    /**
+     * The control bytes of each group, with slot {@code i} of the group in byte {@code i}, counting
+     * from the least significant.
+     */
+    private long[] control;
+    private Object[] keys;
+    private Object[] values;
+    
+    private int size = 0;
+    
+    /**
+     * The number of empty slots that may still be filled before the table is rebuilt. Filling a
+     * deleted slot doesn't use this up.
+     */
+    private int growthLeft;
+    
+    /**
+     * Creates a new, empty hashtable with a capacity of {@value DEFAULT_CAPACITY} slots.
+     */
+    public MySwissTable() {
+        this.allocate(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates a new, empty hashtable that can hold the specified number of mappings without
+     * growing.
+     *
+     * @param expectedSize the number of mappings the table should hold without growing
+     * @throws IllegalArgumentException if the expected size is negative
+     */
+    public MySwissTable(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("MySwissTable size cannot be negative: " + expectedSize);
+        }
+        
+        this.allocate(capacityFor(expectedSize));
+    }
+    
+    /**
+     * Constructs a new hashtable with the same mappings as the given Map. The table is sized up
+     * front to hold all of the mappings without growing.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null, or contains null keys or values
+     */
+    public MySwissTable(Map<? extends K, ? extends V> m) {
+        this(m.size()); // throws NullPointerException
+        this.putAll(m);
+    }
+    
+    // ------------------------------------------------------------------------
+    // capacity operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of slots in the table. This is exposed for testing.
+     *
+     * @return the number of slots in the table
+     */
+    int capacity() {
+        return keys.length;
+    }
+    
+    /**
+     * Increases the capacity of this hashtable, if necessary, to ensure that it can hold at least
+     * the number of mappings specified without growing again.
+     *
+     * @param numMappings the number of mappings the table should be able to hold
+     */
+    public void ensureCapacity(int numMappings) {
+        int capacity = capacityFor(numMappings);
+        if (capacity > keys.length) {
+            this.rebuild(capacity);
+        }
+    }
+    
+    /**
+     * Shrinks the table to the smallest capacity that holds the current mappings, clearing any
+     * deleted markers.
+     */
+    public void trimToSize() {
+        this.rebuild(capacityFor(size));
+    }
+    
+    /**
+     * Returns the largest number of mappings a table with the given number of slots holds: seven in
+     * every eight slots.
+     *
+     * @param capacity the number of slots
+     * @return the maximum number of mappings
+     */
+    private static int maximumLoad(int capacity) {
+        return capacity - capacity / GROUP_SIZE;
+    }
+    
+    /**
+     * Returns the power-of-two number of slots needed to hold the specified number of mappings.
+     *
+     * @param numMappings the number of mappings to hold
+     * @return the number of slots needed, between {@value GROUP_SIZE} and
+     *             {@value MAXIMUM_CAPACITY}
+     */
+    private static int capacityFor(int numMappings) {
+        int capacity = GROUP_SIZE;
+        while (maximumLoad(capacity) < numMappings && capacity < MAXIMUM_CAPACITY) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+    
+    /**
+     * Replaces the arrays with empty ones of the given capacity, emptying the map.
+     *
+     * @param capacity the number of slots, a power of two and at least one group
+     */
+    private void allocate(int capacity) {
+        control = new long[capacity / GROUP_SIZE];
+        Arrays.fill(control, EMPTY_GROUP);
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        size = 0;
+        growthLeft = maximumLoad(capacity);
+    }
+    
+    /**
+     * Reinserts every mapping into new arrays of the given capacity, dropping deleted markers.
+     *
+     * @param newCapacity the number of slots in the new arrays, a power of two
+     */
+    private void rebuild(int newCapacity) {
+        long[] oldControl = control;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        this.allocate(newCapacity);
+        for (int group = 0; group < oldControl.length; group++) {
+            for (long full = ~oldControl[group] & HIGH_BITS; full != 0; full &= full - 1) {
+                int index = group * GROUP_SIZE + lowestSlot(full);
+                Object key = oldKeys[index];
+                int hash = MyHashTable.spread(key.hashCode());
+                this.fill(this.findInsertSlot(hash), hash, key, oldValues[index]);
+            }
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    // single element operations
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns {@code true} if this map contains a mapping for the specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        Objects.requireNonNull(key);
+        
+        return this.indexOf(MyHashTable.spread(key.hashCode()), key) >= 0;
+    }
+    
+    /**
+     * Returns {@code true} if this map maps one or more keys to the specified value. This scans
+     * the value array directly.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the specified value
+     * @throws NullPointerException if the specified value is {@code null}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        
+        for (Object storedValue : values) {
+            if (value.equals(storedValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this map contains
+     * no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null} if this map contains
+     *             no mapping for the key
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        
+        int index = this.indexOf(MyHashTable.spread(key.hashCode()), key);
+        return (index < 0) ? null : (V) values[index];
+    }
+    
+    /**
+     * Associates the specified value with the specified key in this map. If the map previously
+     * contained a mapping for the key, the old value is replaced by the specified value.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was no mapping
+     *             for the key
+     * @throws NullPointerException if the specified key or value is {@code null}
+     * @throws IllegalStateException if the table is at its maximum capacity and full
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        
+        int hash = MyHashTable.spread(key.hashCode());
+        int index = this.indexOf(hash, key);
+        if (index >= 0) {
+            V oldValue = (V) values[index];
+            values[index] = value;
+            return oldValue;
+        }
+        
+        index = this.findInsertSlot(hash);
+        if (growthLeft == 0 && this.controlByte(index) == EMPTY) {
+            int capacity = capacityFor(size + 1);
+            if (maximumLoad(capacity) <= size) {
+                throw new IllegalStateException("MySwissTable cannot hold more than " + size + " mappings");
+            }
+            // When deleted markers used up the free slots, this rebuilds at the same capacity
+            this.rebuild(Math.max(capacity, keys.length));
+            index = this.findInsertSlot(hash);
+        }
+        this.fill(index, hash, key, value);
+        return null;
+    }
+    
+    /**
+     * Removes the mapping for a key from this map if it is present.
+     *
+     * @param key key whose mapping is to be removed from the map
+     * @return the previous value associated with key, or {@code null} if there was no mapping for
+     *             key.
+     * @throws NullPointerException if the specified key is {@code null}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Objects.requireNonNull(key);
+        
+        int index = this.indexOf(MyHashTable.spread(key.hashCode()), key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = (V) values[index];
+        this.erase(index);
+        return oldValue;
+    }
+    
+    /**
+     * Removes all of the mappings from this map. The capacity is left unchanged.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(control, EMPTY_GROUP);
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+        growthLeft = maximumLoad(keys.length);
+    }
+    
+    /**
+     * Returns an iterator over the mappings in this map.
+     *
+     * @return an iterator over the mappings in this map
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new EntryIterator();
+    }
+    
+    // ------------------------------------------------------------------------
+    // probing
+    // ------------------------------------------------------------------------
+    
+    /**
+     * Returns the group a key with the given hash starts probing at. The low 7 bits of the hash are
+     * its tag, so the group is chosen from the bits above them.
+     *
+     * @param hash the spread hash code of a key
+     * @return the index of the first group to probe
+     */
+    private int firstGroup(int hash) {
+        return (hash >>> 7) & (control.length - 1);
+    }
+    
+    /**
+     * Returns the group probed after the given one. Adding 1, 2, 3... groups in turn visits every
+     * group of a power-of-two table exactly once.
+     *
+     * @param group the group just probed
+     * @param step  the number of groups probed so far
+     * @return the index of the next group to probe
+     */
+    private int nextGroup(int group, int step) {
+        return (group + step) & (control.length - 1);
+    }
+    
+    /**
+     * Returns the slot holding the given key, or -1 if it is absent.
+     *
+     * @param hash the spread hash code of the key
+     * @param key  the key being looked up - never {@code null}
+     * @return the index of the key's slot, or -1
+     */
+    private int indexOf(int hash, Object key) {
+        long tag = hash & 0x7F;
+        int group = this.firstGroup(hash);
+        for (int step = 1;; step++) {
+            long word = control[group];
+            for (long matches = matchTag(word, tag); matches != 0; matches &= matches - 1) {
+                int index = group * GROUP_SIZE + lowestSlot(matches);
+                Object storedKey = keys[index];
+                if (storedKey == key || storedKey.equals(key)) {
+                    return index;
+                }
+            }
+            if (matchEmpty(word) != 0) {
+                return -1;
+            }
+            group = this.nextGroup(group, step);
+        }
+    }
+    
+    /**
+     * Returns the first empty or deleted slot in the probe sequence of the given hash. There is
+     * always an empty slot, since the table is never more than seven eighths full.
+     *
+     * @param hash the spread hash code of a key
+     * @return the index of the slot
+     */
+    private int findInsertSlot(int hash) {
+        int group = this.firstGroup(hash);
+        for (int step = 1;; step++) {
+            long free = matchEmptyOrDeleted(control[group]);
+            if (free != 0) {
+                return group * GROUP_SIZE + lowestSlot(free);
+            }
+            group = this.nextGroup(group, step);
+        }
+    }
+    
+    /**
+     * Stores a new mapping in an empty or deleted slot.
+     *
+     * @param index the index of the slot
+     * @param hash  the spread hash code of the key
+     * @param key   the key to store
+     * @param value the value to store
+     */
+    private void fill(int index, int hash, Object key, Object value) {
+        if (this.controlByte(index) == EMPTY) {
+            growthLeft--;
+        }
+        this.setControlByte(index, (byte) (hash & 0x7F));
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+    
+    /**
+     * Empties a full slot. If its group has an empty slot then the group has never been full, so no
+     * probe has passed through it and the slot can be made empty again. Otherwise it is marked
+     * deleted, so that probes still continue past the group.
+     *
+     * @param index the index of the slot
+     */
+    private void erase(int index) {
+        if (matchEmpty(control[index / GROUP_SIZE]) != 0) {
+            this.setControlByte(index, EMPTY);
+            growthLeft++;
+        } else {
+            this.setControlByte(index, DELETED);
+        }
+        keys[index] = null;
+        values[index] = null;
+        size--;
+    }
+    
+    private byte controlByte(int index) {
+        return (byte) (control[index / GROUP_SIZE] >>> (index % GROUP_SIZE * Byte.SIZE));
+    }
+    
+    private void setControlByte(int index, byte b) {
+        int shift = index % GROUP_SIZE * Byte.SIZE;
+        int group = index / GROUP_SIZE;
+        control[group] = (control[group] & ~(0xFFL << shift)) | ((b & 0xFFL) << shift);
+    }
+    
+    // ------------------------------------------------------------------------
+    // group matching
+    // ------------------------------------------------------------------------
+    
+    /*
+     * Each of these returns a word with the high bit of a byte set for each matching slot of the
+     * group. The slots can then be visited lowest first with lowestSlot and m &= m - 1.
+     */
+    
+    /**
+     * Matches the full slots whose tag equals the given one. This is the classic test for a zero
+     * byte applied to the control word XORed with the tag in every byte. It may also report a
+     * false positive in a byte above a true match, which costs one extra key comparison but is
+     * never an empty or deleted slot.
+     *
+     * @param word the control word of a group
+     * @param tag  the 7-bit tag to look for
+     * @return the matching slots
+     */
+    static long matchTag(long word, long tag) {
+        long x = word ^ (LOW_BITS * tag);
+        return (x - LOW_BITS) & ~x & HIGH_BITS;
+    }
+    
+    /**
+     * Matches the empty slots: the only control byte with its high bit set and bit 1 clear.
+     *
+     * @param word the control word of a group
+     * @return the empty slots
+     */
+    static long matchEmpty(long word) {
+        return word & ~(word << 6) & HIGH_BITS;
+    }
+    
+    /**
+     * Matches the empty and deleted slots: the control bytes with their high bit set and bit 0
+     * clear.
+     *
+     * @param word the control word of a group
+     * @return the empty and deleted slots
+     */
+    static long matchEmptyOrDeleted(long word) {
+        return word & ~(word << 7) & HIGH_BITS;
+    }
+    
+    /**
+     * Returns the position within its group of the lowest slot in a match.
+     *
+     * @param match a nonzero result of one of the match methods
+     * @return the index of the lowest matching slot, from 0 to 7
+     */
+    private static int lowestSlot(long match) {
+        return Long.numberOfTrailingZeros(match) >>> 3;
+    }
+    
+    // -------------------------------------------------------------------------
+    // Iterators
+    // -------------------------------------------------------------------------
+    
+    /**
+     * An iterator over the full slots of this hashtable, a group at a time. Removal never moves
+     * another mapping, so it doesn't disturb the iteration.
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private int group = -1;
+        private long full = 0;
+        private int lastReturned = -1;
+        
+        private EntryIterator() {
+            this.advance();
+        }
+        
+        /**
+         * Moves to the next group with a full slot if the current one has been used up.
+         */
+        private void advance() {
+            while (full == 0 && group < control.length - 1) {
+                group++;
+                full = ~control[group] & HIGH_BITS;
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return full != 0;
+        }
+        
+        @Override
+        public Entry<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = group * GROUP_SIZE + lowestSlot(full);
+            full &= full - 1;
+            this.advance();
+            return new SlotEntry(lastReturned);
+        }
+        
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            MySwissTable.this.erase(lastReturned);
+            lastReturned = -1;
+        }
+    }
+    
+    /**
+     * A map entry for a slot. Mappings only move between slots when the table is rebuilt, so this
+     * writes a new value straight to its slot.
+     */
+    private final class SlotEntry implements Entry<K, V> {
+        private final int index;
+        private final K key;
+        
+        @SuppressWarnings("unchecked")
+        private SlotEntry(int index) {
+            this.index = index;
+            this.key = (K) keys[index];
+        }
+        
+        @Override
+        public K getKey() {
+            return key;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V) values[index];
+        }
+        
+        /**
+         * Replaces the value corresponding to this entry with the specified value, writing through
+         * to the map. If the mapping has been removed from the map, or the map has been rebuilt,
+         * the results of this call are undefined.
+         *
+         * @param value new value to be stored in this entry
+         * @return old value corresponding to the entry
+         * @throws NullPointerException if the specified value is null
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            Objects.requireNonNull(value);
+            
+            V oldValue = (V) values[index];
+            values[index] = value;
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry<?, ?>)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && this.getValue().equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ this.getValue().hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + this.getValue();
+        }
+    }
+}
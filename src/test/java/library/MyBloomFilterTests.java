@@ -0,0 +1,112 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyBloomFilterTests {
+    
+    @Nested
+    class SizingTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyBloomFilter(-1, 0.01));
+            assertThrows(IllegalArgumentException.class, () -> new MyBloomFilter(100, 0));
+            assertThrows(IllegalArgumentException.class, () -> new MyBloomFilter(100, 1));
+            assertThrows(IllegalArgumentException.class, () -> new MyBloomFilter(100, Double.NaN));
+            assertEquals(256, new MyBloomFilter(0, 0.01).bitSize());
+        }
+        
+        @Test
+        void testBitsPerKey() {
+            double bitsPerKey = new MyBloomFilter(1_000_000, 0.01).bitSize() / 1_000_000.0;
+            assertTrue(bitsPerKey > 9.6 && bitsPerKey < 12, "bits per key: " + bitsPerKey);
+            assertTrue(new MyBloomFilter(1_000_000, 0.001).bitSize() > new MyBloomFilter(1_000_000, 0.01).bitSize());
+        }
+        
+        @Test
+        void testFalsePositiveRate() {
+            for (double rate : new double[] { 0.1, 0.01, 0.001 }) {
+                int n = 200_000;
+                MyBloomFilter filter = new MyBloomFilter(n, rate);
+                for (int i = 0; i < n; i++) {
+                    filter.add(i);
+                }
+                int falsePositives = 0;
+                int trials = 1_000_000;
+                for (int i = n; i < n + trials; i++) {
+                    if (filter.mightContain(i)) {
+                        falsePositives++;
+                    }
+                }
+                double observed = falsePositives / (double) trials;
+                assertTrue(observed < rate * 1.25, "observed " + observed + " for rate " + rate);
+            }
+        }
+        
+        @Test
+        void testFalsePositiveRateWithHashCodeCollisions() {
+            // Random longs are distinct keys, but about one in 2^32 pairs has equal hash codes
+            Random random = new Random(23);
+            int n = 1_000_000;
+            double rate = 0.001;
+            MyBloomFilter filter = new MyBloomFilter(n, rate);
+            for (int i = 0; i < n; i++) {
+                filter.add(random.nextLong());
+            }
+            int falsePositives = 0;
+            int trials = 4_000_000;
+            for (int i = 0; i < trials; i++) {
+                if (filter.mightContain(random.nextLong())) {
+                    falsePositives++;
+                }
+            }
+            double observed = falsePositives / (double) trials;
+            assertTrue(observed <= rate, "observed " + observed + " for rate " + rate);
+        }
+    }
+    
+    @Nested
+    class FilterTests {
+        
+        @Test
+        void testNoFalseNegatives() {
+            Random random = new Random(23);
+            MyBloomFilter filter = new MyBloomFilter(10_000, 0.01);
+            long[] hashes = new long[20_000];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = random.nextLong();
+                filter.addHash(hashes[i]);
+                filter.add("s" + i);
+            }
+            for (int i = 0; i < hashes.length; i++) {
+                assertTrue(filter.mightContainHash(hashes[i]));
+                assertTrue(filter.mightContain("s" + i));
+            }
+        }
+        
+        @Test
+        void testNullKey() {
+            MyBloomFilter filter = new MyBloomFilter(10, 0.01);
+            assertFalse(filter.mightContain(null));
+            filter.add(null);
+            assertTrue(filter.mightContain(null));
+        }
+        
+        @Test
+        void testClear() {
+            MyBloomFilter filter = new MyBloomFilter(100, 0.01);
+            for (int i = 0; i < 100; i++) {
+                filter.add(i);
+            }
+            filter.clear();
+            for (int i = 0; i < 100; i++) {
+                assertFalse(filter.mightContain(i));
+            }
+        }
+    }
+}
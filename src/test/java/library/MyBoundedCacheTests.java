@@ -0,0 +1,211 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyBoundedCacheTests {
+    
+    @Nested
+    class FrequencySketchTests {
+        
+        @Test
+        void testFrequencyCountsUpToFifteen() {
+            MyBoundedCache.FrequencySketch sketch = new MyBoundedCache.FrequencySketch();
+            sketch.ensureCapacity(512);
+            assertEquals(0, sketch.frequency("a"));
+            for (int i = 1; i <= 20; i++) {
+                sketch.increment("a");
+                assertEquals(Math.min(i, 15), sketch.frequency("a"));
+            }
+        }
+        
+        @Test
+        void testCountersAreHalvedAfterSamplePeriod() {
+            MyBoundedCache.FrequencySketch sketch = new MyBoundedCache.FrequencySketch();
+            sketch.ensureCapacity(8);
+            for (int i = 0; i < 15; i++) {
+                sketch.increment("hot");
+            }
+            assertEquals(15, sketch.frequency("hot"));
+            for (int i = 0; i < 200; i++) {
+                sketch.increment(i);
+            }
+            assertTrue(sketch.frequency("hot") < 15, sketch.frequency("hot") + " after aging");
+        }
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyBoundedCache<>(-1));
+            assertThrows(NullPointerException.class, () -> new MyBoundedCache<>(10, null));
+            assertEquals(10, new MyBoundedCache<>(10).maximumWeight());
+        }
+        
+        @Test
+        void testNullHostile() {
+            MyBoundedCache<String, String> cache = new MyBoundedCache<>(10);
+            assertThrows(NullPointerException.class, () -> cache.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> cache.put("a", null));
+            assertThrows(NullPointerException.class, () -> cache.get(null));
+            assertThrows(NullPointerException.class, () -> cache.containsKey(null));
+            assertThrows(NullPointerException.class, () -> cache.remove(null));
+            assertThrows(NullPointerException.class, () -> cache.computeIfAbsent("a", null));
+        }
+        
+        @Test
+        void testBelowMaximumBehavesLikeMap() {
+            Random random = new Random(14);
+            Map<Integer, Integer> expected = new HashMap<>();
+            MyBoundedCache<Integer, Integer> cache = new MyBoundedCache<>(1000);
+            for (int i = 0; i < 20_000; i++) {
+                Integer key = random.nextInt(500);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        assertEquals(expected.put(key, i), cache.put(key, i));
+                        break;
+                    case 1:
+                        assertEquals(expected.remove(key), cache.remove(key));
+                        break;
+                    default:
+                        assertEquals(expected.get(key), cache.get(key));
+                        break;
+                }
+            }
+            assertEquals(expected, cache);
+            assertEquals(cache, expected);
+            assertEquals(expected.size(), cache.weightedSize());
+            assertEquals(0, cache.stats().evictionCount());
+            cache.clear();
+            assertTrue(cache.isEmpty());
+            assertEquals(0, cache.weightedSize());
+        }
+        
+        @Test
+        void testIteratorRemoveAndSetValue() {
+            MyBoundedCache<Integer, Integer> cache = new MyBoundedCache<>(100);
+            for (int i = 0; i < 50; i++) {
+                cache.put(i, i);
+            }
+            cache.entrySet().removeIf(entry -> entry.getKey() % 2 == 0);
+            for (Map.Entry<Integer, Integer> entry : cache.entrySet()) {
+                entry.setValue(-entry.getValue());
+            }
+            assertEquals(25, cache.size());
+            assertEquals(25, cache.weightedSize());
+            assertEquals(-7, cache.get(7));
+        }
+    }
+    
+    @Nested
+    class EvictionTests {
+        
+        @Test
+        void testSizeStaysBounded() {
+            MyBoundedCache<Integer, Integer> cache = new MyBoundedCache<>(100);
+            for (int i = 0; i < 10_000; i++) {
+                cache.put(i, i);
+                cache.get(i % 150);
+            }
+            cache.cleanUp();
+            assertEquals(100, cache.size());
+            assertEquals(100, cache.weightedSize());
+            assertEquals(10_000 - 100, cache.stats().evictionCount());
+        }
+        
+        @Test
+        void testWeightBound() {
+            MyBoundedCache<String, String> cache = new MyBoundedCache<>(100, (key, value) -> value.length());
+            for (int i = 0; i < 1000; i++) {
+                cache.put("k" + i, "x".repeat(i % 20));
+            }
+            assertTrue(cache.weightedSize() <= 100);
+            cache.put("huge", "x".repeat(101));
+            cache.cleanUp();
+            assertFalse(cache.containsKey("huge"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> new MyBoundedCache<String, String>(10, (key, value) -> -1).put("a", "b"));
+        }
+        
+        @Test
+        void testFrequentKeysSurviveScan() {
+            MyBoundedCache<Integer, Integer> cache = new MyBoundedCache<>(100);
+            for (int round = 0; round < 10; round++) {
+                for (int key = 0; key < 50; key++) {
+                    cache.computeIfAbsent(key, k -> k);
+                }
+            }
+            // A scan of keys seen once shouldn't flush keys which are still used now and then
+            for (int key = 1000; key < 11_000; key++) {
+                cache.computeIfAbsent(key, k -> k);
+                if (key % 10 == 0) {
+                    cache.computeIfAbsent(key / 10 % 50, k -> k);
+                }
+            }
+            cache.cleanUp();
+            for (int key = 0; key < 50; key++) {
+                assertTrue(cache.containsKey(key), "lost hot key " + key);
+            }
+        }
+        
+        @Test
+        void testHitRateBeatsLruOnSkewedWorkload() {
+            MyBoundedCache<Integer, Integer> cache = new MyBoundedCache<>(500);
+            MyLinkedHashTable<Integer, Integer> lru = MyLinkedHashTableTests.lruTable(500);
+            Random random = new Random(14);
+            int lruHits = 0;
+            int requests = 200_000;
+            for (int i = 0; i < requests; i++) {
+                // Half the requests go to 400 hot keys, the rest to a long tail of 100,000 keys
+                Integer key = random.nextBoolean() ? random.nextInt(400) : 400 + random.nextInt(100_000);
+                cache.computeIfAbsent(key, k -> k);
+                if (lru.get(key) != null) {
+                    lruHits++;
+                } else {
+                    lru.put(key, key);
+                }
+            }
+            MyBoundedCache.Stats stats = cache.stats();
+            assertEquals(requests, stats.requestCount());
+            assertEquals(1.0, stats.hitRate() + stats.missRate(), 1e-9);
+            double lruHitRate = (double) lruHits / requests;
+            assertTrue(stats.hitRate() > lruHitRate + 0.05, stats.hitRate() + " vs LRU " + lruHitRate);
+        }
+    }
+    
+    @Nested
+    class ConcurrencyTests {
+        
+        @Test
+        void testConcurrentReadsAndWritesStayBounded() throws Exception {
+            MyBoundedCache<Integer, Integer> cache = new MyBoundedCache<>(1000);
+            AtomicInteger nextThread = new AtomicInteger();
+            MyConcurrentHashTableTests.runConcurrently(8, () -> {
+                Random random = new Random(nextThread.getAndIncrement());
+                for (int i = 0; i < 50_000; i++) {
+                    Integer key = random.nextInt(5000);
+                    if (random.nextInt(4) == 0) {
+                        cache.put(key, key);
+                    } else {
+                        Integer value = cache.get(key);
+                        assertTrue(value == null || value.equals(key));
+                    }
+                }
+                return null;
+            });
+            assertEquals(cache.size(), cache.weightedSize());
+            assertTrue(cache.size() <= 1000, cache.size() + " mappings");
+            MyBoundedCache.Stats stats = cache.stats();
+            assertEquals(stats.evictionCount(), stats.evictionWeight());
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyConcurrentHashTableTests {
+    
+    private static final int THREADS = 8;
+    
+    /**
+     * Runs a task on several threads at once, and rethrows the first failure.
+     */
+    static void runConcurrently(int threads, Callable<?> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyConcurrentHashTable<>(-1));
+            assertThrows(NullPointerException.class, () -> new MyConcurrentHashTable<>(null));
+            assertEquals(1, Integer.bitCount(new MyConcurrentHashTable<>(100).capacity()));
+        }
+        
+        @Test
+        void testNullHostile() {
+            MyConcurrentHashTable<String, String> table = new MyConcurrentHashTable<>();
+            assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> table.put("a", null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.putIfAbsent("a", null));
+            assertThrows(NullPointerException.class, () -> table.computeIfAbsent(null, k -> k));
+            assertThrows(NullPointerException.class, () -> table.merge("a", null, (a, b) -> a));
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            BiFunction<Integer, Integer, Integer> sum = (a, b) -> (a + b) % 7 == 0 ? null : a + b;
+            RandomOperations<MyConcurrentHashTable<Integer, Integer>, Integer, Integer> operations = RandomOperations
+                    .onMap(() -> new MyConcurrentHashTable<>(0));
+            operations.with(RandomOperations.put()).with(RandomOperations.remove())
+                    .with((table, expected, key, value) -> assertEquals(expected.putIfAbsent(key, value),
+                            table.putIfAbsent(key, value)))
+                    .with((table, expected, key, value) -> assertEquals(expected.merge(key, value, sum),
+                            table.merge(key, value, sum)))
+                    .with((table, expected, key, value) -> assertEquals(expected.computeIfAbsent(key, k -> k),
+                            table.computeIfAbsent(key, k -> k)))
+                    .with((table, expected, key, value) -> assertEquals(
+                            expected.compute(key, (k, v) -> v == null ? value : null),
+                            table.compute(key, (k, v) -> v == null ? value : null)))
+                    .with((table, expected, key, value) -> {
+                        assertEquals(expected.replace(key, value, value + 1), table.replace(key, value, value + 1));
+                        assertEquals(expected.remove(key, value), table.remove(key, value));
+                    })
+                    .with((table, expected, key, value) -> {
+                        assertEquals(expected.get(key), table.get(key));
+                        assertEquals(expected.computeIfPresent(key, (k, v) -> v + 1),
+                                table.computeIfPresent(key, (k, v) -> v + 1));
+                    })
+                    .run(8, 50_000, (random, i) -> random.nextInt(2000), (random, i) -> random.nextInt(10));
+            MyConcurrentHashTable<Integer, Integer> table = operations.table;
+            assertEquals(table, operations.expected);
+            table.clear();
+            assertTrue(table.isEmpty());
+        }
+        
+        @Test
+        void testRecursiveUpdateIsDetected() {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>();
+            assertThrows(IllegalStateException.class, () -> table.computeIfAbsent(1, k -> table.put(1, 1)));
+            assertFalse(table.containsKey(1));
+        }
+        
+        @Test
+        void testRecursiveUpdateThatResizesIsDetected() {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>(2);
+            // The puts land in other buckets, but resize the table while key 0 is reserved
+            assertThrows(IllegalStateException.class, () -> table.computeIfAbsent(0, k -> {
+                for (int i = 1; i < 100; i++) {
+                    table.put(i * 2 + 1, i);
+                }
+                return 42;
+            }));
+            assertNull(table.get(0));
+        }
+    }
+    
+    @Nested
+    class ConcurrencyTests {
+        
+        @Test
+        void testConcurrentPutsDuringResize() throws Exception {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>(0);
+            AtomicInteger nextThread = new AtomicInteger();
+            runConcurrently(THREADS, () -> {
+                int base = nextThread.getAndIncrement() * 100_000;
+                for (int i = base; i < base + 50_000; i++) {
+                    table.put(i, i);
+                    assertEquals(i, table.get(i));
+                }
+                return null;
+            });
+            assertEquals(THREADS * 50_000, table.size());
+            for (int t = 0; t < THREADS; t++) {
+                for (int i = t * 100_000; i < t * 100_000 + 50_000; i++) {
+                    assertEquals(i, table.get(i));
+                }
+            }
+        }
+        
+        @Test
+        void testReadersAndWritersDuringCooperativeResize() throws Exception {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>(0);
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+            }
+            int writers = 2 * THREADS;
+            AtomicInteger nextThread = new AtomicInteger();
+            AtomicInteger writersLeft = new AtomicInteger(writers);
+            runConcurrently(writers + 2, () -> {
+                int thread = nextThread.getAndIncrement();
+                if (thread < 2) {
+                    // The table doubles many times while readers look up keys that are always present
+                    do {
+                        for (int i = 0; i < 1000; i++) {
+                            assertEquals(i, table.get(i));
+                        }
+                    } while (writersLeft.get() > 0);
+                } else {
+                    int base = thread * 100_000;
+                    for (int i = base; i < base + 20_000; i++) {
+                        assertNull(table.putIfAbsent(i, i));
+                    }
+                    writersLeft.decrementAndGet();
+                }
+                return null;
+            });
+            assertEquals(1000 + writers * 20_000, table.size());
+            assertTrue(table.capacity() >= (1000 + writers * 20_000) * 4 / 3);
+            for (int thread = 2; thread < writers + 2; thread++) {
+                for (int i = thread * 100_000; i < thread * 100_000 + 20_000; i++) {
+                    assertEquals(i, table.get(i));
+                }
+            }
+        }
+        
+        @Test
+        void testMergeIsAtomic() throws Exception {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>();
+            runConcurrently(THREADS, () -> {
+                for (int i = 0; i < 20_000; i++) {
+                    table.merge(i % 100, 1, Integer::sum);
+                }
+                return null;
+            });
+            for (int key = 0; key < 100; key++) {
+                assertEquals(THREADS * 200, table.get(key));
+            }
+        }
+        
+        @Test
+        void testComputeIfAbsentAppliesOncePerKey() throws Exception {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>(0);
+            AtomicInteger calls = new AtomicInteger();
+            runConcurrently(THREADS, () -> {
+                for (int i = 0; i < 10_000; i++) {
+                    table.computeIfAbsent(i, k -> calls.incrementAndGet());
+                }
+                return null;
+            });
+            assertEquals(10_000, calls.get());
+            assertEquals(10_000, table.size());
+        }
+        
+        @Test
+        void testPutIfAbsentHasOneWinner() throws Exception {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>(0);
+            AtomicInteger wins = new AtomicInteger();
+            runConcurrently(THREADS, () -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (table.putIfAbsent(i, i) == null) {
+                        wins.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+            assertEquals(10_000, wins.get());
+        }
+        
+        @Test
+        void testIterationIsWeaklyConsistent() throws Exception {
+            MyConcurrentHashTable<Integer, Integer> table = new MyConcurrentHashTable<>(0);
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+            }
+            AtomicInteger nextThread = new AtomicInteger();
+            runConcurrently(4, () -> {
+                int thread = nextThread.getAndIncrement();
+                if (thread == 0) {
+                    // Keys below 1000 are never removed, so every pass must see each of them once.
+                    // Other keys may be seen twice, as with ConcurrentHashMap: once through a node
+                    // removed during the pass, and again after being put back at the end of its chain
+                    for (int pass = 0; pass < 20; pass++) {
+                        Set<Integer> seen = new HashSet<>();
+                        for (Iterator<Integer> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                            Integer key = iterator.next();
+                            assertTrue(seen.add(key) || key >= 1000);
+                        }
+                        for (int i = 0; i < 1000; i++) {
+                            assertTrue(seen.contains(i));
+                        }
+                    }
+                } else {
+                    Random random = new Random(thread);
+                    for (int i = 0; i < 50_000; i++) {
+                        int key = 1000 + random.nextInt(100_000);
+                        if (random.nextBoolean()) {
+                            table.put(key, key);
+                        } else {
+                            table.remove(key);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+    }
+}
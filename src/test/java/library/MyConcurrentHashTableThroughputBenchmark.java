@@ -0,0 +1,82 @@
+package library;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prints the throughput of a read-mostly workload (90% gets, 5% puts, 5% removes) on a
+ * {@link MyHashTable} behind a single lock and on a {@link MyConcurrentHashTable}, for 1 up to 32
+ * threads.
+ * <p>
+ * This is run by hand rather than as part of the test suite:
+ *
+ * <pre>
+ * {@code java -cp target/classes:target/test-classes library.MyConcurrentHashTableThroughputBenchmark [seconds]}
+ * </pre>
+ */
+public class MyConcurrentHashTableThroughputBenchmark {
+    
+    private static final int KEYS = 1 << 16;
+    
+    public static void main(String[] args) throws InterruptedException {
+        double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 1.0;
+        
+        System.out.printf("%8s %22s %22s%n", "threads", "global lock (ops/ms)", "concurrent (ops/ms)");
+        for (int threads = 1; threads <= 32; threads *= 2) {
+            double locked = measure(Collections.synchronizedMap(new MyHashTable<>()), threads, seconds);
+            double concurrent = measure(new MyConcurrentHashTable<>(), threads, seconds);
+            System.out.printf("%8d %,22.0f %,22.0f%n", threads, locked, concurrent);
+        }
+    }
+    
+    /**
+     * Runs the workload on a map with the given number of threads.
+     *
+     * @return the number of operations per millisecond across all threads
+     */
+    private static double measure(Map<Integer, Integer> map, int threads, double seconds)
+            throws InterruptedException {
+        for (int i = 0; i < KEYS; i += 2) {
+            map.put(i, i);
+        }
+        
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long nanos = (long) (seconds * 1e9);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + nanos;
+                long count = 0;
+                while ((count & 0xFF) != 0 || System.nanoTime() < end) {
+                    Integer key = random.nextInt(KEYS);
+                    int choice = random.nextInt(100);
+                    if (choice < 90) {
+                        map.get(key);
+                    } else if (choice < 95) {
+                        map.put(key, key);
+                    } else {
+                        map.remove(key);
+                    }
+                    count++;
+                }
+                operations.add(count);
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / (seconds * 1000);
+    }
+}
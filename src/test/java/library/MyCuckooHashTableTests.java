@@ -0,0 +1,181 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import library.MyRobinHoodHashTableTests.CollidingKey;
+
+class MyCuckooHashTableTests {
+    
+    @Nested
+    class CapacityTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyCuckooHashTable<>(-1));
+            assertThrows(NullPointerException.class, () -> new MyCuckooHashTable<>(null));
+        }
+        
+        @Test
+        void testPresizedTableDoesNotGrow() {
+            MyCuckooHashTable<Integer, Integer> table = new MyCuckooHashTable<>(1000);
+            int capacity = table.capacity();
+            assertEquals(1, Integer.bitCount(capacity));
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+            }
+            assertEquals(capacity, table.capacity());
+        }
+        
+        @Test
+        void testFillsToHighLoadWithoutOverflowingStash() {
+            Random random = new Random(21);
+            MyCuckooHashTable<Long, Long> table = new MyCuckooHashTable<>();
+            Set<Long> keys = new HashSet<>();
+            while (keys.size() < 200_000) {
+                long key = random.nextLong();
+                keys.add(key);
+                table.put(key, key);
+                assertTrue(table.stashSize() <= 4);
+            }
+            // The table only grows at its load factor, not on cycles
+            assertTrue(table.size() > table.capacity() * 0.45, table.size() + " in " + table.capacity());
+            for (long key : keys) {
+                assertEquals(key, table.get(key));
+            }
+        }
+        
+        @Test
+        void testEqualHashCodesUseTheStash() {
+            MyCuckooHashTable<CollidingKey, Integer> table = new MyCuckooHashTable<>();
+            for (int i = 0; i < 100; i++) {
+                // Keys 0, 7, 14... all have the hash code 0
+                table.put(new CollidingKey(i * 7), i);
+            }
+            assertEquals(100, table.size());
+            assertTrue(table.stashSize() >= 100 - 8);
+            assertTrue(table.capacity() <= 512, "grew to " + table.capacity());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, table.get(new CollidingKey(i * 7)));
+            }
+            for (int i = 0; i < 100; i += 2) {
+                assertEquals(i, table.remove(new CollidingKey(i * 7)));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals((i % 2 == 0) ? null : i, table.get(new CollidingKey(i * 7)));
+            }
+        }
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testNullHostile() {
+            MyCuckooHashTable<String, String> table = new MyCuckooHashTable<>();
+            assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> table.put("a", null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.containsKey(null));
+            assertThrows(NullPointerException.class, () -> table.containsValue(null));
+            assertThrows(NullPointerException.class, () -> table.remove(null));
+        }
+        
+        @Test
+        void testEqualsHashMap() {
+            Map<String, Integer> expected = new HashMap<>();
+            MyCuckooHashTable<String, Integer> table = new MyCuckooHashTable<>();
+            for (int i = 0; i < 100; i++) {
+                expected.put("s" + i, i);
+                table.put("s" + i, i);
+            }
+            assertEquals(expected, table);
+            assertEquals(table, expected);
+            assertEquals(expected.hashCode(), table.hashCode());
+            assertEquals(expected.entrySet(), table.entrySet());
+            assertEquals(new MyCuckooHashTable<>(expected), table);
+            assertTrue(table.containsValue(99));
+            assertFalse(table.containsValue(100));
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            RandomOperations<MyCuckooHashTable<Integer, Integer>, Integer, Integer> operations = RandomOperations
+                    .onMap(MyCuckooHashTable::new);
+            operations.with(RandomOperations.put()).with(RandomOperations.remove()).with(RandomOperations.get())
+                    .run(21, 50_000, (random, i) -> random.nextInt(3000), (random, i) -> i);
+            MyCuckooHashTable<Integer, Integer> table = operations.table;
+            table.clear();
+            assertTrue(table.isEmpty());
+            assertNull(table.get(1));
+        }
+    }
+    
+    @Nested
+    class IteratorTests {
+        
+        @Test
+        void testIteratorRemoveVisitsEveryEntryOnce() {
+            for (int seed = 0; seed < 20; seed++) {
+                Random random = new Random(seed);
+                MyCuckooHashTable<CollidingKey, Integer> table = new MyCuckooHashTable<>();
+                Map<CollidingKey, Integer> expected = new HashMap<>();
+                // Few distinct hash codes, so that some keys are stashed
+                for (int i = 0; i < 200; i++) {
+                    CollidingKey key = new CollidingKey(random.nextInt(1000));
+                    table.put(key, i);
+                    expected.put(key, i);
+                }
+                assertTrue(table.stashSize() > 0);
+                
+                Set<CollidingKey> original = new HashSet<>(expected.keySet());
+                Set<CollidingKey> seen = new HashSet<>();
+                for (Iterator<CollidingKey> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                    CollidingKey key = iterator.next();
+                    assertTrue(seen.add(key), "visited twice: " + key);
+                    if (random.nextBoolean()) {
+                        iterator.remove();
+                        expected.remove(key);
+                    }
+                }
+                assertEquals(original, seen);
+                assertEquals(expected, table);
+            }
+        }
+        
+        @Test
+        void testIteratorRemoveRequiresNext() {
+            MyCuckooHashTable<String, Integer> table = new MyCuckooHashTable<>();
+            table.put("a", 1);
+            Iterator<String> iterator = table.keySet().iterator();
+            assertThrows(IllegalStateException.class, iterator::remove);
+            iterator.next();
+            iterator.remove();
+            assertThrows(IllegalStateException.class, iterator::remove);
+            assertTrue(table.isEmpty());
+        }
+        
+        @Test
+        void testEntrySetValueWritesThrough() {
+            MyCuckooHashTable<String, Integer> table = new MyCuckooHashTable<>();
+            for (int i = 0; i < 10; i++) {
+                table.put("s" + i, i);
+            }
+            for (Map.Entry<String, Integer> entry : table.entrySet()) {
+                assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, table.get("s" + i));
+            }
+        }
+    }
+}
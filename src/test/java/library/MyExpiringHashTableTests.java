@@ -0,0 +1,222 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyExpiringHashTableTests {
+    
+    private final AtomicLong time = new AtomicLong(-TimeUnit.DAYS.toNanos(3));
+    
+    private void advance(long duration, TimeUnit unit) {
+        time.addAndGet(unit.toNanos(duration));
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyExpiringHashTable<>(-1, TimeUnit.SECONDS));
+            assertThrows(NullPointerException.class, () -> new MyExpiringHashTable<>(1, null));
+            MyExpiringHashTable<String, String> table = new MyExpiringHashTable<>(1, TimeUnit.SECONDS);
+            assertThrows(IllegalArgumentException.class, () -> table.put("a", "b", -1, TimeUnit.SECONDS));
+            assertThrows(IllegalArgumentException.class, () -> table.startSweeper(0, TimeUnit.SECONDS));
+        }
+        
+        @Test
+        void testNullHostile() {
+            MyExpiringHashTable<String, String> table = new MyExpiringHashTable<>(1, TimeUnit.SECONDS);
+            assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> table.put("a", null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.containsKey(null));
+            assertThrows(NullPointerException.class, () -> table.remove(null));
+        }
+        
+        @Test
+        void testBeforeExpiryBehavesLikeMap() {
+            Random random = new Random(15);
+            Map<Integer, Integer> expected = new HashMap<>();
+            MyExpiringHashTable<Integer, Integer> table = new MyExpiringHashTable<>(1, TimeUnit.HOURS, false,
+                    time::get);
+            for (int i = 0; i < 20_000; i++) {
+                Integer key = random.nextInt(500);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        assertEquals(expected.put(key, i), table.put(key, i));
+                        break;
+                    case 1:
+                        assertEquals(expected.remove(key), table.remove(key));
+                        break;
+                    default:
+                        assertEquals(expected.get(key), table.get(key));
+                        break;
+                }
+                advance(100, TimeUnit.MICROSECONDS);
+            }
+            assertEquals(expected, table);
+            assertEquals(table, expected);
+            table.clear();
+            assertTrue(table.isEmpty());
+        }
+        
+        @Test
+        void testCompoundOperationsAreAtomic() throws Exception {
+            MyExpiringHashTable<Integer, Integer> table = new MyExpiringHashTable<>(1, TimeUnit.HOURS);
+            AtomicLong created = new AtomicLong();
+            MyConcurrentHashTableTests.runConcurrently(8, () -> {
+                for (int i = 0; i < 10_000; i++) {
+                    table.merge(i % 100, 1, Integer::sum);
+                    table.computeIfAbsent(100 + i % 100, k -> {
+                        created.incrementAndGet();
+                        return 0;
+                    });
+                    table.compute(200, (k, v) -> (v == null) ? 1 : v + 1);
+                }
+                return null;
+            });
+            for (int i = 0; i < 100; i++) {
+                assertEquals(800, table.get(i));
+            }
+            assertEquals(100, created.get());
+            assertEquals(80_000, table.get(200));
+        }
+    }
+    
+    @Nested
+    class ExpiryTests {
+        
+        @Test
+        void testExpireAfterWrite() {
+            MyExpiringHashTable<String, Integer> table = new MyExpiringHashTable<>(10, TimeUnit.SECONDS, false,
+                    time::get);
+            table.put("a", 1);
+            advance(6, TimeUnit.SECONDS);
+            assertEquals(1, table.get("a"));
+            assertEquals(4, table.remainingTime("a", TimeUnit.SECONDS));
+            advance(4, TimeUnit.SECONDS);
+            assertNull(table.get("a"));
+            assertFalse(table.containsKey("a"));
+            assertEquals(-1, table.remainingTime("a", TimeUnit.SECONDS));
+            advance(2, TimeUnit.SECONDS);
+            assertEquals(0, table.size());
+            assertEquals(0, table.storedSize());
+        }
+        
+        @Test
+        void testExpireAfterAccess() {
+            MyExpiringHashTable<String, Integer> table = new MyExpiringHashTable<>(10, TimeUnit.SECONDS, true,
+                    time::get);
+            table.put("a", 1);
+            for (int i = 0; i < 10; i++) {
+                advance(8, TimeUnit.SECONDS);
+                assertEquals(1, table.get("a"));
+            }
+            advance(11, TimeUnit.SECONDS);
+            assertNull(table.get("a"));
+        }
+        
+        @Test
+        void testPutRestartsTimeToLive() {
+            MyExpiringHashTable<String, Integer> table = new MyExpiringHashTable<>(10, TimeUnit.SECONDS, false,
+                    time::get);
+            table.put("a", 1);
+            advance(8, TimeUnit.SECONDS);
+            assertEquals(1, table.put("a", 2));
+            advance(8, TimeUnit.SECONDS);
+            assertEquals(2, table.get("a"));
+            advance(8, TimeUnit.SECONDS);
+            assertNull(table.put("a", 3));
+            advance(2, TimeUnit.SECONDS);
+            assertEquals(3, table.get("a"));
+        }
+        
+        @Test
+        void testPerEntryTimeToLiveCascades() {
+            MyExpiringHashTable<Integer, Integer> table = new MyExpiringHashTable<>(1, TimeUnit.DAYS, false,
+                    time::get);
+            // Times to live from a second to ten days, spread over every level of the wheel
+            Random random = new Random(15);
+            Map<Integer, Long> expiries = new HashMap<>();
+            for (int key = 0; key < 5000; key++) {
+                long seconds = 1 + (long) Math.pow(864_000, random.nextDouble());
+                table.put(key, key, seconds, TimeUnit.SECONDS);
+                expiries.put(key, seconds);
+            }
+            long elapsed = 0;
+            while (elapsed < 864_002) {
+                long step = 1 + random.nextInt((int) Math.min(elapsed / 2 + 2, 40_000));
+                advance(step, TimeUnit.SECONDS);
+                elapsed += step;
+                table.cleanUp();
+                for (int key = 0; key < 5000; key += 7) {
+                    long ttl = expiries.get(key);
+                    if (ttl <= elapsed) {
+                        assertNull(table.get(key), "key " + key + " outlived " + ttl + "s at " + elapsed + "s");
+                    } else {
+                        assertEquals(key, table.get(key), "key " + key + " lost before " + ttl + "s at " + elapsed + "s");
+                    }
+                }
+                // Expired mappings are swept within about a second, so none are stored two seconds on
+                long now = elapsed;
+                long allowed = expiries.values().stream().filter(ttl -> ttl > now - 2).count();
+                assertTrue(table.storedSize() <= allowed, table.storedSize() + " stored at " + elapsed + "s");
+            }
+            assertTrue(table.isEmpty());
+            assertEquals(0, table.storedSize());
+        }
+        
+        @Test
+        void testIteratorSkipsExpired() {
+            MyExpiringHashTable<Integer, Integer> table = new MyExpiringHashTable<>(10, TimeUnit.SECONDS, false,
+                    time::get);
+            for (int i = 0; i < 100; i++) {
+                table.put(i, i, (i % 2 == 0) ? 5 : 20, TimeUnit.SECONDS);
+            }
+            advance(6, TimeUnit.SECONDS);
+            int count = 0;
+            synchronized (table) {
+                for (Iterator<Integer> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                    int key = iterator.next();
+                    assertEquals(1, key % 2);
+                    if (key < 50) {
+                        iterator.remove();
+                    }
+                    count++;
+                }
+            }
+            assertEquals(50, count);
+            assertEquals(25, table.size());
+            advance(20, TimeUnit.SECONDS);
+            assertTrue(table.isEmpty());
+            assertEquals(0, table.storedSize());
+        }
+        
+        @Test
+        void testBackgroundSweeper() throws InterruptedException {
+            try (MyExpiringHashTable<Integer, Integer> table = new MyExpiringHashTable<>(1, TimeUnit.SECONDS, false,
+                    time::get)) {
+                for (int i = 0; i < 100; i++) {
+                    table.put(i, i);
+                }
+                table.startSweeper(1, TimeUnit.MILLISECONDS);
+                assertThrows(IllegalStateException.class, () -> table.startSweeper(1, TimeUnit.MILLISECONDS));
+                advance(3, TimeUnit.SECONDS);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (table.storedSize() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertEquals(0, table.storedSize());
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import library.MyRobinHoodHashTableTests.CollidingKey;
+
+class MyFrozenHashTableTests {
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testNullHostile() {
+            assertThrows(NullPointerException.class, () -> MyFrozenHashTable.copyOf(null));
+            Map<String, String> withNull = new HashMap<>();
+            withNull.put("a", null);
+            assertThrows(NullPointerException.class, () -> MyFrozenHashTable.copyOf(withNull));
+            MyFrozenHashTable<String, String> table = MyFrozenHashTable.copyOf(Map.of("a", "b"));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.containsKey(null));
+            assertThrows(NullPointerException.class, () -> table.containsValue(null));
+        }
+        
+        @Test
+        void testEmpty() {
+            MyFrozenHashTable<String, String> table = MyFrozenHashTable.copyOf(Map.of());
+            assertTrue(table.isEmpty());
+            assertNull(table.get("a"));
+            assertFalse(table.entrySet().iterator().hasNext());
+            assertEquals(Map.of(), table);
+        }
+        
+        @Test
+        void testMatchesSource() {
+            Random random = new Random(22);
+            for (int size : new int[] { 1, 2, 3, 5, 17, 1000, 100_000 }) {
+                Map<Integer, Integer> expected = new HashMap<>();
+                while (expected.size() < size) {
+                    expected.put(random.nextInt(), random.nextInt());
+                }
+                MyFrozenHashTable<Integer, Integer> table = MyFrozenHashTable.copyOf(expected);
+                assertEquals(size, table.size());
+                for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue(), table.get(entry.getKey()));
+                }
+                for (int i = 0; i < 1000; i++) {
+                    Integer key = random.nextInt();
+                    assertEquals(expected.get(key), table.get(key));
+                }
+                assertEquals(expected, table);
+                assertEquals(table, expected);
+                assertEquals(expected.hashCode(), table.hashCode());
+            }
+        }
+        
+        @Test
+        void testEqualHashCodes() {
+            Map<CollidingKey, String> expected = new HashMap<>();
+            for (int i = 0; i < 500; i++) {
+                expected.put(new CollidingKey(i), "v" + i);
+            }
+            MyFrozenHashTable<CollidingKey, String> table = MyFrozenHashTable.copyOf(expected);
+            assertEquals(expected, table);
+            for (int i = 0; i < 600; i++) {
+                assertEquals(expected.get(new CollidingKey(i)), table.get(new CollidingKey(i)));
+            }
+            assertTrue(table.containsValue("v499"));
+            assertFalse(table.containsValue("v500"));
+        }
+        
+        @Test
+        void testFreezeMyHashTable() {
+            MyHashTable<String, Integer> source = new MyHashTable<>();
+            for (int i = 0; i < 1000; i++) {
+                source.put("s" + i, i);
+            }
+            MyFrozenHashTable<String, Integer> table = source.freeze();
+            source.put("s0", -1);
+            source.remove("s1");
+            assertEquals(0, table.get("s0"));
+            assertEquals(1, table.get("s1"));
+            assertEquals(1000, table.size());
+        }
+    }
+    
+    @Nested
+    class ImmutabilityTests {
+        
+        @Test
+        void testModificationsThrow() {
+            Map<String, Integer> source = new HashMap<>();
+            for (int i = 0; i < 10; i++) {
+                source.put("s" + i, i);
+            }
+            MyFrozenHashTable<String, Integer> table = MyFrozenHashTable.copyOf(source);
+            assertThrows(UnsupportedOperationException.class, () -> table.put("a", 1));
+            assertThrows(UnsupportedOperationException.class, () -> table.put("s0", 1));
+            assertThrows(UnsupportedOperationException.class, () -> table.remove("s0"));
+            assertThrows(UnsupportedOperationException.class, () -> table.clear());
+            assertThrows(UnsupportedOperationException.class, () -> table.merge("s0", 1, Integer::sum));
+            assertThrows(UnsupportedOperationException.class, () -> table.keySet().remove("s0"));
+            assertThrows(UnsupportedOperationException.class,
+                    () -> table.entrySet().iterator().next().setValue(1));
+            Iterator<Integer> values = table.values().iterator();
+            values.next();
+            assertThrows(UnsupportedOperationException.class, values::remove);
+            assertEquals(source, table);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Prints the chain-length distribution that different bucket index functions produce for several
+ * kinds of keys. This compares the original {@code hashCode() % length} index over the old
+ * 10 * 2^k table sizes against masking a power-of-two table, both with and without
+ * {@link MyHashTable#spread(int)}.
+ * <p>
+ * This is run by hand rather than as part of the test suite:
+ *
+ * <pre>
+ * {@code java -cp target/classes:target/test-classes library.MyHashTableChainLengthBenchmark [numKeys]}
+ * </pre>
+ */
+public class MyHashTableChainLengthBenchmark {
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int HISTOGRAM_BUCKETS = 9;
+
+    /**
+     * A way of turning a hash code into a bucket index, along with the table length it uses for a
+     * given number of keys.
+     */
+    private static final class IndexScheme {
+        final String name;
+        final IntFunction<Integer> capacityForKeys;
+        final ToIntBiFunction<Integer, Integer> index;
+
+        IndexScheme(String name, IntFunction<Integer> capacityForKeys, ToIntBiFunction<Integer, Integer> index) {
+            this.name = name;
+            this.capacityForKeys = capacityForKeys;
+            this.index = index;
+        }
+    }
+
+    public static void main(String[] args) {
+        int numKeys = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+
+        List<IndexScheme> schemes = new ArrayList<>();
+        schemes.add(new IndexScheme("modulo (before)", MyHashTableChainLengthBenchmark::moduloCapacity,
+                (hash, length) -> Math.abs(hash % length)));
+        schemes.add(new IndexScheme("mask, no spread", MyHashTableChainLengthBenchmark::powerOfTwoCapacity,
+                (hash, length) -> hash & (length - 1)));
+        schemes.add(new IndexScheme("mask + spread (after)", MyHashTableChainLengthBenchmark::powerOfTwoCapacity,
+                (hash, length) -> MyHashTable.spread(hash) & (length - 1)));
+
+        report("sequential Long IDs", numKeys, i -> Long.valueOf(i).hashCode(), schemes);
+        report("Long IDs with a stride of 1024", numKeys, i -> Long.valueOf(i * 1024L).hashCode(), schemes);
+        report("Long IDs in the high word", numKeys, i -> Long.valueOf((long) i << 32).hashCode(), schemes);
+        report("Strings with a common suffix", numKeys, i -> (i + ".session.example.com").hashCode(), schemes);
+        report("whole-number Doubles", numKeys, i -> Double.valueOf(i).hashCode(), schemes);
+    }
+
+    /**
+     * Prints the distribution of every scheme for one set of keys.
+     *
+     * @param keyType   a description of the keys
+     * @param numKeys   the number of keys
+     * @param hashCodes produces the hash code of the i-th key
+     * @param schemes   the index functions to compare
+     */
+    private static void report(String keyType, int numKeys, IntFunction<Integer> hashCodes, List<IndexScheme> schemes) {
+        int[] hashes = new int[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            hashes[i] = hashCodes.apply(i);
+        }
+
+        System.out.printf("%s (%,d keys)%n", keyType, numKeys);
+        System.out.printf("  %-22s %10s %8s %6s %9s   %s%n", "scheme", "buckets", "empty", "max", "avg probe",
+                "chains of length 0, 1, ..., 8+");
+        for (IndexScheme scheme : schemes) {
+            int length = scheme.capacityForKeys.apply(numKeys);
+            int[] chainLengths = new int[length];
+            for (int hash : hashes) {
+                chainLengths[scheme.index.applyAsInt(hash, length)]++;
+            }
+
+            long[] histogram = new long[HISTOGRAM_BUCKETS];
+            long probes = 0;
+            int max = 0;
+            for (int chainLength : chainLengths) {
+                histogram[Math.min(chainLength, HISTOGRAM_BUCKETS - 1)]++;
+                // A successful lookup of the k-th node in a chain looks at k nodes
+                probes += (long) chainLength * (chainLength + 1) / 2;
+                max = Math.max(max, chainLength);
+            }
+
+            StringBuilder counts = new StringBuilder();
+            for (long count : histogram) {
+                counts.append(String.format("%,d ", count));
+            }
+            System.out.printf("  %-22s %,10d %7.1f%% %6d %9.2f   %s%n", scheme.name, length,
+                    100.0 * histogram[0] / length, max, (double) probes / numKeys, counts.toString().trim());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Returns the table length the original implementation reached: ten buckets, doubled until the
+     * keys fit within the load factor.
+     */
+    private static int moduloCapacity(int numKeys) {
+        int length = 10;
+        while (length * LOAD_FACTOR < numKeys) {
+            length *= 2;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the power-of-two table length that holds the keys within the load factor.
+     */
+    private static int powerOfTwoCapacity(int numKeys) {
+        int length = 1;
+        while (length * LOAD_FACTOR < numKeys) {
+            length *= 2;
+        }
+        return length;
+    }
+}
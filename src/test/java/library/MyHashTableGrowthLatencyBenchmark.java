@@ -0,0 +1,84 @@
+package library;
+
+/**
+ * Prints how long the puts that make a {@link MyHashTable} grow take, with and without incremental
+ * rehashing and a Bloom filter. Without incremental rehashing, the put that crosses the threshold
+ * rehashes every mapping, so it takes longer the larger the table; with it, that put only allocates
+ * the new table and should stay short at every doubling, filter or not, since the filter's
+ * replacement is filled by the rehash steps rather than by the put that starts the rehash. Each
+ * round puts the given number of keys into a new table, timing the puts that change its capacity,
+ * and the best round's slowest such put is reported, which filters out most garbage collection
+ * and scheduling pauses.
+ * <p>
+ * This is run by hand rather than as part of the test suite:
+ *
+ * <pre>
+ * {@code java -cp target/classes:target/test-classes library.MyHashTableGrowthLatencyBenchmark [keys] [rounds]}
+ * </pre>
+ */
+public class MyHashTableGrowthLatencyBenchmark {
+
+    /**
+     * Receives the tables' sizes, so that the puts can't be optimized away.
+     */
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        int numKeys = (args.length > 0) ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        // Boxing the keys up front keeps their allocation out of the timed puts
+        Integer[] keys = new Integer[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = i;
+        }
+
+        // The first pass only warms up the JIT compiler, so that no configuration is timed cold
+        for (boolean print : new boolean[] { false, true }) {
+            if (print) {
+                System.out.printf("%,d keys, best of %d rounds%n", numKeys, rounds);
+                System.out.printf("  %-12s %-8s %16s %20s%n", "rehash", "filter", "mean put (ns)",
+                        "max growing put (us)");
+            }
+            report(false, false, keys, rounds, print);
+            report(false, true, keys, rounds, print);
+            report(true, false, keys, rounds, print);
+            report(true, true, keys, rounds, print);
+        }
+    }
+
+    /**
+     * Puts the keys into a new table in each round, and prints the fastest round's mean put and the
+     * smallest maximum of a growing put if asked to.
+     */
+    private static void report(boolean incrementalRehash, boolean bloomFilter, Integer[] keys, int rounds,
+            boolean print) {
+        long bestTotal = Long.MAX_VALUE;
+        long bestMax = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(16, 0.75f, incrementalRehash);
+            if (bloomFilter) {
+                table.enableBloomFilter(0.01);
+            }
+            long total = 0;
+            long max = 0;
+            for (Integer key : keys) {
+                int capacity = table.capacity();
+                long start = System.nanoTime();
+                table.put(key, key);
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                if (table.capacity() != capacity) {
+                    max = Math.max(max, elapsed);
+                }
+            }
+            sink += table.size();
+            bestTotal = Math.min(bestTotal, total);
+            bestMax = Math.min(bestMax, max);
+        }
+        if (print) {
+            System.out.printf("  %-12s %-8s %16.1f %20.1f%n", incrementalRehash ? "incremental" : "eager",
+                    bloomFilter ? "on" : "off", bestTotal / (double) keys.length, bestMax / 1_000.0);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Prints the throughput of a {@link MyHashTable} with the standard and the seeded hash strategies,
+ * for benign keys and for a hash-flooding attack. The benign keys are random strings; the
+ * adversarial keys are the same number of strings built from the blocks "Aa" and "BB", which have
+ * equal hash codes, so every adversarial key has the same {@code hashCode}. Each round inserts all
+ * of the keys into a new table and then looks each one up through a new copy of the string, whose
+ * hash code isn't cached yet, as it wouldn't be for keys parsed from a request.
+ * <p>
+ * This is run by hand rather than as part of the test suite:
+ *
+ * <pre>
+ * {@code java -cp target/classes:target/test-classes library.MyHashTableHashFloodingBenchmark [blocks] [rounds]}
+ * </pre>
+ */
+public class MyHashTableHashFloodingBenchmark {
+
+    /**
+     * Receives the sum of the values looked up, so that the lookups can't be optimized away.
+     */
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        int blocks = (args.length > 0) ? Integer.parseInt(args[0]) : 15;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        List<String> adversarial = collidingStrings(blocks);
+        List<String> benign = randomStrings(adversarial.size(), 2 * blocks);
+
+        // The first pass only warms up the JIT compiler, so that no configuration is timed cold
+        for (boolean print : new boolean[] { false, true }) {
+            if (print) {
+                System.out.printf("%,d keys of %d characters, best of %d rounds%n", adversarial.size(), 2 * blocks,
+                        rounds);
+                System.out.printf("  %-12s %-12s %14s %14s%n", "keys", "strategy", "put (ns/op)", "get (ns/op)");
+            }
+            report("benign", "standard", benign, MyHashStrategy::standard, rounds, print);
+            report("benign", "seeded", benign, MyHashStrategy::seeded, rounds, print);
+            report("adversarial", "standard", adversarial, MyHashStrategy::standard, rounds, print);
+            report("adversarial", "seeded", adversarial, MyHashStrategy::seeded, rounds, print);
+        }
+    }
+
+    /**
+     * Times puts and gets of one key set with one strategy, with a new table and strategy each
+     * round, and prints the fastest round of each if asked to.
+     */
+    private static void report(String keyType, String strategyName, List<String> keys,
+            Supplier<MyHashStrategy> strategies, int rounds, boolean print) {
+        long bestPut = Long.MAX_VALUE;
+        long bestGet = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            List<String> puts = copies(keys);
+            List<String> gets = copies(keys);
+            MyHashTable<String, Integer> table = new MyHashTable<>(16, 0.75f, false, strategies.get());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < puts.size(); i++) {
+                table.put(puts.get(i), i);
+            }
+            long middle = System.nanoTime();
+            for (String key : gets) {
+                checksum += table.get(key);
+            }
+            long end = System.nanoTime();
+
+            bestPut = Math.min(bestPut, middle - start);
+            bestGet = Math.min(bestGet, end - middle);
+        }
+        sink = checksum;
+        if (print) {
+            System.out.printf("  %-12s %-12s %14.1f %14.1f%n", keyType, strategyName, bestPut / (double) keys.size(),
+                    bestGet / (double) keys.size());
+        }
+    }
+
+    /**
+     * Returns the 2^n strings of n two-character blocks, each "Aa" or "BB".
+     */
+    private static List<String> collidingStrings(int n) {
+        List<String> strings = new ArrayList<>(1 << n);
+        for (int bits = 0; bits < (1 << n); bits++) {
+            StringBuilder sb = new StringBuilder(2 * n);
+            for (int i = 0; i < n; i++) {
+                sb.append(((bits >>> i) & 1) == 0 ? "Aa" : "BB");
+            }
+            strings.add(sb.toString());
+        }
+        return strings;
+    }
+
+    /**
+     * Returns distinct random strings of letters, of the given length.
+     */
+    private static List<String> randomStrings(int count, int length) {
+        Random random = new Random(25);
+        MyHashTable<String, Boolean> seen = new MyHashTable<>(count);
+        List<String> strings = new ArrayList<>(count);
+        while (strings.size() < count) {
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            if (seen.putIfAbsent(sb.toString(), true) == null) {
+                strings.add(sb.toString());
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Returns new string objects equal to the given ones, with no cached hash codes.
+     */
+    private static List<String> copies(List<String> strings) {
+        List<String> copies = new ArrayList<>(strings.size());
+        for (String s : strings) {
+            copies.add(new String(s.toCharArray()));
+        }
+        return copies;
+    }
+}
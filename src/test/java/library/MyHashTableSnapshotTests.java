@@ -0,0 +1,186 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import library.MyHashTableSnapshot.Codec;
+
+class MyHashTableSnapshotTests {
+    
+    @TempDir
+    Path directory;
+    
+    @Nested
+    class RoundTripTests {
+        
+        @Test
+        void testNullArguments() {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<String, String> table = new MyHashTable<>();
+            assertThrows(NullPointerException.class, () -> MyHashTableSnapshot.write(null, path, Codec.STRING,
+                    Codec.STRING));
+            assertThrows(NullPointerException.class, () -> MyHashTableSnapshot.write(table, path, null,
+                    Codec.STRING));
+            assertThrows(NullPointerException.class, () -> MyHashTableSnapshot.read(path, Codec.STRING, null));
+        }
+        
+        @Test
+        void testEmptyTable() throws IOException {
+            Path path = directory.resolve("snapshot");
+            MyHashTableSnapshot.write(new MyHashTable<String, String>(), path, Codec.STRING, Codec.STRING);
+            MyHashTable<String, String> loaded = MyHashTableSnapshot.read(path, Codec.STRING, Codec.STRING);
+            assertTrue(loaded.isEmpty());
+        }
+        
+        @Test
+        void testStrings() throws IOException {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<String, String> table = new MyHashTable<>();
+            for (int i = 0; i < 1000; i++) {
+                table.put("key" + i, "välue " + "x".repeat(i % 50));
+            }
+            MyHashTableSnapshot.write(table, path, Codec.STRING, Codec.STRING);
+            assertEquals(table, MyHashTableSnapshot.read(path, Codec.STRING, Codec.STRING));
+        }
+        
+        @Test
+        void testLargeTableIsWrittenInChunks() throws IOException {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<Long, Integer> table = new MyHashTable<>();
+            Random random = new Random(19);
+            while (table.size() < 300_000) {
+                table.put(random.nextLong(), random.nextInt());
+            }
+            MyHashTableSnapshot.write(table, path, Codec.LONG, Codec.INTEGER);
+            // Every mapping is 12 bytes, so the snapshot needs several chunks
+            assertTrue(Files.size(path) > 3_600_000);
+            
+            MyHashTable<Long, Integer> loaded = MyHashTableSnapshot.read(path, Codec.LONG, Codec.INTEGER);
+            assertEquals(table, loaded);
+            assertEquals(table.capacity(), loaded.capacity());
+        }
+        
+        @Test
+        void testReadIntoWhileHoldingTableLock() throws Exception {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<Long, Integer> table = new MyHashTable<>();
+            Random random = new Random(19);
+            while (table.size() < 300_000) {
+                table.put(random.nextLong(), random.nextInt());
+            }
+            MyHashTableSnapshot.write(table, path, Codec.LONG, Codec.INTEGER);
+            
+            // The chunks are put by other threads too, which mustn't need the caller's locks
+            MyHashTable<Long, Integer> target = new MyHashTable<>();
+            Thread reader = new Thread(() -> {
+                synchronized (target) {
+                    try {
+                        MyHashTableSnapshot.readInto(path, target, Codec.LONG, Codec.INTEGER);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            reader.setDaemon(true);
+            reader.start();
+            reader.join(60_000);
+            assertFalse(reader.isAlive(), "readInto deadlocked");
+            assertEquals(table, target);
+        }
+        
+        @Test
+        void testMappingLargerThanChunk() throws IOException {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<Integer, byte[]> table = new MyHashTable<>();
+            byte[] large = new byte[3 << 20];
+            new Random(19).nextBytes(large);
+            table.put(1, new byte[] { 1 });
+            table.put(2, large);
+            table.put(3, new byte[0]);
+            MyHashTableSnapshot.write(table, path, Codec.INTEGER, Codec.BYTES);
+            MyHashTable<Integer, byte[]> loaded = MyHashTableSnapshot.read(path, Codec.INTEGER, Codec.BYTES);
+            assertEquals(3, loaded.size());
+            assertArrayEquals(new byte[] { 1 }, loaded.get(1));
+            assertArrayEquals(large, loaded.get(2));
+            assertArrayEquals(new byte[0], loaded.get(3));
+        }
+        
+        @Test
+        void testReadIntoReplacesExisting() throws IOException {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            table.put(1, 1);
+            table.put(2, 2);
+            MyHashTableSnapshot.write(table, path, Codec.INTEGER, Codec.INTEGER);
+            
+            MyHashTable<Integer, Integer> target = new MyHashTable<>();
+            target.put(2, 20);
+            target.put(3, 30);
+            MyHashTableSnapshot.readInto(path, target, Codec.INTEGER, Codec.INTEGER);
+            assertEquals(3, target.size());
+            assertEquals(1, target.get(1));
+            assertEquals(2, target.get(2));
+            assertEquals(30, target.get(3));
+        }
+    }
+    
+    @Nested
+    class CorruptionTests {
+        
+        private Path writeSnapshot() throws IOException {
+            Path path = directory.resolve("snapshot");
+            MyHashTable<Integer, String> table = new MyHashTable<>();
+            for (int i = 0; i < 100; i++) {
+                table.put(i, "value" + i);
+            }
+            MyHashTableSnapshot.write(table, path, Codec.INTEGER, Codec.STRING);
+            return path;
+        }
+        
+        @Test
+        void testBadMagicNumber() throws IOException {
+            Path path = directory.resolve("other");
+            Files.write(path, new byte[64]);
+            assertThrows(IOException.class, () -> MyHashTableSnapshot.read(path, Codec.INTEGER, Codec.STRING));
+        }
+        
+        @Test
+        void testTruncated() throws IOException {
+            Path path = writeSnapshot();
+            byte[] bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+            assertThrows(IOException.class, () -> MyHashTableSnapshot.read(path, Codec.INTEGER, Codec.STRING));
+            Files.write(path, Arrays.copyOf(bytes, 10));
+            assertThrows(IOException.class, () -> MyHashTableSnapshot.read(path, Codec.INTEGER, Codec.STRING));
+        }
+        
+        @Test
+        void testWrongCodec() throws IOException {
+            Path path = writeSnapshot();
+            assertThrows(IOException.class, () -> MyHashTableSnapshot.read(path, Codec.LONG, Codec.STRING));
+        }
+        
+        @Test
+        void testCorruptLength() throws IOException {
+            Path path = writeSnapshot();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                // The first value's string length, after the header, the chunk header and its Integer key
+                channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), 32 + 8 + 4);
+            }
+            assertThrows(IOException.class, () -> MyHashTableSnapshot.read(path, Codec.INTEGER, Codec.STRING));
+        }
+    }
+}
@@ -2,6 +2,22 @@ package library;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 class MyHashTableTests {
@@ -11,4 +27,802 @@ class MyHashTableTests {
         fail("Not yet implemented");
     }
     
+    @Nested
+    class CapacityTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyHashTable<>(-1));
+            assertThrows(IllegalArgumentException.class, () -> new MyHashTable<>(16, 0f));
+            assertThrows(IllegalArgumentException.class, () -> new MyHashTable<>(16, Float.NaN));
+            assertThrows(NullPointerException.class, () -> new MyHashTable<>(null));
+            assertTrue(new MyHashTable<>(0).capacity() > 0);
+        }
+        
+        @Test
+        void testCapacityIsPowerOfTwo() {
+            for (int initialCapacity : new int[] { 0, 1, 3, 10, 16, 1000 }) {
+                MyHashTable<Integer, Integer> table = new MyHashTable<>(initialCapacity);
+                assertEquals(1, Integer.bitCount(table.capacity()));
+                assertTrue(table.capacity() >= initialCapacity);
+                for (int i = 0; i < 100; i++) {
+                    table.put(i, i);
+                    assertEquals(1, Integer.bitCount(table.capacity()));
+                }
+                table.clear();
+                table.trimToSize();
+                assertEquals(1, Integer.bitCount(table.capacity()));
+            }
+        }
+        
+        @Test
+        void testGrowsPastLoadFactor() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(4, 1.0f);
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, i * 2);
+            }
+            assertEquals(10_000, table.size());
+            assertTrue(table.capacity() >= 10_000);
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals(i * 2, table.get(i));
+            }
+        }
+        
+        @Test
+        void testEnsureCapacityAndTrimToSize() {
+            MyHashTable<Integer, String> table = new MyHashTable<>();
+            table.ensureCapacity(1_000);
+            int capacity = table.capacity();
+            assertTrue(capacity >= 1_000);
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, Integer.toString(i));
+            }
+            assertEquals(capacity, table.capacity());
+            
+            for (int i = 10; i < 1_000; i++) {
+                table.remove(i);
+            }
+            table.trimToSize();
+            assertTrue(table.capacity() < capacity);
+            assertEquals(10, table.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(Integer.toString(i), table.get(i));
+            }
+        }
+        
+        @Test
+        void testMapConstructorCopiesMappings() {
+            Map<String, Integer> source = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                source.put("key" + i, i);
+            }
+            MyHashTable<String, Integer> table = new MyHashTable<>(source);
+            assertEquals(source, table);
+            assertEquals(table, source);
+        }
+        
+        @Test
+        void testRemoveHeadOfChainKeepsRest() {
+            // A single bucket forces every key into one chain
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(1, 100f);
+            for (int i = 0; i < 5; i++) {
+                table.put(i, i);
+            }
+            table.remove(0);
+            assertEquals(4, table.size());
+            for (int i = 1; i < 5; i++) {
+                assertEquals(i, table.get(i));
+            }
+        }
+    }
+    
+    @Nested
+    class EntryAttachmentTests {
+        
+        @Test
+        void testChainEntriesStayAttachedAcrossResize() {
+            for (boolean incrementalRehash : new boolean[] { false, true }) {
+                MyHashTable<Integer, Integer> table = new MyHashTable<>(16, 0.75f, incrementalRehash);
+                for (int i = 0; i < 10; i++) {
+                    table.put(i, i);
+                }
+                List<Entry<Integer, Integer>> entries = new ArrayList<>(table.entrySet());
+                for (int i = 10; i < 10_000; i++) {
+                    table.put(i, i);
+                }
+                table.trimToSize();
+                for (Entry<Integer, Integer> entry : entries) {
+                    entry.setValue(-entry.getKey());
+                }
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(-i, table.get(i));
+                }
+            }
+        }
+    }
+    
+    @Nested
+    class IncrementalRehashTests {
+        
+        @Test
+        void testLookupsDuringRehash() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(16, 0.75f, true);
+            boolean sawRehash = false;
+            for (int i = 0; i < 5_000; i++) {
+                table.put(i, -i);
+                sawRehash |= table.isRehashing();
+                if (i % 97 == 0) {
+                    for (int j = 0; j <= i; j++) {
+                        assertEquals(-j, table.get(j));
+                    }
+                }
+            }
+            assertTrue(sawRehash);
+            assertEquals(5_000, table.size());
+        }
+        
+        @Test
+        void testRemoveDuringRehash() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(16, 0.75f, true);
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, i);
+            }
+            while (!table.isRehashing()) {
+                table.put(table.size(), table.size());
+            }
+            int size = table.size();
+            for (int i = 0; i < size; i += 2) {
+                assertEquals(i, table.remove(i));
+            }
+            assertEquals(size / 2, table.size());
+            for (int i = 0; i < size; i++) {
+                assertEquals((i % 2 == 0) ? null : Integer.valueOf(i), table.get(i));
+            }
+        }
+        
+        @Test
+        void testIterationFinishesRehash() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(16, 0.75f, true);
+            for (int i = 0; i < 1_000; i++) {
+                table.put(i, i);
+            }
+            while (!table.isRehashing()) {
+                table.put(table.size(), table.size());
+            }
+            int count = 0;
+            for (Integer key : table.keySet()) {
+                assertEquals(key, table.get(key));
+                count++;
+            }
+            assertFalse(table.isRehashing());
+            assertEquals(table.size(), count);
+        }
+    }
+    
+    @Nested
+    class CachedHashTests {
+        
+        /**
+         * A key that counts how often its hashCode and equals methods are called.
+         */
+        class CountingKey {
+            final int id;
+            
+            CountingKey(int id) {
+                this.id = id;
+            }
+            
+            @Override
+            public int hashCode() {
+                hashCodeCalls++;
+                return id;
+            }
+            
+            @Override
+            public boolean equals(Object o) {
+                equalsCalls++;
+                return o instanceof CountingKey && ((CountingKey) o).id == id;
+            }
+        }
+        
+        int hashCodeCalls = 0;
+        int equalsCalls = 0;
+        
+        @Test
+        void testRehashDoesNotRecomputeHashCodes() {
+            MyHashTable<CountingKey, Integer> table = new MyHashTable<>(1);
+            for (int i = 0; i < 1_000; i++) {
+                table.put(new CountingKey(i), i);
+            }
+            assertTrue(table.capacity() > 1);
+            assertEquals(1_000, hashCodeCalls);
+        }
+        
+        @Test
+        void testEqualsOnlyCalledOnMatchingHash() {
+            // One bucket and no growth, so every key shares a single chain
+            MyHashTable<CountingKey, Integer> table = new MyHashTable<>(1, 1_000f);
+            CountingKey[] keys = new CountingKey[100];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = new CountingKey(i);
+                table.put(keys[i], i);
+            }
+            assertEquals(0, equalsCalls);
+            
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(i, table.get(new CountingKey(i)));
+            }
+            assertEquals(keys.length, equalsCalls);
+            assertNull(table.get(new CountingKey(-1)));
+            assertEquals(keys.length, equalsCalls);
+        }
+    }
+    
+    @Nested
+    class SingleProbeTests {
+        
+        /**
+         * A key that counts how often its hashCode method is called, which is once per traversal
+         * of its bucket.
+         */
+        class CountingKey {
+            final int id;
+            
+            CountingKey(int id) {
+                this.id = id;
+            }
+            
+            @Override
+            public int hashCode() {
+                hashCodeCalls++;
+                return id % 5;
+            }
+            
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof CountingKey && ((CountingKey) o).id == id;
+            }
+        }
+        
+        int hashCodeCalls = 0;
+        
+        @Test
+        void testCompoundOperationsHashOnce() {
+            MyHashTable<CountingKey, Long> table = new MyHashTable<>(1024);
+            CountingKey key = new CountingKey(1);
+            
+            table.merge(key, 1L, Long::sum);
+            table.merge(key, 1L, Long::sum);
+            table.compute(key, (k, v) -> v + 1);
+            table.computeIfPresent(key, (k, v) -> v + 1);
+            table.computeIfAbsent(key, k -> 0L);
+            table.putIfAbsent(key, 0L);
+            table.replace(key, 5L);
+            table.replace(key, 5L, 6L);
+            assertTrue(table.remove(key, 6L));
+            assertEquals(9, hashCodeCalls);
+            assertTrue(table.isEmpty());
+        }
+        
+        @Test
+        void testAbsentKeys() {
+            MyHashTable<String, Integer> table = new MyHashTable<>();
+            assertFalse(table.remove("a", 1));
+            assertFalse(table.replace("a", 1, 2));
+            assertNull(table.replace("a", 1));
+            assertNull(table.computeIfPresent("a", (k, v) -> 1));
+            assertNull(table.computeIfAbsent("a", k -> null));
+            assertNull(table.compute("a", (k, v) -> null));
+            assertTrue(table.isEmpty());
+            
+            assertEquals(1, table.merge("a", 1, Integer::sum));
+            assertNull(table.merge("a", 1, (a, b) -> null));
+            assertTrue(table.isEmpty());
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            BiFunction<Integer, Integer, Integer> sum = (a, b) -> (a + b) % 7 == 0 ? null : a + b;
+            for (boolean incrementalRehash : new boolean[] { false, true }) {
+                RandomOperations.<MyHashTable<CountingKey, Integer>, CountingKey, Integer>onMap(
+                        () -> new MyHashTable<>(0, 0.75f, incrementalRehash))
+                        .with((table, expected, key, value) -> assertEquals(expected.merge(key, value, sum),
+                                table.merge(key, value, sum)))
+                        .with((table, expected, key, value) -> assertEquals(
+                                expected.compute(key, (k, v) -> v == null ? value : null),
+                                table.compute(key, (k, v) -> v == null ? value : null)))
+                        .with((table, expected, key, value) -> assertEquals(expected.computeIfAbsent(key, k -> value),
+                                table.computeIfAbsent(key, k -> value)))
+                        .with((table, expected, key, value) -> assertEquals(
+                                expected.computeIfPresent(key, (k, v) -> v == 0 ? null : v - 1),
+                                table.computeIfPresent(key, (k, v) -> v == 0 ? null : v - 1)))
+                        .with((table, expected, key, value) -> assertEquals(expected.putIfAbsent(key, value),
+                                table.putIfAbsent(key, value)))
+                        .with((table, expected, key, value) -> {
+                            assertEquals(expected.replace(key, value), table.replace(key, value));
+                            assertEquals(expected.replace(key, value, value + 1), table.replace(key, value, value + 1));
+                        })
+                        .with((table, expected, key, value) -> assertEquals(expected.remove(key, value),
+                                table.remove(key, value)))
+                        // Hash codes collide in fives, so buckets become trees
+                        .run(10, 50_000, (random, i) -> new CountingKey(random.nextInt(400)),
+                                (random, i) -> random.nextInt(10));
+            }
+        }
+        
+        @Test
+        void testFunctionThatReadsDuringIncrementalRehash() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(0, 0.75f, true);
+            for (int i = 0; i < 1000; i++) {
+                // The lookups in the function move buckets, possibly including the key's own
+                table.compute(i, (k, v) -> (table.get(k - 1) == null) ? k : k + table.get(k - 1));
+            }
+            int sum = 0;
+            for (int i = 0; i < 1000; i++) {
+                sum += i;
+                assertEquals(sum, table.get(i));
+            }
+        }
+        
+        @Test
+        void testFunctionThatAddsMappingsIsDetected() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            assertThrows(ConcurrentModificationException.class, () -> table.computeIfAbsent(1, k -> table.put(2, 2)));
+            assertThrows(ConcurrentModificationException.class, () -> table.merge(2, 1, (a, b) -> table.remove(2)));
+        }
+    }
+    
+    @Nested
+    class SpliteratorTests {
+        
+        @Test
+        void testSplitsCoverEveryElementOnce() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, i);
+            }
+            Spliterator<Integer> whole = table.keySet().spliterator();
+            assertEquals(10_000, whole.estimateSize());
+            assertTrue(whole.hasCharacteristics(Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.NONNULL));
+            
+            // Split repeatedly, then drain every piece, alternating tryAdvance and forEachRemaining
+            List<Spliterator<Integer>> pieces = new ArrayList<>();
+            pieces.add(whole);
+            for (int round = 0; round < 6; round++) {
+                List<Spliterator<Integer>> next = new ArrayList<>();
+                for (Spliterator<Integer> piece : pieces) {
+                    Spliterator<Integer> prefix = piece.trySplit();
+                    if (prefix != null) {
+                        assertFalse(prefix.hasCharacteristics(Spliterator.SIZED));
+                        next.add(prefix);
+                    }
+                    next.add(piece);
+                }
+                pieces = next;
+            }
+            assertEquals(64, pieces.size());
+            
+            Set<Integer> seen = new HashSet<>();
+            for (Spliterator<Integer> piece : pieces) {
+                assertTrue(piece.estimateSize() < 10_000 / 32);
+                piece.tryAdvance(key -> assertTrue(seen.add(key)));
+                piece.forEachRemaining(key -> assertTrue(seen.add(key)));
+                assertFalse(piece.tryAdvance(key -> fail()));
+            }
+            assertEquals(table.keySet(), seen);
+        }
+        
+        @Test
+        void testCharacteristicsAreStableDuringTraversal() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            for (int i = 0; i < 100; i++) {
+                table.put(i, i);
+            }
+            Spliterator<Integer> whole = table.keySet().spliterator();
+            int characteristics = whole.characteristics();
+            assertTrue((characteristics & Spliterator.SIZED) != 0);
+            AtomicInteger count = new AtomicInteger();
+            while (whole.tryAdvance(key -> count.incrementAndGet())) {
+                assertEquals(characteristics, whole.characteristics());
+            }
+            assertEquals(100, count.get());
+            
+            Spliterator<Integer> suffix = table.keySet().spliterator();
+            Spliterator<Integer> prefix = suffix.trySplit();
+            assertFalse(suffix.hasCharacteristics(Spliterator.SIZED));
+            assertFalse(prefix.hasCharacteristics(Spliterator.SIZED));
+            // Draining the prefix mustn't make the suffix look like the whole table again
+            prefix.forEachRemaining(key -> {});
+            assertFalse(suffix.hasCharacteristics(Spliterator.SIZED));
+        }
+        
+        @Test
+        void testParallelStreams() {
+            MyHashTable<Integer, Long> table = new MyHashTable<>(0, 0.75f, true);
+            long expectedSum = 0;
+            for (int i = 0; i < 100_000; i++) {
+                table.put(i, (long) i);
+                expectedSum += i;
+            }
+            assertTrue(table.isRehashing());
+            assertEquals(expectedSum, table.values().parallelStream().mapToLong(Long::longValue).sum());
+            assertEquals(100_000, table.keySet().parallelStream().distinct().count());
+            assertEquals(expectedSum,
+                    table.entrySet().parallelStream().mapToLong(entry -> entry.getKey() + entry.getValue()).sum() / 2);
+        }
+        
+        @Test
+        void testLateBinding() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            Spliterator<Entry<Integer, Integer>> spliterator = table.entrySet().spliterator();
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+            }
+            assertEquals(1000, spliterator.estimateSize());
+            AtomicInteger count = new AtomicInteger();
+            spliterator.forEachRemaining(entry -> count.incrementAndGet());
+            assertEquals(1000, count.get());
+        }
+    }
+    
+    @Nested
+    class BulkOperationTests {
+        
+        final MyHashTable<Integer, Long> table = new MyHashTable<>();
+        final long[] thresholds = { Long.MAX_VALUE, 10_000, 1 };
+        
+        BulkOperationTests() {
+            for (int i = 0; i < 100_000; i++) {
+                table.put(i, (long) i * 3);
+            }
+        }
+        
+        @Test
+        void testForEach() {
+            for (long threshold : thresholds) {
+                LongAdder keys = new LongAdder();
+                LongAdder values = new LongAdder();
+                table.forEach(threshold, (key, value) -> {
+                    keys.add(key);
+                    values.add(value);
+                });
+                assertEquals(99_999L * 100_000 / 2, keys.sum());
+                assertEquals(3 * keys.sum(), values.sum());
+            }
+        }
+        
+        @Test
+        void testReductions() {
+            for (long threshold : thresholds) {
+                assertEquals(3 * 99_999L * 100_000 / 2, table.reduceValuesToLong(threshold, Long::longValue, 0, Long::sum));
+                assertEquals(3 * 99_999L, table.reduceValuesToLong(threshold, Long::longValue, Long.MIN_VALUE, Math::max));
+                assertEquals(99_999, table.reduceKeys(threshold, Math::max));
+                assertEquals(100_000L / 2,
+                        table.reduce(threshold, (key, value) -> (key % 2 == 0) ? 1L : null, Long::sum));
+                assertNull(table.reduce(threshold, (key, value) -> null, Long::sum));
+            }
+            assertNull(new MyHashTable<Integer, Integer>().reduceKeys(1, Math::max));
+            assertEquals(7, new MyHashTable<Integer, Long>().reduceValuesToLong(1, Long::longValue, 7, Long::sum));
+        }
+        
+        @Test
+        void testSearch() {
+            for (long threshold : thresholds) {
+                assertEquals(12_345, table.<Integer> search(threshold, (key, value) -> (value == 3 * 12_345) ? key : null));
+                int found = table.search(threshold, (key, value) -> (key % 1000 == 999) ? key : null);
+                assertEquals(999, found % 1000);
+                assertNull(table.search(threshold, (key, value) -> null));
+            }
+        }
+    }
+    
+    @Nested
+    class BloomFilterTests {
+        
+        @Test
+        void testInvalidFalsePositiveRate() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            assertThrows(IllegalArgumentException.class, () -> table.enableBloomFilter(0));
+            assertThrows(IllegalArgumentException.class, () -> table.enableBloomFilter(1));
+            assertThrows(IllegalArgumentException.class, () -> table.enableBloomFilter(Double.NaN));
+        }
+        
+        @Test
+        void testLookupsAcrossGrowth() {
+            for (boolean incrementalRehash : new boolean[] { false, true }) {
+                MyHashTable<Integer, Integer> table = new MyHashTable<>(16, 0.75f, incrementalRehash);
+                for (int i = 0; i < 100; i++) {
+                    table.put(i, i);
+                }
+                // Keys added before the filter must still be found
+                table.enableBloomFilter(0.01);
+                for (int i = 100; i < 20_000; i++) {
+                    table.put(i, i);
+                    if (i % 1_000 == 0) {
+                        for (int j = 0; j <= i; j++) {
+                            assertEquals(j, table.get(j));
+                        }
+                    }
+                }
+                for (int i = 20_000; i < 40_000; i++) {
+                    assertFalse(table.containsKey(i));
+                }
+            }
+        }
+        
+        @Test
+        void testFilterIsNotRebuiltWhenGrowingIncrementally() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>(1024, 0.75f, true);
+            table.enableBloomFilter(0.01);
+            MyBloomFilter filter = table.bloomFilter();
+            int i = 0;
+            while (!table.isRehashing()) {
+                table.put(i, i);
+                i++;
+            }
+            // The put that started the rehash kept the filter, so it didn't walk the map to refill it
+            assertSame(filter, table.bloomFilter());
+            for (int j = 0; j < i; j++) {
+                assertEquals(j, table.get(j));
+            }
+            while (table.isRehashing()) {
+                table.put(i, i);
+                i++;
+            }
+            // The replacement was filled by the rehash steps, and covers the next growth as well
+            assertNotSame(filter, table.bloomFilter());
+            assertTrue(table.bloomFilter().expectedInsertions() >= 2 * table.capacity() * 0.75);
+            for (int j = 0; j < i; j++) {
+                assertEquals(j, table.get(j));
+            }
+            for (int j = i; j < 2 * i; j++) {
+                assertFalse(table.containsKey(j));
+            }
+        }
+        
+        @Test
+        void testRemovedKeysAreAbsent() {
+            MyHashTable<String, Integer> table = new MyHashTable<>();
+            table.enableBloomFilter(0.01);
+            for (int i = 0; i < 1_000; i++) {
+                table.put("k" + i, i);
+            }
+            for (int i = 0; i < 1_000; i += 2) {
+                table.remove("k" + i);
+            }
+            table.trimToSize();
+            for (int i = 0; i < 1_000; i++) {
+                assertEquals((i % 2 == 0) ? null : Integer.valueOf(i), table.get("k" + i));
+            }
+            table.put("k0", 0);
+            assertEquals(0, table.get("k0"));
+        }
+        
+        @Test
+        void testClearAndDisable() {
+            MyHashTable<Integer, Integer> table = new MyHashTable<>();
+            table.enableBloomFilter(0.05);
+            for (int i = 0; i < 100; i++) {
+                table.put(i, i);
+            }
+            table.clear();
+            assertNull(table.get(1));
+            table.merge(1, 10, Integer::sum);
+            assertEquals(10, table.get(1));
+            table.disableBloomFilter();
+            table.put(2, 20);
+            assertEquals(10, table.get(1));
+            assertEquals(20, table.get(2));
+        }
+    }
+    
+    @Nested
+    class HashStrategyTests {
+        
+        /**
+         * Returns the 2^n strings of n two-character blocks, each "Aa" or "BB". The two blocks have
+         * the same hash code, so all of the strings do.
+         */
+        List<String> collidingStrings(int n) {
+            List<String> strings = new ArrayList<>();
+            for (int bits = 0; bits < (1 << n); bits++) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < n; i++) {
+                    sb.append(((bits >>> i) & 1) == 0 ? "Aa" : "BB");
+                }
+                strings.add(sb.toString());
+            }
+            return strings;
+        }
+        
+        @Test
+        void testNullStrategy() {
+            assertThrows(NullPointerException.class, () -> new MyHashTable<>(16, 0.75f, false, null));
+        }
+        
+        @Test
+        void testSeededStrategySpreadsCollidingStrings() {
+            List<String> keys = collidingStrings(10);
+            assertEquals(1, keys.stream().mapToInt(String::hashCode).distinct().count());
+            
+            MyHashTable<String, Integer> standard = new MyHashTable<>();
+            MyHashTable<String, Integer> seeded = new MyHashTable<>(16, 0.75f, false,
+                    new MySeededHashStrategy(0x0123_4567_89AB_CDEFL, 0xFEDC_BA98_7654_3210L));
+            for (int i = 0; i < keys.size(); i++) {
+                standard.put(keys.get(i), i);
+                seeded.put(keys.get(i), i);
+            }
+            assertTrue(standard.isTreeBucket(keys.get(0)));
+            for (int i = 0; i < keys.size(); i++) {
+                assertFalse(seeded.isTreeBucket(keys.get(i)));
+                assertEquals(i, seeded.get(keys.get(i)));
+                assertEquals(i, seeded.get(new String(keys.get(i).toCharArray())));
+            }
+            assertEquals(standard, seeded);
+        }
+        
+        @Test
+        void testSeededStrategyMatchesMap() {
+            Random random = new Random(25);
+            Map<Object, Integer> expected = new HashMap<>();
+            MyHashTable<Object, Integer> table = new MyHashTable<>(16, 0.75f, true, MyHashStrategy.seeded());
+            for (int i = 0; i < 10_000; i++) {
+                Object key = (i % 2 == 0) ? Integer.valueOf(random.nextInt(2_000)) : "s" + random.nextInt(2_000);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key), table.remove(key));
+                } else {
+                    assertEquals(expected.put(key, i), table.put(key, i));
+                }
+            }
+            assertEquals(expected, table);
+        }
+    }
+    
+    @Nested
+    class TreeBucketTests {
+        
+        /**
+         * A key whose hash code only takes a few values, so that keys pile up in a few buckets.
+         */
+        class CollidingKey {
+            final int id;
+            
+            CollidingKey(int id) {
+                this.id = id;
+            }
+            
+            @Override
+            public int hashCode() {
+                return id % 3;
+            }
+            
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+            }
+            
+            @Override
+            public String toString() {
+                return "key" + id;
+            }
+        }
+        
+        /**
+         * A colliding key that is also comparable, so that tree lookups don't need to search both
+         * subtrees.
+         */
+        class ComparableCollidingKey extends CollidingKey implements Comparable<ComparableCollidingKey> {
+            ComparableCollidingKey(int id) {
+                super(id);
+            }
+            
+            @Override
+            public int compareTo(ComparableCollidingKey o) {
+                return Integer.compare(id, o.id);
+            }
+        }
+        
+        @Test
+        void testBucketsTreeifyAndUntreeify() {
+            MyHashTable<CollidingKey, Integer> table = new MyHashTable<>(64);
+            for (int i = 0; i < 300; i++) {
+                table.put(new CollidingKey(i), i);
+            }
+            assertTrue(table.isTreeBucket(new CollidingKey(0)));
+            for (int i = 0; i < 300; i++) {
+                assertEquals(i, table.get(new CollidingKey(i)));
+            }
+            
+            for (int i = 6; i < 300; i++) {
+                assertEquals(i, table.remove(new CollidingKey(i)));
+            }
+            assertFalse(table.isTreeBucket(new CollidingKey(0)));
+            assertEquals(6, table.size());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(i, table.get(new CollidingKey(i)));
+            }
+        }
+        
+        @Test
+        void testSmallTableGrowsInsteadOfTreeifying() {
+            MyHashTable<CollidingKey, Integer> table = new MyHashTable<>(1, 1_000f);
+            for (int i = 0; i < 3 * 8; i++) {
+                table.put(new CollidingKey(i), i);
+            }
+            assertTrue(table.capacity() > 1);
+            assertFalse(table.isTreeBucket(new CollidingKey(0)));
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            for (boolean comparable : new boolean[] { false, true }) {
+                for (boolean incremental : new boolean[] { false, true }) {
+                    RandomOperations<MyHashTable<CollidingKey, Integer>, CollidingKey, Integer> operations;
+                    operations = RandomOperations.onMap(() -> new MyHashTable<>(64, 0.75f, incremental));
+                    operations.with(RandomOperations.remove()).with(RandomOperations.put())
+                            .with(RandomOperations.get()).run(42, 20_000, (random, i) -> {
+                                int id = random.nextInt(2_000);
+                                return comparable ? new ComparableCollidingKey(id) : new CollidingKey(id);
+                            }, (random, i) -> i);
+                    assertEquals(operations.table, operations.expected);
+                }
+            }
+        }
+        
+        @Test
+        void testIteratorRemoveInTreeBucket() {
+            MyHashTable<CollidingKey, Integer> table = new MyHashTable<>(64);
+            for (int i = 0; i < 200; i++) {
+                table.put(new CollidingKey(i), i);
+            }
+            int seen = 0;
+            for (Iterator<CollidingKey> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                CollidingKey key = iterator.next();
+                seen++;
+                if (key.id % 2 == 0) {
+                    iterator.remove();
+                }
+            }
+            assertEquals(200, seen);
+            assertEquals(100, table.size());
+            for (int i = 0; i < 200; i++) {
+                assertEquals((i % 2 == 0) ? null : Integer.valueOf(i), table.get(new CollidingKey(i)));
+            }
+        }
+        
+        @Test
+        void testEntriesStayAttachedAfterIteratorRemove() {
+            // Eight keys with equal hash codes make one tree bucket, which two removals would shrink
+            // to the untreeify threshold
+            MyHashTable<CollidingKey, Integer> table = new MyHashTable<>(64);
+            for (int i = 0; i < 8; i++) {
+                table.put(new CollidingKey(3 * i), i);
+            }
+            assertTrue(table.isTreeBucket(new CollidingKey(0)));
+            
+            List<Entry<CollidingKey, Integer>> kept = new ArrayList<>();
+            int removed = 0;
+            for (Iterator<Entry<CollidingKey, Integer>> iterator = table.entrySet().iterator(); iterator.hasNext();) {
+                Entry<CollidingKey, Integer> entry = iterator.next();
+                if (removed < 2) {
+                    iterator.remove();
+                    removed++;
+                } else {
+                    kept.add(entry);
+                }
+            }
+            assertEquals(6, kept.size());
+            for (Entry<CollidingKey, Integer> entry : kept) {
+                entry.setValue(100);
+            }
+            for (Entry<CollidingKey, Integer> entry : kept) {
+                assertEquals(100, table.get(entry.getKey()));
+            }
+            
+            // A removal through the map converts the bucket back into a chain
+            table.remove(kept.get(0).getKey());
+            assertFalse(table.isTreeBucket(new CollidingKey(0)));
+            assertEquals(5, table.size());
+        }
+    }
 }
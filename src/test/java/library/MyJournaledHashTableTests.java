@@ -0,0 +1,278 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import library.MyHashTableSnapshot.Codec;
+
+class MyJournaledHashTableTests {
+    
+    private static final int THREADS = 8;
+    
+    @TempDir
+    Path directory;
+    
+    private MyJournaledHashTable<Integer, String> open() throws IOException {
+        return new MyJournaledHashTable<>(directory, Codec.INTEGER, Codec.STRING);
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testNullHostile() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+                assertThrows(NullPointerException.class, () -> table.put(1, null));
+                assertThrows(NullPointerException.class, () -> table.get(null));
+                assertThrows(NullPointerException.class, () -> table.remove(null));
+                assertThrows(NullPointerException.class, () -> table.merge(1, "a", null));
+                assertThrows(NullPointerException.class,
+                        () -> new MyJournaledHashTable<>(directory.resolve("other"), null, Codec.STRING));
+                assertTrue(table.isEmpty());
+            }
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() throws IOException {
+            BiFunction<String, String, String> concat = (a, b) -> (a.length() > 8) ? null : a + b;
+            Map<Integer, String> expected;
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                RandomOperations<MyJournaledHashTable<Integer, String>, Integer, String> operations = RandomOperations
+                        .onMap(() -> table);
+                operations.with(RandomOperations.put()).with(RandomOperations.remove()).with(RandomOperations.get())
+                        .with((t, e, key, value) -> assertEquals(e.merge(key, value, concat),
+                                t.merge(key, value, concat)))
+                        .run(20, 2000, (random, i) -> random.nextInt(300), (random, i) -> "v" + i);
+                expected = operations.expected;
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(expected, table);
+            }
+        }
+        
+        @Test
+        void testClosedTableRejectsUpdates() throws IOException {
+            MyJournaledHashTable<Integer, String> table = open();
+            table.put(1, "a");
+            table.close();
+            table.close();
+            assertThrows(IllegalStateException.class, () -> table.put(2, "b"));
+            assertThrows(IllegalStateException.class, () -> table.remove(1));
+            assertThrows(IllegalStateException.class, () -> table.checkpoint());
+            assertEquals("a", table.get(1));
+        }
+    }
+    
+    @Nested
+    class RecoveryTests {
+        
+        @Test
+        void testReplayOnTopOfCheckpoint() throws IOException {
+            Map<Integer, String> expected = new HashMap<>();
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                for (int i = 0; i < 1000; i++) {
+                    table.put(i, "before" + i);
+                    expected.put(i, "before" + i);
+                }
+                assertTrue(table.journalSize() > 0);
+                table.checkpoint();
+                assertEquals(0, table.journalSize());
+                
+                for (int i = 0; i < 1000; i += 2) {
+                    table.remove(i);
+                    expected.remove(i);
+                }
+                table.put(5000, "after");
+                expected.put(5000, "after");
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(expected, table);
+                table.clear();
+                table.put(1, "only");
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(Map.of(1, "only"), table);
+            }
+        }
+        
+        @Test
+        void testTornRecordIsDropped() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                table.put(1, "a");
+                table.put(2, "b");
+            }
+            Path journal = directory.resolve("journal");
+            long size = Files.size(journal);
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                // Half of a record which claims to be longer than what follows
+                channel.write(ByteBuffer.allocate(6).putInt(0, 100), size);
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(Map.of(1, "a", 2, "b"), table);
+                assertEquals(size, table.journalSize());
+                table.put(3, "c");
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(Map.of(1, "a", 2, "b", 3, "c"), table);
+            }
+        }
+        
+        @Test
+        void testDamagedLastRecordIsDropped() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                table.put(1, "a");
+                table.put(2, "b");
+                table.put(3, "c");
+            }
+            Path journal = directory.resolve("journal");
+            byte[] bytes = Files.readAllBytes(journal);
+            // Flip the last byte of the third record's value
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(journal, bytes);
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(Map.of(1, "a", 2, "b"), table);
+                assertEquals(bytes.length * 2 / 3, table.journalSize());
+            }
+        }
+        
+        @Test
+        void testDamagedEarlierRecordFailsOpen() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                table.put(1, "a");
+                table.put(2, "b");
+                table.put(3, "c");
+            }
+            Path journal = directory.resolve("journal");
+            byte[] bytes = Files.readAllBytes(journal);
+            // Flip the last byte of the second record's value, which is as long as the third, so
+            // dropping the rest would lose the acknowledged third record
+            bytes[bytes.length * 2 / 3 - 1] ^= 1;
+            Files.write(journal, bytes);
+            assertThrows(IOException.class, () -> open());
+            assertArrayEquals(bytes, Files.readAllBytes(journal));
+        }
+        
+        @Test
+        void testZeroFilledTailIsDropped() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                table.put(1, "a");
+            }
+            Path journal = directory.resolve("journal");
+            long size = Files.size(journal);
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(100), size);
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(Map.of(1, "a"), table);
+                assertEquals(size, table.journalSize());
+            }
+        }
+        
+        @Test
+        void testFailedWriteIsNotApplied() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                table.put(1, "a");
+                // Interrupting the writer closes the journal's channel under it, so its next write fails
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.getName().equals("MyJournaledHashTable-writer")) {
+                        thread.interrupt();
+                    }
+                }
+                assertThrows(UncheckedIOException.class, () -> table.put(2, "b"));
+                assertThrows(IllegalStateException.class, () -> table.put(3, "c"));
+                assertEquals(Map.of(1, "a"), table);
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(Map.of(1, "a"), table);
+            }
+        }
+        
+        @Test
+        void testIteratorRemoveIsJournaled() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                for (int i = 0; i < 100; i++) {
+                    table.put(i, "v" + i);
+                }
+                synchronized (table) {
+                    for (Iterator<Integer> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                        if (iterator.next() % 3 != 0) {
+                            iterator.remove();
+                        }
+                    }
+                }
+                assertEquals(34, table.size());
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(34, table.size());
+                table.keySet().forEach(key -> assertEquals(0, key % 3));
+            }
+        }
+        
+        @Test
+        void testEntrySetValueAndReplaceAllAreJournaled() throws IOException {
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                for (int i = 0; i < 100; i++) {
+                    table.put(i, "v" + i);
+                }
+                synchronized (table) {
+                    for (Entry<Integer, String> entry : table.entrySet()) {
+                        if (entry.getKey() % 2 == 0) {
+                            assertEquals("v" + entry.getKey(), entry.setValue("even"));
+                            assertEquals("even", entry.getValue());
+                        }
+                    }
+                }
+                assertThrows(NullPointerException.class, () -> table.replaceAll((key, value) -> null));
+                table.replaceAll((key, value) -> key + ":" + value);
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(100, table.size());
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(i + ":" + ((i % 2 == 0) ? "even" : "v" + i), table.get(i));
+                }
+            }
+        }
+        
+        @Test
+        void testConcurrentUpdatesShareCommits() throws Exception {
+            AtomicInteger nextThread = new AtomicInteger();
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                MyConcurrentHashTableTests.runConcurrently(THREADS, () -> {
+                    int base = nextThread.getAndIncrement() * 1000;
+                    for (int i = base; i < base + 500; i++) {
+                        table.put(i, "v" + i);
+                        table.merge(i, "!", String::concat);
+                    }
+                    return null;
+                });
+                assertEquals(THREADS * 500, table.size());
+            }
+            try (MyJournaledHashTable<Integer, String> table = open()) {
+                assertEquals(THREADS * 500, table.size());
+                for (int t = 0; t < THREADS; t++) {
+                    for (int i = t * 1000; i < t * 1000 + 500; i++) {
+                        assertEquals("v" + i + "!", table.get(i));
+                    }
+                }
+            }
+        }
+    }
+}
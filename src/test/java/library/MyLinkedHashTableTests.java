@@ -0,0 +1,264 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyLinkedHashTableTests {
+    
+    /**
+     * Returns an access-ordered table which keeps at most the given number of mappings.
+     */
+    static <K, V> MyLinkedHashTable<K, V> lruTable(int maxSize) {
+        return new MyLinkedHashTable<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyLinkedHashTable<>(-1));
+            assertThrows(IllegalArgumentException.class, () -> new MyLinkedHashTable<>(16, 0f, false));
+            assertThrows(IllegalArgumentException.class, () -> new MyLinkedHashTable<>(16, Float.NaN, false));
+            assertThrows(NullPointerException.class, () -> new MyLinkedHashTable<>(null));
+            assertEquals(2, new MyLinkedHashTable<>(0).capacity());
+            assertEquals(128, new MyLinkedHashTable<>(100).capacity());
+        }
+        
+        @Test
+        void testNullHostile() {
+            MyLinkedHashTable<String, String> table = new MyLinkedHashTable<>();
+            assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> table.put("a", null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.containsKey(null));
+            assertThrows(NullPointerException.class, () -> table.containsValue(null));
+            assertThrows(NullPointerException.class, () -> table.remove(null));
+        }
+        
+        @Test
+        void testRandomOperationsMatchLinkedHashMap() {
+            for (boolean accessOrder : new boolean[] { false, true }) {
+                Random random = new Random(13);
+                Map<Integer, Integer> expected = new LinkedHashMap<>(16, 0.75f, accessOrder);
+                MyLinkedHashTable<Integer, Integer> table = new MyLinkedHashTable<>(0, 0.75f, accessOrder);
+                for (int i = 0; i < 50_000; i++) {
+                    Integer key = random.nextInt(500);
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            assertEquals(expected.put(key, i), table.put(key, i));
+                            break;
+                        case 1:
+                            assertEquals(expected.remove(key), table.remove(key));
+                            break;
+                        default:
+                            assertEquals(expected.get(key), table.get(key));
+                            break;
+                    }
+                    assertEquals(expected.size(), table.size());
+                }
+                assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(table.entrySet()));
+                assertEquals(expected, table);
+                assertEquals(table, expected);
+                assertEquals(expected.hashCode(), table.hashCode());
+                table.clear();
+                assertTrue(table.isEmpty());
+                assertNull(table.eldestEntry());
+            }
+        }
+        
+        @Test
+        void testCopyKeepsSourceOrder() {
+            Map<String, Integer> source = new LinkedHashMap<>();
+            for (int i = 20; i > 0; i--) {
+                source.put("s" + i, i);
+            }
+            MyLinkedHashTable<String, Integer> table = new MyLinkedHashTable<>(source);
+            assertEquals(new ArrayList<>(source.keySet()), new ArrayList<>(table.keySet()));
+            assertEquals(source.toString(), table.toString());
+        }
+    }
+    
+    @Nested
+    class OrderTests {
+        
+        @Test
+        void testInsertionOrderIgnoresReinsertAndGet() {
+            MyLinkedHashTable<String, Integer> table = new MyLinkedHashTable<>();
+            table.put("a", 1);
+            table.put("b", 2);
+            table.put("c", 3);
+            table.put("a", 4);
+            table.get("b");
+            assertEquals(List.of("a", "b", "c"), new ArrayList<>(table.keySet()));
+            assertEquals(List.of(4, 2, 3), new ArrayList<>(table.values()));
+            assertFalse(table.isAccessOrder());
+        }
+        
+        @Test
+        void testAccessOrderMovesAccessedToEnd() {
+            MyLinkedHashTable<String, Integer> table = new MyLinkedHashTable<>(16, 0.75f, true);
+            table.put("a", 1);
+            table.put("b", 2);
+            table.put("c", 3);
+            table.get("a");
+            assertEquals(List.of("b", "c", "a"), new ArrayList<>(table.keySet()));
+            table.put("b", 5);
+            assertEquals(List.of("c", "a", "b"), new ArrayList<>(table.keySet()));
+            assertEquals("c", table.eldestEntry().getKey());
+            // Misses, containsKey and eldestEntry don't count as accesses
+            table.get("z");
+            table.containsKey("c");
+            assertEquals(List.of("c", "a", "b"), new ArrayList<>(table.keySet()));
+        }
+        
+        @Test
+        void testOrderSurvivesGrowth() {
+            MyLinkedHashTable<Integer, Integer> table = new MyLinkedHashTable<>(0);
+            List<Integer> expected = new ArrayList<>();
+            Random random = new Random(13);
+            for (int i = 0; i < 10_000; i++) {
+                int key = random.nextInt();
+                if (table.put(key, i) == null) {
+                    expected.add(key);
+                }
+            }
+            assertEquals(expected, new ArrayList<>(table.keySet()));
+        }
+    }
+    
+    @Nested
+    class EvictionTests {
+        
+        @Test
+        void testLruEvictsLeastRecentlyUsed() {
+            MyLinkedHashTable<Integer, Integer> table = lruTable(3);
+            table.put(1, 1);
+            table.put(2, 2);
+            table.put(3, 3);
+            table.get(1);
+            table.put(4, 4);
+            assertEquals(List.of(3, 1, 4), new ArrayList<>(table.keySet()));
+            table.put(5, 5);
+            assertEquals(List.of(1, 4, 5), new ArrayList<>(table.keySet()));
+            assertEquals(3, table.size());
+        }
+        
+        @Test
+        void testLruMatchesLinkedHashMap() {
+            Map<Integer, Integer> expected = new LinkedHashMap<>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                    return size() > 100;
+                }
+            };
+            MyLinkedHashTable<Integer, Integer> table = lruTable(100);
+            Random random = new Random(13);
+            for (int i = 0; i < 20_000; i++) {
+                Integer key = random.nextInt(300);
+                if (random.nextBoolean()) {
+                    assertEquals(expected.put(key, i), table.put(key, i));
+                } else {
+                    assertEquals(expected.get(key), table.get(key));
+                }
+            }
+            assertEquals(100, table.size());
+            assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(table.keySet()));
+        }
+        
+        @Test
+        void testHookSeesEldestAndMaySelfModify() {
+            List<Integer> evicted = new ArrayList<>();
+            MyLinkedHashTable<Integer, Integer> table = new MyLinkedHashTable<>() {
+                @Override
+                protected boolean removeEldestEntry(Entry<Integer, Integer> eldest) {
+                    if (size() > 2) {
+                        evicted.add(eldest.getKey());
+                        remove(eldest.getKey());
+                    }
+                    return false;
+                }
+            };
+            for (int i = 0; i < 5; i++) {
+                table.put(i, i);
+            }
+            assertEquals(List.of(0, 1, 2), evicted);
+            assertEquals(Map.of(3, 3, 4, 4), new HashMap<>(table));
+        }
+    }
+    
+    @Nested
+    class IteratorTests {
+        
+        @Test
+        void testIteratorRemove() {
+            MyLinkedHashTable<Integer, Integer> table = new MyLinkedHashTable<>();
+            for (int i = 0; i < 100; i++) {
+                table.put(i, i);
+            }
+            for (Iterator<Integer> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                if (iterator.next() % 2 == 0) {
+                    iterator.remove();
+                }
+            }
+            assertEquals(50, table.size());
+            int expected = 1;
+            for (Integer key : table.keySet()) {
+                assertEquals(expected, key);
+                expected += 2;
+            }
+        }
+        
+        @Test
+        void testIteratorIsFailFast() {
+            MyLinkedHashTable<Integer, Integer> table = new MyLinkedHashTable<>(16, 0.75f, true);
+            for (int i = 0; i < 10; i++) {
+                table.put(i, i);
+            }
+            Iterator<Integer> iterator = table.keySet().iterator();
+            iterator.next();
+            table.get(5);
+            assertThrows(ConcurrentModificationException.class, iterator::next);
+            
+            Iterator<Integer> other = table.keySet().iterator();
+            other.next();
+            table.put(100, 100);
+            assertThrows(ConcurrentModificationException.class, other::next);
+        }
+        
+        @Test
+        void testEntrySetValueWritesThrough() {
+            MyLinkedHashTable<String, Integer> table = new MyLinkedHashTable<>(16, 0.75f, true);
+            for (int i = 0; i < 10; i++) {
+                table.put("s" + i, i);
+            }
+            for (Entry<String, Integer> entry : table.entrySet()) {
+                assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+            }
+            assertEquals("s0", table.eldestEntry().getKey());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, table.get("s" + i));
+            }
+            assertThrows(NullPointerException.class, () -> table.eldestEntry().setValue(null));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MyMappedHashTableTests {
+    
+    private static final int SEGMENT_SHIFT = 16;
+    
+    @TempDir
+    Path directory;
+    
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    static String string(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+    
+    static Map<String, String> contents(MyMappedHashTable table) {
+        Map<String, String> contents = new HashMap<>();
+        table.forEach((key, value) -> assertNull(contents.put(string(key), string(value))));
+        return contents;
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testNullHostile() throws IOException {
+            try (MyMappedHashTable table = new MyMappedHashTable(directory.resolve("table"))) {
+                assertThrows(NullPointerException.class, () -> table.put((byte[]) null, bytes("a")));
+                assertThrows(NullPointerException.class, () -> table.put(bytes("a"), null));
+                assertThrows(NullPointerException.class, () -> table.get((byte[]) null));
+                assertThrows(NullPointerException.class, () -> table.containsKey((ByteBuffer) null));
+                assertThrows(NullPointerException.class, () -> table.remove((ByteBuffer) null));
+                assertThrows(NullPointerException.class, () -> table.forEach(null));
+                assertTrue(table.isEmpty());
+            }
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() throws IOException {
+            try (MyMappedHashTable table = new MyMappedHashTable(directory.resolve("table"), SEGMENT_SHIFT)) {
+                new RandomOperations<MyMappedHashTable, String, String>(() -> table, MyMappedHashTable::size,
+                        MyMappedHashTableTests::contents).with((t, expected, key, value) -> {
+                            String old = expected.put(key, value);
+                            byte[] oldBytes;
+                            try {
+                                oldBytes = t.put(bytes(key), bytes(value));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            assertEquals(old, (oldBytes == null) ? null : new String(oldBytes, StandardCharsets.UTF_8));
+                        }).with((t, expected, key, value) -> assertEquals(expected.remove(key) != null,
+                                t.remove(ByteBuffer.wrap(bytes(key))))).with((t, expected, key, value) -> {
+                            ByteBuffer found = t.get(ByteBuffer.wrap(bytes(key)));
+                            assertEquals(expected.get(key), (found == null) ? null : string(found));
+                        }).run(18, 50_000, (random, i) -> "key" + random.nextInt(2000),
+                                (random, i) -> "v".repeat(random.nextInt(40)) + (i % 10));
+                assertTrue(table.fileSize() > 1 << SEGMENT_SHIFT);
+            }
+        }
+        
+        @Test
+        void testReturnedValueIsReadOnlyView() throws IOException {
+            try (MyMappedHashTable table = new MyMappedHashTable(directory.resolve("table"))) {
+                ByteBuffer key = ByteBuffer.wrap(bytes("xkey")).position(1);
+                assertFalse(table.put(key, ByteBuffer.wrap(bytes("value"))));
+                assertEquals(1, key.position());
+                ByteBuffer value = table.get(ByteBuffer.wrap(bytes("key")));
+                assertTrue(value.isReadOnly());
+                assertEquals("value", string(value));
+                assertTrue(table.containsKey(bytes("key")));
+                assertFalse(table.containsKey(bytes("xkey")));
+                
+                // A value of the same length is overwritten in place
+                long fileSize = table.fileSize();
+                assertTrue(table.put(ByteBuffer.wrap(bytes("key")), ByteBuffer.wrap(bytes("VALUE"))));
+                assertEquals("VALUE", string(value));
+                assertEquals(fileSize, table.fileSize());
+            }
+        }
+        
+        @Test
+        void testEmptyKeysAndValues() throws IOException {
+            try (MyMappedHashTable table = new MyMappedHashTable(directory.resolve("table"))) {
+                assertNull(table.put(new byte[0], new byte[0]));
+                assertArrayEquals(new byte[0], table.get(new byte[0]));
+                assertArrayEquals(new byte[0], table.put(new byte[0], bytes("a")));
+                assertArrayEquals(bytes("a"), table.remove(new byte[0]));
+                assertNull(table.remove(new byte[0]));
+                assertTrue(table.isEmpty());
+            }
+        }
+        
+        @Test
+        void testEntryLargerThanSegment() throws IOException {
+            try (MyMappedHashTable table = new MyMappedHashTable(directory.resolve("table"), SEGMENT_SHIFT)) {
+                assertThrows(IllegalArgumentException.class,
+                        () -> table.put(bytes("a"), new byte[1 << SEGMENT_SHIFT]));
+                byte[] large = new byte[(1 << SEGMENT_SHIFT) - 100];
+                new Random(18).nextBytes(large);
+                for (int i = 0; i < 5; i++) {
+                    table.put(bytes("large" + i), large);
+                }
+                for (int i = 0; i < 5; i++) {
+                    assertArrayEquals(large, table.get(bytes("large" + i)));
+                }
+            }
+        }
+    }
+    
+    @Nested
+    class FileTests {
+        
+        @Test
+        void testReopenKeepsMappings() throws IOException {
+            Path path = directory.resolve("table");
+            Map<String, String> expected = new HashMap<>();
+            try (MyMappedHashTable table = new MyMappedHashTable(path, SEGMENT_SHIFT)) {
+                for (int i = 0; i < 10_000; i++) {
+                    table.put(bytes("key" + i), bytes("value" + i));
+                    expected.put("key" + i, "value" + i);
+                }
+                for (int i = 0; i < 10_000; i += 3) {
+                    table.remove(bytes("key" + i));
+                    expected.remove("key" + i);
+                }
+                table.force();
+            }
+            try (MyMappedHashTable table = new MyMappedHashTable(path, SEGMENT_SHIFT)) {
+                assertEquals(expected.size(), table.size());
+                assertEquals(expected, contents(table));
+                assertEquals("value1", string(table.get(ByteBuffer.wrap(bytes("key1")))));
+                assertNull(table.get(ByteBuffer.wrap(bytes("key0"))));
+                table.put(bytes("key0"), bytes("again"));
+                expected.put("key0", "again");
+            }
+            try (MyMappedHashTable table = new MyMappedHashTable(path, SEGMENT_SHIFT)) {
+                assertEquals(expected, contents(table));
+            }
+        }
+        
+        @Test
+        void testRejectsOtherFiles() throws IOException {
+            Path shortFile = directory.resolve("short");
+            Files.write(shortFile, bytes("MYHT"));
+            assertThrows(IOException.class, () -> new MyMappedHashTable(shortFile));
+            
+            Path otherFile = directory.resolve("other");
+            Files.write(otherFile, new byte[4096]);
+            assertThrows(IOException.class, () -> new MyMappedHashTable(otherFile));
+            assertArrayEquals(new byte[4096], Files.readAllBytes(otherFile));
+        }
+        
+        @Test
+        void testClosedTableRejectsOperations() throws IOException {
+            MyMappedHashTable table = new MyMappedHashTable(directory.resolve("table"));
+            table.put(bytes("a"), bytes("b"));
+            table.close();
+            assertThrows(IllegalStateException.class, () -> table.get(bytes("a")));
+            assertThrows(IllegalStateException.class, () -> table.put(bytes("a"), bytes("c")));
+            assertThrows(IllegalStateException.class, () -> table.force());
+        }
+    }
+}
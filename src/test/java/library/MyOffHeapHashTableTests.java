@@ -0,0 +1,152 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyOffHeapHashTableTests {
+    
+    private static final int SLAB_SIZE = 4096;
+    
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    static String string(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyOffHeapHashTable(-1, SLAB_SIZE));
+            assertThrows(IllegalArgumentException.class, () -> new MyOffHeapHashTable(16, 100));
+        }
+        
+        @Test
+        void testNullHostile() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            assertThrows(NullPointerException.class, () -> table.put((byte[]) null, bytes("a")));
+            assertThrows(NullPointerException.class, () -> table.put(bytes("a"), null));
+            assertThrows(NullPointerException.class, () -> table.get((byte[]) null));
+            assertThrows(NullPointerException.class, () -> table.remove((ByteBuffer) null));
+            assertThrows(NullPointerException.class, () -> table.forEach(null));
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            RandomOperations<MyOffHeapHashTable, String, String> operations = new RandomOperations<>(
+                    () -> new MyOffHeapHashTable(0, SLAB_SIZE), MyOffHeapHashTable::size, table -> {
+                        Map<String, String> actual = new HashMap<>();
+                        table.forEach((key, value) -> assertNull(actual.put(string(key), string(value))));
+                        return actual;
+                    });
+            operations.with((table, expected, key, value) -> {
+                String old = expected.put(key, value);
+                byte[] oldBytes = table.put(bytes(key), bytes(value));
+                assertEquals(old, (oldBytes == null) ? null : new String(oldBytes, StandardCharsets.UTF_8));
+            }).with((table, expected, key, value) -> assertEquals(expected.remove(key) != null,
+                    table.remove(ByteBuffer.wrap(bytes(key))))).with((table, expected, key, value) -> {
+                ByteBuffer found = table.get(ByteBuffer.wrap(bytes(key)));
+                assertEquals(expected.get(key), (found == null) ? null : string(found));
+                assertEquals(expected.containsKey(key), table.containsKey(bytes(key)));
+            }).run(17, 50_000, (random, i) -> "key" + random.nextInt(1000),
+                    (random, i) -> "v".repeat(random.nextInt(40)) + i);
+            MyOffHeapHashTable table = operations.table;
+            table.clear();
+            assertTrue(table.isEmpty());
+            assertEquals(0, table.liveBytes());
+        }
+        
+        @Test
+        void testBufferArgumentsAreNotConsumed() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            ByteBuffer key = ByteBuffer.allocateDirect(16).put(bytes("xxkeyyy")).flip().position(2).limit(5);
+            ByteBuffer value = ByteBuffer.wrap(bytes("value"));
+            assertFalse(table.put(key, value));
+            assertEquals(2, key.position());
+            assertEquals(0, value.position());
+            assertEquals("value", new String(table.get(bytes("key")), StandardCharsets.UTF_8));
+            ByteBuffer view = table.get(key);
+            assertTrue(view.isReadOnly());
+            assertEquals("value", string(view));
+            assertTrue(table.put(key, ByteBuffer.wrap(bytes("VALUE"))));
+            assertEquals("VALUE", string(view)); // overwritten in place
+        }
+        
+        @Test
+        void testEmptyKeysAndValues() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            table.put(new byte[0], new byte[0]);
+            assertArrayEquals(new byte[0], table.get(new byte[0]));
+            assertEquals(1, table.size());
+            assertArrayEquals(new byte[0], table.remove(new byte[0]));
+            assertTrue(table.isEmpty());
+        }
+    }
+    
+    @Nested
+    class MemoryTests {
+        
+        @Test
+        void testRecordLargerThanSlabIsRejected() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            assertThrows(IllegalArgumentException.class, () -> table.put(bytes("k"), new byte[SLAB_SIZE]));
+            table.put(bytes("k"), new byte[SLAB_SIZE - 13]);
+            assertEquals(SLAB_SIZE, table.liveBytes());
+        }
+        
+        @Test
+        void testChurnRecyclesSlabs() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            Random random = new Random(17);
+            for (int i = 0; i < 200_000; i++) {
+                // 100 live records of 32 to 95 bytes, about 6 KiB, rewritten with new lengths
+                table.put(bytes("k" + random.nextInt(100)), new byte[20 + random.nextInt(64)]);
+            }
+            assertEquals(100, table.size());
+            assertTrue(table.offHeapBytes() <= 8 * SLAB_SIZE, table.offHeapBytes() + " bytes of slabs");
+        }
+        
+        @Test
+        void testCompactKeepsLiveRecords() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            for (int i = 0; i < 2000; i++) {
+                table.put(bytes("k" + i), bytes("value" + i));
+            }
+            for (int i = 0; i < 2000; i += 4) {
+                table.remove(bytes("k" + i));
+            }
+            long live = table.liveBytes();
+            table.compact();
+            assertEquals(live, table.liveBytes());
+            for (int i = 0; i < 2000; i++) {
+                byte[] value = table.get(bytes("k" + i));
+                if (i % 4 == 0) {
+                    assertNull(value);
+                } else {
+                    assertEquals("value" + i, new String(value, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        
+        @Test
+        void testClosedTableRejectsOperations() {
+            MyOffHeapHashTable table = new MyOffHeapHashTable(16, SLAB_SIZE);
+            table.put(bytes("a"), bytes("b"));
+            table.close();
+            assertThrows(IllegalStateException.class, () -> table.get(bytes("a")));
+            assertThrows(IllegalStateException.class, () -> table.put(bytes("a"), bytes("b")));
+            assertEquals(0, table.offHeapBytes());
+        }
+    }
+}
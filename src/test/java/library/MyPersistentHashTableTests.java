@@ -0,0 +1,179 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import library.MyRobinHoodHashTableTests.CollidingKey;
+
+class MyPersistentHashTableTests {
+    
+    @Nested
+    class VersionTests {
+        
+        @Test
+        void testNullHostile() {
+            MyPersistentHashTable<String, String> table = MyPersistentHashTable.<String, String>empty().with("a", "b");
+            assertThrows(NullPointerException.class, () -> table.with(null, "b"));
+            assertThrows(NullPointerException.class, () -> table.with("a", null));
+            assertThrows(NullPointerException.class, () -> table.without(null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> MyPersistentHashTable.copyOf(null));
+        }
+        
+        @Test
+        void testEmpty() {
+            MyPersistentHashTable<String, String> table = MyPersistentHashTable.empty();
+            assertTrue(table.isEmpty());
+            assertNull(table.get("a"));
+            assertSame(table, table.without("a"));
+            assertSame(table, table.with("a", "b").without("a"));
+            assertEquals(Map.of(), table);
+        }
+        
+        @Test
+        void testOldVersionsUnchanged() {
+            Random random = new Random(24);
+            MyPersistentHashTable<Integer, Integer> table = MyPersistentHashTable.empty();
+            Map<Integer, Integer> expected = new HashMap<>();
+            List<MyPersistentHashTable<Integer, Integer>> versions = new ArrayList<>();
+            List<Map<Integer, Integer>> expectedVersions = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                Integer key = random.nextInt(3_000);
+                if (random.nextInt(3) == 0) {
+                    table = table.without(key);
+                    expected.remove(key);
+                } else {
+                    table = table.with(key, i);
+                    expected.put(key, i);
+                }
+                assertEquals(expected.size(), table.size());
+                if (i % 500 == 0) {
+                    versions.add(table);
+                    expectedVersions.add(new HashMap<>(expected));
+                }
+            }
+            for (int i = 0; i < versions.size(); i++) {
+                assertEquals(expectedVersions.get(i), versions.get(i));
+                assertEquals(versions.get(i), expectedVersions.get(i));
+                assertEquals(expectedVersions.get(i).hashCode(), versions.get(i).hashCode());
+            }
+        }
+        
+        @Test
+        void testSameValueReturnsSameMap() {
+            Integer value = 1_000;
+            MyPersistentHashTable<String, Integer> table = MyPersistentHashTable.<String, Integer>empty().with("a", value);
+            assertSame(table, table.with("a", value));
+            assertNotSame(table, table.with("a", 1_001));
+        }
+        
+        @Test
+        void testEqualHashCodes() {
+            MyPersistentHashTable<CollidingKey, Integer> table = MyPersistentHashTable.empty();
+            for (int i = 0; i < 500; i++) {
+                table = table.with(new CollidingKey(i), i);
+            }
+            assertEquals(500, table.size());
+            MyPersistentHashTable<CollidingKey, Integer> removed = table;
+            for (int i = 0; i < 500; i += 2) {
+                removed = removed.without(new CollidingKey(i));
+            }
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i, table.get(new CollidingKey(i)));
+                assertEquals((i % 2 == 0) ? null : Integer.valueOf(i), removed.get(new CollidingKey(i)));
+            }
+            assertEquals(250, removed.size());
+        }
+        
+        @Test
+        void testToPersistent() {
+            MyHashTable<String, Integer> source = new MyHashTable<>();
+            for (int i = 0; i < 1000; i++) {
+                source.put("s" + i, i);
+            }
+            MyPersistentHashTable<String, Integer> table = source.toPersistent();
+            source.remove("s0");
+            assertEquals(0, table.get("s0"));
+            assertEquals(1000, table.size());
+            assertEquals(table, MyPersistentHashTable.copyOf(table));
+        }
+    }
+    
+    @Nested
+    class BuilderTests {
+        
+        @Test
+        void testBuildMatchesSource() {
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 100_000; i++) {
+                expected.put(i * 31, i);
+            }
+            MyPersistentHashTable<Integer, Integer> table = MyPersistentHashTable.copyOf(expected);
+            assertEquals(expected, table);
+            for (int i = 0; i < 1_000; i++) {
+                assertEquals(expected.get(i), table.get(i));
+            }
+        }
+        
+        @Test
+        void testBuiltMapsUnchangedByBuilder() {
+            MyPersistentHashTable.Builder<CollidingKey, Integer> builder = MyPersistentHashTable.builder();
+            for (int i = 0; i < 200; i++) {
+                builder.put(new CollidingKey(i), i);
+            }
+            MyPersistentHashTable<CollidingKey, Integer> first = builder.build();
+            Map<CollidingKey, Integer> expected = new HashMap<>(first);
+            for (int i = 0; i < 200; i += 2) {
+                builder.remove(new CollidingKey(i));
+                builder.put(new CollidingKey(i + 1), -i);
+            }
+            assertEquals(100, builder.size());
+            MyPersistentHashTable<CollidingKey, Integer> second = builder.build();
+            assertEquals(expected, first);
+            assertEquals(100, second.size());
+            assertEquals(-198, second.get(new CollidingKey(199)));
+            assertNull(second.get(new CollidingKey(0)));
+        }
+        
+        @Test
+        void testToBuilder() {
+            MyPersistentHashTable<String, Integer> table = MyPersistentHashTable.<String, Integer>empty().with("a", 1)
+                    .with("b", 2);
+            MyPersistentHashTable<String, Integer> changed = table.toBuilder().remove("a").put("c", 3).build();
+            assertEquals(Map.of("a", 1, "b", 2), table);
+            assertEquals(Map.of("b", 2, "c", 3), changed);
+        }
+    }
+    
+    @Nested
+    class ImmutabilityTests {
+        
+        @Test
+        void testModificationsThrow() {
+            Map<String, Integer> source = new HashMap<>();
+            for (int i = 0; i < 10; i++) {
+                source.put("s" + i, i);
+            }
+            MyPersistentHashTable<String, Integer> table = MyPersistentHashTable.copyOf(source);
+            assertThrows(UnsupportedOperationException.class, () -> table.put("a", 1));
+            assertThrows(UnsupportedOperationException.class, () -> table.remove("s0"));
+            assertThrows(UnsupportedOperationException.class, () -> table.clear());
+            assertThrows(UnsupportedOperationException.class, () -> table.keySet().remove("s0"));
+            assertThrows(UnsupportedOperationException.class,
+                    () -> table.entrySet().iterator().next().setValue(1));
+            Iterator<Integer> values = table.values().iterator();
+            values.next();
+            assertThrows(UnsupportedOperationException.class, values::remove);
+            assertEquals(source, table);
+        }
+    }
+}
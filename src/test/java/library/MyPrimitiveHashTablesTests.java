@@ -0,0 +1,179 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyPrimitiveHashTablesTests {
+    
+    @Nested
+    class LongLongTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyLongLongHashTable(-1));
+            assertEquals(2, new MyLongLongHashTable(0).capacity());
+            assertEquals(256, new MyLongLongHashTable(150).capacity());
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            RandomOperations<MyLongLongHashTable, Long, Long> operations = new RandomOperations<>(
+                    () -> new MyLongLongHashTable(0), MyLongLongHashTable::size, table -> {
+                        Map<Long, Long> actual = new HashMap<>();
+                        table.forEach((key, value) -> assertNull(actual.put(key, value)));
+                        return actual;
+                    });
+            operations.with((table, expected, key, value) -> {
+                assertEquals(expected.getOrDefault(key, 0L), table.put(key, value));
+                expected.put(key, value);
+            }).with((table, expected, key, value) -> {
+                assertEquals(expected.getOrDefault(key, 0L), table.remove(key));
+                expected.remove(key);
+            }).with((table, expected, key, value) -> {
+                assertEquals(expected.getOrDefault(key, 0L), table.addTo(key, value));
+                expected.merge(key, value, Long::sum);
+            }).with((table, expected, key, value) -> {
+                assertEquals(expected.containsKey(key), table.containsKey(key));
+                assertEquals(expected.getOrDefault(key, -1L), table.getOrDefault(key, -1));
+            });
+            // Small keys collide often, including with the free-slot marker 0
+            operations.run(16, 100_000,
+                    (random, i) -> random.nextBoolean() ? random.nextInt(64) - 8 : random.nextLong(),
+                    (random, i) -> (long) random.nextInt(100));
+            MyLongLongHashTable table = operations.table;
+            table.clear();
+            assertTrue(table.isEmpty());
+            assertFalse(table.containsKey(0));
+        }
+        
+        @Test
+        void testZeroKeyAndToString() {
+            MyLongLongHashTable table = new MyLongLongHashTable();
+            assertEquals(0, table.get(0));
+            assertFalse(table.containsKey(0));
+            assertEquals(0, table.addTo(0, 5));
+            assertEquals(5, table.put(0, 7));
+            table.put(3, 4);
+            assertEquals(2, table.size());
+            assertTrue(table.toString().equals("{0=7, 3=4}") || table.toString().equals("{3=4, 0=7}"));
+            assertEquals(7, table.remove(0));
+            assertEquals("{3=4}", table.toString());
+        }
+    }
+    
+    @Nested
+    class IntIntTests {
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            new RandomOperations<MyIntIntHashTable, Integer, Integer>(() -> new MyIntIntHashTable(0),
+                    MyIntIntHashTable::size, table -> {
+                        Map<Integer, Integer> actual = new HashMap<>();
+                        table.forEach((key, value) -> assertNull(actual.put(key, value)));
+                        return actual;
+                    }).with((table, expected, key, value) -> {
+                        assertEquals(expected.getOrDefault(key, 0), table.put(key, value));
+                        expected.put(key, value);
+                    }).with((table, expected, key, value) -> {
+                        assertEquals(expected.getOrDefault(key, 0), table.remove(key));
+                        expected.remove(key);
+                    }).with((table, expected, key, value) -> {
+                        assertEquals(expected.getOrDefault(key, 0), table.addTo(key, value));
+                        expected.merge(key, value, Integer::sum);
+                    }).with((table, expected, key, value) -> {
+                        assertEquals(expected.containsKey(key), table.containsKey(key));
+                        assertEquals(expected.getOrDefault(key, -1), table.getOrDefault(key, -1));
+                    }).run(16, 100_000, (random, i) -> random.nextBoolean() ? random.nextInt(64) - 8 : random.nextInt(),
+                            (random, i) -> random.nextInt(100));
+        }
+        
+        @Test
+        void testSequentialKeysAfterRemovals() {
+            MyIntIntHashTable table = new MyIntIntHashTable();
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, i);
+            }
+            for (int i = 0; i < 10_000; i += 3) {
+                assertEquals(i, table.remove(i));
+            }
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals(i % 3 != 0, table.containsKey(i));
+                assertEquals(i % 3 != 0 ? i : 0, table.get(i));
+            }
+        }
+    }
+    
+    @Nested
+    class LongObjectTests {
+        
+        @Test
+        void testNullHostile() {
+            MyLongObjectHashTable<String> table = new MyLongObjectHashTable<>();
+            assertThrows(NullPointerException.class, () -> table.put(1, null));
+            assertThrows(NullPointerException.class, () -> table.forEach(null));
+            assertThrows(IllegalArgumentException.class, () -> new MyLongObjectHashTable<>(-1));
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            RandomOperations<MyLongObjectHashTable<String>, Long, String> operations = new RandomOperations<>(
+                    () -> new MyLongObjectHashTable<>(0), MyLongObjectHashTable::size, table -> {
+                        Map<Long, String> actual = new HashMap<>();
+                        table.forEach((long key, String value) -> assertNull(actual.put(key, value)));
+                        return actual;
+                    });
+            operations.with((table, expected, key, value) -> assertEquals(expected.put(key, value),
+                    table.put(key, value)))
+                    .with((table, expected, key, value) -> assertEquals(expected.remove(key), table.remove(key)))
+                    .with((table, expected, key, value) -> {
+                        assertEquals(expected.containsKey(key), table.containsKey(key));
+                        assertEquals(expected.get(key), table.get(key));
+                        assertEquals(expected.getOrDefault(key, "none"), table.getOrDefault(key, "none"));
+                    }).run(16, 100_000,
+                            (random, i) -> random.nextBoolean() ? random.nextInt(64) - 8 : random.nextLong(),
+                            (random, i) -> "v" + random.nextInt(100));
+            MyLongObjectHashTable<String> table = operations.table;
+            table.clear();
+            assertTrue(table.isEmpty());
+            assertNull(table.get(0));
+            assertEquals("{}", table.toString());
+        }
+    }
+    
+    @Nested
+    class IntObjectTests {
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            new RandomOperations<MyIntObjectHashTable<String>, Integer, String>(() -> new MyIntObjectHashTable<>(0),
+                    MyIntObjectHashTable::size, table -> {
+                        Map<Integer, String> actual = new HashMap<>();
+                        table.forEach((int key, String value) -> assertNull(actual.put(key, value)));
+                        return actual;
+                    }).with((table, expected, key, value) -> assertEquals(expected.put(key, value),
+                            table.put(key, value)))
+                    .with((table, expected, key, value) -> assertEquals(expected.remove(key), table.remove(key)))
+                    .with((table, expected, key, value) -> {
+                        assertEquals(expected.containsKey(key), table.containsKey(key));
+                        assertEquals(expected.get(key), table.get(key));
+                    }).run(16, 100_000, (random, i) -> random.nextBoolean() ? random.nextInt(64) - 8 : random.nextInt(),
+                            (random, i) -> "v" + random.nextInt(100));
+        }
+        
+        @Test
+        void testPresizedTableDoesNotGrow() {
+            MyIntObjectHashTable<String> table = new MyIntObjectHashTable<>(1000);
+            int capacity = table.capacity();
+            for (int i = 0; i < 1000; i++) {
+                table.put(i * 31, "s" + i);
+            }
+            assertEquals(capacity, table.capacity());
+            assertEquals("s7", table.get(7 * 31));
+        }
+    }
+}
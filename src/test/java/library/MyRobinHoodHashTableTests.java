@@ -0,0 +1,200 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MyRobinHoodHashTableTests {
+    
+    /**
+     * A key whose hash code only takes a few values, so that keys form long clusters.
+     */
+    static class CollidingKey {
+        final int id;
+        
+        CollidingKey(int id) {
+            this.id = id;
+        }
+        
+        @Override
+        public int hashCode() {
+            return id % 7;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+        }
+        
+        @Override
+        public String toString() {
+            return "key" + id;
+        }
+    }
+    
+    @Nested
+    class CapacityTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MyRobinHoodHashTable<>(-1));
+            assertThrows(IllegalArgumentException.class, () -> new MyRobinHoodHashTable<>(16, 0f));
+            assertThrows(IllegalArgumentException.class, () -> new MyRobinHoodHashTable<>(16, 1f));
+            assertThrows(IllegalArgumentException.class, () -> new MyRobinHoodHashTable<>(16, Float.NaN));
+            assertThrows(NullPointerException.class, () -> new MyRobinHoodHashTable<>(null));
+        }
+        
+        @Test
+        void testPresizedTableDoesNotGrow() {
+            MyRobinHoodHashTable<Integer, Integer> table = new MyRobinHoodHashTable<>(1000);
+            int capacity = table.capacity();
+            assertEquals(1, Integer.bitCount(capacity));
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+            }
+            assertEquals(capacity, table.capacity());
+            table.put(1000, 1000);
+            table.clear();
+            table.trimToSize();
+            assertTrue(table.capacity() < capacity);
+        }
+        
+        @Test
+        void testGrowsAndShrinks() {
+            MyRobinHoodHashTable<Integer, Integer> table = new MyRobinHoodHashTable<>(0, 0.9f);
+            for (int i = 0; i < 10_000; i++) {
+                table.put(i, i * 2);
+            }
+            assertEquals(10_000, table.size());
+            for (int i = 0; i < 10_000; i += 2) {
+                assertEquals(i * 2, table.remove(i));
+            }
+            table.trimToSize();
+            assertTrue(table.capacity() < 10_000 / 0.9f);
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals((i % 2 == 0) ? null : i * 2, table.get(i));
+            }
+        }
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testNullHostile() {
+            MyRobinHoodHashTable<String, String> table = new MyRobinHoodHashTable<>();
+            assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> table.put("a", null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.containsKey(null));
+            assertThrows(NullPointerException.class, () -> table.containsValue(null));
+            assertThrows(NullPointerException.class, () -> table.remove(null));
+        }
+        
+        @Test
+        void testEqualsHashMap() {
+            Map<String, Integer> expected = new HashMap<>();
+            MyRobinHoodHashTable<String, Integer> table = new MyRobinHoodHashTable<>();
+            for (int i = 0; i < 100; i++) {
+                expected.put("s" + i, i);
+                table.put("s" + i, i);
+            }
+            assertEquals(expected, table);
+            assertEquals(table, expected);
+            assertEquals(expected.hashCode(), table.hashCode());
+            assertEquals(expected.keySet(), table.keySet());
+            assertEquals(expected.entrySet(), table.entrySet());
+            assertEquals(new MyRobinHoodHashTable<>(expected), table);
+            assertTrue(table.containsValue(99));
+            assertFalse(table.containsValue(100));
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            RandomOperations.<MyRobinHoodHashTable<CollidingKey, Integer>, CollidingKey, Integer>onMap(
+                    () -> new MyRobinHoodHashTable<>(0, 0.95f))
+                    .with(RandomOperations.put()).with(RandomOperations.remove()).with(RandomOperations.get())
+                    .run(6, 20_000, (random, i) -> new CollidingKey(random.nextInt(400)), (random, i) -> i);
+        }
+    }
+    
+    @Nested
+    class IteratorTests {
+        
+        @Test
+        void testIteratorRemoveVisitsEveryEntryOnce() {
+            for (int seed = 0; seed < 20; seed++) {
+                Random random = new Random(seed);
+                MyRobinHoodHashTable<CollidingKey, Integer> table = new MyRobinHoodHashTable<>(0, 0.95f);
+                Map<CollidingKey, Integer> expected = new HashMap<>();
+                for (int i = 0; i < 200; i++) {
+                    CollidingKey key = new CollidingKey(random.nextInt(1000));
+                    table.put(key, i);
+                    expected.put(key, i);
+                }
+                
+                Set<CollidingKey> original = new HashSet<>(expected.keySet());
+                Set<CollidingKey> seen = new HashSet<>();
+                for (Iterator<CollidingKey> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                    CollidingKey key = iterator.next();
+                    assertTrue(seen.add(key), "visited twice: " + key);
+                    if (random.nextBoolean()) {
+                        iterator.remove();
+                        expected.remove(key);
+                    }
+                }
+                assertEquals(original, seen);
+                assertEquals(expected, table);
+            }
+        }
+        
+        @Test
+        void testIteratorRemoveRequiresNext() {
+            MyRobinHoodHashTable<String, Integer> table = new MyRobinHoodHashTable<>();
+            table.put("a", 1);
+            Iterator<String> iterator = table.keySet().iterator();
+            assertThrows(IllegalStateException.class, iterator::remove);
+            iterator.next();
+            iterator.remove();
+            assertThrows(IllegalStateException.class, iterator::remove);
+            assertTrue(table.isEmpty());
+        }
+        
+        @Test
+        void testEntrySetValueWritesThrough() {
+            MyRobinHoodHashTable<String, Integer> table = new MyRobinHoodHashTable<>();
+            for (int i = 0; i < 10; i++) {
+                table.put("s" + i, i);
+            }
+            for (Map.Entry<String, Integer> entry : table.entrySet()) {
+                assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, table.get("s" + i));
+            }
+        }
+        
+        @Test
+        void testViewsRemove() {
+            MyRobinHoodHashTable<String, Integer> table = new MyRobinHoodHashTable<>();
+            for (int i = 0; i < 10; i++) {
+                table.put("s" + i, i);
+            }
+            assertTrue(table.keySet().remove("s0"));
+            assertTrue(table.values().remove(1));
+            assertTrue(table.entrySet().remove(Map.entry("s2", 2)));
+            assertFalse(table.entrySet().remove(Map.entry("s3", 4)));
+            assertEquals(7, table.size());
+            table.values().removeIf(value -> value % 2 == 0);
+            assertEquals(Set.of("s3", "s5", "s7", "s9"), table.keySet());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class MySeededHashStrategyTests {
+    
+    private static final long K0 = 0x0706_0504_0302_0100L;
+    private static final long K1 = 0x0F0E_0D0C_0B0A_0908L;
+    
+    @Test
+    void testStringsHashAsUtf16Bytes() {
+        MySeededHashStrategy strategy = new MySeededHashStrategy(K0, K1);
+        for (String s : new String[] { "", "a", "abc", "abcd", "abcdefg", "h\u00E9llo w\u00F6rld", "\uD83D\uDE00" }) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_16LE);
+            long h = strategy.hashBytes(bytes, 0, bytes.length);
+            assertEquals((int) (h ^ (h >>> 32)), strategy.hash(s), s);
+        }
+    }
+    
+    @Test
+    void testByteArraysHashByContents() {
+        MySeededHashStrategy strategy = new MySeededHashStrategy(K0, K1);
+        byte[] bytes = new byte[20];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        assertEquals(strategy.hash(bytes), strategy.hash(bytes.clone()));
+        byte[] middle = new byte[9];
+        System.arraycopy(bytes, 5, middle, 0, 9);
+        assertEquals(strategy.hashBytes(middle, 0, 9), strategy.hashBytes(bytes, 5, 9));
+        assertThrows(IndexOutOfBoundsException.class, () -> strategy.hashBytes(bytes, 15, 6));
+        assertThrows(IndexOutOfBoundsException.class, () -> strategy.hashBytes(bytes, -1, 2));
+    }
+    
+    @Test
+    void testSeedChangesHash() {
+        MySeededHashStrategy a = new MySeededHashStrategy(K0, K1);
+        MySeededHashStrategy b = new MySeededHashStrategy(K0, K1 + 1);
+        assertEquals(a.hash("key"), new MySeededHashStrategy(K0, K1).hash("key"));
+        assertNotEquals(a.hash("key"), b.hash("key"));
+        assertNotEquals(a.hash(42), b.hash(42));
+        assertNotEquals(a.hash("Aa"), a.hash("BB"));
+    }
+}
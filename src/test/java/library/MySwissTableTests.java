@@ -0,0 +1,191 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class MySwissTableTests {
+    
+    /**
+     * A key that counts the calls made to its equals method.
+     */
+    static class CountingKey {
+        static int equalsCalls = 0;
+        
+        final int id;
+        
+        CountingKey(int id) {
+            this.id = id;
+        }
+        
+        @Override
+        public int hashCode() {
+            return id;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            equalsCalls++;
+            return o instanceof CountingKey && ((CountingKey) o).id == id;
+        }
+    }
+    
+    @Nested
+    class GroupMatchTests {
+        
+        @Test
+        void testMatchTag() {
+            // Slots 0 to 7 hold: 0x12, EMPTY, 0x34, DELETED, 0x12, 0x00, EMPTY, 0x7F
+            long word = 0x7F80_00_12_FE_34_80_12L;
+            assertEquals(0x0000_00_80_00_00_00_80L, MySwissTable.matchTag(word, 0x12));
+            assertEquals(0x0000_00_00_00_80_00_00L, MySwissTable.matchTag(word, 0x34));
+            assertEquals(0x8000_00_00_00_00_00_00L, MySwissTable.matchTag(word, 0x7F));
+            assertEquals(0, MySwissTable.matchTag(word, 0x55));
+        }
+        
+        @Test
+        void testMatchEmptyAndDeleted() {
+            long word = 0x7F80_00_12_FE_34_80_12L;
+            assertEquals(0x0080_00_00_00_00_80_00L, MySwissTable.matchEmpty(word));
+            assertEquals(0x0080_00_00_80_00_80_00L, MySwissTable.matchEmptyOrDeleted(word));
+            assertEquals(0, MySwissTable.matchEmpty(0xFEFE_FEFE_FEFE_FEFEL));
+            assertEquals(0x8080_8080_8080_8080L, MySwissTable.matchEmpty(0x8080_8080_8080_8080L));
+        }
+    }
+    
+    @Nested
+    class CapacityTests {
+        
+        @Test
+        void testConstructorArguments() {
+            assertThrows(IllegalArgumentException.class, () -> new MySwissTable<>(-1));
+            assertThrows(NullPointerException.class, () -> new MySwissTable<>(null));
+            assertEquals(8, new MySwissTable<>(0).capacity());
+            assertEquals(8, new MySwissTable<>(7).capacity());
+            assertEquals(16, new MySwissTable<>(8).capacity());
+        }
+        
+        @Test
+        void testPresizedTableDoesNotGrow() {
+            MySwissTable<Integer, Integer> table = new MySwissTable<>(1000);
+            int capacity = table.capacity();
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+            }
+            assertEquals(capacity, table.capacity());
+            table.clear();
+            table.trimToSize();
+            assertEquals(8, table.capacity());
+        }
+        
+        @Test
+        void testChurnDoesNotGrow() {
+            MySwissTable<Integer, Integer> table = new MySwissTable<>(100);
+            int capacity = table.capacity();
+            for (int i = 0; i < 100_000; i++) {
+                table.put(i, i);
+                if (i >= 100) {
+                    assertEquals(i - 100, table.remove(i - 100));
+                }
+            }
+            assertEquals(100, table.size());
+            assertEquals(capacity, table.capacity());
+            for (int i = 100_000 - 100; i < 100_000; i++) {
+                assertEquals(i, table.get(i));
+            }
+        }
+    }
+    
+    @Nested
+    class MapTests {
+        
+        @Test
+        void testNullHostile() {
+            MySwissTable<String, String> table = new MySwissTable<>();
+            assertThrows(NullPointerException.class, () -> table.put(null, "a"));
+            assertThrows(NullPointerException.class, () -> table.put("a", null));
+            assertThrows(NullPointerException.class, () -> table.get(null));
+            assertThrows(NullPointerException.class, () -> table.containsKey(null));
+            assertThrows(NullPointerException.class, () -> table.containsValue(null));
+            assertThrows(NullPointerException.class, () -> table.remove(null));
+        }
+        
+        @Test
+        void testMissesRarelyCompareKeys() {
+            MySwissTable<CountingKey, Integer> table = new MySwissTable<>();
+            for (int i = 0; i < 10_000; i++) {
+                table.put(new CountingKey(i), i);
+            }
+            CountingKey.equalsCalls = 0;
+            for (int i = 10_000; i < 20_000; i++) {
+                assertNull(table.get(new CountingKey(i)));
+            }
+            // About one comparison in 128 full slots probed
+            assertTrue(CountingKey.equalsCalls < 1_000, CountingKey.equalsCalls + " key comparisons");
+        }
+        
+        @Test
+        void testRandomOperationsMatchHashMap() {
+            RandomOperations<MySwissTable<Integer, Integer>, Integer, Integer> operations = RandomOperations
+                    .onMap(MySwissTable::new);
+            operations.with(RandomOperations.put()).with(RandomOperations.remove()).with(RandomOperations.get())
+                    .run(7, 50_000, (random, i) -> random.nextInt(500), (random, i) -> i);
+            MySwissTable<Integer, Integer> table = operations.table;
+            Map<Integer, Integer> expected = operations.expected;
+            assertEquals(table, expected);
+            assertEquals(expected.hashCode(), table.hashCode());
+            assertEquals(new MySwissTable<>(expected), table);
+        }
+    }
+    
+    @Nested
+    class IteratorTests {
+        
+        @Test
+        void testIteratorRemove() {
+            Random random = new Random(7);
+            MySwissTable<Integer, Integer> table = new MySwissTable<>();
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 1000; i++) {
+                table.put(i, i);
+                expected.put(i, i);
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (Iterator<Integer> iterator = table.keySet().iterator(); iterator.hasNext();) {
+                Integer key = iterator.next();
+                assertTrue(seen.add(key));
+                if (random.nextBoolean()) {
+                    iterator.remove();
+                    expected.remove(key);
+                }
+            }
+            assertEquals(1000, seen.size());
+            assertEquals(expected, table);
+        }
+        
+        @Test
+        void testEntrySetValueWritesThrough() {
+            MySwissTable<String, Integer> table = new MySwissTable<>();
+            for (int i = 0; i < 10; i++) {
+                table.put("s" + i, i);
+            }
+            for (Map.Entry<String, Integer> entry : table.entrySet()) {
+                assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 10, table.get("s" + i));
+            }
+            assertTrue(table.containsValue(90));
+            table.values().removeIf(value -> value >= 50);
+            assertEquals(Set.of("s0", "s1", "s2", "s3", "s4"), table.keySet());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs the same random operations on a table and on a HashMap, to check that the table behaves like
+ * one. Each step picks a key, a value and one of the operations, which performs itself on both and
+ * asserts that their results agree. The sizes must then be equal, and after the last step, so must
+ * the mappings.
+ *
+ * @param <T> the type of the table
+ * @param <K> the type of keys, as the HashMap holds them
+ * @param <V> the type of values, as the HashMap holds them
+ */
+public class RandomOperations<T, K, V> {
+    
+    /**
+     * One kind of operation, which performs itself on the table and the HashMap, and asserts that
+     * they agree.
+     */
+    public interface Operation<T, K, V> {
+        void apply(T table, Map<K, V> expected, K key, V value);
+    }
+    
+    /**
+     * Picks the key or the value of a step.
+     */
+    public interface Generator<E> {
+        E next(Random random, int step);
+    }
+    
+    public final T table;
+    public final Map<K, V> expected = new HashMap<>();
+    private final ToLongFunction<? super T> size;
+    private final Function<? super T, ? extends Map<K, V>> contents;
+    private final List<Operation<? super T, K, V>> operations = new ArrayList<>();
+    
+    /**
+     * Creates the table to run operations on, which doesn't need to be a Map: its size and mappings
+     * are read with the given functions.
+     */
+    public RandomOperations(Supplier<? extends T> factory, ToLongFunction<? super T> size,
+            Function<? super T, ? extends Map<K, V>> contents) {
+        this.table = factory.get();
+        this.size = size;
+        this.contents = contents;
+    }
+    
+    /**
+     * Creates the Map to run operations on.
+     */
+    public static <M extends Map<K, V>, K, V> RandomOperations<M, K, V> onMap(Supplier<? extends M> factory) {
+        return new RandomOperations<>(factory, Map::size, map -> map);
+    }
+    
+    public RandomOperations<T, K, V> with(Operation<? super T, K, V> operation) {
+        operations.add(operation);
+        return this;
+    }
+    
+    public void run(long seed, int steps, Generator<? extends K> keys, Generator<? extends V> values) {
+        Random random = new Random(seed);
+        for (int i = 0; i < steps; i++) {
+            K key = keys.next(random, i);
+            V value = values.next(random, i);
+            operations.get(random.nextInt(operations.size())).apply(table, expected, key, value);
+            assertEquals(expected.size(), size.applyAsLong(table));
+        }
+        assertEquals(expected, contents.apply(table));
+    }
+    
+    // The operations of Map most tables share
+    
+    public static <K, V> Operation<Map<K, V>, K, V> put() {
+        return (table, expected, key, value) -> assertEquals(expected.put(key, value), table.put(key, value));
+    }
+    
+    public static <K, V> Operation<Map<K, V>, K, V> remove() {
+        return (table, expected, key, value) -> assertEquals(expected.remove(key), table.remove(key));
+    }
+    
+    public static <K, V> Operation<Map<K, V>, K, V> get() {
+        return (table, expected, key, value) -> {
+            assertEquals(expected.get(key), table.get(key));
+            assertEquals(expected.containsKey(key), table.containsKey(key));
+        };
+    }
+}